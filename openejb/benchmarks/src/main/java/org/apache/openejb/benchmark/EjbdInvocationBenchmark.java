@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips over ejbd on the loopback interface, the client and the
+ * server share the VM but not the proxies.
+ *
+ * @version $Rev$ $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class EjbdInvocationBenchmark {
+
+    @Param({"16", "1024"})
+    public int size;
+
+    private EmbeddedContainer container;
+    private InitialContext client;
+    private Payload payload;
+
+    private Echo stateless;
+    private Echo singleton;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("openejb.embedded.remotable", "true");
+        container = new EmbeddedContainer(properties);
+
+        final Properties p = new Properties();
+        p.setProperty(Context.INITIAL_CONTEXT_FACTORY, "org.apache.openejb.client.RemoteInitialContextFactory");
+        p.setProperty(Context.PROVIDER_URL, "ejbd://127.0.0.1:" + EmbeddedContainer.getEjbdPort());
+        client = new InitialContext(p);
+
+        payload = new Payload("ejbd", size);
+        stateless = (Echo) client.lookup("StatelessEchoBeanRemote");
+        singleton = (Echo) client.lookup("SingletonEchoBeanRemote");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.close();
+        container.close();
+    }
+
+    @Benchmark
+    public Payload stateless() {
+        return stateless.echo(payload);
+    }
+
+    @Benchmark
+    public Payload stateful(Session session) {
+        return session.bean.echo(payload);
+    }
+
+    @Benchmark
+    public Payload singleton() {
+        return singleton.echo(payload);
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+        private Echo bean;
+
+        @Setup
+        public void create(EjbdInvocationBenchmark benchmark) throws NamingException {
+            bean = (Echo) benchmark.client.lookup("StatefulEchoBeanRemote");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.config.DeploymentsResolver;
+import org.apache.openejb.core.LocalInitialContext;
+import org.apache.openejb.core.LocalInitialContextFactory;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.ManagedBean;
+import org.apache.openejb.jee.SingletonBean;
+import org.apache.openejb.jee.StatefulBean;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.util.Properties;
+
+/**
+ * Boots the embedded container through the LocalInitialContextFactory and
+ * deploys the benchmark beans.  The classpath is not scanned, so nothing
+ * else is deployed.
+ *
+ * @version $Rev$ $Date$
+ */
+public class EmbeddedContainer {
+
+    public static final String EJBD_PORT = "ejbd.port";
+
+    private final InitialContext context;
+
+    /**
+     * @param properties extra container properties, for example
+     * openejb.localcopy or openejb.embedded.remotable
+     */
+    public EmbeddedContainer(Properties properties) throws Exception {
+        final Properties p = new Properties();
+        p.setProperty(Context.INITIAL_CONTEXT_FACTORY, LocalInitialContextFactory.class.getName());
+        p.setProperty(DeploymentsResolver.DEPLOYMENTS_CLASSPATH_PROPERTY, "false");
+        p.setProperty(LocalInitialContext.ON_CLOSE, LocalInitialContext.Close.DESTROY.name());
+        p.setProperty(EJBD_PORT, getEjbdPort());
+        p.setProperty("ejbds.disabled", "true");
+        p.putAll(properties);
+
+        context = new InitialContext(p);
+
+        final ConfigurationFactory config = new ConfigurationFactory();
+        final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+
+        final EjbJar ejbJar = new EjbJar();
+        ejbJar.addEnterpriseBean(new StatelessBean(StatelessEchoBean.class));
+        ejbJar.addEnterpriseBean(new StatefulBean(StatefulEchoBean.class));
+        ejbJar.addEnterpriseBean(new SingletonBean(SingletonEchoBean.class));
+        ejbJar.addEnterpriseBean(new StatelessBean(InterceptedEchoBean.class));
+        ejbJar.addEnterpriseBean(new ManagedBean(ManagedEchoBean.class));
+
+        assembler.createApplication(config.configureApplication(ejbJar));
+    }
+
+    /**
+     * @return the port ejbd listens on when the container is remotable,
+     * the ejbd.port system property or 4201
+     */
+    public static String getEjbdPort() {
+        return System.getProperty(EJBD_PORT, "4201");
+    }
+
+    public <T> T lookup(String name, Class<T> type) throws NamingException {
+        return type.cast(context.lookup(name));
+    }
+
+    /**
+     * Logs the calling thread in, closing the returned context logs it out
+     */
+    public static InitialContext login(String user, String password) throws NamingException {
+        final Properties p = new Properties();
+        p.setProperty(Context.INITIAL_CONTEXT_FACTORY, LocalInitialContextFactory.class.getName());
+        p.setProperty(Context.SECURITY_PRINCIPAL, user);
+        p.setProperty(Context.SECURITY_CREDENTIALS, password);
+        return new InitialContext(p);
+    }
+
+    public void close() throws NamingException {
+        context.close();
+    }
+}
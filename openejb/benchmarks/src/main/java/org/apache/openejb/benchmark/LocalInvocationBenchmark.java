@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls through the no-interface views, where nothing is copied.  Run with
+ * -t to see how the singleton READ and WRITE locks behave under contention.
+ *
+ * @version $Rev$ $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class LocalInvocationBenchmark {
+
+    private EmbeddedContainer container;
+    private Payload payload;
+
+    private StatelessEchoBean stateless;
+    private SingletonEchoBean singleton;
+    private InterceptedEchoBean intercepted;
+    private ManagedEchoBean managed;
+
+    @Setup
+    public void setUp() throws Exception {
+        container = new EmbeddedContainer(new Properties());
+        payload = new Payload("local", 16);
+
+        stateless = container.lookup("StatelessEchoBeanLocalBean", StatelessEchoBean.class);
+        singleton = container.lookup("SingletonEchoBeanLocalBean", SingletonEchoBean.class);
+        intercepted = container.lookup("InterceptedEchoBeanLocalBean", InterceptedEchoBean.class);
+        managed = container.lookup("ManagedEchoBeanLocalBean", ManagedEchoBean.class);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        container.close();
+    }
+
+    @Benchmark
+    public Payload stateless() {
+        return stateless.echo(payload);
+    }
+
+    @Benchmark
+    public Payload statelessTransaction() {
+        return stateless.echoInTransaction(payload);
+    }
+
+    @Benchmark
+    public Payload statelessSecured(Caller caller) {
+        return stateless.echoSecured(payload);
+    }
+
+    @Benchmark
+    public Payload stateful(Session session) {
+        return session.bean.echo(payload);
+    }
+
+    @Benchmark
+    public Payload singletonRead() {
+        return singleton.echo(payload);
+    }
+
+    @Benchmark
+    public Payload singletonWrite() {
+        return singleton.echoExclusive(payload);
+    }
+
+    @Benchmark
+    public Payload intercepted() {
+        return intercepted.echo(payload);
+    }
+
+    @Benchmark
+    public Payload managed() {
+        return managed.echo(payload);
+    }
+
+    /**
+     * A stateful bean can't be called by several threads at once
+     */
+    @State(Scope.Thread)
+    public static class Session {
+        private StatefulEchoBean bean;
+
+        @Setup
+        public void create(LocalInvocationBenchmark benchmark) throws NamingException {
+            bean = benchmark.container.lookup("StatefulEchoBeanLocalBean", StatefulEchoBean.class);
+        }
+    }
+
+    /**
+     * The identity is associated with the thread
+     */
+    @State(Scope.Thread)
+    public static class Caller {
+        private InitialContext login;
+
+        @Setup
+        public void login(LocalInvocationBenchmark benchmark) throws NamingException {
+            // the benchmark parameter is only there to have the container booted first
+            login = EmbeddedContainer.login("jonathan", "secret");
+        }
+
+        @TearDown
+        public void logout() throws NamingException {
+            login.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Argument and return value of the benchmarked calls, big enough for the
+ * cost of copying it through remote views to show.
+ *
+ * @version $Rev$ $Date$
+ */
+public class Payload implements Serializable {
+    private final String name;
+    private final int[] values;
+    private final List<String> tags;
+
+    public Payload(String name, int size) {
+        this.name = name;
+        this.values = new int[size];
+        this.tags = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+            tags.add(name + i);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.naming.NamingException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls through the remote views inside the VM, where openejb.localcopy
+ * decides if and how arguments and return values are copied.
+ *
+ * @version $Rev$ $Date$
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class RemoteViewBenchmark {
+
+    /**
+     * "none" sets openejb.localcopy to false, the other values are
+     * openejb.localcopy.strategy values
+     */
+    @Param({"none", "serialization", "reflection"})
+    public String copy;
+
+    @Param({"16", "1024"})
+    public int size;
+
+    private EmbeddedContainer container;
+    private Payload payload;
+
+    private Echo stateless;
+    private Echo singleton;
+    private Echo intercepted;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Properties properties = new Properties();
+        if ("none".equals(copy)) {
+            properties.setProperty("openejb.localcopy", "false");
+        } else {
+            properties.setProperty("openejb.localcopy", "true");
+            properties.setProperty("openejb.localcopy.strategy", copy);
+        }
+
+        container = new EmbeddedContainer(properties);
+        payload = new Payload("remote", size);
+
+        stateless = container.lookup("StatelessEchoBeanRemote", Echo.class);
+        singleton = container.lookup("SingletonEchoBeanRemote", Echo.class);
+        intercepted = container.lookup("InterceptedEchoBeanRemote", Echo.class);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        container.close();
+    }
+
+    @Benchmark
+    public Payload stateless() {
+        return stateless.echo(payload);
+    }
+
+    @Benchmark
+    public Payload stateful(Session session) {
+        return session.bean.echo(payload);
+    }
+
+    @Benchmark
+    public Payload singleton() {
+        return singleton.echo(payload);
+    }
+
+    @Benchmark
+    public Payload intercepted() {
+        return intercepted.echo(payload);
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+        private Echo bean;
+
+        @Setup
+        public void create(RemoteViewBenchmark benchmark) throws NamingException {
+            bean = benchmark.container.lookup("StatefulEchoBeanRemote", Echo.class);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.benchmark;
+
+import javax.annotation.security.PermitAll;
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.LocalBean;
+import javax.ejb.Remote;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+
+import static javax.ejb.TransactionAttributeType.REQUIRED;
+import static javax.ejb.TransactionAttributeType.SUPPORTS;
+
+/**
+ * @version $Rev$ $Date$
+ */
+@Stateless
+@LocalBean
+@Remote(Echo.class)
+@PermitAll
+@TransactionAttribute(SUPPORTS)
+public class StatelessEchoBean implements Echo {
+
+    public Payload echo(Payload payload) {
+        return payload;
+    }
+
+    @TransactionAttribute(REQUIRED)
+    public Payload echoInTransaction(Payload payload) {
+        return payload;
+    }
+
+    @RolesAllowed("committer")
+    public Payload echoSecured(Payload payload) {
+        return payload;
+    }
+}
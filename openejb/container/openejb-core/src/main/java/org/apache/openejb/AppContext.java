@@ -16,9 +16,9 @@
  */
 package org.apache.openejb;
 
+import org.apache.openejb.core.AsynchronousPool;
 import org.apache.openejb.core.WebContext;
 import org.apache.openejb.loader.SystemInstance;
-import org.apache.openejb.util.DaemonThreadFactory;
 import org.apache.webbeans.config.WebBeansContext;
 
 import javax.enterprise.inject.spi.BeanManager;
@@ -29,13 +29,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @version $Rev$ $Date$
@@ -52,8 +50,9 @@ public class AppContext extends DeploymentContext {
     private final Collection<Injection> injections = new HashSet<Injection>();
     private final Map<String, Object> bindings = new HashMap<String, Object>();
 
-    private BlockingQueue<Runnable> blockingQueue;
-    private ExecutorService asynchPool;
+    private volatile AsynchronousPool asynchronousPool;
+    private final ConcurrentMap<Object, AsynchronousPool> beanAsynchronousPools = new ConcurrentHashMap<Object, AsynchronousPool>();
+    private volatile boolean asynchronousPoolsShutdown;
 
     // TODO perhaps to be deleted
     private final List<BeanContext> beanContexts = new ArrayList<BeanContext>();
@@ -66,8 +65,6 @@ public class AppContext extends DeploymentContext {
         this.globalJndiContext = globalJndiContext;
         this.appJndiContext = appJndiContext;
         this.standaloneModule = standaloneModule;
-        this.blockingQueue = new LinkedBlockingQueue<Runnable>();
-        this.asynchPool = new ThreadPoolExecutor(10, 20, 60, TimeUnit.SECONDS, blockingQueue, new DaemonThreadFactory("@Asynch", id));
     }
 
     public Collection<Injection> getInjections() {
@@ -141,11 +138,82 @@ public class AppContext extends DeploymentContext {
      *  Asynchronous Invocation Thread Pool Methods
      */
     public Future<Object> submitTask(Callable<Object> callable){
-        return asynchPool.submit(callable);
+        return getAsynchronousPool().submit(callable);
     }
 
     public boolean removeTask(Runnable task) {
-        return blockingQueue.remove(task);
+        final AsynchronousPool pool = asynchronousPool;
+        return pool != null && pool.remove(task);
+    }
+
+    /**
+     * The pool shared by the beans of this application, created on first use
+     *
+     * @throws RejectedExecutionException once the pools are shut down
+     */
+    public AsynchronousPool getAsynchronousPool() {
+        AsynchronousPool pool = asynchronousPool;
+        if (pool == null) {
+            synchronized (this) {
+                checkAsynchronousPoolsRunning();
+                pool = asynchronousPool;
+                if (pool == null) {
+                    pool = AsynchronousPool.create(getId(), getId(), getOptions());
+                    asynchronousPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * The pool of the bean if it configures one of its own, the pool
+     * of the application otherwise
+     *
+     * @throws RejectedExecutionException once the pools are shut down
+     */
+    public AsynchronousPool getAsynchronousPool(BeanContext beanContext) {
+        final Object deploymentID = beanContext.getDeploymentID();
+        if (deploymentID == null) return getAsynchronousPool();
+
+        AsynchronousPool pool = beanAsynchronousPools.get(deploymentID);
+        if (pool == null) {
+            synchronized (this) {
+                checkAsynchronousPoolsRunning();
+                pool = beanAsynchronousPools.get(deploymentID);
+                if (pool == null) {
+                    if (AsynchronousPool.isConfigured(beanContext.getProperties())) {
+                        pool = AsynchronousPool.create(getId(), deploymentID.toString(), beanContext.getOptions());
+                    } else {
+                        pool = getAsynchronousPool();
+                    }
+                    beanAsynchronousPools.put(deploymentID, pool);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Stops the asynchronous pools once their queued calls completed
+     */
+    public synchronized void shutdownAsynchronousPools() {
+        asynchronousPoolsShutdown = true;
+        if (asynchronousPool != null) {
+            asynchronousPool.shutdown();
+            asynchronousPool = null;
+        }
+        // beans without a pool of their own are mapped to the one of the application
+        for (AsynchronousPool pool : beanAsynchronousPools.values()) {
+            pool.shutdown();
+        }
+        beanAsynchronousPools.clear();
+    }
+
+    private void checkAsynchronousPoolsRunning() {
+        if (asynchronousPoolsShutdown) {
+            throw new RejectedExecutionException("The asynchronous pools of " + getId() + " are shut down");
+        }
     }
 
 }
@@ -25,10 +25,12 @@ import org.apache.openejb.core.InstanceContext;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.cmp.KeyGenerator;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorInstance;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.ivm.EjbHomeProxyHandler;
+import org.apache.openejb.core.security.MethodPermissions;
 import org.apache.openejb.core.timer.EjbTimerService;
 import org.apache.openejb.core.timer.EjbTimerServiceImpl;
 import org.apache.openejb.core.transaction.EjbTransactionUtil;
@@ -69,6 +71,7 @@ import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class BeanContext extends DeploymentContext {
@@ -159,6 +162,8 @@ public class BeanContext extends DeploymentContext {
     private final Map<Method, Method> methodMap = new HashMap<Method, Method>();
     private final Map<Method, MethodContext> methodContextMap = new HashMap<Method, MethodContext>();
     private final Map<String, ViewContext> viewContextMap = new HashMap<String, ViewContext>();
+    private final MethodPermissions methodPermissions = new MethodPermissions(this);
+    private volatile MethodIndex methodIndex;
 
     private Index<EntityManagerFactory, Map> extendedEntityManagerFactories;
 
@@ -168,6 +173,7 @@ public class BeanContext extends DeploymentContext {
     private final Set<InterceptorData> instanceScopedInterceptors = new HashSet<InterceptorData>();
     private final List<InterceptorInstance> systemInterceptors = new ArrayList<InterceptorInstance>();
     private final List<InterceptorInstance> userInterceptors = new ArrayList<InterceptorInstance>();
+    private final AtomicInteger interceptorsVersion = new AtomicInteger();
     private final Map<String, String> activationProperties = new HashMap<String, String>();
     private final List<Injection> injections = new ArrayList<Injection>();
     private final Map<Class, InterfaceType> interfaces = new HashMap<Class, InterfaceType>();
@@ -541,21 +547,10 @@ public class BeanContext extends DeploymentContext {
     }
 
     public TransactionType getTransactionType(Method method, InterfaceType interfaceType) {
+        final MethodIndex.Entry entry = getMethodIndex().get(method);
+        if (entry != null) return entry.getTransactionType(interfaceType);
 
-        MethodContext methodContext = null;
-
-        if (interfaceType != null) {
-            methodContext = getViewMethodContext(method, interfaceType.getSpecName());
-        }
-
-        if (methodContext == null) methodContext = methodContextMap.get(method);
-
-        if (methodContext == null) {
-            final Method beanMethod = getMatchingBeanMethod(method);
-            methodContext = getMethodContext(beanMethod);
-        }
-
-        return methodContext.getTransactionType();
+        return getTransactionContext(method, interfaceType).getTransactionType();
 
 //
 //        // Check the cache
@@ -781,24 +776,120 @@ public class BeanContext extends DeploymentContext {
         isReentrant = reentrant;
     }
 
+    /**
+     * The MethodContext whose transaction attribute applies when the
+     * method is invoked through the given interface type
+     */
+    MethodContext getTransactionContext(Method method, InterfaceType interfaceType) {
+
+        MethodContext methodContext = null;
+
+        if (interfaceType != null) {
+            methodContext = getViewMethodContext(method, interfaceType.getSpecName());
+        }
+
+        if (methodContext == null) methodContext = findMethodContext(method);
+
+        if (methodContext == null) {
+            final Method beanMethod = findBeanMethod(method);
+            methodContext = getMethodContext(beanMethod);
+        }
+
+        return methodContext;
+    }
+
     public Method getMatchingBeanMethod(Method interfaceMethod) {
-        Method method = methodMap.get(interfaceMethod);
-        return (method == null) ? interfaceMethod : method;
+        final MethodIndex.Entry entry = getMethodIndex().get(interfaceMethod);
+        if (entry != null) return entry.getBeanMethod();
+
+        return findBeanMethod(interfaceMethod);
+    }
+
+    Method findBeanMethod(Method interfaceMethod) {
+        synchronized (methodContextMap) {
+            Method method = methodMap.get(interfaceMethod);
+            return (method == null) ? interfaceMethod : method;
+        }
+    }
+
+    MethodContext findMethodContext(Method method) {
+        synchronized (methodContextMap) {
+            return methodContextMap.get(method);
+        }
+    }
+
+    /**
+     * The index of every mapped interface and bean method, built at the
+     * end of the deployment or on first use and dropped whenever a method
+     * mapping or MethodContext is added.
+     *
+     * The method maps are only changed and the index only built holding
+     * the methodContextMap lock, so an index never misses a change made
+     * while it was built.
+     */
+    public MethodIndex getMethodIndex() {
+        MethodIndex index = methodIndex;
+        if (index == null) {
+            synchronized (methodContextMap) {
+                index = methodIndex;
+                if (index == null) {
+                    index = buildMethodIndex();
+                    methodIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private MethodIndex buildMethodIndex() {
+        // create the contexts of the bean methods up front, the index holds on to them
+        for (Method beanMethod : new ArrayList<Method>(methodMap.values())) {
+            getMethodContext(beanMethod);
+        }
+
+        final List<Method> methods = new ArrayList<Method>(methodMap.keySet());
+        methods.addAll(methodMap.values());
+        methods.addAll(methodContextMap.keySet());
+        for (ViewContext viewContext : viewContextMap.values()) {
+            methods.addAll(viewContext.methodContextMap.keySet());
+        }
+        return MethodIndex.build(this, methods);
+    }
+
+    // callers hold the methodContextMap lock
+    private void methodsChanged() {
+        methodIndex = null;
+    }
+
+    public MethodPermissions getMethodPermissions() {
+        return methodPermissions;
     }
 
     public MethodContext getMethodContext(Method method) {
-        MethodContext methodContext = methodContextMap.get(method);
-        if (methodContext == null) {
-            methodContext = new MethodContext(this, method);
-            methodContextMap.put(method, methodContext);
+        final MethodIndex index = methodIndex;
+        if (index != null) {
+            final MethodIndex.Entry entry = index.get(method);
+            if (entry != null && entry.getMethodContext() != null) return entry.getMethodContext();
+        }
+
+        synchronized (methodContextMap) {
+            MethodContext methodContext = methodContextMap.get(method);
+            if (methodContext == null) {
+                methodContext = new MethodContext(this, method);
+                methodContextMap.put(method, methodContext);
+                methodsChanged();
+            }
+            return methodContext;
         }
-        return methodContext;
     }
 
     // TODO The MethodContext object has Method as a variable, so we could change this
     // to simply return methodContextMap.values() which would be cleaner
     public Iterator<Entry<Method, MethodContext>> iteratorMethodContext() {
-        return methodContextMap.entrySet().iterator();
+        // a copy, the callers look up methods which may add contexts while they iterate
+        synchronized (methodContextMap) {
+            return new ArrayList<Entry<Method, MethodContext>>(methodContextMap.entrySet()).iterator();
+        }
     }
 
     public void setMethodConcurrencyAttribute(Method method, LockType concurrencyAttribute) {
@@ -890,14 +981,17 @@ public class BeanContext extends DeploymentContext {
 
     public void addSystemInterceptor(Object interceptor) {
         systemInterceptors.add(new InterceptorInstance(interceptor));
+        interceptorsChanged();
     }
 
     public void addFirstSystemInterceptor(Object interceptor) {
         systemInterceptors.add(0, new InterceptorInstance(interceptor));
+        interceptorsChanged();
     }
 
     public void addUserInterceptor(Object interceptor) {
         userInterceptors.add(new InterceptorInstance(interceptor));
+        interceptorsChanged();
     }
 
     public List<InterceptorInstance> getUserAndSystemInterceptors() {
@@ -920,6 +1014,7 @@ public class BeanContext extends DeploymentContext {
         this.callbackInterceptors.clear();
         this.callbackInterceptors.addAll(callbackInterceptors);
         this.instanceScopedInterceptors.addAll(callbackInterceptors);
+        interceptorsChanged();
     }
 
     public List<InterceptorData> getCdiInterceptors() {
@@ -930,12 +1025,25 @@ public class BeanContext extends DeploymentContext {
         this.cdiInterceptors.clear();
         this.cdiInterceptors.addAll(cdiInterceptors);
         this.instanceScopedInterceptors.addAll(cdiInterceptors);
+        interceptorsChanged();
     }
 
     public List<InterceptorData> getMethodInterceptors(Method method) {
         return getMethodContext(method).getInterceptors();
     }
 
+    public InterceptorChain getMethodInterceptorChain(Method method, Operation operation) {
+        return getMethodContext(method).getInterceptorChain(operation);
+    }
+
+    int getInterceptorsVersion() {
+        return interceptorsVersion.get();
+    }
+
+    void interceptorsChanged() {
+        interceptorsVersion.incrementAndGet();
+    }
+
     public List<InterceptorData> getInterceptorData() {
         List<InterceptorData> datas = new ArrayList<InterceptorData>();
         for (InterceptorInstance instance : getUserAndSystemInterceptors()) {
@@ -1085,7 +1193,10 @@ public class BeanContext extends DeploymentContext {
     }
 
     public void mapMethods(Method interfaceMethod, Method beanMethod) {
-        methodMap.put(interfaceMethod, beanMethod);
+        synchronized (methodContextMap) {
+            methodMap.put(interfaceMethod, beanMethod);
+            methodsChanged();
+        }
     }
 
     private void mapObjectInterface(Class intrface) {
@@ -1143,7 +1254,8 @@ public class BeanContext extends DeploymentContext {
         if (asynchronousClasses.contains(matchingBeanMethod.getDeclaringClass())) {
             return true;
         }
-        MethodContext methodContext = methodContextMap.get(matchingBeanMethod);
+        final MethodIndex.Entry entry = getMethodIndex().get(matchingBeanMethod);
+        MethodContext methodContext = (entry != null) ? entry.getMethodContext() : findMethodContext(matchingBeanMethod);
         return methodContext != null && methodContext.isAsynchronous();
     }
 
@@ -1500,7 +1612,8 @@ public class BeanContext extends DeploymentContext {
     }
 
     public void createAsynchronousMethodSet() {
-        for (Map.Entry<Method, MethodContext> entry : methodContextMap.entrySet()) {
+        for (Iterator<Entry<Method, MethodContext>> it = iteratorMethodContext(); it.hasNext();) {
+            final Entry<Method, MethodContext> entry = it.next();
             if (entry.getValue().isAsynchronous()) {
                 asynchronousMethodSignatures.add(generateMethodSignature(entry.getKey()));
             }
@@ -1523,18 +1636,22 @@ public class BeanContext extends DeploymentContext {
     }
 
     private MethodContext getViewMethodContext(Method method, String view) {
-        ViewContext viewContext = this.viewContextMap.get(view);
-        return (viewContext == null) ? null : viewContext.getMethodContext(method);
+        synchronized (methodContextMap) {
+            ViewContext viewContext = this.viewContextMap.get(view);
+            return (viewContext == null) ? null : viewContext.getMethodContext(method);
+        }
     }
 
     private MethodContext initViewMethodContext(Method method, String view) {
-        ViewContext viewContext = this.viewContextMap.get(view);
-        if (viewContext == null) {
-            viewContext = new ViewContext();
-            viewContextMap.put(view, viewContext);
-        }
+        synchronized (methodContextMap) {
+            ViewContext viewContext = this.viewContextMap.get(view);
+            if (viewContext == null) {
+                viewContext = new ViewContext();
+                viewContextMap.put(view, viewContext);
+            }
 
-        return viewContext.initMethodContext(method);
+            return viewContext.initMethodContext(method);
+        }
     }
 
     public Class<?> getProxyClass() {
@@ -1546,17 +1663,22 @@ public class BeanContext extends DeploymentContext {
         private final Map<Method, MethodContext> methodContextMap = new HashMap<Method, MethodContext>();
 
         public MethodContext getMethodContext(Method method) {
-            return methodContextMap.get(method);
+            synchronized (BeanContext.this.methodContextMap) {
+                return methodContextMap.get(method);
+            }
         }
 
         public MethodContext initMethodContext(Method method) {
-            MethodContext methodContext = methodContextMap.get(method);
-            if (methodContext != null) return methodContext;
+            synchronized (BeanContext.this.methodContextMap) {
+                MethodContext methodContext = methodContextMap.get(method);
+                if (methodContext != null) return methodContext;
 
-            methodContext = new MethodContext(BeanContext.this, method);
-            methodContextMap.put(method, methodContext);
+                methodContext = new MethodContext(BeanContext.this, method);
+                methodContextMap.put(method, methodContext);
+                methodsChanged();
 
-            return methodContext;
+                return methodContext;
+            }
         }
     }
 
@@ -16,6 +16,8 @@
  */
 package org.apache.openejb;
 
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.transaction.TransactionType;
 import org.apache.openejb.core.timer.ScheduleData;
@@ -27,6 +29,8 @@ import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @version $Rev$ $Date$
@@ -41,6 +45,7 @@ public class MethodContext {
     private TransactionType transactionType;
     private Duration accessTimeout;
     private boolean asynchronous;
+    private volatile Chains chains = new Chains(-1);
 
     public MethodContext(BeanContext beanContext, Method beanMethod) {
         this.beanContext = beanContext;
@@ -65,11 +70,13 @@ public class MethodContext {
 
     public void addCdiInterceptor(final InterceptorData data) {
         cdiInterceptors.add(data);
+        beanContext.interceptorsChanged();
     }
 
     public void setInterceptors(List<InterceptorData> interceptors) {
         this.interceptors.clear();
         this.interceptors.addAll(interceptors);
+        beanContext.interceptorsChanged();
     }
 
     public List<InterceptorData> getInterceptors() {
@@ -80,6 +87,28 @@ public class MethodContext {
         return datas;
     }
 
+    /**
+     * The interceptors of this method resolved once for the given operation.
+     * The chain is rebuilt when interceptors are added to the bean or method.
+     */
+    public InterceptorChain getInterceptorChain(Operation operation) {
+        final int version = beanContext.getInterceptorsVersion();
+
+        Chains chains = this.chains;
+        if (chains.version != version) {
+            chains = new Chains(version);
+            this.chains = chains;
+        }
+
+        InterceptorChain chain = chains.byOperation.get(operation);
+        if (chain == null) {
+            chain = new InterceptorChain(getInterceptors(), operation);
+            final InterceptorChain existing = chains.byOperation.putIfAbsent(operation, chain);
+            if (existing != null) chain = existing;
+        }
+        return chain;
+    }
+
     public LockType getLockType() {
         return lockType != null? lockType: beanContext.getLockType();
     }
@@ -108,6 +137,15 @@ public class MethodContext {
         this.asynchronous = asynchronous;
     }
 
+    private static class Chains {
+        private final int version;
+        private final ConcurrentMap<Operation, InterceptorChain> byOperation = new ConcurrentHashMap<Operation, InterceptorChain>();
+
+        private Chains(int version) {
+            this.version = version;
+        }
+    }
+
     /**
      * Currently (and as a matter of legacy) only EJB 2.x style
      * interfaces may have different transaction attributes for an
@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb;
+
+import org.apache.openejb.core.security.MethodPermissions;
+import org.apache.openejb.core.transaction.TransactionType;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A dense table of every method a bean can be invoked through, be it
+ * an interface method or a bean method, built once the deployment is
+ * complete.  Each {@link Entry} holds what the containers look up on
+ * every call: the matching bean method, the MethodContext of the method
+ * and the MethodContext deciding the transaction attribute for each
+ * interface type.
+ *
+ * Method.equals and Method.hashCode compare declaring class, name and
+ * parameter types, which is more work than an invocation should pay
+ * several times.  The index is therefore searched by identity first.
+ * Proxies hand in the same Method instances on every call, so once a
+ * Method was found by equality it is remembered as an alias and later
+ * calls resolve with a single identity probe.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MethodIndex {
+
+    public static final int NOT_FOUND = -1;
+
+    // at most this many aliases per entry, so Method copies made per call can not grow the table forever
+    private static final int MAX_ALIASES_PER_ENTRY = 4;
+
+    private static final int TYPES = InterfaceType.values().length + 1;
+
+    private final Entry[] entries;
+    private final Map<Method, Integer> byEquality;
+    private volatile IdentityTable byIdentity;
+
+    private MethodIndex(final Entry[] entries) {
+        this.entries = entries;
+        this.byEquality = new HashMap<Method, Integer>(entries.length * 2);
+        for (final Entry entry : entries) {
+            byEquality.put(entry.method, entry.index);
+        }
+        this.byIdentity = IdentityTable.of(entries);
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public Entry get(final int index) {
+        return entries[index];
+    }
+
+    public Entry get(final Method method) {
+        final int index = indexOf(method);
+        return (index == NOT_FOUND) ? null : entries[index];
+    }
+
+    public int indexOf(final Method method) {
+        if (method == null) return NOT_FOUND;
+
+        final int index = byIdentity.get(method);
+        if (index != NOT_FOUND) return index;
+
+        final Integer found = byEquality.get(method);
+        if (found == null) return NOT_FOUND;
+
+        alias(method, found);
+        return found;
+    }
+
+    private synchronized void alias(final Method method, final int index) {
+        final IdentityTable table = byIdentity;
+        if (table.size >= entries.length * MAX_ALIASES_PER_ENTRY) return;
+        if (table.get(method) != NOT_FOUND) return;
+
+        byIdentity = table.with(method, index);
+    }
+
+    static MethodIndex build(final BeanContext beanContext, final Iterable<Method> methods) {
+        final Map<Method, Entry> entries = new LinkedHashMap<Method, Entry>();
+        for (final Method method : methods) {
+            if (method == null || entries.containsKey(method)) continue;
+            entries.put(method, new Entry(entries.size(), beanContext, method));
+        }
+        return new MethodIndex(entries.values().toArray(new Entry[entries.size()]));
+    }
+
+    public static class Entry {
+        private final int index;
+        private final Method method;
+        private final Method beanMethod;
+        private final MethodContext methodContext;
+        private final MethodContext[] transactionContexts = new MethodContext[TYPES];
+        private final MethodPermissions.Entry[] permissions = new MethodPermissions.Entry[TYPES];
+
+        private Entry(final int index, final BeanContext beanContext, final Method method) {
+            this.index = index;
+            this.method = method;
+            this.beanMethod = beanContext.findBeanMethod(method);
+            this.methodContext = beanContext.findMethodContext(method);
+
+            for (final InterfaceType type : InterfaceType.values()) {
+                transactionContexts[type.ordinal()] = beanContext.getTransactionContext(method, type);
+            }
+            transactionContexts[TYPES - 1] = beanContext.getTransactionContext(method, null);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public Method getBeanMethod() {
+            return beanMethod;
+        }
+
+        /**
+         * @return the MethodContext kept for exactly this method or null if there is none
+         */
+        public MethodContext getMethodContext() {
+            return methodContext;
+        }
+
+        public TransactionType getTransactionType(final InterfaceType type) {
+            return transactionContexts[slot(type)].getTransactionType();
+        }
+
+        /**
+         * The permission built for each interface type, filled in by
+         * {@link MethodPermissions} on first use
+         */
+        public MethodPermissions.Entry[] getPermissions() {
+            return permissions;
+        }
+
+        public static int slot(final InterfaceType type) {
+            return (type == null) ? TYPES - 1 : type.ordinal();
+        }
+    }
+
+    /**
+     * Open addressing on System.identityHashCode, never modified once
+     * published; adding an alias copies the table.
+     */
+    private static class IdentityTable {
+        private final Method[] keys;
+        private final int[] values;
+        private final int size;
+
+        private IdentityTable(final Method[] keys, final int[] values, final int size) {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        private int get(final Method method) {
+            final int mask = keys.length - 1;
+            for (int i = System.identityHashCode(method) & mask; ; i = (i + 1) & mask) {
+                final Method key = keys[i];
+                if (key == method) return values[i];
+                if (key == null) return NOT_FOUND;
+            }
+        }
+
+        private static IdentityTable of(final Entry[] entries) {
+            int length = 16;
+            while (length < entries.length * 4) length <<= 1;
+
+            final Method[] keys = new Method[length];
+            final int[] values = new int[length];
+            for (final Entry entry : entries) {
+                put(keys, values, entry.method, entry.index);
+            }
+            return new IdentityTable(keys, values, entries.length);
+        }
+
+        private IdentityTable with(final Method method, final int index) {
+            Method[] keys = this.keys;
+            int[] values = this.values;
+
+            // keep the load at or below one half so probes stay short and always end on a null
+            if ((size + 1) * 2 > keys.length) {
+                keys = new Method[this.keys.length * 2];
+                values = new int[this.keys.length * 2];
+                for (int i = 0; i < this.keys.length; i++) {
+                    if (this.keys[i] != null) put(keys, values, this.keys[i], this.values[i]);
+                }
+            } else {
+                keys = keys.clone();
+                values = values.clone();
+            }
+
+            put(keys, values, method, index);
+            return new IdentityTable(keys, values, size + 1);
+        }
+
+        private static void put(final Method[] keys, final int[] values, final Method method, final int index) {
+            final int mask = keys.length - 1;
+            int i = System.identityHashCode(method) & mask;
+            while (keys[i] != null) i = (i + 1) & mask;
+            keys[i] = method;
+            values[i] = index;
+        }
+    }
+}
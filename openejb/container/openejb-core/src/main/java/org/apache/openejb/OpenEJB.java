@@ -23,6 +23,7 @@ import javax.transaction.TransactionManager;
 
 import org.apache.openejb.assembler.classic.DeploymentExceptionManager;
 import org.apache.openejb.cdi.CdiBuilder;
+import org.apache.openejb.loader.ComponentHandle;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.spi.ApplicationServer;
 import org.apache.openejb.spi.Assembler;
@@ -42,6 +43,8 @@ public final class OpenEJB {
 
     private static Instance instance;
 
+    private static volatile ComponentHandle<TransactionManager> transactionManager;
+
     private OpenEJB() {
     }
 
@@ -50,7 +53,15 @@ public final class OpenEJB {
     }
 
     public static TransactionManager getTransactionManager(){
-        return SystemInstance.get().getComponent(TransactionManager.class);
+        final SystemInstance system = SystemInstance.get();
+
+        // called on each use of a managed connection, the handle saves the lookup
+        ComponentHandle<TransactionManager> handle = transactionManager;
+        if (handle == null || !handle.isHandleOf(system)) {
+            handle = system.getComponentHandle(TransactionManager.class);
+            transactionManager = handle;
+        }
+        return handle.get();
     }
 
     public static class Instance {
@@ -30,6 +30,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -98,10 +99,12 @@ import org.apache.openejb.cdi.CustomELAdapter;
 import org.apache.openejb.cdi.ManagedSecurityService;
 import org.apache.openejb.cdi.OpenEJBTransactionService;
 import org.apache.openejb.cdi.OptimizedLoaderService;
+import org.apache.openejb.core.AsynchronousPool;
 import org.apache.openejb.core.ConnectorReference;
 import org.apache.openejb.core.CoreContainerSystem;
 import org.apache.openejb.core.CoreUserTransaction;
 import org.apache.openejb.core.JndiFactory;
+import org.apache.openejb.core.LazyStart;
 import org.apache.openejb.core.ParentClassLoaderFinder;
 import org.apache.openejb.core.SimpleTransactionSynchronizationRegistry;
 import org.apache.openejb.core.TransactionSynchronizationRegistryWrapper;
@@ -112,7 +115,6 @@ import org.apache.openejb.core.security.SecurityContextHandler;
 import org.apache.openejb.core.timer.EjbTimerServiceImpl;
 import org.apache.openejb.core.timer.NullEjbTimerServiceImpl;
 import org.apache.openejb.core.timer.ScheduleData;
-import org.apache.openejb.core.timer.TimerStore;
 import org.apache.openejb.core.transaction.JtaTransactionPolicyFactory;
 import org.apache.openejb.core.transaction.SimpleBootstrapContext;
 import org.apache.openejb.core.transaction.SimpleWorkManager;
@@ -577,6 +579,15 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
 
             containerSystem.addAppContext(appContext);
 
+            // application wide @Asynchronous pool settings from openejb-jar.xml
+            for (EjbJarInfo ejbJar : appInfo.ejbJars) {
+                for (String property : ejbJar.properties.stringPropertyNames()) {
+                    if (property.startsWith(AsynchronousPool.PREFIX)) {
+                        appContext.getProperties().setProperty(property, ejbJar.properties.getProperty(property));
+                    }
+                }
+            }
+
             final Context containerSystemContext = containerSystem.getJNDIContext();
             
             if (!SystemInstance.get().hasProperty("openejb.geronimo")) {
@@ -726,14 +737,15 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                             // Create the timer
                             EjbTimerServiceImpl timerService = new EjbTimerServiceImpl(beanContext);
                             //Load auto-start timers
-                            TimerStore timerStore = timerService.getTimerStore();
+                            Map<Method, List<ScheduleData>> schedules = new LinkedHashMap<Method, List<ScheduleData>>();
                             for (Iterator<Map.Entry<Method, MethodContext>> it = beanContext.iteratorMethodContext(); it.hasNext();) {
                                 Map.Entry<Method, MethodContext> entry = it.next();
                                 MethodContext methodContext = entry.getValue();
-                                for(ScheduleData scheduleData : methodContext.getSchedules()) {
-                                    timerStore.createCalendarTimer(timerService, (String) beanContext.getDeploymentID(), null, entry.getKey(), scheduleData.getExpression(), scheduleData.getConfig());
+                                if (methodContext.getSchedules().size() > 0) {
+                                    schedules.put(entry.getKey(), methodContext.getSchedules());
                                 }
                             }
+                            timerService.createAutomaticTimers(schedules);
                             beanContext.setEjbTimerService(timerService);
                         } else {
                             beanContext.setEjbTimerService(new NullEjbTimerServiceImpl());
@@ -781,6 +793,8 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                     try {
                         Container container = deployment.getContainer();
                         container.deploy(deployment);
+                        // the method metadata is complete, index it before the first call
+                        deployment.getMethodIndex();
                         if (!((String) deployment.getDeploymentID()).endsWith(".Comp")
                                 && !deployment.isHidden()) {
                             logger.info("createApplication.createdEjb", deployment.getDeploymentID(), deployment.getEjbName(), container.getContainerID());
@@ -796,7 +810,13 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                 }
 
                 // start
+                final LazyStart lazyStart = new LazyStart(appInfo.appId);
                 for (BeanContext deployment : allDeployments) {
+                    if (LazyStart.isLazy(deployment)) {
+                        lazyStart.add(deployment);
+                        continue;
+                    }
+
                     try {
                         Container container = deployment.getContainer();
                         container.start(deployment);
@@ -808,6 +828,12 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
                         throw new OpenEJBException("Error starting '"+deployment.getEjbName()+"'.  Exception: "+t.getClass()+": "+t.getMessage(), t);
                     }
                 }
+
+                if (!lazyStart.isEmpty()) {
+                    logger.info("Deferred the start of " + lazyStart.getPendingCount() + " beans of " + appInfo.appId + " to their first invocation");
+                    lazyStart.register();
+                    appContext.set(LazyStart.class, lazyStart);
+                }
             }
 
             // App Client
@@ -1152,6 +1178,16 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
 
         final AppContext appContext = containerSystem.getAppContext(appInfo.appId);
 
+        // refuse new @Asynchronous calls, the queued ones still run while the beans are deployed
+        appContext.shutdownAsynchronousPools();
+
+        // the beans not started yet stay that way
+        final LazyStart lazyStart = appContext.get(LazyStart.class);
+        if (lazyStart != null) {
+            lazyStart.close();
+            lazyStart.unregister();
+        }
+
         for (Map.Entry<String, Object> value : appContext.getBindings().entrySet()) {
             String path = value.getKey();
             if (path.startsWith("global")) {
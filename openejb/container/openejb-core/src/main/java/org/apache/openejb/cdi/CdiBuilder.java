@@ -16,10 +16,13 @@
  */
 package org.apache.openejb.cdi;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.openejb.AppContext;
 import org.apache.openejb.BeanContext;
+import org.apache.openejb.BeanType;
 import org.apache.openejb.assembler.classic.AppInfo;
 import org.apache.openejb.assembler.classic.EjbJarInfo;
 import org.apache.openejb.core.ThreadContext;
@@ -43,7 +46,7 @@ public class CdiBuilder {
     }
 
     private ThreadSingletonService initSingleton() {
-        ThreadContext.addThreadContextListener(new RequestScopedThreadContextListener());
+        ThreadContext.addThreadContextListener(new RequestScopedThreadContextListener(), cdiBeanTypes());
         ThreadSingletonService singletonService = SystemInstance.get().getComponent(ThreadSingletonService.class);
         logger.info("Existing thread singleton service in SystemInstance() " + singletonService);
         //TODO hack for tests.  Currently initialized in OpenEJB line 90.  cf alternative in AccessTimeoutTest which would
@@ -80,8 +83,19 @@ public class CdiBuilder {
             logger.info("Could not install our singleton service");
         }
         //TODO there must be a better place to initialize this
-        ThreadContext.addThreadContextListener(new OWBContextThreadListener());
+        ThreadContext.addThreadContextListener(new OWBContextThreadListener(), cdiBeanTypes());
         return singletonService;
     }
 
+    /**
+     * @return the bean types taking part in CDI, the others don't need its contexts
+     */
+    private static Set<BeanType> cdiBeanTypes() {
+        final Set<BeanType> types = EnumSet.noneOf(BeanType.class);
+        for (BeanType type : BeanType.values()) {
+            if (type.isCdiCompatible()) types.add(type);
+        }
+        return types;
+    }
+
 }
@@ -227,6 +227,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
 
 import static java.lang.reflect.Modifier.isAbstract;
 import static java.util.Arrays.asList;
@@ -310,13 +311,19 @@ public class AnnotationDeployer implements DynamicDeployer {
     public AppModule deploy(AppModule appModule) throws OpenEJBException {
         setModule(appModule);
         try {
+            final String id = appModule.getModuleId();
+            long start = System.nanoTime();
             appModule = discoverAnnotatedBeans.deploy(appModule);
+            start = ParallelDeployment.phase("Annotation discovery of " + id, start);
             appModule = envEntriesPropertiesDeployer.deploy(appModule);
             appModule = mergeWebappJndiContext.deploy(appModule);
             appModule = builtInEnvironmentEntries.deploy(appModule);
+            start = ParallelDeployment.phase("Environment entries of " + id, start);
             appModule = processAnnotatedBeans.deploy(appModule);
             appModule = mergeWebappJndiContext.deploy(appModule);
+            start = ParallelDeployment.phase("Annotation processing of " + id, start);
             appModule = mBeanDeployer.deploy(appModule);
+            ParallelDeployment.phase("MBean discovery of " + id, start);
             return appModule;
         } finally {
             removeModule();
@@ -377,6 +384,10 @@ public class AnnotationDeployer implements DynamicDeployer {
 
     public static class DiscoverAnnotatedBeans implements DynamicDeployer {
         public AppModule deploy(AppModule appModule) throws OpenEJBException {
+            if (ParallelDeployment.isEnabled()) {
+                createFinders(appModule);
+            }
+
             for (EjbModule ejbModule : appModule.getEjbModules()) {
                 ejbModule.initAppModule(appModule);
                 setModule(ejbModule);
@@ -416,6 +427,56 @@ public class AnnotationDeployer implements DynamicDeployer {
             return appModule;
         }
 
+        /**
+         * Reading the classes of the modules is most of the time spent
+         * here and each module has its own finder, so they are created
+         * side by side.  What the finders find is added to the AppModule
+         * afterwards, one module after the other and in the usual order.
+         *
+         * A finder failing is left unset, the sequential deploy creates
+         * it again and reports the failure as usual.
+         */
+        private void createFinders(final AppModule appModule) {
+            final List<DeploymentModule> modules = new ArrayList<DeploymentModule>();
+            for (EjbModule ejbModule : appModule.getEjbModules()) {
+                ejbModule.initAppModule(appModule);
+                if (ejbModule.getFinder() != null) continue;
+                if (ejbModule.getEjbJar() != null && ejbModule.getEjbJar().isMetadataComplete()) continue;
+                modules.add(ejbModule);
+            }
+            for (WebModule webModule : appModule.getWebModules()) {
+                webModule.initAppModule(appModule);
+                if (webModule.getFinder() != null) continue;
+                if (webModule.getWebApp() != null && webModule.getWebApp().isMetadataComplete()) continue;
+                modules.add(webModule);
+            }
+            if (modules.size() < 2) return;
+
+            try {
+                ParallelDeployment.invokeAll("Annotation scanning of " + appModule.getModuleId(), modules, new ParallelDeployment.Task<DeploymentModule, IAnnotationFinder>() {
+                    @Override
+                    public IAnnotationFinder call(final DeploymentModule module) {
+                        setModule(module);
+                        try {
+                            final IAnnotationFinder finder = FinderFactory.createFinder(module);
+                            if (module instanceof EjbModule) {
+                                ((EjbModule) module).setFinder(finder);
+                            } else {
+                                ((WebModule) module).setFinder(finder);
+                            }
+                            return finder;
+                        } catch (Exception e) {
+                            return null;
+                        } finally {
+                            removeModule();
+                        }
+                    }
+                });
+            } catch (ExecutionException e) {
+                // the tasks don't throw
+            }
+        }
+
         public ClientModule deploy(ClientModule clientModule) throws OpenEJBException {
 
             if (clientModule.getApplicationClient() == null){
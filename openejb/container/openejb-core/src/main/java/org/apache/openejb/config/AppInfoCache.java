@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.ClientInfo;
+import org.apache.openejb.assembler.classic.ConnectorInfo;
+import org.apache.openejb.assembler.classic.ContainerInfo;
+import org.apache.openejb.assembler.classic.EjbJarInfo;
+import org.apache.openejb.assembler.classic.EnterpriseBeanInfo;
+import org.apache.openejb.assembler.classic.MessageDrivenBeanInfo;
+import org.apache.openejb.assembler.classic.PersistenceUnitInfo;
+import org.apache.openejb.assembler.classic.ResourceInfo;
+import org.apache.openejb.assembler.classic.WebAppInfo;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.OpenEjbVersion;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps the AppInfo of the applications deployed from a file, so an
+ * unchanged application is not loaded, scanned, validated and auto
+ * configured again on the next start.
+ *
+ * An entry is used when it was written by the same version of OpenEJB,
+ * for an archive with the same fingerprint (see {@link ScanIndex}),
+ * with the same openejb configuration file, the same conf/ directory
+ * and the same openejb.*, tomee.* and new:// properties.  The
+ * &lt;id&gt;.&lt;property&gt; overrides of the application, its modules,
+ * beans, persistence units, containers and resources must not have
+ * changed either.  The containers and resources the auto configuration
+ * created for the application are saved with it and created again when
+ * the entry is used.
+ *
+ * Disabled by default, enabled with openejb.appinfo.cache=true.  The
+ * entries live in openejb.appinfo.cache.dir, by default data/appinfo-cache.
+ * Deleting the directory forces a full deployment.
+ */
+public class AppInfoCache {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, AppInfoCache.class);
+
+    public static final String OPENEJB_APPINFO_CACHE = "openejb.appinfo.cache";
+    public static final String OPENEJB_APPINFO_CACHE_DIR = "openejb.appinfo.cache.dir";
+
+    public static boolean isEnabled() {
+        return SystemInstance.get().getOptions().get(OPENEJB_APPINFO_CACHE, false);
+    }
+
+    static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String key;
+        final AppInfo appInfo;
+        final List<ContainerInfo> containers = new ArrayList<ContainerInfo>();
+        final List<ResourceInfo> resources = new ArrayList<ResourceInfo>();
+        String overrides;
+
+        Entry(final String key, final AppInfo appInfo) {
+            this.key = key;
+            this.appInfo = appInfo;
+        }
+    }
+
+    /**
+     * @return the key of the application in the current configuration
+     */
+    static String key(final File jarFile, final String configLocation) {
+        final StringBuilder key = new StringBuilder();
+        key.append(OpenEjbVersion.get().getVersion());
+        key.append('|').append(jarFile.getAbsolutePath());
+        key.append('|').append(ScanIndex.fingerprint(jarFile));
+
+        if (configLocation != null) {
+            final File config = new File(configLocation);
+            if (config.exists()) key.append('|').append(ScanIndex.fingerprint(config));
+        }
+
+        final File conf = new File(SystemInstance.get().getBase().getDirectory(), "conf");
+        if (conf.isDirectory()) key.append('|').append(ScanIndex.fingerprint(conf));
+
+        key.append('|').append(digest(SystemInstance.get().getProperties()));
+        return key.toString();
+    }
+
+    static String digest(final Properties properties) {
+        final Map<String, String> relevant = new TreeMap<String, String>();
+        for (String name : properties.stringPropertyNames()) {
+            final String value = properties.getProperty(name);
+            if (name.startsWith("openejb.") || name.startsWith("tomee.") || value.startsWith("new://")) {
+                relevant.put(name, value);
+            }
+        }
+        return digest(relevant);
+    }
+
+    /**
+     * @return a digest of the system properties overriding the configuration of
+     * the ids of the entry, as ConfigurationFactory.getOverrides() selects them
+     */
+    static String overrides(final Entry entry, final Properties properties) {
+        final Set<String> ids = ids(entry);
+
+        final Map<String, String> relevant = new TreeMap<String, String>();
+        for (String name : properties.stringPropertyNames()) {
+            final String lowerCase = name.toLowerCase();
+            final int dot = lowerCase.indexOf('.');
+
+            // <id>.<property> or <type>.<id>.<property>
+            if (overrides(ids, lowerCase) || dot > 0 && overrides(ids, lowerCase.substring(dot + 1))) {
+                relevant.put(name, properties.getProperty(name));
+            }
+        }
+        return digest(relevant);
+    }
+
+    private static boolean overrides(final Set<String> ids, final String name) {
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if ((c == '.' || c == '|') && ids.contains(name.substring(0, i))) return true;
+        }
+        return false;
+    }
+
+    private static Set<String> ids(final Entry entry) {
+        final Set<String> ids = new HashSet<String>();
+        ids.add("mdb");
+        add(ids, entry.appInfo.appId);
+        ids.addAll(lowerCase(entry.appInfo.resourceIds));
+        for (EjbJarInfo ejbJar : entry.appInfo.ejbJars) {
+            add(ids, ejbJar.moduleName);
+            for (EnterpriseBeanInfo bean : ejbJar.enterpriseBeans) {
+                add(ids, bean.ejbName);
+                add(ids, bean.ejbDeploymentId);
+                add(ids, bean.containerId);
+                if (bean instanceof MessageDrivenBeanInfo) {
+                    add(ids, ((MessageDrivenBeanInfo) bean).mdbInterface);
+                }
+            }
+        }
+        for (PersistenceUnitInfo unit : entry.appInfo.persistenceUnits) {
+            add(ids, unit.id);
+            add(ids, unit.name);
+        }
+        for (ContainerInfo container : entry.containers) {
+            add(ids, container.id);
+        }
+        for (ResourceInfo resource : entry.resources) {
+            add(ids, resource.id);
+        }
+        return ids;
+    }
+
+    private static void add(final Set<String> ids, final String id) {
+        if (id != null) ids.add(id.toLowerCase());
+    }
+
+    private static Set<String> lowerCase(final Set<String> ids) {
+        final Set<String> lowerCase = new HashSet<String>();
+        for (String id : ids) {
+            add(lowerCase, id);
+        }
+        return lowerCase;
+    }
+
+    /**
+     * @return the properties ConfigurationFactory.getSystemProperties() looks overrides up in
+     */
+    private static Properties systemProperties() {
+        final Properties properties = new Properties();
+        properties.putAll(System.getProperties());
+        properties.putAll(SystemInstance.get().getProperties());
+        return properties;
+    }
+
+    private static String digest(final Map<String, String> relevant) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (Map.Entry<String, String> entry : relevant.entrySet()) {
+                digest.update(entry.getKey().getBytes("UTF-8"));
+                digest.update((byte) '=');
+                digest.update(entry.getValue().getBytes("UTF-8"));
+                digest.update((byte) '\n');
+            }
+
+            final StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            // can't happen, SHA-1 and UTF-8 are always there
+            return Integer.toHexString(relevant.hashCode());
+        }
+    }
+
+    static File file(final File jarFile) {
+        final File directory = new File(SystemInstance.get().getOptions().get(OPENEJB_APPINFO_CACHE_DIR, SystemInstance.get().getBase().getDirectory().getAbsolutePath() + File.separator + "data" + File.separator + "appinfo-cache"));
+        final String name = jarFile.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(directory, name + "-" + Integer.toHexString(jarFile.getAbsolutePath().hashCode()) + ".ser");
+    }
+
+    /**
+     * @return the saved entry, or null if there is none for this key or the files it refers to are gone
+     */
+    static Entry read(final File file, final String key) {
+        if (!file.exists()) return null;
+
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            final Entry entry = (Entry) in.readObject();
+            if (!key.equals(entry.key)) return null;
+
+            if (!overrides(entry, systemProperties()).equals(entry.overrides)) {
+                logger.debug("Ignoring cached AppInfo " + file.getName() + ", its overriding properties changed");
+                return null;
+            }
+
+            for (String path : paths(entry.appInfo)) {
+                if (!new File(path).exists()) {
+                    logger.debug("Ignoring cached AppInfo " + file.getName() + ", " + path + " doesn't exist anymore");
+                    return null;
+                }
+            }
+            return entry;
+        } catch (Exception e) {
+            logger.warning("Can't read cached AppInfo " + file.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        } finally {
+            IO.close(in);
+        }
+    }
+
+    static void write(final File file, final Entry entry) {
+        final File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.warning("Can't create AppInfo cache directory " + directory.getAbsolutePath());
+            return;
+        }
+
+        entry.overrides = overrides(entry, systemProperties());
+
+        // written next to the entry and renamed, so a reader never sees half an entry
+        final File tmp = new File(directory, file.getName() + ".tmp");
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeObject(entry);
+            out.close();
+            out = null;
+
+            if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                logger.warning("Can't write cached AppInfo " + file.getAbsolutePath());
+                tmp.delete();
+            }
+        } catch (Exception e) {
+            logger.warning("Can't write cached AppInfo " + file.getAbsolutePath() + ": " + e.getMessage());
+            tmp.delete();
+        } finally {
+            IO.close(out);
+        }
+    }
+
+    /**
+     * @return the files the assembler will read, the unpacked application and its modules and libraries
+     */
+    private static List<String> paths(final AppInfo appInfo) {
+        final List<String> paths = new ArrayList<String>();
+        if (appInfo.path != null) paths.add(appInfo.path);
+        paths.addAll(appInfo.libs);
+        for (EjbJarInfo info : appInfo.ejbJars) {
+            if (info.path != null) paths.add(info.path);
+        }
+        for (WebAppInfo info : appInfo.webApps) {
+            if (info.path != null) paths.add(info.path);
+        }
+        for (ConnectorInfo info : appInfo.connectors) {
+            if (info.path != null) paths.add(info.path);
+        }
+        for (ClientInfo info : appInfo.clients) {
+            if (info.path != null) paths.add(info.path);
+        }
+        return paths;
+    }
+}
@@ -80,7 +80,7 @@ public class ConfigurableClasspathArchive extends CompositeArchive implements Sc
         try {
             URL scanXml = new URLClassLoader(new URL[] { location }, new EmptyResourcesClassLoader()).getResource(name);
             if (scanXml == null && !forceDescriptor) {
-                return ClasspathArchive.archive(loader, location);
+                return ScanIndex.archive(loader, location);
             } else if (scanXml == null) {
                 return new ClassesArchive();
             }
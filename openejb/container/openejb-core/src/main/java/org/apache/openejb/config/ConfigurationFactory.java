@@ -30,11 +30,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import javax.ejb.embeddable.EJBContainer;
+import javax.naming.NamingException;
 import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.Vendor;
 import org.apache.openejb.api.Proxy;
@@ -95,6 +97,7 @@ import org.apache.openejb.loader.Options;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.resource.jdbc.pool.DataSourceCreator;
 import org.apache.openejb.resource.jdbc.pool.DefaultDataSourceCreator;
+import org.apache.openejb.spi.ContainerSystem;
 import org.apache.openejb.util.EventHelper;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
@@ -673,6 +676,10 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
         logger.debug("Beginning load: " + jarFile.getAbsolutePath());
 
         try {
+            if (AppInfoCache.isEnabled()) {
+                return configureCachedApplication(jarFile);
+            }
+
             final AppModule appModule = deploymentLoader.load(jarFile);
             return configureApplication(appModule);
         } catch (ValidationFailedException e) {
@@ -686,6 +693,113 @@ public class ConfigurationFactory implements OpenEjbConfigurationFactory {
         }
     }
 
+    private AppInfo configureCachedApplication(final File jarFile) throws OpenEJBException {
+        final String key = AppInfoCache.key(jarFile, configLocation);
+        final File file = AppInfoCache.file(jarFile);
+
+        final AppInfoCache.Entry cached = AppInfoCache.read(file, key);
+        if (cached != null) {
+            logger.info("Using cached configuration of " + jarFile.getAbsolutePath());
+            for (final ContainerInfo containerInfo : cached.containers) {
+                if (!isInstalled(containerInfo)) install(containerInfo);
+            }
+            for (final ResourceInfo resourceInfo : cached.resources) {
+                if (!isInstalled(resourceInfo)) install(resourceInfo);
+            }
+            installExtensions(cached.appInfo);
+            return cached.appInfo;
+        }
+
+        // the containers and resources auto configuration installs for the application
+        final Set<ServiceInfo> before = Collections.newSetFromMap(new IdentityHashMap<ServiceInfo, Boolean>());
+        before.addAll(installedServices());
+
+        final AppInfo appInfo = configureApplication(deploymentLoader.load(jarFile));
+
+        final AppInfoCache.Entry entry = new AppInfoCache.Entry(key, appInfo);
+        for (final ServiceInfo serviceInfo : installedServices()) {
+            if (before.contains(serviceInfo)) continue;
+
+            if (serviceInfo instanceof ContainerInfo) {
+                entry.containers.add((ContainerInfo) serviceInfo);
+            } else if (serviceInfo instanceof ResourceInfo) {
+                entry.resources.add((ResourceInfo) serviceInfo);
+            }
+        }
+        AppInfoCache.write(file, entry);
+        return appInfo;
+    }
+
+    /**
+     * @return the containers and resources {@link #install} added so far
+     */
+    private List<ServiceInfo> installedServices() {
+        final OpenEjbConfiguration configuration;
+        if (sys != null) {
+            configuration = sys;
+        } else if (!offline) {
+            configuration = SystemInstance.get().getComponent(OpenEjbConfiguration.class);
+        } else {
+            configuration = null;
+        }
+
+        final List<ServiceInfo> installed = new ArrayList<ServiceInfo>();
+        if (configuration != null) {
+            if (configuration.containerSystem != null) installed.addAll(configuration.containerSystem.containers);
+            if (configuration.facilities != null) installed.addAll(configuration.facilities.resources);
+        }
+        return installed;
+    }
+
+    private boolean isInstalled(final ServiceInfo serviceInfo) {
+        if (sys != null) {
+            final List<? extends ServiceInfo> installed;
+            if (serviceInfo instanceof ContainerInfo) {
+                installed = sys.containerSystem.containers;
+            } else {
+                installed = sys.facilities.resources;
+            }
+            for (final ServiceInfo info : installed) {
+                if (serviceInfo.id.equals(info.id)) return true;
+            }
+            return false;
+        }
+
+        final ContainerSystem containerSystem = SystemInstance.get().getComponent(ContainerSystem.class);
+        if (containerSystem == null) return false;
+
+        if (serviceInfo instanceof ContainerInfo) {
+            return containerSystem.getContainer(serviceInfo.id) != null;
+        }
+        try {
+            containerSystem.getJNDIContext().lookup("openejb/Resource/" + serviceInfo.id);
+            return true;
+        } catch (NamingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Server event listeners of the application, as configureApplication(AppModule) would have found them
+     */
+    private void installExtensions(final AppInfo appInfo) {
+        final List<URL> urls = new ArrayList<URL>();
+        final List<String> paths = new ArrayList<String>(appInfo.libs);
+        for (final EjbJarInfo ejbJarInfo : appInfo.ejbJars) {
+            if (ejbJarInfo.path != null) paths.add(ejbJarInfo.path);
+        }
+        for (final String path : paths) {
+            try {
+                urls.add(new File(path).toURI().toURL());
+            } catch (MalformedURLException e) {
+                logger.debug("can't look for server event listener in " + path, e);
+            }
+        }
+        if (urls.size() > 0) {
+            EventHelper.installExtensions(new ResourceFinder("META-INF", urls.toArray(new URL[urls.size()])));
+        }
+    }
+
     /**
      * embedded usage
      *
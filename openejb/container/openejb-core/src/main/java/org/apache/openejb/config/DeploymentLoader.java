@@ -73,12 +73,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -333,28 +335,55 @@ public class DeploymentLoader implements DeploymentFilterable {
 
                 // todo we should also filter URLs here using DeploymentsResolver.loadFromClasspath
 
-                for (final Map.Entry<String, URL> entry : files.entrySet()) {
-                    // if (entry.getKey().startsWith("lib/")) continue;// will not be scanned since we don't get folder anymore
-                    if (!entry.getKey().matches(".*\\.(jar|war|rar|ear)")) continue;
+                final List<String> candidates = new ArrayList<String>();
+                for (final String name : new TreeMap<String, URL>(files).keySet()) {
+                    // if (name.startsWith("lib/")) continue;// will not be scanned since we don't get folder anymore
+                    if (name.matches(".*\\.(jar|war|rar|ear)")) candidates.add(name);
+                }
 
-                    try {
-                        final ClassLoader moduleClassLoader = ClassLoaderUtil.createTempClassLoader(appId, new URL[]{entry.getValue()}, tmpClassLoader);
-
-                        final Class<? extends DeploymentModule> moduleType = discoverModuleType(entry.getValue(), moduleClassLoader, true);
-
-                        if (EjbModule.class.equals(moduleType)) {
-                            ejbModules.put(entry.getKey(), entry.getValue());
-                        } else if (ClientModule.class.equals(moduleType)) {
-                            clientModules.put(entry.getKey(), entry.getValue());
-                        } else if (ConnectorModule.class.equals(moduleType)) {
-                            resouceModules.put(entry.getKey(), entry.getValue());
-                        } else if (WebModule.class.equals(moduleType)) {
-                            webModules.put(entry.getKey(), entry.getValue());
+                final ParallelDeployment.Task<String, Class<? extends DeploymentModule>> discover = new ParallelDeployment.Task<String, Class<? extends DeploymentModule>>() {
+                    @Override
+                    public Class<? extends DeploymentModule> call(final String name) throws OpenEJBException {
+                        final URL url = files.get(name);
+                        try {
+                            final ClassLoader moduleClassLoader = ClassLoaderUtil.createTempClassLoader(appId, new URL[]{url}, tmpClassLoader);
+                            return discoverModuleType(url, moduleClassLoader, true);
+                        } catch (UnsupportedOperationException e) {
+                            // Ignore it as per the javaee spec EE.8.4.2 section 1.d.iiilogger.info("Ignoring unknown module type: "+entry.getKey());
+                            return null;
+                        } catch (Exception e) {
+                            throw new OpenEJBException("Unable to determine the module type of " + name + ": Exception: " + e.getMessage(), e);
                         }
-                    } catch (UnsupportedOperationException e) {
-                        // Ignore it as per the javaee spec EE.8.4.2 section 1.d.iiilogger.info("Ignoring unknown module type: "+entry.getKey());
-                    } catch (Exception e) {
-                        throw new OpenEJBException("Unable to determine the module type of " + entry.getKey() + ": Exception: " + e.getMessage(), e);
+                    }
+                };
+
+                final Map<String, Class<? extends DeploymentModule>> moduleTypes;
+                if (ParallelDeployment.isEnabled()) {
+                    try {
+                        moduleTypes = ParallelDeployment.invokeAll("Module type discovery of " + appDir.getName(), candidates, discover);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof OpenEJBException) throw (OpenEJBException) e.getCause();
+                        throw new OpenEJBException(e.getCause());
+                    }
+                } else {
+                    moduleTypes = new LinkedHashMap<String, Class<? extends DeploymentModule>>();
+                    for (final String name : candidates) {
+                        moduleTypes.put(name, discover.call(name));
+                    }
+                }
+
+                for (final Map.Entry<String, Class<? extends DeploymentModule>> entry : moduleTypes.entrySet()) {
+                    final Class<? extends DeploymentModule> moduleType = entry.getValue();
+                    final URL url = files.get(entry.getKey());
+
+                    if (EjbModule.class.equals(moduleType)) {
+                        ejbModules.put(entry.getKey(), url);
+                    } else if (ClientModule.class.equals(moduleType)) {
+                        clientModules.put(entry.getKey(), url);
+                    } else if (ConnectorModule.class.equals(moduleType)) {
+                        resouceModules.put(entry.getKey(), url);
+                    } else if (WebModule.class.equals(moduleType)) {
+                        webModules.put(entry.getKey(), url);
                     }
                 }
             }
@@ -133,7 +133,7 @@ public class FinderFactory {
         return annotationFinder;
     }
 
-    private static boolean enableFindSubclasses() {
+    static boolean enableFindSubclasses() {
         return isJaxRsInstalled() && SystemInstance.get().getOptions().get(TOMEE_JAXRS_DEPLOY_UNDECLARED_PROP, false);
     }
 
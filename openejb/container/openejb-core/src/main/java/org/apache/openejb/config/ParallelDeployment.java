@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the independent per module steps of a deployment on several
+ * threads: discovering the type of the modules of an ear and scanning
+ * the classes of each module.
+ *
+ * Disabled by default, enabled with openejb.deployment.parallel=true.
+ * openejb.deployment.parallel.threads sets the number of threads, by
+ * default the number of processors.
+ *
+ * Results are returned in the order of the input, so what is built
+ * from them does not depend on which thread finished first.  The steps
+ * reading or changing the AppModule stay sequential.
+ */
+public class ParallelDeployment {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, ParallelDeployment.class);
+
+    public static final String OPENEJB_DEPLOYMENT_PARALLEL = "openejb.deployment.parallel";
+    public static final String OPENEJB_DEPLOYMENT_PARALLEL_THREADS = "openejb.deployment.parallel.threads";
+
+    public static interface Task<K, V> {
+        V call(K key) throws Exception;
+    }
+
+    public static boolean isEnabled() {
+        return SystemInstance.get().getOptions().get(OPENEJB_DEPLOYMENT_PARALLEL, false);
+    }
+
+    /**
+     * Calls the task once per key and waits for all of them.
+     *
+     * @return the results in the order of the keys
+     * @throws ExecutionException the failure of the first key whose task failed, once all tasks are done
+     */
+    public static <K, V> Map<K, V> invokeAll(final String phase, final List<K> keys, final Task<K, V> task) throws ExecutionException {
+        final long start = System.nanoTime();
+        final Map<K, V> results = new LinkedHashMap<K, V>();
+
+        final int threads = Math.min(keys.size(), SystemInstance.get().getOptions().get(OPENEJB_DEPLOYMENT_PARALLEL_THREADS, Runtime.getRuntime().availableProcessors()));
+        if (threads <= 1) {
+            for (K key : keys) {
+                try {
+                    results.put(key, task.call(key));
+                } catch (Exception e) {
+                    throw new ExecutionException(e);
+                }
+            }
+            log(phase, keys.size(), 1, start);
+            return results;
+        }
+
+        // deployment code looks classes and resources up through the context class loader
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("OpenEJB", phase));
+        try {
+            final List<Future<V>> futures = new ArrayList<Future<V>>(keys.size());
+            for (final K key : keys) {
+                futures.add(executor.submit(new Callable<V>() {
+                    public V call() throws Exception {
+                        final Thread thread = Thread.currentThread();
+                        final ClassLoader old = thread.getContextClassLoader();
+                        thread.setContextClassLoader(loader);
+                        try {
+                            return task.call(key);
+                        } finally {
+                            thread.setContextClassLoader(old);
+                        }
+                    }
+                }));
+            }
+
+            ExecutionException failure = null;
+            for (int i = 0; i < keys.size(); i++) {
+                try {
+                    results.put(keys.get(i), futures.get(i).get());
+                } catch (ExecutionException e) {
+                    if (failure == null) failure = e;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ExecutionException(e);
+                }
+            }
+            if (failure != null) throw failure;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log(phase, keys.size(), threads, start);
+        return results;
+    }
+
+    private static void log(final String phase, final int modules, final int threads, final long start) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info(phase + ": " + modules + " modules on " + threads + " threads in " + millis + "ms");
+    }
+
+    /**
+     * Logs how long a sequential phase took, when the parallel mode is on
+     */
+    public static long phase(final String phase, final long start) {
+        final long now = System.nanoTime();
+        if (isEnabled()) {
+            logger.info(phase + ": " + TimeUnit.NANOSECONDS.toMillis(now - start) + "ms");
+        }
+        return now;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.core.EmptyResourcesClassLoader;
+import org.apache.openejb.loader.Bytecode;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.URLs;
+import org.apache.xbean.finder.archive.Archive;
+import org.apache.xbean.finder.archive.ClasspathArchive;
+import org.apache.xbean.finder.archive.FilteredArchive;
+import org.apache.xbean.finder.filter.Filter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Remembers which classes of an archive carry annotations, so an
+ * unchanged jar or classes directory is not scanned in full again on
+ * the next start.
+ *
+ * The first scan of an archive records every class whose bytecode has
+ * an annotation attribute, on the class, a field, a method or a
+ * parameter.  The list is saved together with a fingerprint of the
+ * archive (size and last modification of the jar, or of the files of
+ * a directory).  Later scans of the same, unchanged, archive only read
+ * the listed classes.  This is the same restriction a META-INF/scan.xml
+ * applies, which is why archives having one are not indexed.
+ *
+ * Classes without annotations can still matter for CDI, which takes
+ * every class of a bean archive, and for finding subclasses.  Bean
+ * archives are therefore always scanned in full, and the index is not
+ * used at all when undeclared JAX-RS applications are searched.
+ *
+ * Disabled by default, enabled with openejb.scan.index=true.  The index
+ * lives in openejb.scan.index.dir, by default data/scan-index.
+ */
+public class ScanIndex {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, ScanIndex.class);
+
+    public static final String OPENEJB_SCAN_INDEX = "openejb.scan.index";
+    public static final String OPENEJB_SCAN_INDEX_DIR = "openejb.scan.index.dir";
+
+    public static boolean isEnabled() {
+        return SystemInstance.get().getOptions().get(OPENEJB_SCAN_INDEX, false) && !FinderFactory.enableFindSubclasses();
+    }
+
+    /**
+     * @return the archive of the location, limited to the indexed classes if the index is up to date
+     */
+    public static Archive archive(final ClassLoader loader, final URL location) {
+        final Archive archive = ClasspathArchive.archive(loader, location);
+        if (!isEnabled()) return archive;
+
+        final File file;
+        try {
+            file = URLs.toFile(location);
+        } catch (RuntimeException e) {
+            return archive;
+        }
+        if (!file.exists() || isBeanArchive(location)) return archive;
+
+        final String fingerprint = fingerprint(file);
+        final File indexFile = indexFile(location, file);
+
+        final Set<String> classes = read(indexFile, location, fingerprint);
+        if (classes != null) {
+            logger.debug("Using scan index " + indexFile.getName() + ", " + classes.size() + " classes to scan in " + location.toExternalForm());
+            return new FilteredArchive(archive, new IndexFilter(classes));
+        }
+
+        return new IndexingArchive(archive, indexFile, location, fingerprint);
+    }
+
+    private static boolean isBeanArchive(final URL location) {
+        if (location.getPath().endsWith("WEB-INF/classes/")) return true;
+
+        final URLClassLoader loader = new URLClassLoader(new URL[]{location}, new EmptyResourcesClassLoader());
+        return loader.findResource("META-INF/beans.xml") != null || loader.findResource("WEB-INF/beans.xml") != null;
+    }
+
+    static String fingerprint(final File file) {
+        if (!file.isDirectory()) {
+            return "file:" + file.length() + ":" + file.lastModified();
+        }
+
+        final long[] stats = new long[3];
+        fingerprint(file, stats);
+        return "directory:" + stats[0] + ":" + stats[1] + ":" + stats[2];
+    }
+
+    private static void fingerprint(final File directory, final long[] stats) {
+        final File[] files = directory.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                fingerprint(file, stats);
+            } else {
+                stats[0]++;
+                stats[1] += file.length();
+                stats[2] = Math.max(stats[2], file.lastModified());
+            }
+        }
+    }
+
+    static File indexFile(final URL location, final File file) {
+        final File directory = new File(SystemInstance.get().getOptions().get(OPENEJB_SCAN_INDEX_DIR, SystemInstance.get().getBase().getDirectory().getAbsolutePath() + File.separator + "data" + File.separator + "scan-index"));
+        final String name = file.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(directory, name + "-" + Integer.toHexString(location.toExternalForm().hashCode()) + ".idx");
+    }
+
+    /**
+     * @return the indexed classes, or null if there is no index for this location and fingerprint
+     */
+    static Set<String> read(final File indexFile, final URL location, final String fingerprint) {
+        if (!indexFile.exists()) return null;
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(indexFile));
+            if (!location.toExternalForm().equals(reader.readLine())) return null;
+            if (!fingerprint.equals(reader.readLine())) return null;
+
+            final Set<String> classes = new HashSet<String>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.length() > 0) classes.add(line);
+            }
+            return classes;
+        } catch (IOException e) {
+            logger.warning("Can't read scan index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+            return null;
+        } finally {
+            IO.close(reader);
+        }
+    }
+
+    static void write(final File indexFile, final URL location, final String fingerprint, final Set<String> classes) {
+        final File directory = indexFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.warning("Can't create scan index directory " + directory.getAbsolutePath());
+            return;
+        }
+
+        // written next to the index and renamed, so a reader never sees half an index
+        final File tmp = new File(directory, indexFile.getName() + ".tmp");
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new FileWriter(tmp));
+            writer.println(location.toExternalForm());
+            writer.println(fingerprint);
+            for (String className : classes) {
+                writer.println(className);
+            }
+            writer.close();
+            writer = null;
+
+            if (indexFile.exists() && !indexFile.delete() || !tmp.renameTo(indexFile)) {
+                logger.warning("Can't write scan index " + indexFile.getAbsolutePath());
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            logger.warning("Can't write scan index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+            tmp.delete();
+        } finally {
+            IO.close(writer);
+        }
+    }
+
+    private static class IndexFilter implements Filter {
+        private final Set<String> classes;
+
+        private IndexFilter(final Set<String> classes) {
+            this.classes = classes;
+        }
+
+        @Override
+        public boolean accept(final String name) {
+            return classes.contains(name);
+        }
+    }
+
+    /**
+     * Records the annotated classes while the finder reads the archive,
+     * and saves them once it went through all of it.
+     *
+     * The finder may only read some of the classes, a filter or a
+     * scan.xml can be applied on top of this archive, so the index is
+     * made from every entry of the iteration: the classes the finder
+     * didn't read are read when the iteration ends.  If one of them
+     * can't be read no index is saved.
+     */
+    private static class IndexingArchive implements Archive {
+        private final Archive archive;
+        private final File indexFile;
+        private final URL location;
+        private final String fingerprint;
+        // guarded by this
+        private final Set<String> classes = new TreeSet<String>();
+        private final Set<String> entries = new HashSet<String>();
+        private final Set<String> read = new HashSet<String>();
+        private boolean saved;
+
+        private IndexingArchive(final Archive archive, final File indexFile, final URL location, final String fingerprint) {
+            this.archive = archive;
+            this.indexFile = indexFile;
+            this.location = location;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
+            return record(className, archive.getBytecode(className));
+        }
+
+        @Override
+        public Class<?> loadClass(final String className) throws ClassNotFoundException {
+            return archive.loadClass(className);
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            final Iterator<Entry> iterator = archive.iterator();
+            return new Iterator<Entry>() {
+                @Override
+                public boolean hasNext() {
+                    final boolean hasNext = iterator.hasNext();
+                    if (!hasNext) save();
+                    return hasNext;
+                }
+
+                @Override
+                public Entry next() {
+                    final Entry entry = iterator.next();
+                    synchronized (IndexingArchive.this) {
+                        entries.add(entry.getName());
+                    }
+                    return new Entry() {
+                        @Override
+                        public String getName() {
+                            return entry.getName();
+                        }
+
+                        @Override
+                        public InputStream getBytecode() throws IOException {
+                            return record(entry.getName(), entry.getBytecode());
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                }
+            };
+        }
+
+        private InputStream record(final String className, final InputStream in) throws IOException {
+            final byte[] bytecode = Bytecode.read(in);
+            final boolean annotated = Bytecode.hasAnnotations(bytecode);
+            synchronized (this) {
+                read.add(className);
+                if (annotated) classes.add(className);
+            }
+            return new ByteArrayInputStream(bytecode);
+        }
+
+        private synchronized void save() {
+            if (saved) return;
+            saved = true;
+
+            for (String className : entries) {
+                if (read.contains(className)) continue;
+
+                try {
+                    if (Bytecode.hasAnnotations(archive.getBytecode(className))) {
+                        classes.add(className);
+                    }
+                } catch (Exception e) {
+                    logger.debug("Not saving scan index of " + location.toExternalForm() + ", can't read " + className + ": " + e.getMessage());
+                    return;
+                }
+            }
+
+            write(indexFile, location, fingerprint, classes);
+            logger.debug("Saved scan index " + indexFile.getName() + ", " + classes.size() + " classes to scan in " + location.toExternalForm());
+        }
+    }
+}
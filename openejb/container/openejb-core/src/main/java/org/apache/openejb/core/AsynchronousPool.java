@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.monitoring.Event;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.Managed;
+import org.apache.openejb.monitoring.ManagedMBean;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.monitoring.Stats;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The thread pool running @Asynchronous business methods.
+ *
+ * Every application gets one, and a bean configuring any of the
+ * AsynchronousPool properties gets its own, so its calls neither wait
+ * behind nor starve the other beans of the application.
+ *
+ * <pre>
+ * AsynchronousPool.CorePoolSize    = 10
+ * AsynchronousPool.MaximumPoolSize = 20
+ * AsynchronousPool.QueueSize       = -1          (negative is unbounded, 0 hands tasks directly to a thread)
+ * AsynchronousPool.KeepAlive       = 60 seconds
+ * AsynchronousPool.RejectionPolicy = Abort       (Abort, Block or Caller)
+ * AsynchronousPool.OfferTimeout    = 30 seconds  (how long Block waits for room in the queue)
+ * </pre>
+ *
+ * Threads beyond the core size are only started once the queue is
+ * full, so the maximum is never reached with an unbounded queue.
+ *
+ * @version $Rev$ $Date$
+ */
+@Managed
+public class AsynchronousPool {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    public static final String PREFIX = "AsynchronousPool.";
+
+    public static enum RejectionPolicy {
+        /**
+         * Fail the call with an EJBException
+         */
+        ABORT,
+        /**
+         * Wait up to OfferTimeout for room in the queue, then fail the call
+         */
+        BLOCK,
+        /**
+         * Run the method in the calling thread
+         */
+        CALLER
+    }
+
+    private final String name;
+    private final int queueSize;
+    private final RejectionPolicy rejectionPolicy;
+    private final Duration offerTimeout;
+    private final BlockingQueue<Runnable> queue;
+    private final Executor executor;
+    private ObjectName objectName;
+
+    @Managed
+    private final Stats waitTime = new Stats();
+
+    @Managed
+    private final Stats executionTime = new Stats();
+
+    @Managed
+    private final Event rejected = new Event();
+
+    public AsynchronousPool(String name, int corePoolSize, int maximumPoolSize, int queueSize, Duration keepAlive, RejectionPolicy rejectionPolicy, Duration offerTimeout) {
+        if (keepAlive.getUnit() == null) keepAlive.setUnit(TimeUnit.SECONDS);
+        if (offerTimeout.getUnit() == null) offerTimeout.setUnit(TimeUnit.SECONDS);
+
+        this.name = name;
+        this.queueSize = queueSize;
+        this.rejectionPolicy = rejectionPolicy;
+        this.offerTimeout = offerTimeout;
+
+        if (queueSize < 0) {
+            queue = new LinkedBlockingQueue<Runnable>();
+        } else if (queueSize == 0) {
+            queue = new SynchronousQueue<Runnable>();
+        } else {
+            queue = new LinkedBlockingQueue<Runnable>(queueSize);
+        }
+
+        executor = new Executor(corePoolSize, Math.max(corePoolSize, maximumPoolSize), keepAlive, queue);
+    }
+
+    public static AsynchronousPool create(String application, String name, Options options) {
+        final AsynchronousPool pool = new AsynchronousPool(name,
+                options.get(PREFIX + "CorePoolSize", 10),
+                options.get(PREFIX + "MaximumPoolSize", 20),
+                options.get(PREFIX + "QueueSize", -1),
+                options.get(PREFIX + "KeepAlive", new Duration(60, TimeUnit.SECONDS)),
+                options.get(PREFIX + "RejectionPolicy", RejectionPolicy.ABORT),
+                options.get(PREFIX + "OfferTimeout", new Duration(30, TimeUnit.SECONDS)));
+
+        final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management");
+        jmxName.set("J2EEServer", "openejb");
+        jmxName.set("J2EEApplication", application);
+        jmxName.set("j2eeType", "AsynchronousPool");
+        jmxName.set("name", name);
+
+        try {
+            final ObjectName objectName = jmxName.build();
+            final MBeanServer server = LocalMBeanServer.get();
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(new ManagedMBean(pool), objectName);
+            pool.objectName = objectName;
+        } catch (Exception e) {
+            logger.error("Unable to register MBean ", e);
+        }
+
+        return pool;
+    }
+
+    /**
+     * @return true if the properties configure a pool of their own
+     */
+    public static boolean isConfigured(Properties properties) {
+        for (String property : properties.stringPropertyNames()) {
+            if (property.startsWith(PREFIX)) return true;
+        }
+        return false;
+    }
+
+    public Future<Object> submit(Callable<Object> callable) throws RejectedExecutionException {
+        return executor.submit(callable);
+    }
+
+    /**
+     * Removes a task returned by submit if it did not start yet
+     */
+    public boolean remove(Runnable task) {
+        return queue.remove(task);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+
+        if (objectName != null) {
+            try {
+                LocalMBeanServer.get().unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.error("Unable to unregister MBean " + objectName);
+            }
+            objectName = null;
+        }
+    }
+
+    @Managed
+    public String getName() {
+        return name;
+    }
+
+    @Managed
+    public int getCorePoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    @Managed
+    public int getMaximumPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Managed
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    @Managed
+    public int getLargestPoolSize() {
+        return executor.getLargestPoolSize();
+    }
+
+    @Managed
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Managed
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    @Managed
+    public int getQueued() {
+        return queue.size();
+    }
+
+    @Managed
+    public long getTaskCount() {
+        return executor.getTaskCount();
+    }
+
+    @Managed
+    public long getCompletedTaskCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    @Managed
+    public String getRejectionPolicy() {
+        return rejectionPolicy.toString();
+    }
+
+    private class Executor extends ThreadPoolExecutor {
+        private Executor(int corePoolSize, int maximumPoolSize, Duration keepAlive, BlockingQueue<Runnable> queue) {
+            super(corePoolSize, maximumPoolSize, keepAlive.getTime(), keepAlive.getUnit(), queue, new DaemonThreadFactory("@Asynch", name), new Rejection());
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new Task<T>(callable);
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable runnable) {
+            if (runnable instanceof Task) {
+                final Task task = (Task) runnable;
+                task.started = System.nanoTime();
+                waitTime.record(task.started - task.submitted);
+            }
+        }
+
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable throwable) {
+            if (runnable instanceof Task) {
+                executionTime.record(System.nanoTime() - ((Task) runnable).started);
+            }
+        }
+    }
+
+    private class Rejection implements RejectedExecutionHandler {
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Asynchronous pool " + name + " is shut down");
+            }
+
+            switch (rejectionPolicy) {
+                case CALLER:
+                    runnable.run();
+                    return;
+                case BLOCK:
+                    try {
+                        if (queue.offer(runnable, offerTimeout.getTime(), offerTimeout.getUnit())) return;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    break;
+            }
+
+            rejected.record();
+            throw new RejectedExecutionException("Asynchronous pool " + name + " is full: " + executor.getActiveCount() + " running, " + queue.size() + " queued");
+        }
+    }
+
+    private static class Task<T> extends FutureTask<T> {
+        private final long submitted = System.nanoTime();
+        private long started;
+
+        private Task(Callable<T> callable) {
+            super(callable);
+        }
+    }
+}
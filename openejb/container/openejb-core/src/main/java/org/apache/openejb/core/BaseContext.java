@@ -29,7 +29,6 @@ import javax.ejb.EJBContext;
 import javax.ejb.EJBHome;
 import javax.ejb.EJBLocalHome;
 import javax.ejb.TimerService;
-import javax.interceptor.InvocationContext;
 import javax.naming.Context;
 import javax.naming.NamingException;
 import javax.transaction.HeuristicMixedException;
@@ -76,7 +75,7 @@ public abstract class BaseContext implements EJBContext, Serializable {
 
     public Map<String, Object> getContextData() {
         check(Call.getContextData);
-        return ThreadContext.getThreadContext().get(InvocationContext.class).getContextData();
+        return ThreadContext.getThreadContext().get(ThreadContext.INVOCATION_CONTEXT).getContextData();
     }
 
     public EJBHome getEJBHome() {
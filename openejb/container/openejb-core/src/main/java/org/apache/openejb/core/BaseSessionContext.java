@@ -55,7 +55,7 @@ public abstract class BaseSessionContext extends BaseContext implements SessionC
     public boolean wasCancelCalled() {
         ThreadContext threadContext = ThreadContext.getThreadContext();
         BeanContext di = threadContext.getBeanContext();
-        Method runningMethod = threadContext.get(Method.class);
+        Method runningMethod = threadContext.get(ThreadContext.METHOD);
         if (di.isAsynchronous(runningMethod)) {
             if(runningMethod.getReturnType() == void.class) {
                 throw new IllegalStateException("Current running method " + runningMethod.getName() + " is an asynchronous method, but its return type is void :" + di.getDestinationId());
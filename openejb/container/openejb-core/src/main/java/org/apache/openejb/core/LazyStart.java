@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.BeanType;
+import org.apache.openejb.OpenEJBException;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.Managed;
+import org.apache.openejb.monitoring.ManagedMBean;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.monitoring.Stats;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stateless beans of an application whose container start is deferred
+ * to their first invocation instead of happening when the application
+ * is deployed.
+ *
+ * Starting a stateless bean builds its pool, registers its MBeans and
+ * creates the PoolMin instances, which is wasted on a node never
+ * calling the bean.  With openejb.deployment.lazy.start=true only that
+ * step waits until the bean is first invoked, whether by a client, a
+ * timer or a web service.  Everything else is still done at deploy
+ * time: the BeanContext, its interceptors and proxies are built, the
+ * ENC is created and the bean is bound in JNDI.
+ *
+ * openejb.deployment.lazy.start.warmup lists, comma separated, the ejb names
+ * or deployment ids of the beans to start with the application anyway.
+ * Both properties can be set on the system, the application or the bean.
+ *
+ * Once started a bean no longer refers to its LazyStart, so its invocations
+ * don't look it up anymore.  When the undeploy of the application begins
+ * the beans still waiting are refused to start.
+ *
+ * The beans started so far and those still waiting are exposed under
+ * j2eeType=LazyStart, which can also start all of them at once.
+ *
+ * @version $Rev$ $Date$
+ */
+@Managed
+public class LazyStart {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_STARTUP, "org.apache.openejb.assembler.classic");
+
+    public static final String OPENEJB_DEPLOYMENT_LAZY_START = "openejb.deployment.lazy.start";
+    public static final String OPENEJB_DEPLOYMENT_LAZY_START_WARMUP = "openejb.deployment.lazy.start.warmup";
+
+    private final String application;
+    private final Map<String, BeanContext> pending = new ConcurrentHashMap<String, BeanContext>();
+    private final List<String> started = new CopyOnWriteArrayList<String>();
+    private ObjectName objectName;
+    private volatile boolean closed;
+
+    @Managed
+    private final Stats startTime = new Stats();
+
+    public LazyStart(String application) {
+        this.application = application;
+    }
+
+    /**
+     * @return true if the bean can wait for its first invocation to be started
+     */
+    public static boolean isLazy(BeanContext beanContext) {
+        if (beanContext.getComponentType() != BeanType.STATELESS) return false;
+        if (!beanContext.getOptions().get(OPENEJB_DEPLOYMENT_LAZY_START, false)) return false;
+
+        final String warmup = beanContext.getOptions().get(OPENEJB_DEPLOYMENT_LAZY_START_WARMUP, "");
+        for (String name : warmup.split(",")) {
+            name = name.trim();
+            if (name.equals(beanContext.getEjbName()) || name.equals(beanContext.getDeploymentID())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts the bean if it is still waiting for its first invocation
+     */
+    public static void start(BeanContext beanContext) throws OpenEJBException {
+        final LazyStart lazyStart = beanContext.get(LazyStart.class);
+        if (lazyStart != null) lazyStart.startBean(beanContext);
+    }
+
+    public void add(BeanContext beanContext) {
+        pending.put((String) beanContext.getDeploymentID(), beanContext);
+        beanContext.set(LazyStart.class, this);
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty() && started.isEmpty();
+    }
+
+    /**
+     * Refuses to start the beans still waiting, called when the undeploy of
+     * the application begins.  A start under way completes first so the
+     * bean is stopped once started.
+     */
+    public void close() {
+        closed = true;
+        for (BeanContext beanContext : new ArrayList<BeanContext>(pending.values())) {
+            synchronized (beanContext) {
+                // waits for startBean
+            }
+        }
+    }
+
+    private void startBean(BeanContext beanContext) throws OpenEJBException {
+        final String id = (String) beanContext.getDeploymentID();
+        if (!pending.containsKey(id)) return;
+
+        synchronized (beanContext) {
+            if (!pending.containsKey(id)) return;
+            if (closed) {
+                throw new OpenEJBException("Not starting '" + beanContext.getEjbName() + "', application " + application + " is being undeployed");
+            }
+
+            final long start = System.nanoTime();
+
+            // the first invocation may come from any thread, e.g. one of the ejbd server
+            final Thread thread = Thread.currentThread();
+            final ClassLoader old = thread.getContextClassLoader();
+            thread.setContextClassLoader(beanContext.getClassLoader());
+            try {
+                beanContext.getContainer().start(beanContext);
+            } finally {
+                thread.setContextClassLoader(old);
+            }
+
+            startTime.record(System.nanoTime() - start);
+            started.add(id);
+            pending.remove(id);
+
+            // the invocations go straight to the container from now on
+            beanContext.set(LazyStart.class, null);
+        }
+
+        logger.info("createApplication.startedEjb", id, beanContext.getEjbName(), beanContext.getContainer().getContainerID());
+    }
+
+    public void register() {
+        final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management");
+        jmxName.set("J2EEServer", "openejb");
+        jmxName.set("J2EEApplication", application);
+        jmxName.set("j2eeType", "LazyStart");
+        jmxName.set("name", application);
+
+        try {
+            final ObjectName objectName = jmxName.build();
+            final MBeanServer server = LocalMBeanServer.get();
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+            server.registerMBean(new ManagedMBean(this), objectName);
+            this.objectName = objectName;
+        } catch (Exception e) {
+            logger.error("Unable to register MBean ", e);
+        }
+    }
+
+    public void unregister() {
+        if (objectName == null) return;
+
+        try {
+            LocalMBeanServer.get().unregisterMBean(objectName);
+        } catch (Exception e) {
+            logger.error("Unable to unregister MBean " + objectName);
+        }
+        objectName = null;
+    }
+
+    @Managed
+    public String[] getStarted() {
+        return started.toArray(new String[started.size()]);
+    }
+
+    @Managed
+    public String[] getPending() {
+        final String[] ids = pending.keySet().toArray(new String[0]);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Managed
+    public int getStartedCount() {
+        return started.size();
+    }
+
+    @Managed
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Managed
+    public String startAll() {
+        final List<String> failed = new ArrayList<String>();
+        for (BeanContext beanContext : new ArrayList<BeanContext>(pending.values())) {
+            try {
+                startBean(beanContext);
+            } catch (OpenEJBException e) {
+                logger.error("Error starting '" + beanContext.getEjbName() + "'", e);
+                failed.add((String) beanContext.getDeploymentID());
+            }
+        }
+        return failed.isEmpty() ? "started" : "failed: " + failed;
+    }
+}
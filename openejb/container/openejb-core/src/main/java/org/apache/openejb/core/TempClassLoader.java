@@ -23,7 +23,6 @@ import org.apache.xbean.asm.ClassReader;
 import org.apache.xbean.asm.Opcodes;
 import org.apache.xbean.asm.commons.EmptyVisitor;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -112,19 +111,15 @@ public class TempClassLoader extends URLClassLoader {
 //        ( && !name.startsWith("javax.faces.") )||
         String resourceName = name.replace('.', '/') + ".class";
         InputStream in = getResourceAsStream(resourceName);
-        if (!(in instanceof BufferedInputStream)) {
-            in = new BufferedInputStream(in);
-        }
         if (in == null) {
             throw new ClassNotFoundException(name);
         }
 
-        // 80% of class files are smaller then 6k
-        ByteArrayOutputStream bout = new ByteArrayOutputStream(8 * 1024);
-
-        // copy the input stream into a byte array
+        // copy the input stream into a byte array, IO.copy reads in chunks so no BufferedInputStream is needed
         byte[] bytes;
         try {
+            // 80% of class files are smaller then 6k
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(Math.max(in.available(), 8 * 1024));
             IO.copy(in, bout);
             bytes = bout.toByteArray();
         } catch (IOException e) {
@@ -16,22 +16,44 @@
  */
 package org.apache.openejb.core;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.openejb.BeanContext;
+import org.apache.openejb.BeanType;
 import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
+import javax.interceptor.InvocationContext;
+
 public class ThreadContext {
     private static final Logger log = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
     private static final ThreadLocal<ThreadContext> threadStorage = new ThreadLocal<ThreadContext>();
-    private static final List<ThreadContextListener> listeners = new CopyOnWriteArrayList<ThreadContextListener>();
     private static final ThreadLocal<AtomicBoolean> asynchronousCancelled = new ThreadLocal<AtomicBoolean>();
 
+    // listeners with the bean types they asked for, and the resulting per type arrays walked on enter and exit
+    private static final List<Registration> registrations = new ArrayList<Registration>();
+    private static volatile ThreadContextListener[][] listeners = new ThreadContextListener[BeanType.values().length + 1][0];
+
+    // every container type ever stored in a context gets a fixed index into the values array,
+    // types of the applications go to a map so the slots don't keep them loaded
+    private static final ConcurrentMap<Class, Slot> slots = new ConcurrentHashMap<Class, Slot>();
+    private static final Object[] NO_VALUES = {};
+
+    // the slots every invocation touches, registered up front so they get the lowest indexes
+    public static final Slot<Method> METHOD = slot(Method.class);
+    public static final Slot<InvocationContext> INVOCATION_CONTEXT = slot(InvocationContext.class);
+
     public static ThreadContext getThreadContext() {
         ThreadContext threadContext = threadStorage.get();
         return threadContext;
@@ -51,7 +73,7 @@ public class ThreadContext {
         threadStorage.set(newContext);
 
         // notify listeners
-        for (ThreadContextListener listener : listeners) {
+        for (ThreadContextListener listener : listeners(newContext.beanContext)) {
             try {
                 listener.contextEntered(oldContext, newContext);
             } catch (Throwable e) {
@@ -77,7 +99,7 @@ public class ThreadContext {
         threadStorage.set(oldContext);
 
         // notify listeners
-        for (ThreadContextListener listener : listeners) {
+        for (ThreadContextListener listener : listeners(exitingContext.beanContext)) {
             try {
                 listener.contextExited(exitingContext, oldContext);
             } catch (Throwable e) {
@@ -99,16 +121,103 @@ public class ThreadContext {
     }
 
     public static void addThreadContextListener(ThreadContextListener listener) {
-        listeners.add(listener);
+        addThreadContextListener(listener, EnumSet.allOf(BeanType.class));
+    }
+
+    /**
+     * Registers a listener that is only notified when a context of one
+     * of the given bean types is entered or exited.
+     */
+    public static synchronized void addThreadContextListener(ThreadContextListener listener, Set<BeanType> beanTypes) {
+        Set<BeanType> types = EnumSet.noneOf(BeanType.class);
+        types.addAll(beanTypes);
+        registrations.add(new Registration(listener, types));
+        updateListeners();
+    }
+
+    public static synchronized void removeThreadContextListener(ThreadContextListener listener) {
+        for (int i = 0; i < registrations.size(); i++) {
+            if (registrations.get(i).listener.equals(listener)) {
+                registrations.remove(i);
+                break;
+            }
+        }
+        updateListeners();
+    }
+
+    private static void updateListeners() {
+        BeanType[] types = BeanType.values();
+        ThreadContextListener[][] byType = new ThreadContextListener[types.length + 1][];
+
+        for (BeanType type : types) {
+            List<ThreadContextListener> interested = new ArrayList<ThreadContextListener>();
+            for (Registration registration : registrations) {
+                if (registration.beanTypes.contains(type)) interested.add(registration.listener);
+            }
+            byType[type.ordinal()] = interested.toArray(new ThreadContextListener[interested.size()]);
+        }
+
+        // contexts of beans without a type notify everybody
+        List<ThreadContextListener> all = new ArrayList<ThreadContextListener>();
+        for (Registration registration : registrations) {
+            all.add(registration.listener);
+        }
+        byType[types.length] = all.toArray(new ThreadContextListener[all.size()]);
+
+        listeners = byType;
+    }
+
+    private static ThreadContextListener[] listeners(BeanContext beanContext) {
+        ThreadContextListener[][] byType = listeners;
+        BeanType type = beanContext.getComponentType();
+        return byType[(type == null) ? byType.length - 1 : type.ordinal()];
+    }
+
+    /**
+     * The slot holding values of the given type.  Callers on hot paths
+     * should keep the returned slot in a constant and use
+     * {@link #get(Slot)} and {@link #set(Slot, Object)}.
+     *
+     * Slots are never released, only types loaded by the container get
+     * one, the others are stored with {@link #set(Class, Object)}.
+     *
+     * @throws IllegalArgumentException if the type is not a container type
+     */
+    @SuppressWarnings({"unchecked"})
+    public static <T> Slot<T> slot(Class<T> type) {
+        Slot<T> slot = slots.get(type);
+        if (slot == null) {
+            if (!isContainerType(type)) {
+                throw new IllegalArgumentException("Only types loaded by the container can have a slot: " + type.getName());
+            }
+            synchronized (slots) {
+                slot = slots.get(type);
+                if (slot == null) {
+                    slot = new Slot<T>(type, slots.size());
+                    slots.put(type, slot);
+                }
+            }
+        }
+        return slot;
     }
 
-    public static void removeThreadContextListener(ThreadContextListener listener) {
-        listeners.remove(listener);
+    /**
+     * @return true if the type is loaded by the loader of this class or one of its parents
+     */
+    private static boolean isContainerType(Class<?> type) {
+        final ClassLoader loader = type.getClassLoader();
+        if (loader == null) return true;
+
+        for (ClassLoader container = ThreadContext.class.getClassLoader(); container != null; container = container.getParent()) {
+            if (container == loader) return true;
+        }
+        return false;
     }
 
     private final BeanContext beanContext;
     private final Object primaryKey;
-    private final HashMap<Class, Object> data = new HashMap<Class, Object>();
+    private Object[] values = NO_VALUES;
+    private Map<Class, Object> appValues;
     private ClassLoader oldClassLoader;
     private Operation currentOperation;
     private Class invokedInterface;
@@ -136,7 +245,8 @@ public class ThreadContext {
     public ThreadContext(ThreadContext that) {
         this.beanContext = that.beanContext;
         this.primaryKey = that.primaryKey;
-        this.data.putAll(that.data);
+        this.values = (that.values.length == 0) ? NO_VALUES : that.values.clone();
+        this.appValues = (that.appValues == null) ? null : new HashMap<Class, Object>(that.appValues);
         this.oldClassLoader = that.oldClassLoader;
     }
 
@@ -182,17 +292,50 @@ public class ThreadContext {
 
     @SuppressWarnings({"unchecked"})
     public <T> T get(Class<T> type) {
-        return (T)data.get(type);
+        Slot<T> slot = slots.get(type);
+        if (slot != null) return get(slot);
+        return (appValues == null) ? null : (T) appValues.get(type);
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T set(Class<T> type, T value) {
-        return (T) data.put(type, value);
+        Slot<T> slot = slots.get(type);
+        if (slot != null || isContainerType(type)) return set(slot(type), value);
+
+        if (appValues == null) {
+            if (value == null) return null;
+            appValues = new HashMap<Class, Object>();
+        }
+        return (T) appValues.put(type, value);
     }
 
-    @SuppressWarnings({ "unchecked" })
+    @SuppressWarnings({"unchecked"})
     public <T> T remove(Class<T> type) {
-        return (T) data.remove(type);
+        Slot<T> slot = slots.get(type);
+        if (slot != null) return set(slot, null);
+        return (appValues == null) ? null : (T) appValues.remove(type);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    public <T> T get(Slot<T> slot) {
+        Object[] values = this.values;
+        return (slot.index < values.length) ? (T) values[slot.index] : null;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    public <T> T set(Slot<T> slot, T value) {
+        if (slot.index >= values.length) {
+            if (value == null) return null;
+            values = Arrays.copyOf(values, Math.max(slot.index + 1, slots.size()));
+        }
+
+        T old = (T) values[slot.index];
+        values[slot.index] = value;
+        return old;
+    }
+
+    public <T> T remove(Slot<T> slot) {
+        return set(slot, null);
     }
 
     public boolean isDiscardInstance() {
@@ -208,7 +351,7 @@ public class ThreadContext {
         return "ThreadContext{" +
                 "beanContext=" + beanContext.getId() +
                 ", primaryKey=" + primaryKey +
-                ", data=" + data.size() +
+                ", data=" + size() +
                 ", oldClassLoader=" + oldClassLoader +
                 ", currentOperation=" + currentOperation +
                 ", invokedInterface=" + invokedInterface +
@@ -216,4 +359,44 @@ public class ThreadContext {
                 ", discardInstance=" + discardInstance +
                 '}';
     }
+
+    private int size() {
+        int size = (appValues == null) ? 0 : appValues.size();
+        for (Object value : values) {
+            if (value != null) size++;
+        }
+        return size;
+    }
+
+    /**
+     * A fixed index into the values of every ThreadContext, one per type
+     */
+    public static final class Slot<T> {
+        private final Class<T> type;
+        private final int index;
+
+        private Slot(Class<T> type, int index) {
+            this.type = type;
+            this.index = index;
+        }
+
+        public Class<T> getType() {
+            return type;
+        }
+
+        @Override
+        public String toString() {
+            return "Slot{" + type.getName() + "}";
+        }
+    }
+
+    private static class Registration {
+        private final ThreadContextListener listener;
+        private final Set<BeanType> beanTypes;
+
+        private Registration(ThreadContextListener listener, Set<BeanType> beanTypes) {
+            this.listener = listener;
+            this.beanTypes = beanTypes;
+        }
+    }
 }
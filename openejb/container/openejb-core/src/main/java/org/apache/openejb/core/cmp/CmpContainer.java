@@ -275,7 +275,7 @@ public class CmpContainer implements RpcContainer {
             callContext.setCurrentOperation(Operation.BUSINESS);
             Method runMethod = beanContext.getMatchingBeanMethod(callMethod);
 
-            callContext.set(Method.class, runMethod);
+            callContext.set(ThreadContext.METHOD, runMethod);
 
             Object retValue = businessMethod(callMethod, runMethod, args, callContext, type);
 
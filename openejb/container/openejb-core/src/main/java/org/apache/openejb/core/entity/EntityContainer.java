@@ -192,7 +192,7 @@ public class EntityContainer implements RpcContainer {
             callContext.setCurrentOperation(type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS);
             Method runMethod = beanContext.getMatchingBeanMethod(callMethod);
 
-            callContext.set(Method.class, runMethod);
+            callContext.set(ThreadContext.METHOD, runMethod);
 
             Object retValue = invoke(type, callMethod, runMethod, args, callContext);
 
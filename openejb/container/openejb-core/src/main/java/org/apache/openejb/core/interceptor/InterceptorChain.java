@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.interceptor;
+
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.util.proxy.DynamicProxyImplFactory;
+
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ordered interceptor methods to call for one operation on one
+ * method, computed once from the InterceptorData and reused for every
+ * invocation.  The interceptor instances are resolved by class name
+ * from the per bean instance map while the chain is walked, so the
+ * chain itself is immutable and can be shared by all bean instances.
+ *
+ * @version $Rev$ $Date$
+ */
+public class InterceptorChain {
+
+    private final Link[] links;
+
+    public InterceptorChain(List<InterceptorData> interceptorDatas, Operation operation) {
+        if (interceptorDatas == null) throw new NullPointerException("interceptorDatas is null");
+
+        final List<Link> list = new ArrayList<Link>(interceptorDatas.size());
+        for (InterceptorData interceptorData : interceptorDatas) {
+            final String className = interceptorData.getInterceptorClass().getName();
+            final Set<Method> methods = interceptorData.getMethods(operation);
+            for (Method method : methods) {
+                list.add(new Link(className, null, method));
+            }
+        }
+        this.links = list.toArray(new Link[list.size()]);
+    }
+
+    /**
+     * Chain of interceptors whose instances are already known
+     *
+     * @param interceptors the interceptors in calling order
+     */
+    public InterceptorChain(List<Interceptor> interceptors) {
+        if (interceptors == null) throw new NullPointerException("interceptors is null");
+
+        this.links = new Link[interceptors.size()];
+        for (int i = 0; i < links.length; i++) {
+            final Interceptor interceptor = interceptors.get(i);
+            links[i] = new Link(null, interceptor.getInstance(), interceptor.getMethod());
+        }
+    }
+
+    /**
+     * Chain starting with the given around invoke methods of an interceptor
+     * instance, followed by an existing chain, as used for web service calls
+     *
+     * @param interceptor the interceptor instance, called first
+     * @param aroundInvokes its around invoke methods
+     * @param next the chain to call after it
+     */
+    public InterceptorChain(Object interceptor, Collection<Method> aroundInvokes, InterceptorChain next) {
+        if (interceptor == null) throw new NullPointerException("interceptor is null");
+        if (next == null) throw new NullPointerException("next is null");
+
+        this.links = new Link[aroundInvokes.size() + next.links.length];
+        int i = 0;
+        for (Method method : aroundInvokes) {
+            links[i++] = new Link(null, interceptor, method);
+        }
+        System.arraycopy(next.links, 0, links, i, next.links.length);
+    }
+
+    public int size() {
+        return links.length;
+    }
+
+    Link get(int index) {
+        return links[index];
+    }
+
+    /**
+     * Creates the Interceptor list this chain represents for the given instances
+     *
+     * @param interceptorInstances interceptor instances keyed by class name
+     * @return the resolved interceptors
+     * @throws IllegalArgumentException if an interceptor instance is missing
+     */
+    public List<Interceptor> getInterceptors(Map<String, Object> interceptorInstances) {
+        final List<Interceptor> interceptors = new ArrayList<Interceptor>(links.length);
+        for (Link link : links) {
+            interceptors.add(new Interceptor(link.resolve(interceptorInstances), link.method));
+        }
+        return interceptors;
+    }
+
+    static final class Link {
+        private final String className;
+        private final Object instance;
+        final Method method;
+
+        /**
+         * True for around invoke/timeout methods, which take the InvocationContext
+         * and call proceed() themselves, false for lifecycle callbacks
+         */
+        final boolean around;
+
+        private Link(String className, Object instance, Method method) {
+            if (method == null) throw new NullPointerException("method is null");
+            this.className = className;
+            this.instance = instance;
+            this.method = method;
+
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            this.around = parameterTypes.length == 1 && parameterTypes[0] == InvocationContext.class;
+        }
+
+        Object resolve(Map<String, Object> interceptorInstances) {
+            if (instance != null) return instance;
+
+            final Object interceptorInstance = (interceptorInstances == null) ? null : interceptorInstances.get(className);
+            if (interceptorInstance == null) {
+                throw new IllegalArgumentException("No interceptor of type " + className);
+            }
+
+            final Object handler = DynamicProxyImplFactory.realHandler(interceptorInstance);
+            if (handler != null && method.getDeclaringClass().equals(handler.getClass())) { // dynamic impl
+                return handler;
+            }
+            return interceptorInstance;
+        }
+    }
+}
@@ -19,11 +19,8 @@ package org.apache.openejb.core.interceptor;
 import static org.apache.openejb.util.Join.join;
 
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Stack;
 
 import javax.interceptor.InvocationContext;
@@ -33,7 +30,6 @@ import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.util.Classes;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
-import org.apache.openejb.util.proxy.DynamicProxyImplFactory;
 
 /**
  * @version $Rev$ $Date$
@@ -41,43 +37,26 @@ import org.apache.openejb.util.proxy.DynamicProxyImplFactory;
 public class InterceptorStack {
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
     private final Object beanInstance;
-    private final List<Interceptor> interceptors;
+    private final InterceptorChain chain;
+    private final Map<String, Object> interceptorInstances;
     private final Method targetMethod;
     private final Operation operation;
 
     public InterceptorStack(Object beanInstance, Method targetMethod, Operation operation, List<InterceptorData> interceptorDatas, Map<String, Object> interceptorInstances) {
-        if (interceptorDatas == null) throw new NullPointerException("interceptorDatas is null");
+        this(beanInstance, targetMethod, operation, new InterceptorChain(interceptorDatas, operation), interceptorInstances);
+    }
+
+    /**
+     * @param chain a chain created for the same operation, usually cached in the MethodContext
+     */
+    public InterceptorStack(Object beanInstance, Method targetMethod, Operation operation, InterceptorChain chain, Map<String, Object> interceptorInstances) {
+        if (chain == null) throw new NullPointerException("chain is null");
         if (interceptorInstances == null) throw new NullPointerException("interceptorInstances is null");
         this.beanInstance = beanInstance;
         this.targetMethod = targetMethod;
         this.operation = operation;
-
-        interceptors = new ArrayList<Interceptor>(interceptorDatas.size());
-//        try {
-//            interceptors.add(new Interceptor(new Debug(), Debug.class.getMethod("invoke", InvocationContext.class)));
-//        } catch (Throwable e) {
-//        }
-
-        for (InterceptorData interceptorData : interceptorDatas) {
-            Class interceptorClass = interceptorData.getInterceptorClass();
-            Object interceptorInstance = interceptorInstances.get(interceptorClass.getName());
-            if (interceptorInstance == null) {
-                throw new IllegalArgumentException("No interceptor of type " + interceptorClass.getName());
-            }
-
-            Set<Method> methods = interceptorData.getMethods(operation);
-            for (Method method : methods) {
-                final Interceptor interceptor;
-                Object handler = DynamicProxyImplFactory.realHandler(interceptorInstance);
-                if (handler != null && method.getDeclaringClass().equals(handler.getClass())) { // dynamic impl
-                    interceptor = new Interceptor(handler, method);
-                } else {
-                    interceptor = new Interceptor(interceptorInstance, method);
-                }
-                interceptors.add(interceptor);
-            }
-        }
-
+        this.chain = chain;
+        this.interceptorInstances = interceptorInstances;
     }
 
     private static final ThreadLocal<Stack> stack = new ThreadLocal<Stack>();
@@ -125,44 +104,45 @@ public class InterceptorStack {
     }
 
     public InvocationContext createInvocationContext(Object... parameters) {
-        InvocationContext invocationContext = new ReflectionInvocationContext(operation, interceptors, beanInstance, targetMethod, parameters);
+        InvocationContext invocationContext = new ReflectionInvocationContext(operation, chain, interceptorInstances, beanInstance, targetMethod, parameters);
         return invocationContext;
     }
 
     public Object invoke(Object... parameters) throws Exception {
+        final ThreadContext threadContext = ThreadContext.getThreadContext();
         try {
             InvocationContext invocationContext = createInvocationContext(parameters);
-            if (ThreadContext.getThreadContext() != null) {
-                ThreadContext.getThreadContext().set(InvocationContext.class, invocationContext);
+            if (threadContext != null) {
+                threadContext.set(ThreadContext.INVOCATION_CONTEXT, invocationContext);
             }
             Object value = invocationContext.proceed();
             return value;
         } finally {
-            if (ThreadContext.getThreadContext() != null) {
-                ThreadContext.getThreadContext().remove(InvocationContext.class);
+            if (threadContext != null) {
+                threadContext.remove(ThreadContext.INVOCATION_CONTEXT);
             }
         }
     }
 
     public Object invoke(javax.xml.ws.handler.MessageContext messageContext, Object... parameters) throws Exception {
         try {
-            InvocationContext invocationContext = new JaxWsInvocationContext(operation, interceptors, beanInstance, targetMethod, messageContext, parameters);
-            ThreadContext.getThreadContext().set(InvocationContext.class, invocationContext);
+            InvocationContext invocationContext = new JaxWsInvocationContext(operation, chain.getInterceptors(interceptorInstances), beanInstance, targetMethod, messageContext, parameters);
+            ThreadContext.getThreadContext().set(ThreadContext.INVOCATION_CONTEXT, invocationContext);
             Object value = invocationContext.proceed();
             return value;
         } finally {
-            ThreadContext.getThreadContext().remove(InvocationContext.class);
+            ThreadContext.getThreadContext().remove(ThreadContext.INVOCATION_CONTEXT);
         }
     }
 
     public Object invoke(javax.xml.rpc.handler.MessageContext messageContext, Object... parameters) throws Exception {
         try {
-            InvocationContext invocationContext = new JaxRpcInvocationContext(operation, interceptors, beanInstance, targetMethod, messageContext, parameters);
-            ThreadContext.getThreadContext().set(InvocationContext.class, invocationContext);
+            InvocationContext invocationContext = new JaxRpcInvocationContext(operation, chain.getInterceptors(interceptorInstances), beanInstance, targetMethod, messageContext, parameters);
+            ThreadContext.getThreadContext().set(ThreadContext.INVOCATION_CONTEXT, invocationContext);
             Object value = invocationContext.proceed();
             return value;
         } finally {
-            ThreadContext.getThreadContext().remove(InvocationContext.class);
+            ThreadContext.getThreadContext().remove(ThreadContext.INVOCATION_CONTEXT);
         }
     }
 }
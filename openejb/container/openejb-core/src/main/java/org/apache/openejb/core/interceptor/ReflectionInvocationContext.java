@@ -20,7 +20,6 @@ import org.apache.openejb.core.Operation;
 import org.apache.openejb.util.Classes;
 
 import javax.interceptor.InvocationContext;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.List;
 import java.util.TreeMap;
@@ -31,31 +30,42 @@ import java.lang.reflect.InvocationTargetException;
  * @version $Rev$ $Date$
  */
 public class ReflectionInvocationContext implements InvocationContext {
-    private final Iterator<Interceptor> interceptors;
+    private static final Class<?>[] NO_PARAMETER_TYPES = new Class[0];
+
+    private final InterceptorChain chain;
+    private final Map<String, Object> interceptorInstances;
+    private int position;
     private final Object target;
     private final Method method;
     private final Object[] parameters;
-    private final Map<String, Object> contextData = new TreeMap<String, Object>();
-    private final Class<?>[] parameterTypes;
+    private Map<String, Object> contextData;
+    private Class<?>[] parameterTypes;
+    private Object[] self;
 
     private final Operation operation;
 
     public ReflectionInvocationContext(Operation operation, List<Interceptor> interceptors, Object target, Method method, Object... parameters) {
+        this(operation, new InterceptorChain(interceptors), null, target, method, parameters);
+    }
+
+    public ReflectionInvocationContext(Operation operation, InterceptorChain chain, Map<String, Object> interceptorInstances, Object target, Method method, Object... parameters) {
         if (operation == null) throw new NullPointerException("operation is null");
-        if (interceptors == null) throw new NullPointerException("interceptors is null");
+        if (chain == null) throw new NullPointerException("chain is null");
         if (target == null) throw new NullPointerException("target is null");
 
         this.operation = operation;
-        this.interceptors = interceptors.iterator();
+        this.chain = chain;
+        this.interceptorInstances = interceptorInstances;
         this.target = target;
         this.method = method;
         this.parameters = parameters;
+    }
 
-        if (method == null) {
-            parameterTypes = new Class[0];
-        } else {
-            parameterTypes = method.getParameterTypes();
+    private Class<?>[] getParameterTypes() {
+        if (parameterTypes == null) {
+            parameterTypes = (method == null) ? NO_PARAMETER_TYPES : method.getParameterTypes();
         }
+        return parameterTypes;
     }
 
     public Object getTimer() {
@@ -101,6 +111,7 @@ public class ReflectionInvocationContext implements InvocationContext {
         if (parameters.length != this.parameters.length) {
             throw new IllegalArgumentException("Expected " + this.parameters.length + " parameters, but only got " + parameters.length + " parameters");
         }
+        final Class<?>[] parameterTypes = getParameterTypes();
         for (int i = 0; i < parameters.length; i++) {
             Object parameter = parameters[i];
             Class<?> parameterType = parameterTypes[i];
@@ -125,109 +136,44 @@ public class ReflectionInvocationContext implements InvocationContext {
     }
 
     public Map<String, Object> getContextData() {
+        if (contextData == null) {
+            contextData = new TreeMap<String, Object>();
+        }
         return contextData;
     }
 
-    private Invocation next() {
-        if (interceptors.hasNext()) {
-            Interceptor interceptor = interceptors.next();
-            Object nextInstance = interceptor.getInstance();
-            Method nextMethod = interceptor.getMethod();
+    public Object proceed() throws Exception {
+        // The bulk of the logic of this method has intentionally been kept
+        // small so stepping through a large stack in a debugger can be done quickly.
+        // Simply put one break point on the 'invoke' calls.
+        try {
+            if (position < chain.size()) {
+                final InterceptorChain.Link link = chain.get(position++);
+                final Object instance = link.resolve(interceptorInstances);
 
-            if (nextMethod.getParameterTypes().length == 1 && nextMethod.getParameterTypes()[0] == InvocationContext.class) {
-                return new InterceptorInvocation(nextInstance, nextMethod, this);
-            } else {
-                return new LifecycleInvocation(nextInstance, nextMethod, this, parameters);
-            }
-        } else if (method != null) {
-            //EJB 3.1, it is allowed that timeout method does not have parameter Timer.class,
-            //However, while invoking the timeout method, the timer value is passed, as it is also required by InnvocationContext.getTimer() method
-            Object[] methodParameters;
-            if (operation.equals(Operation.TIMEOUT) && method.getParameterTypes().length == 0) {
-                methodParameters = new Object[0];
+                if (link.around) {
+                    if (self == null) self = new Object[]{this};
+                    return link.method.invoke(instance, self);
+                }
+
+                // invoke the callback, then proceed so callbacks in subclasses get invoked
+                link.method.invoke(instance, parameters);
+                return proceed();
+            } else if (method != null) {
+                //EJB 3.1, it is allowed that timeout method does not have parameter Timer.class,
+                //However, while invoking the timeout method, the timer value is passed, as it is also required by InnvocationContext.getTimer() method
+                if (operation == Operation.TIMEOUT && getParameterTypes().length == 0) {
+                    return method.invoke(target);
+                }
+                return method.invoke(target, parameters);
             } else {
-                methodParameters = parameters;
+                return null;
             }
-            return new BeanInvocation(target, method, methodParameters);
-        } else {
-            return new NoOpInvocation();
-        }
-    }
-
-    public Object proceed() throws Exception {
-        // The bulk of the logic of this method has intentionally been moved
-        // out so stepping through a large stack in a debugger can be done quickly.
-        // Simply put one break point on 'next.invoke()' or one inside that method.
-        try {
-            Invocation next = next();
-            return next.invoke();
         } catch (InvocationTargetException e) {
             throw unwrapInvocationTargetException(e);
         }
     }
 
-    private abstract static class Invocation {
-        private final Method method;
-        private final Object[] args;
-        private final Object target;
-
-        public Invocation(Object target, Method method, Object[] args) {
-            this.target = target;
-            this.method = method;
-            this.args = args;
-        }
-        public Object invoke() throws Exception {
-            
-            Object value = method.invoke(target, args);
-            return value;
-        }
-
-
-        public String toString() {
-            return method.getDeclaringClass().getName() + "." + method.getName();
-        }
-    }
-
-    private static class BeanInvocation extends Invocation {
-        public BeanInvocation(Object target, Method method, Object[] args) {
-            super(target, method, args);
-        }
-    }
-
-    private static class InterceptorInvocation extends Invocation {
-        public InterceptorInvocation(Object target, Method method, InvocationContext invocationContext) {
-            super(target, method, new Object[] {invocationContext});
-        }
-    }
-
-    private static class LifecycleInvocation extends Invocation {
-        private final InvocationContext invocationContext;
-
-        public LifecycleInvocation(Object target, Method method, InvocationContext invocationContext, Object[] args) {
-            super(target, method, args);
-            this.invocationContext = invocationContext;
-        }
-
-        public Object invoke() throws Exception {
-            // invoke the callback
-            super.invoke();
-
-            // we need to call proceed so callbacks in subclasses get invoked
-            Object value = invocationContext.proceed();
-            return value;
-        }
-    }
-
-    private static class NoOpInvocation extends Invocation {
-        public NoOpInvocation() {
-            super(null, null, null);
-        }
-
-        public Object invoke() throws IllegalAccessException, InvocationTargetException {
-            return null;
-        }
-    }
-
     // todo verify excpetion types
 
     /**
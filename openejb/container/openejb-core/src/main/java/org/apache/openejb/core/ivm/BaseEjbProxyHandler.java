@@ -20,14 +20,9 @@ import static org.apache.openejb.core.ivm.IntraVmCopyMonitor.State.COPY;
 import static org.apache.openejb.core.ivm.IntraVmCopyMonitor.State.CLASSLOADER_COPY;
 import static org.apache.openejb.core.ivm.IntraVmCopyMonitor.State.NONE;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
-import java.io.NotSerializableException;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
@@ -61,11 +56,16 @@ import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.spi.ContainerSystem;
 import org.apache.openejb.spi.SecurityService;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
 import org.apache.openejb.util.proxy.InvocationHandler;
 import org.apache.openejb.util.proxy.ProxyManager;
 
 public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializable {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, BaseEjbProxyHandler.class);
     private static final String OPENEJB_LOCALCOPY = "openejb.localcopy";
+    private static final String OPENEJB_LOCALCOPY_STRATEGY = "openejb.localcopy.strategy";
+    private static final CopyStrategy SERIALIZATION = new SerializationCopyStrategy();
     private IntraVmCopyMonitor.State strategy = NONE;
 
     private static class ProxyRegistry {
@@ -106,6 +106,7 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
     protected final InterfaceType interfaceType;
     private transient WeakHashMap<Class,Object> interfaces;
     private transient WeakReference<Class> mainInterface;
+    private transient CopyStrategy copyStrategy;
 
     public BaseEjbProxyHandler(BeanContext beanContext, Object pk, InterfaceType interfaceType, List<Class> interfaces, Class mainInterface) {
         this.container = (RpcContainer) beanContext.getContainer();
@@ -511,21 +512,36 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
             return object;
         }
 
+        // classes have to be resolved again in the target classloader
+        if (IntraVmCopyMonitor.state() == CLASSLOADER_COPY) return SERIALIZATION.copy(object);
+
+        return getCopyStrategy().copy(object);
+    }
+
+    private CopyStrategy getCopyStrategy() {
+        if (copyStrategy == null) {
+            final SystemInstance system = SystemInstance.get();
+            CopyStrategy strategy = system.getComponent(CopyStrategy.class);
+            if (strategy == null) {
+                strategy = createCopyStrategy(system.getOptions().get(OPENEJB_LOCALCOPY_STRATEGY, "serialization"));
+                system.setComponent(CopyStrategy.class, strategy);
+            }
+            copyStrategy = strategy;
+        }
+        return copyStrategy;
+    }
+
+    private static CopyStrategy createCopyStrategy(String name) {
+        if ("serialization".equalsIgnoreCase(name)) return SERIALIZATION;
+        if ("reflection".equalsIgnoreCase(name)) return new ReflectionCopyStrategy();
 
-        ByteArrayOutputStream baos = null;
         try {
-            baos = new ByteArrayOutputStream(128);
-            ObjectOutputStream out = new ObjectOutputStream(baos);
-            out.writeObject(object);
-            out.close();
-        } catch (NotSerializableException e) {
-            throw (IOException) new NotSerializableException(e.getMessage()+" : The EJB specification restricts remote interfaces to only serializable data types.  This can be disabled for in-vm use with the "+OPENEJB_LOCALCOPY+"=false system property.").initCause(e);
-        }
-
-        ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-        ObjectInputStream in = new EjbObjectInputStream(bais);
-        Object obj = in.readObject();
-        return (T) obj;
+            final ClassLoader loader = BaseEjbProxyHandler.class.getClassLoader();
+            return (CopyStrategy) loader.loadClass(name).newInstance();
+        } catch (Exception e) {
+            logger.error("Cannot create " + OPENEJB_LOCALCOPY_STRATEGY + " '" + name + "', using serialization", e);
+            return SERIALIZATION;
+        }
     }
 
     public void invalidateReference() {
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm;
+
+import java.io.IOException;
+
+/**
+ * Copies the arguments, return values and exceptions of calls made
+ * through remote views inside the same VM so they are passed by value.
+ * <p/>
+ * The strategy used is selected with the openejb.localcopy.strategy
+ * property, either "serialization" (default), "reflection" or the name
+ * of a class implementing this interface with a no-arg constructor.
+ * It can also be set as a SystemInstance component.
+ * <p/>
+ * Copies that must load classes in another classloader always go
+ * through serialization regardless of the strategy.
+ *
+ * @version $Rev$ $Date$
+ */
+public interface CopyStrategy {
+
+    <T> T copy(T object) throws IOException, ClassNotFoundException;
+
+}
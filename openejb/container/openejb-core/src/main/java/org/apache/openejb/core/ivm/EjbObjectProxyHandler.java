@@ -16,10 +16,10 @@
  */
 package org.apache.openejb.core.ivm;
 
-import org.apache.openejb.AppContext;
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.InterfaceType;
 import org.apache.openejb.OpenEJBRuntimeException;
+import org.apache.openejb.core.AsynchronousPool;
 import org.apache.openejb.core.ServerFederation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.spi.ApplicationServer;
@@ -246,13 +246,14 @@ public abstract class EjbObjectProxyHandler extends BaseEjbProxyHandler {
         AtomicBoolean asynchronousCancelled = new AtomicBoolean(false);
         AsynchronousCall asynchronousCall = new AsynchronousCall(interfce, method, args, asynchronousCancelled);
         try {
-            Future<Object> retValue = beanContext.getModuleContext().getAppContext().submitTask(asynchronousCall);
+            AsynchronousPool asynchronousPool = beanContext.getModuleContext().getAppContext().getAsynchronousPool(beanContext);
+            Future<Object> retValue = asynchronousPool.submit(asynchronousCall);
             if (method.getReturnType() == Void.TYPE) {
                 return null;
             }
-            return new FutureAdapter<Object>(retValue, asynchronousCancelled, beanContext.getModuleContext().getAppContext());
+            return new FutureAdapter<Object>(retValue, asynchronousCancelled, asynchronousPool);
         } catch (RejectedExecutionException e) {
-            throw new EJBException("fail to allocate internal resource to execute the target task", e);
+            throw new EJBException("fail to allocate internal resource to execute the target task: " + e.getMessage(), e);
         }
     }
 
@@ -317,14 +318,14 @@ public abstract class EjbObjectProxyHandler extends BaseEjbProxyHandler {
 
         private AtomicBoolean asynchronousCancelled;
 
-        private AppContext appContext;
+        private AsynchronousPool asynchronousPool;
 
         private volatile boolean canceled;
 
-        public FutureAdapter(Future<T> target, AtomicBoolean asynchronousCancelled, AppContext appContext) {
+        public FutureAdapter(Future<T> target, AtomicBoolean asynchronousCancelled, AsynchronousPool asynchronousPool) {
             this.target = target;
             this.asynchronousCancelled = asynchronousCancelled;
-            this.appContext = appContext;
+            this.asynchronousPool = asynchronousPool;
         }
 
         @Override
@@ -343,7 +344,7 @@ public abstract class EjbObjectProxyHandler extends BaseEjbProxyHandler {
             if(canceled) {
                 return true;
             }
-            if (appContext.removeTask((Runnable) target)) {
+            if (asynchronousPool.remove((Runnable) target)) {
                 //We successfully remove the task from the queue
                 canceled = true;
                 return true;
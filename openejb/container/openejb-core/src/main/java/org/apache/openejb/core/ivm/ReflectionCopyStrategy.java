@@ -0,0 +1,444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Deep copies objects field by field instead of serializing them.
+ * <p/>
+ * The way a class is copied is computed once and cached:
+ * <p/>
+ * - immutable JDK types (String, boxed primitives, BigInteger, BigDecimal,
+ * UUID, Locale, URI, Class, enums and java.time types) are not copied
+ * - java.util.Date and the java.sql date types are cloned
+ * - arrays are copied element by element, primitive arrays are cloned
+ * - ArrayList, LinkedList, HashMap, LinkedHashMap, HashSet and
+ * LinkedHashSet are rebuilt with copied elements
+ * - other Serializable classes get a new instance created the way
+ * serialization does it, and their non-transient fields copied
+ * <p/>
+ * Classes that customize their serialization (writeObject, readObject,
+ * writeReplace, readResolve, serialPersistentFields, Externalizable),
+ * proxies, non Serializable classes and any class whose fields cannot
+ * be accessed are copied with the fallback strategy, serialization by
+ * default, which also produces the usual NotSerializableException.
+ * <p/>
+ * Shared references and cycles in the object graph are preserved.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ReflectionCopyStrategy implements CopyStrategy {
+
+    private static final Set<Class<?>> IMMUTABLE = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            String.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class,
+            Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class,
+            Locale.class, URI.class, Class.class));
+
+    private static final Object REFLECTION_FACTORY;
+    private static final Method NEW_CONSTRUCTOR_FOR_SERIALIZATION;
+
+    static {
+        Object factory = null;
+        Method method = null;
+        try {
+            final Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+            factory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+            method = factoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+        } catch (Throwable e) {
+            // not available on this VM, everything but the
+            // well known types will use the fallback strategy
+            factory = null;
+            method = null;
+        }
+        REFLECTION_FACTORY = factory;
+        NEW_CONSTRUCTOR_FOR_SERIALIZATION = method;
+    }
+
+    // plans of the classes which can't be undeployed, bootstrap and container classes
+    private final ConcurrentMap<Class<?>, Plan> systemPlans = new ConcurrentHashMap<Class<?>, Plan>();
+
+    // plans of application classes, a plan references its class through its
+    // fields and constructor so it is only softly held, letting the class and
+    // its classloader be collected once the application is undeployed
+    private final Map<Class<?>, SoftReference<Plan>> plans = Collections.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<Plan>>());
+    private final CopyStrategy fallback;
+
+    public ReflectionCopyStrategy() {
+        this(new SerializationCopyStrategy());
+    }
+
+    public ReflectionCopyStrategy(final CopyStrategy fallback) {
+        this.fallback = fallback;
+    }
+
+    public <T> T copy(final T object) throws IOException, ClassNotFoundException {
+        if (object == null) return null;
+        //noinspection unchecked
+        return (T) copy(object, new Copies());
+    }
+
+    private Object copy(final Object object, final Copies copies) throws IOException, ClassNotFoundException {
+        if (object == null) return null;
+
+        final Plan plan = plan(object.getClass());
+        if (plan == IMMUTABLE_PLAN) return object;
+
+        final Object copied = copies.get(object);
+        if (copied != null) return copied;
+
+        return plan.copy(object, copies);
+    }
+
+    private Plan plan(final Class<?> type) {
+        final ClassLoader loader = type.getClassLoader();
+        if (loader == null || loader == ReflectionCopyStrategy.class.getClassLoader()) {
+            Plan plan = systemPlans.get(type);
+            if (plan == null) {
+                plan = createPlan(type);
+                final Plan existing = systemPlans.putIfAbsent(type, plan);
+                if (existing != null) plan = existing;
+            }
+            return plan;
+        }
+
+        final SoftReference<Plan> reference = plans.get(type);
+        Plan plan = (reference == null) ? null : reference.get();
+        if (plan == null) {
+            // two threads may create the same plan, either one will do
+            plan = createPlan(type);
+            plans.put(type, new SoftReference<Plan>(plan));
+        }
+        return plan;
+    }
+
+    private Plan createPlan(final Class<?> type) {
+        if (IMMUTABLE.contains(type)) return IMMUTABLE_PLAN;
+        if (Enum.class.isAssignableFrom(type)) return IMMUTABLE_PLAN;
+        if (type.getName().startsWith("java.time.")) return IMMUTABLE_PLAN;
+
+        if (type.isArray()) {
+            if (type.getComponentType().isPrimitive()) return PRIMITIVE_ARRAY_PLAN;
+            return new ObjectArrayPlan();
+        }
+
+        if (type == Date.class || type == java.sql.Date.class || type == java.sql.Time.class || type == java.sql.Timestamp.class) {
+            return DATE_PLAN;
+        }
+
+        if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class || type == LinkedHashSet.class) {
+            return new CollectionPlan();
+        }
+
+        if (type == HashMap.class || type == LinkedHashMap.class) {
+            return new MapPlan();
+        }
+
+        if (!Serializable.class.isAssignableFrom(type)
+                || Externalizable.class.isAssignableFrom(type)
+                || Proxy.isProxyClass(type)
+                || type.getName().startsWith("java.")
+                || type.getName().startsWith("javax.")
+                || hasCustomSerialization(type)) {
+            return new FallbackPlan();
+        }
+
+        try {
+            return new FieldsPlan(type);
+        } catch (Exception e) {
+            return new FallbackPlan();
+        }
+    }
+
+    private static boolean hasCustomSerialization(final Class<?> type) {
+        // writeReplace and readResolve are inherited
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            if (declares(c, "writeReplace") || declares(c, "readResolve")) return true;
+        }
+
+        for (Class<?> c = type; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass()) {
+            if (declares(c, "writeObject", ObjectOutputStream.class)) return true;
+            if (declares(c, "readObject", ObjectInputStream.class)) return true;
+            if (declares(c, "readObjectNoData")) return true;
+            try {
+                c.getDeclaredField("serialPersistentFields");
+                return true;
+            } catch (NoSuchFieldException e) {
+                // good
+            }
+        }
+        return false;
+    }
+
+    private static boolean declares(final Class<?> c, final String name, final Class<?>... parameters) {
+        try {
+            c.getDeclaredMethod(name, parameters);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static class Copies {
+        private Map<Object, Object> copies;
+
+        public Object get(final Object original) {
+            return (copies == null) ? null : copies.get(original);
+        }
+
+        public void put(final Object original, final Object copy) {
+            if (copies == null) copies = new IdentityHashMap<Object, Object>();
+            copies.put(original, copy);
+        }
+    }
+
+    private static interface Plan {
+        Object copy(Object object, Copies copies) throws IOException, ClassNotFoundException;
+    }
+
+    private static final Plan IMMUTABLE_PLAN = new Plan() {
+        public Object copy(final Object object, final Copies copies) {
+            return object;
+        }
+    };
+
+    private static final Plan DATE_PLAN = new Plan() {
+        public Object copy(final Object object, final Copies copies) {
+            final Object copy = ((Date) object).clone();
+            copies.put(object, copy);
+            return copy;
+        }
+    };
+
+    private static final Plan PRIMITIVE_ARRAY_PLAN = new Plan() {
+        public Object copy(final Object object, final Copies copies) {
+            final int length = Array.getLength(object);
+            final Object copy = Array.newInstance(object.getClass().getComponentType(), length);
+            System.arraycopy(object, 0, copy, 0, length);
+            copies.put(object, copy);
+            return copy;
+        }
+    };
+
+    private class ObjectArrayPlan implements Plan {
+        public Object copy(final Object object, final Copies copies) throws IOException, ClassNotFoundException {
+            final Object[] array = (Object[]) object;
+            final Object[] copy = (Object[]) Array.newInstance(array.getClass().getComponentType(), array.length);
+            copies.put(object, copy);
+            for (int i = 0; i < array.length; i++) {
+                copy[i] = ReflectionCopyStrategy.this.copy(array[i], copies);
+            }
+            return copy;
+        }
+    }
+
+    private class CollectionPlan implements Plan {
+        public Object copy(final Object object, final Copies copies) throws IOException, ClassNotFoundException {
+            final Collection<?> collection = (Collection<?>) object;
+            final Collection<Object> copy;
+            if (object instanceof ArrayList) {
+                copy = new ArrayList<Object>(collection.size());
+            } else if (object instanceof LinkedList) {
+                copy = new LinkedList<Object>();
+            } else if (object instanceof LinkedHashSet) {
+                copy = new LinkedHashSet<Object>(Math.max(16, (int) (collection.size() / .75f) + 1));
+            } else {
+                copy = new HashSet<Object>(Math.max(16, (int) (collection.size() / .75f) + 1));
+            }
+            copies.put(object, copy);
+            for (final Object o : collection) {
+                copy.add(ReflectionCopyStrategy.this.copy(o, copies));
+            }
+            return copy;
+        }
+    }
+
+    private class MapPlan implements Plan {
+        public Object copy(final Object object, final Copies copies) throws IOException, ClassNotFoundException {
+            final Map<?, ?> map = (Map<?, ?>) object;
+            final int capacity = Math.max(16, (int) (map.size() / .75f) + 1);
+            final Map<Object, Object> copy = (object instanceof LinkedHashMap) ?
+                    new LinkedHashMap<Object, Object>(capacity) :
+                    new HashMap<Object, Object>(capacity);
+            copies.put(object, copy);
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(ReflectionCopyStrategy.this.copy(entry.getKey(), copies), ReflectionCopyStrategy.this.copy(entry.getValue(), copies));
+            }
+            return copy;
+        }
+    }
+
+    private class FallbackPlan implements Plan {
+        public Object copy(final Object object, final Copies copies) throws IOException, ClassNotFoundException {
+            final Object copy = fallback.copy(object);
+            copies.put(object, copy);
+            return copy;
+        }
+    }
+
+    private class FieldsPlan implements Plan {
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+        private final char[] kinds;
+
+        private FieldsPlan(final Class<?> type) throws Exception {
+            if (NEW_CONSTRUCTOR_FOR_SERIALIZATION == null) throw new UnsupportedOperationException("ReflectionFactory not available");
+
+            final List<Field> list = new ArrayList<Field>();
+
+            Class<?> c = type;
+            for (; c != null && Serializable.class.isAssignableFrom(c); c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    final int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+                    field.setAccessible(true);
+                    list.add(field);
+                }
+            }
+
+            // Like serialization, the first non-serializable
+            // superclass must have a no-arg constructor
+            final Constructor<?> superConstructor = (c == null ? Object.class : c).getDeclaredConstructor();
+            final int modifiers = superConstructor.getModifiers();
+            if (Modifier.isPrivate(modifiers)) throw new IllegalStateException("No accessible no-arg constructor");
+            if (!Modifier.isPublic(modifiers) && !Modifier.isProtected(modifiers) && !samePackage(type, c)) {
+                throw new IllegalStateException("No accessible no-arg constructor");
+            }
+
+            constructor = (Constructor<?>) NEW_CONSTRUCTOR_FOR_SERIALIZATION.invoke(REFLECTION_FACTORY, type, superConstructor);
+            constructor.setAccessible(true);
+
+            fields = list.toArray(new Field[list.size()]);
+            kinds = new char[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                final Class<?> fieldType = fields[i].getType();
+                if (fieldType == int.class) kinds[i] = 'I';
+                else if (fieldType == long.class) kinds[i] = 'J';
+                else if (fieldType == boolean.class) kinds[i] = 'Z';
+                else if (fieldType == byte.class) kinds[i] = 'B';
+                else if (fieldType == char.class) kinds[i] = 'C';
+                else if (fieldType == short.class) kinds[i] = 'S';
+                else if (fieldType == float.class) kinds[i] = 'F';
+                else if (fieldType == double.class) kinds[i] = 'D';
+                else kinds[i] = 'L';
+            }
+        }
+
+        private boolean samePackage(final Class<?> a, final Class<?> b) {
+            return a.getClassLoader() == b.getClassLoader() && packageName(a).equals(packageName(b));
+        }
+
+        private String packageName(final Class<?> c) {
+            final String name = c.getName();
+            final int dot = name.lastIndexOf('.');
+            return (dot < 0) ? "" : name.substring(0, dot);
+        }
+
+        public Object copy(final Object object, final Copies copies) throws IOException, ClassNotFoundException {
+            final Object copy;
+            try {
+                copy = constructor.newInstance();
+            } catch (InstantiationException e) {
+                return fallback(object, copies);
+            } catch (IllegalAccessException e) {
+                return fallback(object, copies);
+            } catch (InvocationTargetException e) {
+                return fallback(object, copies);
+            }
+
+            copies.put(object, copy);
+
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    final Field field = fields[i];
+                    switch (kinds[i]) {
+                        case 'I':
+                            field.setInt(copy, field.getInt(object));
+                            break;
+                        case 'J':
+                            field.setLong(copy, field.getLong(object));
+                            break;
+                        case 'Z':
+                            field.setBoolean(copy, field.getBoolean(object));
+                            break;
+                        case 'B':
+                            field.setByte(copy, field.getByte(object));
+                            break;
+                        case 'C':
+                            field.setChar(copy, field.getChar(object));
+                            break;
+                        case 'S':
+                            field.setShort(copy, field.getShort(object));
+                            break;
+                        case 'F':
+                            field.setFloat(copy, field.getFloat(object));
+                            break;
+                        case 'D':
+                            field.setDouble(copy, field.getDouble(object));
+                            break;
+                        default:
+                            field.set(copy, ReflectionCopyStrategy.this.copy(field.get(object), copies));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw (IOException) new IOException("Cannot copy " + object.getClass().getName()).initCause(e);
+            }
+
+            return copy;
+        }
+
+        private Object fallback(final Object object, final Copies copies) throws IOException, ClassNotFoundException {
+            final Object copy = ReflectionCopyStrategy.this.fallback.copy(object);
+            copies.put(object, copy);
+            return copy;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.InstanceContext;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.managed.Cache.CacheFilter;
@@ -104,13 +105,28 @@ public class ManagedContainer implements RpcContainer {
     private final SessionContext sessionContext;
 
     public ManagedContainer(Object id, SecurityService securityService) throws SystemException {
-        this.cache = new SimpleCache<Object, Instance>(null, new SimplePassivater(), 1000, 50, new Duration("1 hour"));
+        this.cache = new SimpleCache<Object, Instance>(null, createPassivator(), 1000, 50, new Duration("1 hour"));
         this.containerID = id;
         this.securityService = securityService;
         cache.setListener(new StatefulCacheListener());
         sessionContext = new ManagedContext(securityService, new ManagedUserTransaction(new EjbUserTransaction(), entityManagerRegistry));
     }
 
+    /**
+     * The passivator can be replaced, for example by the memory mapped
+     * one, with the openejb.managed.passivator system property
+     */
+    private static PassivationStrategy createPassivator() throws SystemException {
+        String className = SystemInstance.get().getOptions().get("openejb.managed.passivator", SimplePassivater.class.getName());
+        try {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader == null) classLoader = ManagedContainer.class.getClassLoader();
+            return (PassivationStrategy) classLoader.loadClass(className).newInstance();
+        } catch (Exception e) {
+            throw new SystemException("Cannot create passivator " + className, e);
+        }
+    }
+
     private Map<Method, MethodType> getLifecycleMethodsOfInterface(BeanContext beanContext) {
         Map<Method, MethodType> methods = new HashMap<Method, MethodType>();
 
@@ -258,6 +274,23 @@ public class ManagedContainer implements RpcContainer {
                 return bean == instance.beanContext;
             }
         });
+
+        if (deploymentsById.isEmpty()) {
+            closePassivator();
+        }
+    }
+
+    /**
+     * The memory mapped passivator holds mapped segment files, they are
+     * released once no bean of this container is deployed anymore
+     */
+    private void closePassivator() {
+        if (!(cache instanceof SimpleCache)) return;
+
+        final PassivationStrategy passivator = ((SimpleCache<Object, Instance>) cache).getPassivator();
+        if (passivator instanceof MappedPassivater) {
+            ((MappedPassivater) passivator).close();
+        }
     }
 
     public synchronized void deploy(BeanContext beanContext) throws OpenEJBException {
@@ -399,7 +432,7 @@ public class ManagedContainer implements RpcContainer {
 
                     // Setup for business invocation
                     Method createOrInit = beanContext.getMatchingBeanMethod(callMethod);
-                    createContext.set(Method.class, createOrInit);
+                    createContext.set(ThreadContext.METHOD, createOrInit);
 
                     // Initialize interceptor stack
                     InterceptorStack interceptorStack = new InterceptorStack(instance.bean, createOrInit, Operation.CREATE, new ArrayList<InterceptorData>(), new HashMap<String, Object>());
@@ -487,7 +520,7 @@ public class ManagedContainer implements RpcContainer {
                 callContext.setCurrentAllowedStates(null);
                 callContext.setInvokedInterface(callInterface);
                 runMethod = beanContext.getMatchingBeanMethod(callMethod);
-                callContext.set(Method.class, runMethod);
+                callContext.set(ThreadContext.METHOD, runMethod);
 
                 // Do not pass arguments on home.remove(remote) calls
                 Class<?> declaringClass = callMethod.getDeclaringClass();
@@ -585,10 +618,10 @@ public class ManagedContainer implements RpcContainer {
                 callContext.setCurrentAllowedStates(null);
                 callContext.setInvokedInterface(callInterface);
                 Method runMethod = beanContext.getMatchingBeanMethod(callMethod);
-                callContext.set(Method.class, runMethod);
+                callContext.set(ThreadContext.METHOD, runMethod);
 
                 // Initialize interceptor stack
-                List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
+                InterceptorChain interceptors = beanContext.getMethodInterceptorChain(runMethod, Operation.BUSINESS);
                 InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS, interceptors, instance.interceptors);
 
                 // Invoke
@@ -34,7 +34,7 @@ import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.timer.EjbTimerService;
-import org.apache.openejb.core.interceptor.InterceptorData;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.transaction.TransactionPolicy;
 import static org.apache.openejb.core.transaction.EjbTransactionUtil.handleApplicationException;
@@ -62,7 +62,6 @@ import javax.validation.Validator;
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.management.ManagementFactory;
-import java.util.List;
 import java.util.Map;
 import java.util.Arrays;
 import java.util.TreeSet;
@@ -73,6 +72,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MdbContainer implements RpcContainer {
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
     private static final Object[] NO_ARGS = new Object[0];
+    private static final ThreadContext.Slot<MdbCallContext> MDB_CALL_CONTEXT = ThreadContext.slot(MdbCallContext.class);
 
     private final Object containerID;
     private final SecurityService securityService;
@@ -320,7 +320,7 @@ public class MdbContainer implements RpcContainer {
 
         // create mdb context
         MdbCallContext mdbCallContext = new MdbCallContext();
-        callContext.set(MdbCallContext.class, mdbCallContext);
+        callContext.set(MDB_CALL_CONTEXT, mdbCallContext);
         mdbCallContext.deliveryMethod = method;
         mdbCallContext.oldCallContext = oldContext;
 
@@ -352,7 +352,7 @@ public class MdbContainer implements RpcContainer {
         // get the context data
         ThreadContext callContext = ThreadContext.getThreadContext();
         BeanContext deployInfo = callContext.getBeanContext();
-        MdbCallContext mdbCallContext = callContext.get(MdbCallContext.class);
+        MdbCallContext mdbCallContext = callContext.get(MDB_CALL_CONTEXT);
 
         if (mdbCallContext == null) {
             throw new IllegalStateException("beforeDelivery was not called");
@@ -376,7 +376,7 @@ public class MdbContainer implements RpcContainer {
 
             // determine the target method on the bean instance class
             final Method targetMethod = deployInfo.getMatchingBeanMethod(method);
-            callContext.set(Method.class, targetMethod);
+            callContext.set(ThreadContext.METHOD, targetMethod);
 
             // invoke the target method
             returnValue = _invoke(instance, targetMethod, args, deployInfo, type, mdbCallContext);
@@ -405,9 +405,9 @@ public class MdbContainer implements RpcContainer {
             ApplicationException {
         Object returnValue;
         try {
-            List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-            InterceptorStack interceptorStack = new InterceptorStack(((Instance) instance).bean, runMethod, interfaceType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS,
-                    interceptors, ((Instance) instance).interceptors);
+            Operation operation = interfaceType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS;
+            InterceptorChain interceptors = beanContext.getMethodInterceptorChain(runMethod, operation);
+            InterceptorStack interceptorStack = new InterceptorStack(((Instance) instance).bean, runMethod, operation, interceptors, ((Instance) instance).interceptors);
             returnValue = interceptorStack.invoke(args);
             return returnValue;
         } catch (Throwable e) {
@@ -439,7 +439,7 @@ public class MdbContainer implements RpcContainer {
     public void afterDelivery(Object instance) throws SystemException {
         // get the mdb call context
         ThreadContext callContext = ThreadContext.getThreadContext();
-        MdbCallContext mdbCallContext = callContext.get(MdbCallContext.class);
+        MdbCallContext mdbCallContext = callContext.get(MDB_CALL_CONTEXT);
 
         // invoke the tx after method
         try {
@@ -463,7 +463,7 @@ public class MdbContainer implements RpcContainer {
         }
         try {
             // if we have an mdb call context we need to invoke the after invoke method
-            MdbCallContext mdbCallContext = callContext.get(MdbCallContext.class);
+            MdbCallContext mdbCallContext = callContext.get(MDB_CALL_CONTEXT);
             if (mdbCallContext != null) {
                 try {
                     afterInvoke(mdbCallContext.txPolicy, callContext);
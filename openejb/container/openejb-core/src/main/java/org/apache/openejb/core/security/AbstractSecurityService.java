@@ -25,12 +25,12 @@ import org.apache.openejb.core.security.jacc.BasicJaccProvider;
 import org.apache.openejb.core.security.jacc.BasicPolicyConfiguration;
 import org.apache.openejb.InterfaceType;
 import org.apache.openejb.BeanContext;
+import org.apache.openejb.BeanType;
 import org.apache.openejb.loader.SystemInstance;
 
 import javax.security.auth.Subject;
 import javax.security.auth.login.LoginException;
 import javax.security.jacc.PolicyContext;
-import javax.security.jacc.EJBMethodPermission;
 import javax.security.jacc.PolicyConfigurationFactory;
 import java.io.Serializable;
 import java.security.AccessControlContext;
@@ -38,11 +38,11 @@ import java.security.PrivilegedAction;
 import java.security.AccessController;
 import java.security.Principal;
 import java.security.AccessControlException;
-import java.security.Permission;
 import java.security.Policy;
 import java.util.UUID;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.Collections;
 import java.util.Properties;
@@ -61,6 +61,7 @@ import java.lang.reflect.Method;
 public abstract class AbstractSecurityService implements SecurityService<UUID>, ThreadContextListener, BasicPolicyConfiguration.RoleResolver {
     static private final Map<Object, Identity> identities = new ConcurrentHashMap<Object, Identity>();
     static protected final ThreadLocal<Identity> clientIdentity = new ThreadLocal<Identity>();
+    static private final ThreadContext.Slot<SecurityContext> SECURITY_CONTEXT = ThreadContext.slot(SecurityContext.class);
     protected String defaultUser = "guest";
     private String realmName = "PropertiesLogin";
     protected Subject defaultSubject;
@@ -75,7 +76,7 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
 
         installJacc();
 
-        ThreadContext.addThreadContextListener(this);
+        ThreadContext.addThreadContextListener(this, EnumSet.allOf(BeanType.class));
 
         // set the default subject and the default context
         updateSecurityContext();
@@ -141,7 +142,7 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
         final String moduleID = newContext.getBeanContext().getModuleID();
         PolicyContext.setContextID(moduleID);
 
-        SecurityContext securityContext = (oldContext != null) ? oldContext.get(SecurityContext.class) : null;
+        SecurityContext securityContext = (oldContext != null) ? oldContext.get(SECURITY_CONTEXT) : null;
 
         final BeanContext callingBeanContext = (oldContext != null)? oldContext.getBeanContext(): null;
         final Subject runAsSubject = getRunAsSubject(callingBeanContext);
@@ -153,13 +154,13 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
 
             final Identity identity = clientIdentity.get();
             if (identity != null){
-                securityContext = new SecurityContext(identity.subject);
+                securityContext = identity.getSecurityContext();
             } else {
                 securityContext = defaultContext;
             }
         }
 
-        newContext.set(SecurityContext.class, securityContext);
+        newContext.set(SECURITY_CONTEXT, securityContext);
     }
 
     protected Subject getRunAsSubject(final BeanContext callingBeanContext) {
@@ -227,7 +228,7 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
         if (role == null) throw new IllegalArgumentException("Role must not be null");
 
         final ThreadContext threadContext = ThreadContext.getThreadContext();
-        final SecurityContext securityContext = threadContext.get(SecurityContext.class);
+        final SecurityContext securityContext = threadContext.get(SECURITY_CONTEXT);
 
     	final Set<Group> grps = securityContext.subject.getPrincipals(Group.class);
     	for (final Group grp : grps) {
@@ -247,7 +248,7 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
     @Override
     public Principal getCallerPrincipal() {
         final ThreadContext threadContext = ThreadContext.getThreadContext();
-        final SecurityContext securityContext = threadContext.get(SecurityContext.class);
+        final SecurityContext securityContext = threadContext.get(SECURITY_CONTEXT);
         final Set<Principal> principals = securityContext.subject.getPrincipals();
 
         if (!principals.isEmpty()) {
@@ -264,27 +265,40 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
     @Override
     public boolean isCallerAuthorized(final Method method, final InterfaceType type) {
         final ThreadContext threadContext = ThreadContext.getThreadContext();
-        final SecurityContext securityContext = threadContext.get(SecurityContext.class);
+        final SecurityContext securityContext = threadContext.get(SECURITY_CONTEXT);
 
-        try {
-
-            final BeanContext beanContext = threadContext.getBeanContext();
+        final BeanContext beanContext = threadContext.getBeanContext();
+        final MethodPermissions.Entry entry = beanContext.getMethodPermissions().get(method, type);
 
-            final String ejbName = beanContext.getEjbName();
+        // the caller's last decision for this method holds until the policy changes
+        final long version = getPolicyVersion();
+        if (version != -1) {
+            final Boolean decision = securityContext.getDecision(entry, version);
+            if (decision != null) return decision;
+        }
 
-            String name = (type == null)? null: type.getSpecName();
-            if ("LocalBean".equals(name) || "LocalBeanHome".equals(name)) {
-                name = null;
-            }
+        boolean authorized = true;
+        try {
+            securityContext.acc.checkPermission(entry.getPermission());
+        } catch (AccessControlException e) {
+            authorized = false;
+        }
 
-            final Permission permission = new EJBMethodPermission(ejbName, name, method);
+        if (version != -1) {
+            securityContext.putDecision(entry, version, authorized);
+        }
+        return authorized;
+    }
 
-            if (permission != null) securityContext.acc.checkPermission(permission);
+    /**
+     * @return the version of the JACC policy or -1 if the installed
+     * policy does not tell when its decisions change
+     */
+    private static long getPolicyVersion() {
+        if (!(Policy.getPolicy() instanceof JaccProvider.Policy)) return -1;
 
-        } catch (AccessControlException e) {
-            return false;
-        }
-        return true;
+        final JaccProvider provider = JaccProvider.get();
+        return (provider == null) ? -1 : provider.getPolicyVersion();
     }
 
     protected static void installJacc() {
@@ -339,6 +353,7 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
 
         private final Subject subject;
         private final AccessControlContext acc;
+        private volatile Decisions decisions = Decisions.NONE;
 
         public SecurityContext(final Subject subject) {
             this.subject = subject;
@@ -349,11 +364,37 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
                 }
             }, null);
         }
+
+        private Boolean getDecision(final MethodPermissions.Entry entry, final long version) {
+            final Decisions decisions = this.decisions;
+            return (decisions.version == version) ? decisions.byPermission.get(entry) : null;
+        }
+
+        private void putDecision(final MethodPermissions.Entry entry, final long version, final boolean authorized) {
+            Decisions decisions = this.decisions;
+            if (decisions.version != version) {
+                decisions = new Decisions(version);
+                this.decisions = decisions;
+            }
+            decisions.byPermission.put(entry, authorized);
+        }
+    }
+
+    private static class Decisions {
+        private static final Decisions NONE = new Decisions(-1);
+
+        private final long version;
+        private final Map<MethodPermissions.Entry, Boolean> byPermission = new ConcurrentHashMap<MethodPermissions.Entry, Boolean>();
+
+        private Decisions(final long version) {
+            this.version = version;
+        }
     }
 
     protected static class Identity implements Serializable {
         private final Subject subject;
         private final UUID token;
+        private transient volatile SecurityContext securityContext;
 
         public Identity(final Subject subject) {
             this.subject = subject;
@@ -372,6 +413,18 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
         public UUID getToken() {
             return token;
         }
+
+        /**
+         * Created on first use and kept for the life of the identity
+         */
+        public SecurityContext getSecurityContext() {
+            SecurityContext context = securityContext;
+            if (context == null) {
+                context = new SecurityContext(subject);
+                securityContext = context;
+            }
+            return context;
+        }
     }
 
     public static class Group implements java.security.acl.Group {
@@ -132,4 +132,15 @@ public abstract class JaccProvider {
     public abstract void refresh();
 
     public abstract boolean implies(ProtectionDomain domain, Permission permission);
+
+    /**
+     * A number that changes whenever a policy configuration is opened,
+     * committed or deleted, or the policy is refreshed.  Callers may
+     * reuse an implies decision for as long as the version stays the same.
+     *
+     * @return the current version or -1 if decisions must not be reused
+     */
+    public long getPolicyVersion() {
+        return -1;
+    }
 }
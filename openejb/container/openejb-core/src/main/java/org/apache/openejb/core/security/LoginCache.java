@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.security;
+
+import org.apache.openejb.monitoring.Managed;
+
+import javax.security.auth.Subject;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the Subject of a successful login for a limited time so
+ * that repeated logins with the same credentials do not go through
+ * the JAAS login modules again.
+ *
+ * Entries are keyed by realm, username and a SHA-256 digest of the
+ * password; the password itself is never held.  Only successful
+ * logins are cached, so a wrong password always reaches the login
+ * modules.  The cached Subject is a read-only copy, which keeps a
+ * logout of the original LoginContext from emptying it.
+ *
+ * The cache is bounded by size.  When full, expired entries are
+ * dropped first and then arbitrary entries until there is room.
+ *
+ * @version $Rev$ $Date$
+ */
+@Managed
+public class LoginCache {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private volatile int maxSize;
+    private volatile long timeToLive;
+
+    @Managed
+    private final AtomicLong hits = new AtomicLong();
+
+    @Managed
+    private final AtomicLong misses = new AtomicLong();
+
+    @Managed
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LoginCache(final int maxSize, final long timeToLiveMillis) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLiveMillis;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && timeToLive > 0;
+    }
+
+    @Managed
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+        if (!isEnabled()) flush();
+    }
+
+    @Managed
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(final long timeToLiveMillis) {
+        this.timeToLive = timeToLiveMillis;
+        if (!isEnabled()) flush();
+    }
+
+    @Managed
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * @return the cached Subject or null if there is none or it expired
+     */
+    public Subject get(final String realmName, final String username, final String password) {
+        if (!isEnabled()) return null;
+
+        final String key = key(realmName, username, password);
+        final Entry entry = entries.get(key);
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, entry);
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.subject;
+    }
+
+    /**
+     * Caches a read-only copy of the subject and returns that copy
+     */
+    public Subject put(final String realmName, final String username, final String password, final Subject subject) {
+        final Subject copy = new Subject(true, subject.getPrincipals(), subject.getPublicCredentials(), subject.getPrivateCredentials());
+
+        if (!isEnabled()) return copy;
+
+        final long now = System.currentTimeMillis();
+        if (entries.size() >= maxSize) evict(now);
+
+        entries.put(key(realmName, username, password), new Entry(copy, now + timeToLive));
+        return copy;
+    }
+
+    /**
+     * Drops every cached login, e.g. after the users or groups changed
+     */
+    @Managed
+    public void flush() {
+        entries.clear();
+    }
+
+    private void evict(final long now) {
+        for (final Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        for (final Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext() && entries.size() >= maxSize;) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static String key(final String realmName, final String username, final String password) {
+        final StringBuilder key = new StringBuilder(realmName.length() + 80);
+        key.append(realmName).append('\u0000');
+        key.append(username).append('\u0000');
+
+        final byte[] digest = digest().digest(String.valueOf(password).getBytes(UTF8));
+        for (final byte b : digest) {
+            key.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+        }
+        return key.toString();
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static class Entry {
+        private final Subject subject;
+        private final long expires;
+
+        private Entry(final Subject subject, final long expires) {
+            this.subject = subject;
+            this.expires = expires;
+        }
+
+        private boolean isExpired(final long now) {
+            return now >= expires;
+        }
+    }
+}
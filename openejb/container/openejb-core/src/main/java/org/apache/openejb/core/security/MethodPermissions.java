@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.security;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.InterfaceType;
+import org.apache.openejb.MethodIndex;
+
+import javax.security.jacc.EJBMethodPermission;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The EJBMethodPermissions of one bean, built once per method and
+ * interface type instead of on every secured invocation.
+ *
+ * The returned {@link Entry} objects are unique to their bean and
+ * compare by identity, so they can key authorization decisions
+ * without mixing up beans of the same name in different modules.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MethodPermissions {
+
+    // one slot per interface type plus one for calls without a type
+    private static final int SLOTS = InterfaceType.values().length + 1;
+
+    private final BeanContext beanContext;
+    private final ConcurrentMap<Method, Entry[]> entries = new ConcurrentHashMap<Method, Entry[]>();
+
+    public MethodPermissions(final BeanContext beanContext) {
+        this.beanContext = beanContext;
+    }
+
+    public Entry get(final Method method, final InterfaceType type) {
+        // methods known to the bean keep their permissions in the method index
+        final MethodIndex.Entry indexed = beanContext.getMethodIndex().get(method);
+
+        Entry[] slots = (indexed != null) ? indexed.getPermissions() : entries.get(method);
+        if (slots == null) {
+            slots = new Entry[SLOTS];
+            final Entry[] existing = entries.putIfAbsent(method, slots);
+            if (existing != null) slots = existing;
+        }
+
+        final int index = MethodIndex.Entry.slot(type);
+
+        Entry entry = slots[index];
+        if (entry == null) {
+            // racing threads build equal entries, the last one written wins
+            entry = new Entry(new EJBMethodPermission(beanContext.getEjbName(), specName(type), method));
+            slots[index] = entry;
+        }
+        return entry;
+    }
+
+    private static String specName(final InterfaceType type) {
+        final String name = (type == null) ? null : type.getSpecName();
+        if ("LocalBean".equals(name) || "LocalBeanHome".equals(name)) {
+            return null;
+        }
+        return name;
+    }
+
+    public static final class Entry {
+        private final EJBMethodPermission permission;
+
+        private Entry(final EJBMethodPermission permission) {
+            this.permission = permission;
+        }
+
+        public EJBMethodPermission getPermission() {
+            return permission;
+        }
+    }
+}
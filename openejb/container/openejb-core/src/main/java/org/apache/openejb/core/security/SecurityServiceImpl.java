@@ -19,24 +19,42 @@ package org.apache.openejb.core.security;
 import org.apache.openejb.core.security.jaas.UsernamePasswordCallbackHandler;
 import org.apache.openejb.core.security.jacc.BasicJaccProvider;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ManagedMBean;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
 import org.apache.openejb.util.ConfUtils;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.security.auth.Subject;
 import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.Set;
 import java.util.UUID;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @version $Rev$ $Date$
  */
 public class SecurityServiceImpl extends AbstractSecurityService {
 
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_SECURITY, SecurityServiceImpl.class);
+
     static private final Map<Object, LoginContext> contexts = new ConcurrentHashMap<Object, LoginContext>();
 
+    // tokens handed out from the login cache, they have no LoginContext to log out of
+    static private final Set<Object> cachedLogins = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+
+    private final LoginCache loginCache = new LoginCache(1000, TimeUnit.MINUTES.toMillis(1));
+
     public SecurityServiceImpl() {
         this(BasicJaccProvider.class.getName());
     }
@@ -44,6 +62,7 @@ public class SecurityServiceImpl extends AbstractSecurityService {
     public SecurityServiceImpl(String jaccProviderClass) {
         super(jaccProviderClass);
         installJaas();
+        registerLoginCache();
 
         try {
             // Perform a login attempt (which should fail)
@@ -68,14 +87,60 @@ public class SecurityServiceImpl extends AbstractSecurityService {
         System.setProperty("java.security.auth.login.config", URLDecoder.decode(loginConfig.toExternalForm()));
     }
 
+    private void registerLoginCache() {
+        final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management");
+        jmxName.set("J2EEServer", "openejb");
+        jmxName.set("ObjectType", "SecurityService");
+        jmxName.set("name", "LoginCache");
+        final ObjectName objectName = jmxName.build();
+
+        try {
+            final MBeanServer server = LocalMBeanServer.get();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new ManagedMBean(loginCache), objectName);
+        } catch (Exception e) {
+            logger.error("Unable to register MBean " + objectName, e);
+        }
+    }
+
+    public LoginCache getLoginCache() {
+        return loginCache;
+    }
+
+    /**
+     * @param size the maximum number of cached logins, 0 disables the cache
+     */
+    public void setLoginCacheSize(int size) {
+        loginCache.setMaxSize(size);
+    }
+
+    /**
+     * @param timeout how long a cached login is reused, 0 disables the cache
+     */
+    public void setLoginCacheTimeout(Duration timeout) {
+        if (timeout.getUnit() == null) timeout.setUnit(TimeUnit.MILLISECONDS);
+        loginCache.setTimeToLive(timeout.getTime(TimeUnit.MILLISECONDS));
+    }
+
     public UUID login(String realmName, String username, String password) throws LoginException {
         if (realmName == null){
             realmName = getRealmName();
         }
+
+        Subject cached = loginCache.get(realmName, username, password);
+        if (cached != null) {
+            UUID token = registerSubject(cached);
+            cachedLogins.add(token);
+            return token;
+        }
+
         LoginContext context = new LoginContext(realmName, new UsernamePasswordCallbackHandler(username, password));
         context.login();
 
         Subject subject = context.getSubject();
+        loginCache.put(realmName, username, password, subject);
 
         UUID token =  registerSubject(subject);
         contexts.put(token, context);
@@ -88,7 +153,12 @@ public class SecurityServiceImpl extends AbstractSecurityService {
      */
     @Override
     public void logout(UUID securityIdentity) throws LoginException {
-        LoginContext context = contexts.get(securityIdentity);
+        if (cachedLogins.remove(securityIdentity)) {
+            super.logout(securityIdentity);
+            return;
+        }
+
+        LoginContext context = contexts.remove(securityIdentity);
         if (null == context) {
             throw new IllegalStateException("Unable to logout. Can not recover LoginContext.");
         }
@@ -19,6 +19,7 @@ package org.apache.openejb.core.security.jaas;
 import org.apache.openejb.util.ConfUtils;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.URLs;
 
 import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
@@ -31,11 +32,14 @@ import javax.security.auth.login.LoginException;
 import javax.security.auth.spi.LoginModule;
 import java.io.IOException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.Enumeration;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.apache.openejb.loader.IO.readProperties;
 
@@ -49,12 +53,15 @@ public class PropertiesLoginModule implements LoginModule {
 
     private static Logger log = Logger.getInstance(LogCategory.OPENEJB_SECURITY, "org.apache.openejb.util.resources");
 
+    // shared by all module instances, a file is only read again once its modification time changed
+    private static final ConcurrentMap<String, PropertiesFile> files = new ConcurrentHashMap<String, PropertiesFile>();
+
     private Subject subject;
     private CallbackHandler callbackHandler;
 
     private boolean debug;
-    private Properties users = new Properties();
-    private Properties groups = new Properties();
+    private Properties users;
+    private Properties groups;
     private String user;
     private Set principals = new LinkedHashSet();
 
@@ -80,13 +87,13 @@ public class PropertiesLoginModule implements LoginModule {
 
     public boolean login() throws LoginException {
         try {
-            users = readProperties(usersUrl);
+            users = load(usersUrl);
         } catch (IOException ioe) {
             throw new LoginException("Unable to load user properties file " + usersUrl.getFile());
         }
 
         try {
-            groups = readProperties(groupsUrl);
+            groups = load(groupsUrl);
         } catch (IOException ioe) {
             throw new LoginException("Unable to load group properties file " + groupsUrl.getFile());
         }
@@ -112,7 +119,7 @@ public class PropertiesLoginModule implements LoginModule {
         if (password == null) throw new FailedLoginException("User does not exist");
         if (!password.equals(new String(tmpPassword))) throw new FailedLoginException("Password does not match");
 
-        users.clear();
+        users = null;
 
         if (debug) {
             log.debug("Logged in as '" + user+"'");
@@ -164,8 +171,54 @@ public class PropertiesLoginModule implements LoginModule {
     }
 
     private void clear() {
-        groups.clear();
+        users = null;
+        groups = null;
         user = null;
     }
 
+    /**
+     * The returned Properties are shared and must not be modified
+     */
+    private static Properties load(final URL url) throws IOException {
+        final String key = url.toExternalForm();
+        final long lastModified = lastModified(url);
+
+        final PropertiesFile file = files.get(key);
+        if (file != null && file.lastModified == lastModified && lastModified != 0) {
+            return file.properties;
+        }
+
+        final Properties properties = readProperties(url);
+        files.put(key, new PropertiesFile(properties, lastModified));
+        return properties;
+    }
+
+    private static long lastModified(final URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            return URLs.toFile(url).lastModified();
+        }
+
+        final URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        try {
+            return connection.getLastModified();
+        } finally {
+            try {
+                connection.getInputStream().close();
+            } catch (IOException e) {
+                // no-op
+            }
+        }
+    }
+
+    private static class PropertiesFile {
+        private final Properties properties;
+        private final long lastModified;
+
+        private PropertiesFile(final Properties properties, final long lastModified) {
+            this.properties = properties;
+            this.lastModified = lastModified;
+        }
+    }
+
 }
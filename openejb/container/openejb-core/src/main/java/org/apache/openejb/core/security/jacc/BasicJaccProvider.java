@@ -27,6 +27,7 @@ import java.security.PermissionCollection;
 import java.security.ProtectionDomain;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @version $Rev$ $Date$
@@ -37,6 +38,8 @@ public class BasicJaccProvider extends JaccProvider {
 
     private final java.security.Policy systemPolicy;
 
+    private final AtomicLong version = new AtomicLong();
+
     public BasicJaccProvider() {
         systemPolicy = Policy.getPolicy();
     }
@@ -46,10 +49,12 @@ public class BasicJaccProvider extends JaccProvider {
 
         if (configuration == null) {
             configuration = createPolicyConfiguration(contextID);
+            configuration.setVersion(version);
             configurations.put(contextID, configuration);
         } else {
             configuration.open(remove);
         }
+        version.incrementAndGet();
 
         return configuration;
     }
@@ -68,6 +73,12 @@ public class BasicJaccProvider extends JaccProvider {
     }
 
     public void refresh() {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public long getPolicyVersion() {
+        return version.get();
     }
 
     public boolean implies(ProtectionDomain domain, Permission permission) {
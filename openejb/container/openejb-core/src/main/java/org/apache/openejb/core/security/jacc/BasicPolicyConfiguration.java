@@ -19,16 +19,21 @@ package org.apache.openejb.core.security.jacc;
 import org.apache.openejb.assembler.classic.DelegatePermissionCollection;
 import org.apache.openejb.loader.SystemInstance;
 
+import javax.security.jacc.EJBMethodPermission;
 import javax.security.jacc.PolicyConfiguration;
 import javax.security.jacc.PolicyContextException;
 import java.security.Permission;
 import java.security.PermissionCollection;
 import java.security.Principal;
 import java.security.ProtectionDomain;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @version $Rev$ $Date$
@@ -44,6 +49,11 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
     protected PermissionCollection unchecked = null;
     protected PermissionCollection excluded = null;
 
+    // decisions of implies by resolved role set, dropped whenever the state changes
+    private static final int MAX_ROLE_SETS = 1024;
+    private final ConcurrentMap<Set<String>, ConcurrentMap<Permission, Boolean>> decisions = new ConcurrentHashMap<Set<String>, ConcurrentMap<Permission, Boolean>>();
+    private AtomicLong version;
+
     protected BasicPolicyConfiguration(String contextID) {
         this.contextID = contextID;
         this.state = OPEN;
@@ -54,16 +64,41 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
     }
 
     public boolean implies(ProtectionDomain domain, Permission permission) {
+        Principal[] principals = domain.getPrincipals();
 
-        if (excluded != null && excluded.implies(permission)) return false;
+        Set<String> roles;
+        if (principals.length == 0) {
+            roles = Collections.emptySet();
+        } else {
+            RoleResolver roleResolver = SystemInstance.get().getComponent(RoleResolver.class);
+            roles = roleResolver.getLogicalRoles(principals, rolePermissionsMap.keySet());
+        }
 
-        if (unchecked != null && unchecked.implies(permission)) return true;
+        // only the bounded set of ejb method permissions is worth remembering
+        if (!(permission instanceof EJBMethodPermission)) return implies(roles, permission);
 
-        Principal[] principals = domain.getPrincipals();
-        if (principals.length == 0) return false;
+        ConcurrentMap<Permission, Boolean> byPermission = decisions.get(roles);
+        if (byPermission == null) {
+            if (decisions.size() >= MAX_ROLE_SETS) decisions.clear();
+
+            byPermission = new ConcurrentHashMap<Permission, Boolean>();
+            ConcurrentMap<Permission, Boolean> existing = decisions.putIfAbsent(roles, byPermission);
+            if (existing != null) byPermission = existing;
+        }
 
-        RoleResolver roleResolver = SystemInstance.get().getComponent(RoleResolver.class);
-        Set<String> roles = roleResolver.getLogicalRoles(principals, rolePermissionsMap.keySet());
+        Boolean decision = byPermission.get(permission);
+        if (decision == null) {
+            decision = implies(roles, permission);
+            byPermission.put(permission, decision);
+        }
+        return decision;
+    }
+
+    private boolean implies(Set<String> roles, Permission permission) {
+
+        if (excluded != null && excluded.implies(permission)) return false;
+
+        if (unchecked != null && unchecked.implies(permission)) return true;
 
         for (String role : roles) {
             PermissionCollection permissions = rolePermissionsMap.get(role);
@@ -160,11 +195,13 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
 
     public void delete() throws PolicyContextException {
         state = DELETED;
+        changed();
     }
 
     public void commit() throws PolicyContextException {
         if (state != OPEN) throw new UnsupportedOperationException("Not in an open state");
         state = IN_SERVICE;
+        changed();
     }
 
     public boolean inService() throws PolicyContextException {
@@ -183,12 +220,26 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
             excluded = null;
         }
         state = OPEN;
+        changed();
     }
 
     int getState() {
         return state;
     }
 
+    /**
+     * The counter to advance when this configuration changes state,
+     * see {@link org.apache.openejb.core.security.JaccProvider#getPolicyVersion()}
+     */
+    void setVersion(AtomicLong version) {
+        this.version = version;
+    }
+
+    private void changed() {
+        decisions.clear();
+        if (version != null) version.incrementAndGet();
+    }
+
     public interface RoleResolver {
         public Set<String> getLogicalRoles(Principal[] principals, Set<String> logicalRoles);
     }
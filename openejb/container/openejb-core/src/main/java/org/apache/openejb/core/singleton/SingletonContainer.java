@@ -25,7 +25,7 @@ import org.apache.openejb.RpcContainer;
 import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
-import org.apache.openejb.core.interceptor.InterceptorData;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.timer.EjbTimerService;
 import org.apache.openejb.core.transaction.TransactionPolicy;
@@ -45,10 +45,7 @@ import javax.ejb.EJBLocalObject;
 import javax.ejb.EJBObject;
 import javax.interceptor.AroundInvoke;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.concurrent.locks.Lock;
 
 import static org.apache.openejb.core.transaction.EjbTransactionUtil.*;
@@ -81,6 +78,10 @@ public class SingletonContainer implements RpcContainer {
         this.accessTimeout = duration;
     }
 
+    public void setStripedReadLock(boolean stripedReadLock) {
+        instanceManager.setStripedReadLock(stripedReadLock);
+    }
+
     @Override
     public synchronized BeanContext[] getBeanContexts() {
         return deploymentRegistry.values().toArray(new BeanContext[deploymentRegistry.size()]);
@@ -199,7 +200,7 @@ public class SingletonContainer implements RpcContainer {
 
             callContext.setCurrentOperation(type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS);
             callContext.setCurrentAllowedStates(null);
-            callContext.set(Method.class, runMethod);
+            callContext.set(ThreadContext.METHOD, runMethod);
             callContext.setInvokedInterface(callInterface);
 
             return _invoke(callMethod, runMethod, args, instance, callContext, type);
@@ -232,9 +233,9 @@ public class SingletonContainer implements RpcContainer {
                     callContext.setCurrentOperation(Operation.BUSINESS_WS);
                     returnValue = invokeWebService(args, beanContext, runMethod, instance);
                 } else {
-                    List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-                    InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, callType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS, interceptors,
-                            instance.interceptors);
+                    Operation operation = callType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS;
+                    InterceptorChain interceptors = beanContext.getMethodInterceptorChain(runMethod, operation);
+                    InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, operation, interceptors, instance.interceptors);
                     returnValue = interceptorStack.invoke(args);
                 }
             } catch (Throwable e) {// handle reflection exception
@@ -325,23 +326,12 @@ public class SingletonContainer implements RpcContainer {
 
         if (interceptor == null) throw new IllegalArgumentException("Interceptor instance is null.");
 
-        //  Add the webservice interceptor to the list of interceptor instances
-        Map<String, Object> interceptors = new HashMap<String, Object>(instance.interceptors);
-        {
-            interceptors.put(interceptor.getClass().getName(), interceptor);
-        }
-
-        //  Create an InterceptorData for the webservice interceptor to the list of interceptorDatas for this method
-        List<InterceptorData> interceptorDatas = new ArrayList<InterceptorData>();
-        {
-            InterceptorData providerData = new InterceptorData(interceptor.getClass());
-            ClassFinder finder = new ClassFinder(interceptor.getClass());
-            providerData.getAroundInvoke().addAll(finder.findAnnotatedMethods(AroundInvoke.class));
-            interceptorDatas.add(providerData);
-            interceptorDatas.addAll(beanContext.getMethodInterceptors(runMethod));
-        }
+        //  Put the webservice interceptor in front of the cached chain of this method
+        ClassFinder finder = new ClassFinder(interceptor.getClass());
+        InterceptorChain interceptors = new InterceptorChain(interceptor, finder.findAnnotatedMethods(AroundInvoke.class),
+                beanContext.getMethodInterceptorChain(runMethod, Operation.BUSINESS_WS));
 
-        InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS_WS, interceptorDatas, interceptors);
+        InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS_WS, interceptors, instance.interceptors);
         Object[] params = new Object[runMethod.getParameterTypes().length];
         if (messageContext instanceof javax.xml.rpc.handler.MessageContext) {
             ThreadContext.getThreadContext().set(javax.xml.rpc.handler.MessageContext.class, (javax.xml.rpc.handler.MessageContext) messageContext);
@@ -29,6 +29,7 @@ import org.apache.openejb.core.timer.TimerServiceWrapper;
 import org.apache.openejb.core.transaction.EjbTransactionUtil;
 import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.core.transaction.TransactionType;
+import org.apache.openejb.loader.Options;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.monitoring.LocalMBeanServer;
 import org.apache.openejb.monitoring.ManagedMBean;
@@ -69,6 +70,7 @@ public class SingletonInstanceManager {
     private SecurityService securityService;
     private final SingletonContext sessionContext;
     private final WebServiceContext webServiceContext;
+    private boolean stripedReadLock;
 
     public SingletonInstanceManager(SecurityService securityService) {
         this.securityService = securityService;
@@ -76,6 +78,10 @@ public class SingletonInstanceManager {
         webServiceContext = new EjbWsContext(sessionContext);
     }
 
+    public void setStripedReadLock(boolean stripedReadLock) {
+        this.stripedReadLock = stripedReadLock;
+    }
+
     protected void start(BeanContext beanContext) throws OpenEJBException {
         if (beanContext.isLoadOnStartup()) {
             initialize(beanContext);
@@ -192,7 +198,12 @@ public class SingletonInstanceManager {
                 lock = new BeanManagedLock();
             } else {
                 // Container-Managed Concurrency
-                lock = new ReentrantReadWriteLock();
+                final Options options = new Options(beanContext.getProperties());
+                if (options.get("StripedReadLock", stripedReadLock)) {
+                    lock = new StripedReadWriteLock();
+                } else {
+                    lock = new ReentrantReadWriteLock();
+                }
             }
 
             return new Instance(context.getBean(), context.getInterceptors(), context.getCreationalContext(), lock);
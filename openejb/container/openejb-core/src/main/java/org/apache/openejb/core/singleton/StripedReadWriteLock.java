@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.singleton;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A ReadWriteLock for read mostly singletons.
+ *
+ * A single ReentrantReadWriteLock counts every reader on one shared
+ * word, so concurrent @Lock(READ) calls contend on that cache line
+ * even though none of them ever waits.  This lock spreads readers over
+ * several ReentrantReadWriteLocks chosen by thread, and a writer takes
+ * the write lock of every stripe, always in the same order.
+ *
+ * Reads are cheaper and scale with the number of threads, writes cost
+ * one lock per stripe.  Reentrancy, write exclusivity and taking a read
+ * lock while holding the write lock behave as with a single
+ * ReentrantReadWriteLock.  The lock must be released by the thread
+ * that acquired it.
+ *
+ * @version $Rev$ $Date$
+ */
+public class StripedReadWriteLock implements ReadWriteLock {
+
+    private static final int MAX_STRIPES = 64;
+
+    private final ReentrantReadWriteLock[] stripes;
+    private final int mask;
+    private final Lock readLock = new ReadLock();
+    private final Lock writeLock = new WriteLock();
+
+    public StripedReadWriteLock() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedReadWriteLock(int stripes) {
+        int size = 1;
+        while (size < stripes && size < MAX_STRIPES) size <<= 1;
+
+        this.stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public int getStripes() {
+        return stripes.length;
+    }
+
+    public Lock readLock() {
+        return readLock;
+    }
+
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    private ReentrantReadWriteLock stripe() {
+        final long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32));
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return stripes[h & mask];
+    }
+
+    private class ReadLock implements Lock {
+        public void lock() {
+            stripe().readLock().lock();
+        }
+
+        public void lockInterruptibly() throws InterruptedException {
+            stripe().readLock().lockInterruptibly();
+        }
+
+        public boolean tryLock() {
+            return stripe().readLock().tryLock();
+        }
+
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return stripe().readLock().tryLock(time, unit);
+        }
+
+        public void unlock() {
+            stripe().readLock().unlock();
+        }
+
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("newCondition()");
+        }
+    }
+
+    private class WriteLock implements Lock {
+        public void lock() {
+            for (ReentrantReadWriteLock stripe : stripes) {
+                stripe.writeLock().lock();
+            }
+        }
+
+        public void lockInterruptibly() throws InterruptedException {
+            int locked = 0;
+            try {
+                for (; locked < stripes.length; locked++) {
+                    stripes[locked].writeLock().lockInterruptibly();
+                }
+            } finally {
+                if (locked < stripes.length) release(locked);
+            }
+        }
+
+        public boolean tryLock() {
+            for (int i = 0; i < stripes.length; i++) {
+                if (!stripes[i].writeLock().tryLock()) {
+                    release(i);
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(time);
+
+            int locked = 0;
+            try {
+                for (; locked < stripes.length; locked++) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (!stripes[locked].writeLock().tryLock(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                if (locked < stripes.length) release(locked);
+            }
+        }
+
+        public void unlock() {
+            release(stripes.length);
+        }
+
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("newCondition()");
+        }
+
+        /**
+         * Releases the write lock of the first count stripes, last one first
+         */
+        private void release(int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                stripes[i].writeLock().unlock();
+            }
+        }
+    }
+}
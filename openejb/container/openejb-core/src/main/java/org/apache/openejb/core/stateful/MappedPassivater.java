@@ -0,0 +1,496 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateful;
+
+import org.apache.openejb.SystemException;
+import org.apache.openejb.core.EnvProps;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Passivates bean state into a log of memory mapped segment files.
+ * <p/>
+ * Each passivated bean is appended to the current segment as a length
+ * prefixed record and an in memory index maps the primary key to the
+ * record.  Serialization happens outside of any lock, only reserving
+ * space in the segment is serialized, and activations read straight
+ * from the mapped segments so they never block each other.
+ * <p/>
+ * Activating a bean makes its record dead.  A full segment whose live
+ * records fall below the compaction threshold has them copied to the
+ * current segment, and a full segment without live records is deleted.
+ * Only full segments are compacted or deleted, the segment being
+ * appended to is never touched.
+ * <p/>
+ * Settings, read from the init properties or the system properties:
+ * <p/>
+ * - openejb.passivation.directory: directory under which the segment
+ * files are created, defaults to java.io.tmpdir
+ * - openejb.passivation.segment.size: size of a segment in bytes,
+ * defaults to 16 MB.  A record bigger than that gets a segment of its own
+ * - openejb.passivation.compaction.threshold: percentage of live bytes
+ * under which a full segment is compacted, defaults to 50
+ * <p/>
+ * The directory of the store is created with the first passivation.
+ * {@link #close()} unmaps and deletes the segments and the directory,
+ * the containers call it once their last bean is undeployed.  Nothing
+ * is registered for deletion on exit, the VM would keep the name of
+ * every segment ever created until it stops.
+ */
+public class MappedPassivater implements PassivationStrategy {
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    public static final String DIRECTORY = "openejb.passivation.directory";
+    public static final String SEGMENT_SIZE = "openejb.passivation.segment.size";
+    public static final String COMPACTION_THRESHOLD = "openejb.passivation.compaction.threshold";
+
+    private static final int HEADER = 4;
+    private static final AtomicInteger stores = new AtomicInteger();
+
+    private final ConcurrentMap<Object, Pointer> index = new ConcurrentHashMap<Object, Pointer>();
+    private final List<Segment> segments = new CopyOnWriteArrayList<Segment>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final AtomicLong segmentIds = new AtomicLong();
+
+    /**
+     * Only changed while holding the append lock
+     */
+    private volatile boolean initialized;
+    private File parent;
+    private File directory;
+    private int segmentSize;
+    private int compactionThreshold;
+    private volatile Segment current;
+
+    public void init(Properties props) throws SystemException {
+        if (props == null) {
+            props = new Properties();
+        }
+
+        final Options options = new Options(props, SystemInstance.get().getOptions());
+        final int segmentSize = options.get(SEGMENT_SIZE, 16 * 1024 * 1024);
+        final int compactionThreshold = options.get(COMPACTION_THRESHOLD, 50);
+
+        if (segmentSize < HEADER) {
+            throw new SystemException(getClass().getName() + ".init(): invalid segment size " + segmentSize);
+        }
+
+        final String dir = props.getProperty(EnvProps.IM_PASSIVATOR_PATH_PREFIX);
+        final File parent;
+        try {
+            if (dir != null) {
+                parent = SystemInstance.get().getBase().getDirectory(dir);
+            } else {
+                parent = new File(options.get(DIRECTORY, System.getProperty("java.io.tmpdir", File.separator + "tmp")));
+            }
+        } catch (IOException e) {
+            throw new SystemException(getClass().getName() + ".init(): can't use directory " + dir + ":" + e, e);
+        }
+
+        appendLock.lock();
+        try {
+            // a store initialized again forgets what it held
+            close();
+            this.segmentSize = segmentSize;
+            this.compactionThreshold = compactionThreshold;
+            this.parent = parent;
+            initialized = true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void initIfNeeded() throws SystemException {
+        if (initialized) return;
+
+        appendLock.lock();
+        try {
+            if (!initialized) init(null);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public void passivate(Map stateTable) throws SystemException {
+        for (Object o : stateTable.entrySet()) {
+            final Map.Entry entry = (Map.Entry) o;
+            passivate(entry.getKey(), entry.getValue());
+        }
+
+        compact();
+    }
+
+    public void passivate(Object primaryKey, Object state) throws SystemException {
+        initIfNeeded();
+
+        final byte[] bytes;
+        try {
+            bytes = serialize(state);
+        } catch (NotSerializableException nse) {
+            logger.error("Passivation failed ", nse);
+            throw (SystemException) new SystemException("The type " + nse.getMessage() + " is not serializable as mandated by the EJB specification.").initCause(nse);
+        } catch (Exception t) {
+            logger.error("Passivation failed ", t);
+            throw new SystemException(t);
+        }
+
+        final Pointer pointer;
+        try {
+            pointer = append(bytes);
+        } catch (IOException e) {
+            logger.error("Passivation failed ", e);
+            throw new SystemException(e);
+        }
+
+        release(index.put(primaryKey, pointer));
+    }
+
+    public Object activate(Object primaryKey) throws SystemException {
+        final Pointer pointer = index.remove(primaryKey);
+        if (pointer == null) {
+            return null;
+        }
+
+        try {
+            final ObjectInputStream ois = new EjbObjectInputStream(new ByteArrayInputStream(pointer.read()));
+            return ois.readObject();
+        } catch (Exception t) {
+            logger.info("Activation failed ", t);
+            throw new SystemException(t);
+        } finally {
+            release(pointer);
+        }
+    }
+
+    /**
+     * Copies the live records of sparse full segments to the current
+     * segment and deletes the segments nothing points to anymore.
+     * Only one thread compacts at a time, others just return.
+     */
+    public void compact() throws SystemException {
+        if (!compactionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            final List<Segment> sparse = new ArrayList<Segment>();
+            for (Segment segment : segments) {
+                // the current segment, or one being made current and not written yet
+                if (!segment.isSealed()) continue;
+
+                if (segment.live() == 0) {
+                    if (segments.remove(segment)) segment.delete();
+                } else if (segment.live() * 100L < (long) segment.written * compactionThreshold) {
+                    sparse.add(segment);
+                }
+            }
+
+            if (sparse.isEmpty()) {
+                return;
+            }
+
+            for (Map.Entry<Object, Pointer> entry : index.entrySet()) {
+                final Pointer pointer = entry.getValue();
+                if (!sparse.contains(pointer.segment)) continue;
+
+                final byte[] bytes;
+                try {
+                    bytes = pointer.read();
+                } catch (ClosedSegmentException e) {
+                    // activated meanwhile and its segment deleted
+                    continue;
+                }
+
+                final Pointer moved = append(bytes);
+
+                // the bean may have been activated or passivated again meanwhile
+                if (index.replace(entry.getKey(), pointer, moved)) {
+                    release(pointer);
+                } else {
+                    release(moved);
+                }
+            }
+        } catch (IOException e) {
+            throw new SystemException(e);
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Unmaps and deletes all segments and the store directory and forgets
+     * all passivated state.  The store can still be used afterwards, the
+     * next passivation creates a new directory.
+     */
+    public void close() {
+        appendLock.lock();
+        try {
+            index.clear();
+            current = null;
+            for (Segment segment : segments) {
+                segment.delete();
+            }
+            segments.clear();
+
+            if (directory != null) {
+                if (!directory.delete()) {
+                    logger.debug("Cannot delete passivation directory " + directory);
+                }
+                directory = null;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private Pointer append(byte[] bytes) throws IOException {
+        final int length = HEADER + bytes.length;
+
+        final Pointer pointer;
+        appendLock.lock();
+        try {
+            if (directory == null) {
+                directory = createDirectory();
+            }
+
+            Segment segment = current;
+            if (segment == null || segment.capacity - segment.written < length) {
+                segment = new Segment(new File(directory, "segment" + segmentIds.incrementAndGet() + ".log"), Math.max(segmentSize, length));
+                segments.add(segment);
+                if (current != null) current.seal();
+                current = segment;
+            }
+            pointer = new Pointer(segment, segment.written, bytes.length);
+            segment.written += length;
+        } finally {
+            appendLock.unlock();
+        }
+
+        // the space is reserved, copy outside of the lock
+        pointer.segment.write(pointer.offset, bytes);
+        return pointer;
+    }
+
+    private File createDirectory() throws IOException {
+        // one directory per store, several containers may share the parent
+        final File store = new File(parent, "passivation-" + System.currentTimeMillis() + "-" + stores.incrementAndGet());
+        if (!store.mkdirs() && !store.isDirectory()) {
+            throw new IOException("Cannot create directory " + store);
+        }
+
+        logger.info("Using directory " + store + " for memory mapped stateful session passivation");
+        return store;
+    }
+
+    private void release(Pointer pointer) {
+        if (pointer == null) return;
+
+        final Segment segment = pointer.segment;
+        segment.dead.addAndGet(HEADER + pointer.length);
+
+        if (segment.isSealed() && segment.live() == 0 && segments.remove(segment)) {
+            segment.delete();
+        }
+    }
+
+    private static byte[] serialize(Object state) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(state);
+        oos.close();
+        return baos.toByteArray();
+    }
+
+    private static class Pointer {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        private Pointer(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private byte[] read() throws IOException {
+            return segment.read(offset + HEADER, length);
+        }
+    }
+
+    private static class ClosedSegmentException extends IOException {
+        private ClosedSegmentException(File file) {
+            super("Passivation segment " + file + " is closed");
+        }
+    }
+
+    private static class Segment {
+        private final File file;
+        private final int capacity;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger dead = new AtomicInteger();
+
+        /**
+         * Reads and writes share the lock, unmapping takes it exclusively
+         * since touching an unmapped buffer crashes the VM
+         */
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private boolean closed;
+
+        /**
+         * Only changed while holding the append lock
+         */
+        private volatile int written;
+        private volatile boolean sealed;
+
+        private Segment(File file, int capacity) throws IOException {
+            this.file = file;
+            this.capacity = capacity;
+
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            final FileChannel channel = raf.getChannel();
+            try {
+                raf.setLength(capacity);
+                // the mapping stays valid once the file is closed
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } finally {
+                channel.close();
+                raf.close();
+            }
+        }
+
+        private void write(int offset, byte[] bytes) throws IOException {
+            lock.readLock().lock();
+            try {
+                if (closed) throw new ClosedSegmentException(file);
+
+                final ByteBuffer buffer = this.buffer.duplicate();
+                buffer.position(offset);
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private byte[] read(int offset, int length) throws IOException {
+            lock.readLock().lock();
+            try {
+                if (closed) throw new ClosedSegmentException(file);
+
+                final ByteBuffer buffer = this.buffer.duplicate();
+                buffer.position(offset);
+                final byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                return bytes;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int live() {
+            return written - dead.get();
+        }
+
+        private void seal() {
+            sealed = true;
+        }
+
+        private boolean isSealed() {
+            return sealed;
+        }
+
+        private void delete() {
+            lock.writeLock().lock();
+            try {
+                if (closed) return;
+                closed = true;
+                unmap(buffer);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (!file.delete()) {
+                // still mapped if it couldn't be unmapped
+                logger.debug("Cannot delete passivation segment " + file);
+            }
+        }
+
+        /**
+         * Releases the mapping now instead of when the buffer is garbage
+         * collected, the JDK has no public API for it
+         */
+        private static void unmap(MappedByteBuffer buffer) {
+            try {
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    final Method clean = cleaner.getClass().getMethod("clean");
+                    clean.setAccessible(true);
+                    clean.invoke(cleaner);
+                }
+            } catch (Throwable e) {
+                // newer VMs hide the cleaner, but let Unsafe invoke it
+                try {
+                    final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                    final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                    theUnsafe.setAccessible(true);
+                    unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+                } catch (Throwable t) {
+                    logger.debug("Cannot unmap passivation segment, it will be unmapped when garbage collected: " + e);
+                }
+            }
+        }
+    }
+}
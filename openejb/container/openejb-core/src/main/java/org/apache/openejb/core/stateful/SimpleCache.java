@@ -21,21 +21,23 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.openejb.OpenEJBRuntimeException;
+import org.apache.openejb.monitoring.Managed;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 import org.apache.openejb.util.Duration;
 
+@Managed
 public class SimpleCache<K, V> implements Cache<K, V> {
     public static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
 
@@ -47,7 +49,7 @@ public class SimpleCache<K, V> implements Cache<K, V> {
     /**
      * All values not in use in least resently used order
      */
-    private final Queue<Entry> lru = new LinkedBlockingQueue<Entry>();
+    private final Lru lru = new Lru(Runtime.getRuntime().availableProcessors() * 2);
 
     /**
      * Notified when values are loaded, stored, or timedOut
@@ -86,7 +88,19 @@ public class SimpleCache<K, V> implements Cache<K, V> {
     private long frequency = 60 * 1000;
     
     private ScheduledFuture future;
-    
+
+    @Managed
+    private final AtomicLong hits = new AtomicLong();
+
+    @Managed
+    private final AtomicLong activations = new AtomicLong();
+
+    @Managed
+    private final AtomicLong passivations = new AtomicLong();
+
+    @Managed
+    private final AtomicLong timeouts = new AtomicLong();
+
     public SimpleCache() {
     }
 
@@ -204,6 +218,16 @@ public class SimpleCache<K, V> implements Cache<K, V> {
     public long getFrequency() {
         return frequency;
     }
+
+    @Managed
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Managed
+    public int getIdle() {
+        return lru.size();
+    }
     
     public void add(K key, V value) {
         // find the existing entry
@@ -236,6 +260,8 @@ public class SimpleCache<K, V> implements Cache<K, V> {
                 if (entry == null) {
                     return null;
                 }
+            } else {
+                hits.incrementAndGet();
             }
 
             entry.lock.lock();
@@ -373,7 +399,8 @@ public class SimpleCache<K, V> implements Cache<K, V> {
         // check for timed out entries
         // go through all lru entries since even though entries are in
         // least recently used order they might have different timeouts.
-        Iterator<Entry> iterator = lru.iterator();
+        // The lru is copied so no segment is locked while entries are.
+        Iterator<Entry> iterator = lru.snapshot().iterator();
         while (iterator.hasNext()) {
             Entry entry = iterator.next();
             entry.lock.lock();
@@ -386,19 +413,20 @@ public class SimpleCache<K, V> implements Cache<K, V> {
                         continue;
                     case PASSIVATED:
                         // Entry was passivated between get and lock
-                        iterator.remove();
+                        lru.remove(entry);
                         continue;
                     case REMOVED:
                         // Entry was remmoved between get and lock
-                        iterator.remove();
+                        lru.remove(entry);
                         continue;
                 }
 
 
                 if (entry.isTimedOut()) {
-                    iterator.remove();
+                    lru.remove(entry);
                     cache.remove(entry.getKey());
                     entry.setState(EntryState.REMOVED);
+                    timeouts.incrementAndGet();
 
                     // notify listener that the entry has been removed
                     if (listener != null) {
@@ -422,13 +450,7 @@ public class SimpleCache<K, V> implements Cache<K, V> {
 
             int bulkPassivate = getBulkPassivate();
             if (bulkPassivate < 1) bulkPassivate = 1;
-            for (int i = 0; i < bulkPassivate; i++) {
-                Entry entry = lru.poll();
-                if (entry == null) {
-                    // lru is empty
-                    break;
-                }
-
+            for (Entry entry : lru.poll(bulkPassivate)) {
                 if (!entry.lock.tryLock()) {
                     // If two threads are running in this method, you could get a deadlock
                     // due to lock acquisition order since this section gathers a group of
@@ -461,6 +483,7 @@ public class SimpleCache<K, V> implements Cache<K, V> {
                     // if the entry is actually timed out we just destroy it; otherwise it is written to disk
                     if (entry.isTimedOut()) {
                         entry.setState(EntryState.REMOVED);
+                        timeouts.incrementAndGet();
                         if (listener != null) {
                             try {
                                 listener.timedOut(entry.getValue());
@@ -515,6 +538,7 @@ public class SimpleCache<K, V> implements Cache<K, V> {
         if (listener != null) {
             listener.afterLoad(value);
         }
+        activations.incrementAndGet();
         Entry entry = new Entry(key, value, EntryState.AVAILABLE);
         cache.put(key, entry);
         return entry;
@@ -543,6 +567,7 @@ public class SimpleCache<K, V> implements Cache<K, V> {
 
         try {
             passivator.passivate(entriesToStore);
+            passivations.addAndGet(entriesToStore.size());
         } catch (Exception e) {
             logger.error("An unexpected exception occured while writting the entries to disk", e);
         }
@@ -560,6 +585,14 @@ public class SimpleCache<K, V> implements Cache<K, V> {
         private long lastAccess;
         private long timeOut;
 
+        /**
+         * Position in the lru, guarded by the lock of the lru segment
+         */
+        private final Lru.Segment segment;
+        private Entry previous;
+        private Entry next;
+        private boolean linked;
+
         private Entry(K key, V value, EntryState state) {
             this.key = key;
             this.value = value;
@@ -573,6 +606,7 @@ public class SimpleCache<K, V> implements Cache<K, V> {
             }
             
             lastAccess = System.currentTimeMillis();                                 
+            segment = lru.segmentFor(key);
         }
 
         private K getKey() {
@@ -622,5 +656,168 @@ public class SimpleCache<K, V> implements Cache<K, V> {
             }
         }
     }
+
+    /**
+     * The entries not in use split in segments by key hash.  Each segment
+     * is a doubly linked list in access order with its own lock, so adding,
+     * moving and removing an entry are constant time and only contend
+     * with entries of the same segment.
+     * <p/>
+     * Eviction takes the oldest entry of each segment in turn, which keeps
+     * close to the global least recently used order without a global lock.
+     * <p/>
+     * The segment locks are never held while taking an entry lock.
+     */
+    private class Lru {
+        private final List<Segment> segments;
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicInteger nextEviction = new AtomicInteger();
+
+        private Lru(int concurrency) {
+            int count = 1;
+            while (count < concurrency) count <<= 1;
+
+            segments = new ArrayList<Segment>(count);
+            for (int i = 0; i < count; i++) {
+                segments.add(new Segment());
+            }
+        }
+
+        private Segment segmentFor(Object key) {
+            int h = key.hashCode();
+            h ^= (h >>> 20) ^ (h >>> 12);
+            h ^= (h >>> 7) ^ (h >>> 4);
+            return segments.get(h & (segments.size() - 1));
+        }
+
+        /**
+         * Adds the entry as the most recently used, moving it if already present
+         */
+        private void add(Entry entry) {
+            final Segment segment = entry.segment;
+            segment.lock.lock();
+            try {
+                if (entry.linked) {
+                    segment.unlink(entry);
+                } else {
+                    entry.linked = true;
+                    size.incrementAndGet();
+                }
+                segment.linkLast(entry);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+
+        private boolean remove(Entry entry) {
+            final Segment segment = entry.segment;
+            segment.lock.lock();
+            try {
+                if (!entry.linked) return false;
+
+                segment.unlink(entry);
+                entry.linked = false;
+                size.decrementAndGet();
+                return true;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+
+        private boolean contains(Entry entry) {
+            final Segment segment = entry.segment;
+            segment.lock.lock();
+            try {
+                return entry.linked;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+
+        private int size() {
+            return size.get();
+        }
+
+        /**
+         * Removes up to max of the least recently used entries
+         */
+        private List<Entry> poll(int max) {
+            final List<Entry> entries = new ArrayList<Entry>(Math.min(max, size()));
+
+            int empty = 0;
+            while (entries.size() < max && empty < segments.size()) {
+                final int index = nextEviction.getAndIncrement() & (segments.size() - 1);
+                final Segment segment = segments.get(index);
+
+                Entry entry = null;
+                segment.lock.lock();
+                try {
+                    entry = segment.head;
+                    if (entry != null) {
+                        segment.unlink(entry);
+                        entry.linked = false;
+                        size.decrementAndGet();
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+
+                if (entry == null) {
+                    empty++;
+                } else {
+                    empty = 0;
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+
+        private List<Entry> snapshot() {
+            final List<Entry> entries = new ArrayList<Entry>(size());
+            for (Segment segment : segments) {
+                segment.lock.lock();
+                try {
+                    for (Entry entry = segment.head; entry != null; entry = entry.next) {
+                        entries.add(entry);
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            return entries;
+        }
+
+        private class Segment {
+            private final ReentrantLock lock = new ReentrantLock();
+            private Entry head;
+            private Entry tail;
+
+            private void linkLast(Entry entry) {
+                entry.previous = tail;
+                entry.next = null;
+                if (tail == null) {
+                    head = entry;
+                } else {
+                    tail.next = entry;
+                }
+                tail = entry;
+            }
+
+            private void unlink(Entry entry) {
+                if (entry.previous == null) {
+                    head = entry.next;
+                } else {
+                    entry.previous.next = entry.next;
+                }
+                if (entry.next == null) {
+                    tail = entry.previous;
+                } else {
+                    entry.next.previous = entry.previous;
+                }
+                entry.previous = null;
+                entry.next = null;
+            }
+        }
+    }
     
 }
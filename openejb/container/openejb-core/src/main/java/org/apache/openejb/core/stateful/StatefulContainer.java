@@ -31,6 +31,7 @@ import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.InstanceContext;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.stateful.Cache.CacheFilter;
@@ -44,6 +45,7 @@ import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.core.transaction.TransactionPolicy.TransactionSynchronization;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.Managed;
 import org.apache.openejb.monitoring.ManagedMBean;
 import org.apache.openejb.monitoring.ObjectNameBuilder;
 import org.apache.openejb.monitoring.StatsInterceptor;
@@ -106,6 +108,7 @@ public class StatefulContainer implements RpcContainer {
     protected final Map<Object, BeanContext> deploymentsById = new HashMap<Object, BeanContext>();
 
     protected final Cache<Object, Instance> cache;
+    private ObjectName cacheJmxName;
     private final ConcurrentHashMap<Object, Instance> checkedOutInstances = new ConcurrentHashMap<Object, Instance>();
     private final SessionContext sessionContext;
 
@@ -270,6 +273,15 @@ public class StatefulContainer implements RpcContainer {
         beanContext.setContainer(null);
         beanContext.setContainerData(null);
 
+        if (deploymentsById.isEmpty() && cacheJmxName != null) {
+            try {
+                server.unregisterMBean(cacheJmxName);
+            } catch (Exception e) {
+                logger.error("Unable to unregister MBean "+cacheJmxName);
+            }
+            cacheJmxName = null;
+        }
+
         if (!containsExtendedPersistenceContext(beanContext)) {
             cache.removeAll(new CacheFilter<Instance>() {
                 public boolean matches(Instance instance) {
@@ -277,6 +289,23 @@ public class StatefulContainer implements RpcContainer {
                 }
             });
         }
+
+        if (deploymentsById.isEmpty()) {
+            closePassivator();
+        }
+    }
+
+    /**
+     * The memory mapped passivator holds mapped segment files, they are
+     * released once no bean of this container is deployed anymore
+     */
+    private void closePassivator() {
+        if (!(cache instanceof SimpleCache)) return;
+
+        final PassivationStrategy passivator = ((SimpleCache<Object, Instance>) cache).getPassivator();
+        if (passivator instanceof MappedPassivater) {
+            ((MappedPassivater) passivator).close();
+        }
     }
 
     public synchronized void deploy(BeanContext beanContext) throws OpenEJBException {
@@ -310,6 +339,21 @@ public class StatefulContainer implements RpcContainer {
             } catch (Exception e) {
                 logger.error("Unable to register MBean ", e);
             }
+
+            // register the cache shared by all beans of this container
+            if (cacheJmxName == null && cache.getClass().isAnnotationPresent(Managed.class)) {
+                try {
+                    ObjectNameBuilder cacheName = new ObjectNameBuilder("openejb.management");
+                    cacheName.set("J2EEServer", "openejb");
+                    cacheName.set("ObjectType", "StatefulCache");
+                    cacheName.set("name", String.valueOf(containerID));
+                    ObjectName objectName = cacheName.build();
+                    server.registerMBean(new ManagedMBean(cache), objectName);
+                    cacheJmxName = objectName;
+                } catch (Exception e) {
+                    logger.error("Unable to register MBean ", e);
+                }
+            }
         }
 
         try {
@@ -423,7 +467,7 @@ public class StatefulContainer implements RpcContainer {
 
                     // Setup for business invocation
                     Method createOrInit = beanContext.getMatchingBeanMethod(callMethod);
-                    createContext.set(Method.class, createOrInit);
+                    createContext.set(ThreadContext.METHOD, createOrInit);
 
                     // Initialize interceptor stack
                     InterceptorStack interceptorStack = new InterceptorStack(instance.bean, createOrInit, Operation.CREATE, new ArrayList<InterceptorData>(), new HashMap<String, Object>());
@@ -523,7 +567,7 @@ public class StatefulContainer implements RpcContainer {
                     callContext.setCurrentAllowedStates(null);
                     callContext.setInvokedInterface(callInterface);
                     runMethod = beanContext.getMatchingBeanMethod(callMethod);
-                    callContext.set(Method.class, runMethod);
+                    callContext.set(ThreadContext.METHOD, runMethod);
 
                     // Do not pass arguments on home.remove(remote) calls
                     Class<?> declaringClass = callMethod.getDeclaringClass();
@@ -639,10 +683,10 @@ public class StatefulContainer implements RpcContainer {
                 callContext.setCurrentAllowedStates(null);
                 callContext.setInvokedInterface(callInterface);
                 Method runMethod = beanContext.getMatchingBeanMethod(callMethod);
-                callContext.set(Method.class, runMethod);
+                callContext.set(ThreadContext.METHOD, runMethod);
 
                 // Initialize interceptor stack
-                List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
+                InterceptorChain interceptors = beanContext.getMethodInterceptorChain(runMethod, Operation.BUSINESS);
                 InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS, interceptors, instance.interceptors);
 
                 // Invoke
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateless;
+
+import org.apache.openejb.monitoring.Managed;
+import org.apache.openejb.util.Pool;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Thread affine fast path in front of the stateless {@link Pool}.
+ * <p/>
+ * When a business method returns, the entry is parked in a slot owned by
+ * the calling thread instead of being pushed into the pool.  The next call
+ * to the same bean from that thread takes it straight from the slot.
+ * <p/>
+ * A parked entry keeps the pool permit it was popped with, so it still
+ * counts against the pool max.  To make sure parking never starves other
+ * threads:
+ * <p/>
+ * - nothing is parked while threads are waiting on the pool
+ * - threads that cannot get a permit steal parked entries from other slots
+ * - on each pool sweep, entries not used since the previous sweep and
+ * entries of dead threads are pushed back into the pool where the
+ * IdleTimeout, MaxAge and flush rules apply as usual
+ *
+ * @version $Rev$ $Date$
+ */
+@Managed
+class InstanceAffinity {
+
+    /**
+     * How long a thread waits on the pool before looking for parked entries again
+     */
+    private static final long STEAL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Pool<Instance> pool;
+
+    private final Queue<Slot> slots = new ConcurrentLinkedQueue<Slot>();
+
+    private final ThreadLocal<Slot> local = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            final Slot slot = new Slot(Thread.currentThread());
+            slots.add(slot);
+            return slot;
+        }
+    };
+
+    @Managed
+    private final AtomicLong hits = new AtomicLong();
+
+    @Managed
+    private final AtomicLong steals = new AtomicLong();
+
+    @Managed
+    private final AtomicLong reclaimed = new AtomicLong();
+
+    InstanceAffinity(final Pool<Instance> pool) {
+        this.pool = pool;
+        this.pool.addSweepListener(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        });
+    }
+
+    /**
+     * @return the entry parked by the current thread or null
+     */
+    public Pool<Instance>.Entry checkout() {
+        final Slot slot = local.get();
+        final Pool<Instance>.Entry entry = slot.entry.getAndSet(null);
+        if (entry != null) {
+            slot.touched = true;
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Same contract as {@link Pool#pop(long, TimeUnit)}, but while waiting
+     * for a permit the entries parked by other threads are stolen.
+     */
+    public Pool<Instance>.Entry pop(final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (timeout < 0) return pool.pop(timeout, unit);
+
+        try {
+            return pool.pop(0, NANOSECONDS, false);
+        } catch (TimeoutException e) {
+            // no permit right away
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            final Pool<Instance>.Entry stolen = steal();
+            if (stolen != null) return stolen;
+
+            final long remaining = deadline - System.nanoTime();
+
+            // last attempt, let the pool record the timeout
+            if (remaining <= STEAL_INTERVAL) return pool.pop(Math.max(remaining, 0), NANOSECONDS);
+
+            try {
+                return pool.pop(STEAL_INTERVAL, NANOSECONDS, false);
+            } catch (TimeoutException e) {
+                // look again for parked entries
+            }
+        }
+    }
+
+    /**
+     * Parks the entry in the slot of the current thread.
+     *
+     * @param entry entry being returned to the pool
+     * @return false if the entry was not taken and must be pushed into the pool
+     */
+    public boolean park(final Pool<Instance>.Entry entry) {
+        if (entry == null || pool.hasWaiters()) return false;
+
+        final Slot slot = local.get();
+        entry.markLastUsed();
+        if (!slot.entry.compareAndSet(null, entry)) return false;
+        slot.touched = true;
+
+        // Someone may have started waiting after the check above,
+        // hand the entry to them rather than keep it
+        if (pool.hasWaiters()) {
+            final Pool<Instance>.Entry parked = slot.entry.getAndSet(null);
+            if (parked != null) pool.push(parked);
+        }
+
+        return true;
+    }
+
+    /**
+     * Pushes every parked entry back into the pool, for example
+     * before the pool is flushed or closed.
+     */
+    public void reclaim() {
+        for (final Slot slot : slots) {
+            release(slot);
+        }
+    }
+
+    private Pool<Instance>.Entry steal() {
+        for (final Slot slot : slots) {
+            final Pool<Instance>.Entry entry = slot.entry.getAndSet(null);
+            if (entry != null) {
+                steals.incrementAndGet();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void sweep() {
+        final Iterator<Slot> iterator = slots.iterator();
+        while (iterator.hasNext()) {
+            final Slot slot = iterator.next();
+            final Thread thread = slot.thread.get();
+            final boolean alive = thread != null && thread.isAlive();
+
+            if (!slot.touched || !alive) release(slot);
+
+            slot.touched = false;
+
+            if (!alive) iterator.remove();
+        }
+    }
+
+    private void release(final Slot slot) {
+        final Pool<Instance>.Entry entry = slot.entry.getAndSet(null);
+        if (entry != null) {
+            reclaimed.incrementAndGet();
+            pool.push(entry);
+        }
+    }
+
+    @Managed
+    private int getParked() {
+        int parked = 0;
+        for (final Slot slot : slots) {
+            if (slot.entry.get() != null) parked++;
+        }
+        return parked;
+    }
+
+    private static class Slot {
+        private final WeakReference<Thread> thread;
+        private final AtomicReference<Pool<Instance>.Entry> entry = new AtomicReference<Pool<Instance>.Entry>();
+        private volatile boolean touched;
+
+        private Slot(final Thread thread) {
+            this.thread = new WeakReference<Thread>(thread);
+        }
+    }
+}
@@ -22,10 +22,7 @@ import static org.apache.openejb.core.transaction.EjbTransactionUtil.handleAppli
 import static org.apache.openejb.core.transaction.EjbTransactionUtil.handleSystemException;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import javax.ejb.EJBAccessException;
 import javax.ejb.EJBHome;
 import javax.ejb.EJBLocalHome;
@@ -41,9 +38,10 @@ import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.ProxyInfo;
 import org.apache.openejb.SystemException;
 import org.apache.openejb.core.ExceptionType;
+import org.apache.openejb.core.LazyStart;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
-import org.apache.openejb.core.interceptor.InterceptorData;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.timer.EjbTimerService;
 import org.apache.openejb.core.transaction.TransactionPolicy;
@@ -67,10 +65,14 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
     private SecurityService securityService;
 
     public StatelessContainer(Object id, SecurityService securityService, Duration accessTimeout, Duration closeTimeout, Pool.Builder poolBuilder, int callbackThreads) {
+        this(id, securityService, accessTimeout, closeTimeout, poolBuilder, callbackThreads, false);
+    }
+
+    public StatelessContainer(Object id, SecurityService securityService, Duration accessTimeout, Duration closeTimeout, Pool.Builder poolBuilder, int callbackThreads, boolean threadAffinity) {
         this.containerID = id;
         this.securityService = securityService;
 
-        instanceManager = new StatelessInstanceManager(securityService, accessTimeout, closeTimeout, poolBuilder, callbackThreads);
+        instanceManager = new StatelessInstanceManager(securityService, accessTimeout, closeTimeout, poolBuilder, callbackThreads, threadAffinity);
 
         for (BeanContext beanContext : deploymentRegistry.values()) {
             beanContext.setContainer(this);
@@ -148,6 +150,8 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
 
         if (beanContext == null) throw new OpenEJBException("Deployment does not exist in this container. Deployment(id='"+deployID+"'), Container(id='"+containerID+"')");
 
+        LazyStart.start(beanContext);
+
         // Use the backup way to determine call type if null was supplied.
         if (type == null) type = beanContext.getInterfaceType(callInterface);
 
@@ -174,7 +178,7 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
             bean = instanceManager.getInstance(callContext);
 
             callContext.setCurrentOperation(type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS);
-            callContext.set(Method.class, runMethod);
+            callContext.set(ThreadContext.METHOD, runMethod);
             callContext.setInvokedInterface(callInterface);
             Object retValue = _invoke(callMethod, runMethod, args, (Instance) bean, callContext, type);
 
@@ -221,9 +225,9 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
                 callContext.setCurrentOperation(Operation.BUSINESS_WS);
                 returnValue = invokeWebService(args, beanContext, runMethod, instance, returnValue);
             } else {
-                List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-                InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS, interceptors,
-                        instance.interceptors);
+                Operation operation = type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS;
+                InterceptorChain interceptors = beanContext.getMethodInterceptorChain(runMethod, operation);
+                InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, operation, interceptors, instance.interceptors);
                 returnValue = interceptorStack.invoke(args);
             }
         } catch (Throwable re) {// handle reflection exception
@@ -275,24 +279,12 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
         Object interceptor = args[1];
 
 
-        //  Add the webservice interceptor to the list of interceptor instances
-        Map<String, Object> interceptors = new HashMap<String, Object>(instance.interceptors);
-        {
-            interceptors.put(interceptor.getClass().getName(), interceptor);
-        }
-
-        //  Create an InterceptorData for the webservice interceptor to the list of interceptorDatas for this method
-        List<InterceptorData> interceptorDatas = new ArrayList<InterceptorData>();
-        {
-            InterceptorData providerData = new InterceptorData(interceptor.getClass());
-            ClassFinder finder = new ClassFinder(interceptor.getClass());
-            providerData.getAroundInvoke().addAll(finder.findAnnotatedMethods(AroundInvoke.class));
-//            interceptorDatas.add(providerData);
-            interceptorDatas.add(0, providerData);
-            interceptorDatas.addAll(beanContext.getMethodInterceptors(runMethod));
-        }
+        //  Put the webservice interceptor in front of the cached chain of this method
+        ClassFinder finder = new ClassFinder(interceptor.getClass());
+        InterceptorChain interceptors = new InterceptorChain(interceptor, finder.findAnnotatedMethods(AroundInvoke.class),
+                beanContext.getMethodInterceptorChain(runMethod, Operation.BUSINESS_WS));
 
-        InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS_WS, interceptorDatas, interceptors);
+        InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS_WS, interceptors, instance.interceptors);
         Object[] params = new Object[runMethod.getParameterTypes().length];
         if (messageContext instanceof javax.xml.rpc.handler.MessageContext) {
             ThreadContext.getThreadContext().set(javax.xml.rpc.handler.MessageContext.class, (javax.xml.rpc.handler.MessageContext) messageContext);
@@ -33,6 +33,7 @@ public class StatelessContainerFactory {
     private Duration accessTimeout;
     private int callbackThreads = 5;
     private Duration closeTimeout;
+    private boolean threadAffinity;
 
     public void setCallbackThreads(int callbackThreads) {
         this.callbackThreads = callbackThreads;
@@ -114,11 +115,19 @@ public class StatelessContainerFactory {
         pool.setMaxAgeOffset(maxAgeOffset);
     }
 
+    public void setPoolType(String type) {
+        pool.setPoolType(type);
+    }
+
+    public void setThreadAffinity(boolean threadAffinity) {
+        this.threadAffinity = threadAffinity;
+    }
+
     public void setCloseTimeout(Duration closeTimeout) {
         this.closeTimeout = closeTimeout;
     }
 
     public StatelessContainer create() {
-        return new StatelessContainer(id, securityService, accessTimeout, closeTimeout, pool, callbackThreads);
+        return new StatelessContainer(id, securityService, accessTimeout, closeTimeout, pool, callbackThreads, threadAffinity);
     }
 }
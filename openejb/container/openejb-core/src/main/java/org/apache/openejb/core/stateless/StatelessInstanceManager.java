@@ -86,12 +86,18 @@ public class StatelessInstanceManager {
     private SecurityService securityService;
     private final Pool.Builder poolBuilder;
     private final Executor executor;
+    private final boolean threadAffinity;
 
     public StatelessInstanceManager(SecurityService securityService, Duration accessTimeout, Duration closeTimeout, Pool.Builder poolBuilder, int callbackThreads) {
+        this(securityService, accessTimeout, closeTimeout, poolBuilder, callbackThreads, false);
+    }
+
+    public StatelessInstanceManager(SecurityService securityService, Duration accessTimeout, Duration closeTimeout, Pool.Builder poolBuilder, int callbackThreads, boolean threadAffinity) {
         this.securityService = securityService;
         this.accessTimeout = accessTimeout;
         this.closeTimeout = closeTimeout;
         this.poolBuilder = poolBuilder;
+        this.threadAffinity = threadAffinity;
 
         if (accessTimeout.getUnit() == null) accessTimeout.setUnit(TimeUnit.MILLISECONDS);
 
@@ -235,6 +241,7 @@ public class StatelessInstanceManager {
         Pool<Instance> pool = data.getPool();
 
         if (instance.getPoolEntry() != null){
+            if (data.affinity != null && data.affinity.park(instance.getPoolEntry())) return;
             pool.push(instance.getPoolEntry());
         } else {
             pool.push(instance);
@@ -305,7 +312,7 @@ public class StatelessInstanceManager {
         builder.setExecutor(executor);
 
 
-        Data data = new Data(builder.build(), accessTimeout, closeTimeout);
+        Data data = new Data(builder.build(), accessTimeout, closeTimeout, options.get("ThreadAffinity", threadAffinity));
         beanContext.setContainerData(data);
 
         beanContext.set(EJBContext.class, data.sessionContext);
@@ -357,6 +364,16 @@ public class StatelessInstanceManager {
             logger.error("Unable to register MBean ", e);
         }
 
+        if (data.affinity != null) {
+            try {
+                ObjectName objectName = jmxName.set("j2eeType", "ThreadAffinity").build();
+                server.registerMBean(new ManagedMBean(data.affinity), objectName);
+                data.add(objectName);
+            } catch (Exception e) {
+                logger.error("Unable to register MBean ", e);
+            }
+        }
+
         // Finally, fill the pool and start it
         if (!options.get("BackgroundStartup", false) && min > 0)  {
             ExecutorService es = Executors.newFixedThreadPool(min);
@@ -411,18 +428,21 @@ public class StatelessInstanceManager {
 
     private final class Data {
         private final Pool<Instance> pool;
+        private final InstanceAffinity affinity;
         private final Duration accessTimeout;
         private final Duration closeTimeout;
         private final List<ObjectName> jmxNames = new ArrayList<ObjectName>();
         private final SessionContext sessionContext;
 
-        private Data(Pool<Instance> pool, Duration accessTimeout, Duration closeTimeout) {
+        private Data(Pool<Instance> pool, Duration accessTimeout, Duration closeTimeout, boolean threadAffinity) {
             this.pool = pool;
+            this.affinity = threadAffinity ? new InstanceAffinity(pool) : null;
             this.accessTimeout = accessTimeout;
             this.closeTimeout = closeTimeout;
             this.sessionContext = new StatelessContext(securityService, new Flushable() {
                 public void flush() throws IOException {
                     getPool().flush();
+                    if (affinity != null) affinity.reclaim();
                 }
             });
         }
@@ -432,7 +452,12 @@ public class StatelessInstanceManager {
         }
 
         public Pool<Instance>.Entry poolPop() throws InterruptedException, TimeoutException {
-            return pool.pop(accessTimeout.getTime(), accessTimeout.getUnit());
+            if (affinity == null) return pool.pop(accessTimeout.getTime(), accessTimeout.getUnit());
+
+            final Pool<Instance>.Entry entry = affinity.checkout();
+            if (entry != null) return entry;
+
+            return affinity.pop(accessTimeout.getTime(), accessTimeout.getUnit());
         }
 
         public Pool<Instance> getPool() {
@@ -440,6 +465,7 @@ public class StatelessInstanceManager {
         }
 
         public boolean closePool() throws InterruptedException {
+            if (affinity != null) affinity.reclaim();
             return pool.close(closeTimeout.getTime(), closeTimeout.getUnit());
         }
 
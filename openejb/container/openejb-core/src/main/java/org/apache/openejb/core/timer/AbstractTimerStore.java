@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Defaults for the TimerStore operations only some stores need, stores
+ * extending this class get them without implementing them.
+ *
+ * @version $Rev$ $Date$
+ */
+public abstract class AbstractTimerStore implements TimerStore {
+
+    /**
+     * Called before a timeout is delivered, stores shared by several
+     * servers use it so only one of them fires each expiration.  A
+     * store which is not shared delivers every timeout.
+     *
+     * @param timerData the timer about to fire
+     * @param scheduledFireTime the expiration being fired
+     * @return false if the timeout must not be delivered by this server
+     */
+    public boolean claim(TimerData timerData, Date scheduledFireTime) {
+        return true;
+    }
+
+    /**
+     * Creates the automatic timers of a deployment, the @Schedule methods
+     * of the bean, when it is deployed.  A store keeping the timers across
+     * restarts must not create them again when it still has them.
+     *
+     * @param schedules the schedules of each timeout method
+     */
+    public void createAutomaticTimers(EjbTimerServiceImpl timerService, String deploymentId, Map<Method, List<ScheduleData>> schedules) throws TimerStoreException {
+        for (Map.Entry<Method, List<ScheduleData>> entry : schedules.entrySet()) {
+            for (ScheduleData scheduleData : entry.getValue()) {
+                createCalendarTimer(timerService, deploymentId, null, entry.getKey(), scheduleData.getExpression(), scheduleData.getConfig());
+            }
+        }
+    }
+}
@@ -30,10 +30,16 @@ import java.lang.reflect.Method;
 public class CalendarTimerData extends TimerData {
 
     private final ScheduleExpression scheduleExpression;
+    private final boolean automatic;
 
     public CalendarTimerData(long id, EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Method timeoutMethod, TimerConfig timerConfig, ScheduleExpression scheduleExpression) {
+        this(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, scheduleExpression, false);
+    }
+
+    public CalendarTimerData(long id, EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Method timeoutMethod, TimerConfig timerConfig, ScheduleExpression scheduleExpression, boolean automatic) {
         super(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig);
         this.scheduleExpression = scheduleExpression;
+        this.automatic = automatic;
     }
 
     @Override
@@ -45,6 +51,13 @@ public class CalendarTimerData extends TimerData {
         return scheduleExpression;
     }
 
+    /**
+     * @return true for the timers of the @Schedule methods, created when the bean is deployed
+     */
+    public boolean isAutomatic() {
+        return automatic;
+    }
+
     @Override
     public AbstractTrigger<?> initializeTrigger() {
         try {
@@ -14,17 +14,26 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.apache.openejb.core.timer;
 
 import org.apache.openejb.OpenEJBRuntimeException;
-import org.apache.openejb.util.Base64;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
+import javax.ejb.EJBException;
 import javax.ejb.ScheduleExpression;
+import javax.ejb.Timer;
 import javax.ejb.TimerConfig;
 import javax.sql.DataSource;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -35,137 +44,240 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
 
-public class DatabaseTimerStore implements TimerStore {
+/**
+ * Keeps persistent timers in the openejb_timers table so they survive
+ * restarts and can be shared by several servers using the same database.
+ * <p/>
+ * The DataSource must not be JTA managed: the rows written in a
+ * transaction are batched and written in one database transaction when
+ * the bean transaction completes.  The rows are written before the bean
+ * transaction commits, a failure marks it rollback only, and the database
+ * transaction is committed or rolled back with the bean transaction.  Like
+ * the MemoryTimerStore, other transactions only see the timers once they
+ * are committed.  Timer ids are allocated in blocks from the
+ * openejb_timer_ids table so servers sharing the tables never clash.
+ * <p/>
+ * Each server keeps the TimerData of the deployments it started in memory.
+ * The rows of a deployment are read page by page when the deployment starts
+ * and timers created by other servers are read on demand by id.
+ * <p/>
+ * When several servers schedule the same timer, each of them claims the
+ * timeout in the database before calling the bean.  The claim is a
+ * conditional update of the timer row on the scheduled fire time, so only
+ * one server fires each expiration.  A claim is a lease: once it is older
+ * than openejb.timerstore.claim.lease, 5 minutes by default, the same
+ * expiration can be claimed again, so the timeouts claimed by a server
+ * which died before firing them are not lost.
+ * <p/>
+ * The timers of the @Schedule methods are kept too, a deployment only
+ * creates those it doesn't have a row for yet, see
+ * {@link #createAutomaticTimers}.
+ * <p/>
+ * The store is used when openejb.timerstore.datasource names the
+ * DataSource resource to keep the timers in, see
+ * {@link EjbTimerServiceImpl#getDefaultTimerStore()}.
+ * <p/>
+ * Non persistent timers are only kept in memory.
+ */
+public class DatabaseTimerStore extends AbstractTimerStore {
     private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
 
-    private static final String createSequenceSQL = "create sequence timertasks_seq";
-    private static final String createTableSQLWithSequence = "create table timertasks (id long primary key, serverid varchar(256) not null, timerkey varchar(256) not null, userid varchar(4096), userinfo varchar(4096), firsttime long not null, period long)";
-    private static final String createTableSQLWithIdentity = "create table timertasks (id INTEGER NOT NULL GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1), serverid varchar(256) not null, timerkey varchar(256) not null, userid varchar(4096), userinfo varchar(4096), firsttime NUMERIC(18,0) not null, period NUMERIC(18, 0))";
-    private static final String sequenceSQL = "select timertasks_seq.nextval";
-    private static final String identitySQL = "values IDENTITY_VAL_LOCAL()";
-    private static final String insertSQLWithSequence = "insert into timertasks (id, serverid, timerkey, userid, userinfo, firsttime, period) values (?, ?, ?, ?, ?, ?, ?)";
-    private static final String insertSQLWithIdentity = "insert into timertasks (serverid, timerkey, userid, userinfo, firsttime, period) values (?, ?, ?, ?, ?, ?)";
-    private static final String deleteSQL = "delete from timertasks where id=?";
-    private static final String selectSQL = "select id, userid, userinfo, firsttime, period from timertasks where serverid = ? and timerkey=?";
-    private static final String fixedRateUpdateSQL = "update timertasks set firsttime = ? where id = ?";
+    public static final String PAGE_SIZE = "openejb.timerstore.page.size";
+    public static final String ID_BLOCK_SIZE = "openejb.timerstore.id.block.size";
+    public static final String CLAIM_LEASE = "openejb.timerstore.claim.lease";
+
+    private static final String createTableSQL = "create table openejb_timers (id BIGINT NOT NULL PRIMARY KEY, deploymentid VARCHAR(256) NOT NULL, timertype VARCHAR(16) NOT NULL, timeoutclass VARCHAR(512) NOT NULL, timeoutmethod VARCHAR(256) NOT NULL, primarykey BLOB, userinfo BLOB, schedule BLOB, expiration BIGINT, intervalduration BIGINT, claimedby VARCHAR(256), claimedtime BIGINT, claimedat BIGINT, automatic SMALLINT)";
+    private static final String createIndexSQL = "create index openejb_timers_deployment on openejb_timers (deploymentid, id)";
+    private static final String createIdTableSQL = "create table openejb_timer_ids (name VARCHAR(64) NOT NULL PRIMARY KEY, nextid BIGINT NOT NULL)";
+    private static final String selectIdSQL = "select nextid from openejb_timer_ids where name = ?";
+    private static final String insertIdSQL = "insert into openejb_timer_ids (name, nextid) values (?, ?)";
+    private static final String updateIdSQL = "update openejb_timer_ids set nextid = ? where name = ? and nextid = ?";
+    private static final String insertSQL = "insert into openejb_timers (id, deploymentid, timertype, timeoutclass, timeoutmethod, primarykey, userinfo, schedule, expiration, intervalduration, automatic) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String deleteSQL = "delete from openejb_timers where id = ?";
+    private static final String selectSQL = "select id, deploymentid, timertype, timeoutclass, timeoutmethod, primarykey, userinfo, schedule, expiration, intervalduration, automatic from openejb_timers";
+    private static final String selectByIdSQL = selectSQL + " where id = ?";
+    private static final String selectPageSQL = selectSQL + " where deploymentid = ? and id > ? order by id";
+    private static final String selectAutomaticSQL = "select id, timeoutclass, timeoutmethod, schedule from openejb_timers where deploymentid = ? and automatic = 1 order by id";
+    private static final String existsSQL = "select id from openejb_timers where id = ?";
+    private static final String updateExpirationSQL = "update openejb_timers set expiration = ? where id = ?";
+    private static final String claimSQL = "update openejb_timers set claimedby = ?, claimedtime = ?, claimedat = ? where id = ? and (claimedtime is null or claimedtime < ? or claimedat < ?)";
+
+    private static final String TIMER_IDS = "timer";
+    private static final int ID_ATTEMPTS = 10;
 
     private final String serverUniqueId;
     private final DataSource dataSource;
-    private boolean useSequence = false;
+    private final TransactionManager transactionManager;
+    private final int pageSize;
+    private final int idBlockSize;
+    private final long claimLease;
+
+    /**
+     * The timers known to this server by deployment, in id order
+     */
+    private final ConcurrentMap<String, ConcurrentMap<Long, TimerData>> timers = new ConcurrentHashMap<String, ConcurrentMap<Long, TimerData>>();
+    private final ConcurrentMap<String, EjbTimerServiceImpl> timerServices = new ConcurrentHashMap<String, EjbTimerServiceImpl>();
+    private final Map<Transaction, TxBatch> batchesByTransaction = new ConcurrentHashMap<Transaction, TxBatch>();
+
+    private long nextId;
+    private long lastId;
 
-    protected DatabaseTimerStore(String serverUniqueId, DataSource datasource, boolean useSequence) throws SQLException {
+    public DatabaseTimerStore(String serverUniqueId, DataSource dataSource, TransactionManager transactionManager) throws SQLException {
         this.serverUniqueId = serverUniqueId;
-        this.dataSource = datasource;
-        this.useSequence = useSequence;
-        if (this.useSequence) {
-            execSQL(createSequenceSQL);
-            execSQL(createTableSQLWithSequence);
-        } else {
-            execSQL(createTableSQLWithIdentity);
-        }
+        this.dataSource = dataSource;
+        this.transactionManager = transactionManager;
+        this.pageSize = SystemInstance.get().getOptions().get(PAGE_SIZE, 500);
+        this.idBlockSize = SystemInstance.get().getOptions().get(ID_BLOCK_SIZE, 100);
+        this.claimLease = new Duration(SystemInstance.get().getOptions().get(CLAIM_LEASE, "5 minutes")).getTime(TimeUnit.MILLISECONDS);
+
+        execSQL(createTableSQL);
+        execSQL(createIndexSQL);
+        execSQL(createIdTableSQL);
     }
 
     public TimerData getTimer(String deploymentId, long timerId) {
-        // todo not implemented
-        return null;
-    }
+        final Long id = new Long(timerId);
 
-    public Collection<TimerData> getTimers(String deploymentId) {
-        // todo not implemented
-        return null;
-    }
+        final TxBatch batch = getBatchUnchecked(false);
+        if (batch != null) {
+            if (batch.remove.contains(id)) return null;
+            final TimerData timerData = batch.add.get(id);
+            if (timerData != null) return timerData;
+        }
 
-    @Override
-    public TimerData createCalendarTimer(EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Method timeoutMethod, ScheduleExpression schedule, TimerConfig timerConfig)
-            throws TimerStoreException {
-        // TODO Auto-generated method stub
-        return null;
-    }
+        final TimerData timerData = timersOf(deploymentId).get(id);
+        if (timerData != null) return timerData;
 
-    @Override
-    public TimerData createIntervalTimer(EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Method timeoutMethod, Date initialExpiration, long intervalDuration,
-            TimerConfig timerConfig) throws TimerStoreException {
-        // TODO Auto-generated method stub
-        return null;
+        // may have been created by another server
+        try {
+            return load(timerId);
+        } catch (Exception e) {
+            log.warning("Unable to load timer " + timerId + " from the database", e);
+            return null;
+        }
     }
 
-    @Override
-    public TimerData createSingleActionTimer(EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Method timeoutMethod, Date expiration, TimerConfig timerConfig)
-            throws TimerStoreException {
-        // TODO Auto-generated method stub
-        return null;
+    public Collection<TimerData> getTimers(String deploymentId) {
+        final TxBatch batch = getBatchUnchecked(false);
+        if (batch == null) {
+            return new ArrayList<TimerData>(timersOf(deploymentId).values());
+        }
+
+        final Map<Long, TimerData> all = new ConcurrentSkipListMap<Long, TimerData>(timersOf(deploymentId));
+        all.keySet().removeAll(batch.remove);
+        for (TimerData timerData : batch.add.values()) {
+            if (deploymentId.equals(timerData.getDeploymentId())) all.put(new Long(timerData.getId()), timerData);
+        }
+        return new ArrayList<TimerData>(all.values());
     }
 
-    public TimerData createTimer(EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Object info, Date expiration, long intervalDuration) throws TimerStoreException {
+    public Collection<TimerData> loadTimers(EjbTimerServiceImpl timerService, String deploymentId) throws TimerStoreException {
+        timerServices.put(deploymentId, timerService);
+
+        final Collection<TimerData> timerDatas = new ArrayList<TimerData>();
         boolean threwException = false;
-        Connection c = getConnection();
-        long id;
+        final Connection c = getConnection();
         try {
-            if (useSequence) {
-                PreparedStatement seqStatement = c.prepareStatement(sequenceSQL);
-                try {
-                    ResultSet seqRS = seqStatement.executeQuery();
+            final PreparedStatement selectStatement = c.prepareStatement(selectPageSQL);
+            try {
+                selectStatement.setMaxRows(pageSize);
+
+                // keyset paging so large deployments are not read in one result set
+                long lastSeen = 0;
+                int read;
+                do {
+                    read = 0;
+                    selectStatement.setString(1, deploymentId);
+                    selectStatement.setLong(2, lastSeen);
+                    final ResultSet taskRS = selectStatement.executeQuery();
                     try {
-                        seqRS.next();
-                        id = seqRS.getLong(1);
+                        while (taskRS.next()) {
+                            read++;
+                            final TimerData timerData = read(taskRS, timerService);
+                            lastSeen = timerData.getId();
+                            timerDatas.add(remember(timerData));
+                        }
                     } finally {
-                        seqRS.close();
+                        taskRS.close();
                     }
-                } finally {
-                    seqStatement.close();
-                }
-                PreparedStatement insertStatement = c.prepareStatement(insertSQLWithSequence);
-                try {
-                    String serializedPrimaryKey = serializeObject(primaryKey);
-                    String serializedInfo = serializeObject(info);
-                    insertStatement.setLong(1, id);
-                    insertStatement.setString(2, serverUniqueId);
-                    insertStatement.setString(3, deploymentId);
-                    insertStatement.setString(4, serializedPrimaryKey);
-                    insertStatement.setString(5, serializedInfo);
-                    insertStatement.setLong(6, expiration.getTime());
-                    insertStatement.setLong(7, intervalDuration);
-                    int result = insertStatement.executeUpdate();
-                    if (result != 1) {
-                        throw new TimerStoreException("Could not insert!");
-                    }
-                } finally {
-                    insertStatement.close();
-                }
-            } else {
-                PreparedStatement insertStatement = c.prepareStatement(insertSQLWithIdentity);
-                try {
-                    String serializedPrimaryKey = serializeObject(primaryKey);
-                    String serializedInfo = serializeObject(info);
-                    insertStatement.setString(1, serverUniqueId);
-                    insertStatement.setString(2, deploymentId);
-                    insertStatement.setString(3, serializedPrimaryKey);
-                    insertStatement.setString(4, serializedInfo);
-                    insertStatement.setLong(5, expiration.getTime());
-                    insertStatement.setLong(6, intervalDuration);
-                    int result = insertStatement.executeUpdate();
-                    if (result != 1) {
-                        throw new TimerStoreException("Could not insert!");
+                } while (read == pageSize);
+            } finally {
+                selectStatement.close();
+            }
+        } catch (SQLException e) {
+            threwException = true;
+            throw new TimerStoreException(e);
+        } finally {
+            close(c, !threwException);
+        }
+        return timerDatas;
+    }
+
+    /**
+     * The rows of the automatic timers survive restarts, an automatic timer
+     * is only created when the deployment has no row for the same method
+     * and schedule yet.  The rows matching none of the schedules were
+     * declared by a previous version of the application and are removed.
+     */
+    @Override
+    public void createAutomaticTimers(EjbTimerServiceImpl timerService, String deploymentId, Map<Method, List<ScheduleData>> schedules) throws TimerStoreException {
+        final List<StoredSchedule> stored = loadAutomaticTimers(deploymentId);
+
+        for (Map.Entry<Method, List<ScheduleData>> entry : schedules.entrySet()) {
+            final Method timeoutMethod = entry.getKey();
+            for (ScheduleData scheduleData : entry.getValue()) {
+                final TimerConfig timerConfig = scheduleData.getConfig();
+                if (timerConfig == null || timerConfig.isPersistent()) {
+                    final byte[] schedule = serialize(scheduleData.getExpression());
+                    if (removeMatching(stored, timeoutMethod, schedule)) {
+                        // loadTimers reads it when the deployment starts
+                        continue;
                     }
-                } finally {
-                    insertStatement.close();
                 }
-                PreparedStatement identityStatement = c.prepareStatement(identitySQL);
+                add(new CalendarTimerData(nextId(), timerService, deploymentId, null, timeoutMethod, timerConfig, scheduleData.getExpression(), true));
+            }
+        }
+
+        for (StoredSchedule storedSchedule : stored) {
+            removeTimer(storedSchedule.id);
+        }
+    }
+
+    private List<StoredSchedule> loadAutomaticTimers(String deploymentId) throws TimerStoreException {
+        final List<StoredSchedule> stored = new ArrayList<StoredSchedule>();
+        boolean threwException = false;
+        final Connection c = getConnection();
+        try {
+            final PreparedStatement selectStatement = c.prepareStatement(selectAutomaticSQL);
+            try {
+                selectStatement.setString(1, deploymentId);
+                final ResultSet rs = selectStatement.executeQuery();
                 try {
-                    ResultSet seqRS = identityStatement.executeQuery();
-                    try {
-                        seqRS.next();
-                        id = seqRS.getLong(1);
-                    } finally {
-                        seqRS.close();
+                    while (rs.next()) {
+                        stored.add(new StoredSchedule(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBytes(4)));
                     }
                 } finally {
-                    identityStatement.close();
+                    rs.close();
                 }
+            } finally {
+                selectStatement.close();
             }
         } catch (SQLException e) {
             threwException = true;
@@ -173,68 +285,218 @@ public class DatabaseTimerStore implements TimerStore {
         } finally {
             close(c, !threwException);
         }
+        return stored;
+    }
+
+    private static boolean removeMatching(List<StoredSchedule> stored, Method timeoutMethod, byte[] schedule) {
+        for (Iterator<StoredSchedule> iterator = stored.iterator(); iterator.hasNext();) {
+            final StoredSchedule storedSchedule = iterator.next();
+            if (storedSchedule.timeoutClass.equals(timeoutMethod.getDeclaringClass().getName())
+                    && storedSchedule.timeoutMethod.equals(timeoutMethod.getName())
+                    && Arrays.equals(storedSchedule.schedule, schedule)) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The row of an automatic timer, as much as needed to match it with a schedule
+     */
+    private static class StoredSchedule {
+        private final long id;
+        private final String timeoutClass;
+        private final String timeoutMethod;
+        private final byte[] schedule;
+
+        private StoredSchedule(long id, String timeoutClass, String timeoutMethod, byte[] schedule) {
+            this.id = id;
+            this.timeoutClass = timeoutClass;
+            this.timeoutMethod = timeoutMethod;
+            this.schedule = schedule;
+        }
+    }
 
-        //TimerData timerData = new TimerData(id, timerService, deploymentId, primaryKey, info, expiration, intervalDuration);
-        //return timerData;
-        return null;
+    @Override
+    public TimerData createCalendarTimer(EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Method timeoutMethod, ScheduleExpression schedule, TimerConfig timerConfig)
+            throws TimerStoreException {
+        final TimerData timerData = new CalendarTimerData(nextId(), timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, schedule);
+        add(timerData);
+        return timerData;
     }
 
+    @Override
+    public TimerData createIntervalTimer(EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Method timeoutMethod, Date initialExpiration, long intervalDuration,
+            TimerConfig timerConfig) throws TimerStoreException {
+        final TimerData timerData = new IntervalTimerData(nextId(), timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, initialExpiration, intervalDuration);
+        add(timerData);
+        return timerData;
+    }
+
+    @Override
+    public TimerData createSingleActionTimer(EjbTimerServiceImpl timerService, String deploymentId, Object primaryKey, Method timeoutMethod, Date expiration, TimerConfig timerConfig)
+            throws TimerStoreException {
+        final TimerData timerData = new SingleActionTimerData(nextId(), timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, expiration);
+        add(timerData);
+        return timerData;
+    }
 
     /**
      * Used to restore a Timer that was cancelled, but the Transaction has been rolled back.
+     * Rows are only deleted on commit, so the row is still there.
      */
     public void addTimerData(TimerData timerData) throws TimerStoreException {
-        // TODO Need to verify how to handle this. Presumably, the Transaction rollback would "restore" this timer. So, no further action would be required.
-        // The MemoryTimerStore does require this capability...
+        remember(timerData);
     }
 
     public void removeTimer(long timerId) {
-        boolean threwException = false;
+        final Long id = new Long(timerId);
+
+        final TxBatch batch = getBatchUnchecked(true);
+        if (batch != null) {
+            if (batch.add.remove(id) == null) {
+                batch.remove.add(id);
+            }
+            return;
+        }
 
+        try {
+            write(Collections.<TimerData>emptyList(), Collections.singleton(id));
+        } catch (TimerStoreException e) {
+            log.warning("Unable to get a database connection", e);
+        } catch (SQLException e) {
+            log.warning("Unable to remove timer data from database", e);
+        }
+        forget(id);
+    }
+
+    public void updateIntervalTimer(TimerData timerData) {
+        if (timerData.getType() != TimerType.Interval || !timerData.isPersistent()) return;
+
+        // restart from the next expiration rather than from the initial one
+        final Date nextTimeout = timerData.getNextTimeout();
+        if (nextTimeout == null) return;
+
+        boolean threwException = false;
         Connection c = null;
         try {
             c = getConnection();
-            PreparedStatement deleteStatement = c.prepareStatement(deleteSQL);
+            final PreparedStatement updateStatement = c.prepareStatement(updateExpirationSQL);
             try {
-                deleteStatement.setLong(1, timerId);
-                deleteStatement.execute();
+                updateStatement.setLong(1, nextTimeout.getTime());
+                updateStatement.setLong(2, timerData.getId());
+                updateStatement.execute();
             } finally {
-                deleteStatement.close();
+                updateStatement.close();
             }
         } catch (TimerStoreException e) {
-            log.warning("Unable to remove get a database connection", e);
+            log.warning("Unable to get a database connection", e);
         } catch (SQLException e) {
             threwException = true;
-            log.warning("Unable to remove timer data from database", e);
+            log.warning("Unable to update timer data in database", e);
         } finally {
             close(c, !threwException);
         }
     }
 
-    public Collection<TimerData> loadTimers(EjbTimerServiceImpl timerService, String deploymentId) throws TimerStoreException {
-        Collection<TimerData> timerDatas = new ArrayList<TimerData>();
+    @Override
+    public boolean claim(TimerData timerData, Date scheduledFireTime) {
+        if (scheduledFireTime == null || !timerData.isPersistent()) return true;
+
         boolean threwException = false;
-        Connection c = getConnection();
+        Connection c = null;
         try {
-            PreparedStatement selectStatement = c.prepareStatement(selectSQL);
-            selectStatement.setString(1, serverUniqueId);
-            selectStatement.setString(2, deploymentId);
+            c = getConnection();
+            final PreparedStatement claimStatement = c.prepareStatement(claimSQL);
             try {
-                ResultSet taskRS = selectStatement.executeQuery();
+                final long now = System.currentTimeMillis();
+                claimStatement.setString(1, serverUniqueId);
+                claimStatement.setLong(2, scheduledFireTime.getTime());
+                claimStatement.setLong(3, now);
+                claimStatement.setLong(4, timerData.getId());
+                claimStatement.setLong(5, scheduledFireTime.getTime());
+                claimStatement.setLong(6, now - claimLease);
+                if (claimStatement.executeUpdate() == 1) {
+                    return true;
+                }
+            } finally {
+                claimStatement.close();
+            }
+
+            // fired by another server, or cancelled there
+            if (!exists(c, timerData.getId())) {
+                forget(new Long(timerData.getId()));
+            }
+            return false;
+        } catch (Exception e) {
+            threwException = true;
+            // rather fire twice than never
+            log.warning("Unable to claim timer " + timerData.getId() + ", firing it anyway", e);
+            return true;
+        } finally {
+            close(c, !threwException);
+        }
+    }
+
+    private void add(TimerData timerData) throws TimerStoreException {
+        if (!timerData.isPersistent()) {
+            remember(timerData);
+            return;
+        }
+
+        final TxBatch batch = getBatch(true);
+        if (batch != null) {
+            final Long id = new Long(timerData.getId());
+            batch.remove.remove(id);
+            batch.add.put(id, timerData);
+            return;
+        }
+
+        try {
+            write(Collections.singletonList(timerData), Collections.<Long>emptySet());
+        } catch (SQLException e) {
+            throw new TimerStoreException(e);
+        }
+        remember(timerData);
+    }
+
+    private ConcurrentMap<Long, TimerData> timersOf(String deploymentId) {
+        ConcurrentMap<Long, TimerData> deploymentTimers = timers.get(deploymentId);
+        if (deploymentTimers == null) {
+            deploymentTimers = new ConcurrentSkipListMap<Long, TimerData>();
+            final ConcurrentMap<Long, TimerData> existing = timers.putIfAbsent(deploymentId, deploymentTimers);
+            if (existing != null) deploymentTimers = existing;
+        }
+        return deploymentTimers;
+    }
+
+    private TimerData remember(TimerData timerData) {
+        final TimerData existing = timersOf(timerData.getDeploymentId()).putIfAbsent(new Long(timerData.getId()), timerData);
+        return existing != null ? existing : timerData;
+    }
+
+    private void forget(Long timerId) {
+        for (ConcurrentMap<Long, TimerData> deploymentTimers : timers.values()) {
+            if (deploymentTimers.remove(timerId) != null) return;
+        }
+    }
+
+    private TimerData load(long timerId) throws TimerStoreException, SQLException {
+        boolean threwException = false;
+        final Connection c = getConnection();
+        try {
+            final PreparedStatement selectStatement = c.prepareStatement(selectByIdSQL);
+            try {
+                selectStatement.setLong(1, timerId);
+                final ResultSet taskRS = selectStatement.executeQuery();
                 try {
-                    while (taskRS.next()) {
-                        long id = taskRS.getLong(1);
-                        String serizalizedUserId = taskRS.getString(2);
-                        Object userId = deserializeObject(serizalizedUserId);
-                        String serializedUserInfo = taskRS.getString(3);
-                        Object userInfo = deserializeObject(serializedUserInfo);
-                        long timeMillis = taskRS.getLong(4);
-                        Date time = new Date(timeMillis);
-                        long period = taskRS.getLong(5);
-
-                        /*TimerData timerData = new TimerData(id, timerService, deploymentId, userId, userInfo, time, period);
-                        timerDatas.add(timerData);*/
-                    }
+                    if (!taskRS.next()) return null;
+
+                    final EjbTimerServiceImpl timerService = timerServices.get(taskRS.getString(2));
+                    if (timerService == null) return null;
+
+                    return remember(read(taskRS, timerService));
                 } finally {
                     taskRS.close();
                 }
@@ -243,58 +505,380 @@ public class DatabaseTimerStore implements TimerStore {
             }
         } catch (SQLException e) {
             threwException = true;
-            throw new TimerStoreException(e);
+            throw e;
         } finally {
             close(c, !threwException);
         }
-        return timerDatas;
     }
 
-    public void updateIntervalTimer(TimerData timerData) {
+    private TimerData read(ResultSet taskRS, EjbTimerServiceImpl timerService) throws SQLException {
+        final long id = taskRS.getLong(1);
+        final String deploymentId = taskRS.getString(2);
+        final TimerType type = TimerType.valueOf(taskRS.getString(3));
+
+        final ClassLoader classLoader = timerService.deployment.getClassLoader();
+        final Method timeoutMethod = getTimeoutMethod(classLoader, taskRS.getString(4), taskRS.getString(5));
+        final Object primaryKey = deserialize(taskRS.getBytes(6), classLoader);
+        final TimerConfig timerConfig = new TimerConfig(deserialize(taskRS.getBytes(7), classLoader), true);
+
+        switch (type) {
+            case SingleAction:
+                return new SingleActionTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, new Date(taskRS.getLong(9)));
+            case Interval:
+                return new IntervalTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, new Date(taskRS.getLong(9)), taskRS.getLong(10));
+            default:
+                final ScheduleExpression schedule = (ScheduleExpression) deserialize(taskRS.getBytes(8), classLoader);
+                return new CalendarTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, schedule, taskRS.getInt(11) == 1);
+        }
+    }
+
+    private void bind(PreparedStatement insertStatement, TimerData timerData) throws SQLException {
+        insertStatement.setLong(1, timerData.getId());
+        insertStatement.setString(2, timerData.getDeploymentId());
+        insertStatement.setString(3, timerData.getType().name());
+        insertStatement.setString(4, timerData.getTimeoutMethod().getDeclaringClass().getName());
+        insertStatement.setString(5, timerData.getTimeoutMethod().getName());
+        setBytes(insertStatement, 6, serialize(timerData.getPrimaryKey()));
+        setBytes(insertStatement, 7, serialize(timerData.getInfo()));
+
+        switch (timerData.getType()) {
+            case SingleAction:
+                setBytes(insertStatement, 8, null);
+                insertStatement.setLong(9, ((SingleActionTimerData) timerData).getExpiration().getTime());
+                insertStatement.setNull(10, Types.BIGINT);
+                break;
+            case Interval:
+                setBytes(insertStatement, 8, null);
+                insertStatement.setLong(9, ((IntervalTimerData) timerData).getInitialExpiration().getTime());
+                insertStatement.setLong(10, ((IntervalTimerData) timerData).getIntervalDuration());
+                break;
+            default:
+                setBytes(insertStatement, 8, serialize(((CalendarTimerData) timerData).getSchedule()));
+                insertStatement.setNull(9, Types.BIGINT);
+                insertStatement.setNull(10, Types.BIGINT);
+        }
+
+        final boolean automatic = timerData instanceof CalendarTimerData && ((CalendarTimerData) timerData).isAutomatic();
+        insertStatement.setInt(11, automatic ? 1 : 0);
+    }
+
+    /**
+     * Writes the inserts and deletes in one database transaction
+     * using JDBC batches.
+     */
+    private void write(Collection<TimerData> inserts, Collection<Long> deletes) throws TimerStoreException, SQLException {
+        finish(prepare(inserts, deletes), true);
+    }
+
+    /**
+     * Executes the inserts and deletes in a database transaction which
+     * is left open, {@link #finish} commits or rolls it back.
+     *
+     * @return the connection of the database transaction
+     */
+    private Connection prepare(Collection<TimerData> inserts, Collection<Long> deletes) throws TimerStoreException, SQLException {
+        final Connection c = getConnection();
+        boolean prepared = false;
+        try {
+            c.setAutoCommit(false);
+
+            if (!inserts.isEmpty()) {
+                final PreparedStatement insertStatement = c.prepareStatement(insertSQL);
+                try {
+                    for (TimerData timerData : inserts) {
+                        bind(insertStatement, timerData);
+                        insertStatement.addBatch();
+                    }
+                    insertStatement.executeBatch();
+                } finally {
+                    insertStatement.close();
+                }
+            }
+
+            if (!deletes.isEmpty()) {
+                final PreparedStatement deleteStatement = c.prepareStatement(deleteSQL);
+                try {
+                    for (Long id : deletes) {
+                        deleteStatement.setLong(1, id);
+                        deleteStatement.addBatch();
+                    }
+                    deleteStatement.executeBatch();
+                } finally {
+                    deleteStatement.close();
+                }
+            }
+
+            prepared = true;
+            return c;
+        } finally {
+            if (!prepared) {
+                try {
+                    c.rollback();
+                } catch (SQLException ignored) {
+                    // the original exception is more interesting
+                }
+                close(c, false);
+            }
+        }
+    }
+
+    private void finish(Connection c, boolean commit) throws SQLException {
         boolean threwException = false;
-        Connection c = null;
         try {
-            c = getConnection();
-            PreparedStatement updateStatement = c.prepareStatement(fixedRateUpdateSQL);
+            if (commit) {
+                c.commit();
+            } else {
+                c.rollback();
+            }
+            c.setAutoCommit(true);
+        } catch (SQLException e) {
+            threwException = true;
+            throw e;
+        } finally {
+            close(c, !threwException);
+        }
+    }
+
+    private boolean exists(Connection c, long timerId) throws SQLException {
+        final PreparedStatement existsStatement = c.prepareStatement(existsSQL);
+        try {
+            existsStatement.setLong(1, timerId);
+            final ResultSet rs = existsStatement.executeQuery();
             try {
-                //updateStatement.setLong(1, timerData.getExpiration().getTime());
-                updateStatement.setLong(2, timerData.getId());
-                updateStatement.execute();
+                return rs.next();
             } finally {
-                updateStatement.close();
+                rs.close();
+            }
+        } finally {
+            existsStatement.close();
+        }
+    }
+
+    /**
+     * Ids are reserved by blocks with an optimistic update of the
+     * openejb_timer_ids row, so servers sharing the table never get
+     * the same id.  The update is retried a few times when another
+     * server reserved a block meanwhile.
+     */
+    private synchronized long nextId() throws TimerStoreException {
+        if (nextId < lastId) {
+            return nextId++;
+        }
+
+        boolean threwException = false;
+        SQLException lastException = null;
+        final Connection c = getConnection();
+        try {
+            for (int attempt = 0; attempt < ID_ATTEMPTS; attempt++) {
+                Long current = null;
+                final PreparedStatement selectStatement = c.prepareStatement(selectIdSQL);
+                try {
+                    selectStatement.setString(1, TIMER_IDS);
+                    final ResultSet rs = selectStatement.executeQuery();
+                    try {
+                        if (rs.next()) current = rs.getLong(1);
+                    } finally {
+                        rs.close();
+                    }
+                } finally {
+                    selectStatement.close();
+                }
+
+                if (current == null) {
+                    final PreparedStatement insertStatement = c.prepareStatement(insertIdSQL);
+                    try {
+                        insertStatement.setString(1, TIMER_IDS);
+                        insertStatement.setLong(2, 1);
+                        insertStatement.execute();
+                    } catch (SQLException e) {
+                        // inserted by another server, read it again
+                        lastException = e;
+                    } finally {
+                        insertStatement.close();
+                    }
+                    continue;
+                }
+
+                final PreparedStatement updateStatement = c.prepareStatement(updateIdSQL);
+                try {
+                    updateStatement.setLong(1, current + idBlockSize);
+                    updateStatement.setString(2, TIMER_IDS);
+                    updateStatement.setLong(3, current);
+                    if (updateStatement.executeUpdate() == 1) {
+                        nextId = current;
+                        lastId = current + idBlockSize;
+                        return nextId++;
+                    }
+                } finally {
+                    updateStatement.close();
+                }
             }
-        } catch (TimerStoreException e) {
-            log.warning("Unable to remove get a database connection", e);
         } catch (SQLException e) {
             threwException = true;
-            log.warning("Unable to remove timer data from database", e);
+            throw new TimerStoreException(e);
         } finally {
             close(c, !threwException);
         }
+        throw new TimerStoreException("Unable to reserve timer ids after " + ID_ATTEMPTS + " attempts", lastException);
+    }
+
+    /**
+     * @return the batch of the current transaction, or null outside of a transaction
+     * @throws TimerStoreException if the transaction can't be used
+     */
+    private TxBatch getBatch(boolean create) throws TimerStoreException {
+        if (transactionManager == null) return null;
+
+        final Transaction transaction;
+        final int status;
+        try {
+            transaction = transactionManager.getTransaction();
+            status = (transaction == null) ? Status.STATUS_NO_TRANSACTION : transaction.getStatus();
+        } catch (SystemException e) {
+            throw new TimerStoreException("Unable to get the current transaction", e);
+        }
+
+        if (status != Status.STATUS_ACTIVE && status != Status.STATUS_MARKED_ROLLBACK) {
+            return null;
+        }
+
+        TxBatch batch = batchesByTransaction.get(transaction);
+        if (batch == null && create) {
+            batch = new TxBatch(transaction);
+            try {
+                transaction.registerSynchronization(batch);
+            } catch (RollbackException e) {
+                throw new TimerStoreException("Transaction has been rolled back", e);
+            } catch (SystemException e) {
+                throw new TimerStoreException("Error registering transaction synchronization callback", e);
+            }
+            batchesByTransaction.put(transaction, batch);
+        }
+        return batch;
+    }
+
+    /**
+     * getBatch for the TimerStore methods which can't throw a checked exception
+     */
+    private TxBatch getBatchUnchecked(boolean create) {
+        try {
+            return getBatch(create);
+        } catch (TimerStoreException e) {
+            throw new EJBException(e);
+        }
+    }
+
+    /**
+     * The timers created and removed in a transaction.  They are written to
+     * the database before the transaction commits and the database
+     * transaction completes with it.  Transactions are single threaded so
+     * this class is not thread safe.
+     */
+    private class TxBatch implements Synchronization {
+        private final Map<Long, TimerData> add = new LinkedHashMap<Long, TimerData>();
+        private final Set<Long> remove = new LinkedHashSet<Long>();
+        private final Transaction transaction;
+        private Connection connection;
+
+        private TxBatch(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        public void beforeCompletion() {
+            if (add.isEmpty() && remove.isEmpty()) return;
+
+            try {
+                connection = prepare(add.values(), remove);
+            } catch (Exception e) {
+                log.error("Unable to write the timers of the transaction to the database, rolling it back", e);
+                try {
+                    transaction.setRollbackOnly();
+                } catch (SystemException se) {
+                    log.error("Unable to mark the transaction rollback only", se);
+                }
+            }
+        }
+
+        public void afterCompletion(int status) {
+            batchesByTransaction.remove(transaction);
+
+            final boolean committed = status == Status.STATUS_COMMITTED;
+            if (connection != null) {
+                try {
+                    finish(connection, committed);
+                } catch (SQLException e) {
+                    log.error("Unable to commit the timers of the transaction to the database", e);
+                    return;
+                } finally {
+                    connection = null;
+                }
+            }
+
+            // if the tx was not committed, there is nothing to update
+            if (!committed) return;
+
+            for (TimerData timerData : add.values()) {
+                remember(timerData);
+            }
+            for (Long id : remove) {
+                forget(id);
+            }
+        }
     }
 
-    private String serializeObject(Object object) {
+    private static Method getTimeoutMethod(ClassLoader classLoader, String className, String methodName) throws SQLException {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream(baos);
+            Class<?> clazz = classLoader.loadClass(className);
+            while (clazz != null) {
+                for (Method method : clazz.getDeclaredMethods()) {
+                    final Class<?>[] parameterTypes = method.getParameterTypes();
+                    if (method.getName().equals(methodName) && (parameterTypes.length == 0 || parameterTypes.length == 1 && parameterTypes[0] == Timer.class)) {
+                        return method;
+                    }
+                }
+                clazz = clazz.getSuperclass();
+            }
+        } catch (ClassNotFoundException e) {
+            throw (SQLException) new SQLException("Cannot load timeout class " + className).initCause(e);
+        }
+        throw new SQLException("Cannot find timeout method " + className + "." + methodName);
+    }
+
+    private static void setBytes(PreparedStatement statement, int index, byte[] bytes) throws SQLException {
+        if (bytes == null) {
+            statement.setNull(index, Types.BLOB);
+        } else {
+            statement.setBytes(index, bytes);
+        }
+    }
+
+    private static byte[] serialize(Object object) {
+        if (object == null) return null;
+
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final ObjectOutputStream out = new ObjectOutputStream(baos);
             out.writeObject(object);
             out.close();
-
-            byte[] encoded = Base64.encodeBase64(baos.toByteArray());
-            return new String(encoded);
+            return baos.toByteArray();
         } catch (IOException e) {
             throw new OpenEJBRuntimeException(e);
         }
     }
 
-    private Object deserializeObject(String serializedValue) {
+    private static Object deserialize(byte[] bytes, ClassLoader classLoader) {
+        if (bytes == null) return null;
+
+        final Thread thread = Thread.currentThread();
+        final ClassLoader oldClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
         try {
-            byte[] bytes = Base64.decodeBase64(serializedValue.getBytes());
-            ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-            ObjectInputStream in = new ObjectInputStream(bais);
+            final ObjectInputStream in = new EjbObjectInputStream(new ByteArrayInputStream(bytes));
             return in.readObject();
         } catch (Exception e) {
             throw new OpenEJBRuntimeException(e);
+        } finally {
+            thread.setContextClassLoader(oldClassLoader);
         }
     }
 
@@ -309,6 +893,8 @@ public class DatabaseTimerStore implements TimerStore {
             } finally {
                 updateStatement.close();
             }
+        } catch (SQLException e) {
+            //ignore... table already exists, some drivers fail on prepare
         } finally {
             connection.close();
         }
@@ -36,6 +36,11 @@ public class EjbTimeoutJob implements Job {
         JobDataMap jobDataMap = jobExecutionContext.getMergedJobDataMap();
         EjbTimerServiceImpl ejbTimerService = (EjbTimerServiceImpl) jobDataMap.get(EJB_TIMERS_SERVICE);
         TimerData timerData = (TimerData) jobDataMap.get(TIMER_DATA);
+        TimerStore timerStore = ejbTimerService.getTimerStore();
+        if (timerStore instanceof AbstractTimerStore && !((AbstractTimerStore) timerStore).claim(timerData, jobExecutionContext.getScheduledFireTime())) {
+            // fired by another server sharing the timer store
+            return;
+        }
         ejbTimerService.ejbTimeout(timerData);
     }
 }
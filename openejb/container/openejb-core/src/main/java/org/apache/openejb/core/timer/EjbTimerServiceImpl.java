@@ -24,6 +24,7 @@ import org.apache.openejb.RpcContainer;
 import org.apache.openejb.core.BaseContext;
 import org.apache.openejb.core.transaction.TransactionType;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 import org.apache.openejb.util.SetAccessible;
@@ -51,9 +52,11 @@ import javax.ejb.EJBException;
 import javax.ejb.ScheduleExpression;
 import javax.ejb.Timer;
 import javax.ejb.TimerConfig;
+import javax.sql.DataSource;
 import javax.transaction.Status;
 import javax.transaction.SystemException;
 import javax.transaction.TransactionManager;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -71,6 +74,9 @@ public class EjbTimerServiceImpl implements EjbTimerService {
 
     public static final String QUARTZ_THREAD_POOL_ADAPTER = "openejb.org.quartz.threadPool.class";
 
+    public static final String OPENEJB_TIMERSTORE_DATASOURCE = "openejb.timerstore.datasource";
+    public static final String OPENEJB_TIMERSTORE_SERVER_ID = "openejb.timerstore.server.id";
+
     public static final String OPENEJB_TIMEOUT_JOB_NAME = "OPENEJB_TIMEOUT_JOB";
     public static final String OPENEJB_TIMEOUT_JOB_GROUP_NAME = "OPENEJB_TIMEOUT_GROUP";
 
@@ -84,7 +90,40 @@ public class EjbTimerServiceImpl implements EjbTimerService {
     private Scheduler scheduler;
 
     public EjbTimerServiceImpl(BeanContext deployment) {
-        this(deployment, getDefaultTransactionManager(), getDefaultScheduler(deployment), new MemoryTimerStore(getDefaultTransactionManager()), 1);
+        this(deployment, getDefaultTransactionManager(), getDefaultScheduler(deployment), getDefaultTimerStore(), 1);
+    }
+
+    /**
+     * The TimerStore component if one is registered.  Otherwise the timers are
+     * kept in the DataSource resource named by openejb.timerstore.datasource,
+     * in a DatabaseTimerStore shared by all beans, or in memory by default.
+     */
+    public static synchronized TimerStore getDefaultTimerStore() {
+        final TimerStore timerStore = SystemInstance.get().getComponent(TimerStore.class);
+        if (timerStore != null) {
+            return timerStore;
+        }
+
+        final String dataSourceId = SystemInstance.get().getOptions().get(OPENEJB_TIMERSTORE_DATASOURCE, (String) null);
+        if (dataSourceId != null) {
+            final TimerStore databaseTimerStore = createDatabaseTimerStore(dataSourceId);
+            SystemInstance.get().setComponent(TimerStore.class, databaseTimerStore);
+            return databaseTimerStore;
+        }
+
+        return new MemoryTimerStore(getDefaultTransactionManager());
+    }
+
+    private static TimerStore createDatabaseTimerStore(final String dataSourceId) {
+        final String serverId = SystemInstance.get().getOptions().get(OPENEJB_TIMERSTORE_SERVER_ID, ManagementFactory.getRuntimeMXBean().getName());
+        try {
+            final ContainerSystem containerSystem = SystemInstance.get().getComponent(ContainerSystem.class);
+            final DataSource dataSource = (DataSource) containerSystem.getJNDIContext().lookup("openejb/Resource/" + dataSourceId);
+            log.info("Keeping persistent timers in DataSource " + dataSourceId + " as server " + serverId);
+            return new DatabaseTimerStore(serverId, dataSource, getDefaultTransactionManager());
+        } catch (Exception e) {
+            throw new OpenEJBRuntimeException("Fail to initialize the timer store of DataSource " + dataSourceId, e);
+        }
     }
 
     public static TransactionManager getDefaultTransactionManager() {
@@ -352,6 +391,24 @@ public class EjbTimerServiceImpl implements EjbTimerService {
         }
     }
 
+    /**
+     * Creates the timers of the @Schedule methods when the bean is deployed
+     *
+     * @param schedules the schedules of each timeout method
+     */
+    public void createAutomaticTimers(Map<Method, List<ScheduleData>> schedules) throws TimerStoreException {
+        if (timerStore instanceof AbstractTimerStore) {
+            ((AbstractTimerStore) timerStore).createAutomaticTimers(this, (String) deployment.getDeploymentID(), schedules);
+            return;
+        }
+
+        for (Map.Entry<Method, List<ScheduleData>> entry : schedules.entrySet()) {
+            for (ScheduleData scheduleData : entry.getValue()) {
+                timerStore.createCalendarTimer(this, (String) deployment.getDeploymentID(), null, entry.getKey(), scheduleData.getExpression(), scheduleData.getConfig());
+            }
+        }
+    }
+
     public TimerStore getTimerStore() {
         return timerStore;
     }
@@ -28,6 +28,8 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -44,9 +46,10 @@ import javax.transaction.TransactionManager;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
-public class MemoryTimerStore implements TimerStore {
+public class MemoryTimerStore extends AbstractTimerStore {
     private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
     private final Map<Long,TimerData> taskStore = new ConcurrentHashMap<Long,TimerData>();
+    private final ConcurrentMap<String,Set<Long>> tasksByDeployment = new ConcurrentHashMap<String,Set<Long>>();
     private final Map<Transaction,TimerDataView> tasksByTransaction = new ConcurrentHashMap<Transaction, TimerDataView>();
     private final AtomicLong counter = new AtomicLong(0);
 
@@ -59,7 +62,7 @@ public class MemoryTimerStore implements TimerStore {
     public TimerData getTimer(String deploymentId, long timerId) {
         try {
             TimerDataView tasks = getTasks();
-            TimerData timerData = tasks.getTasks().get(new Long(timerId));
+            TimerData timerData = tasks.getTimer(new Long(timerId));
             return timerData;
         } catch (TimerStoreException e) {
             return null;
@@ -69,7 +72,7 @@ public class MemoryTimerStore implements TimerStore {
     public Collection<TimerData> getTimers(String deploymentId) {
         try {
             TimerDataView tasks = getTasks();
-            Collection<TimerData> timerDatas = new ArrayList<TimerData>(tasks.getTasks().values());
+            Collection<TimerData> timerDatas = tasks.getTimers(deploymentId);
             return timerDatas;
         } catch (TimerStoreException e) {
             return Collections.emptySet();
@@ -78,7 +81,7 @@ public class MemoryTimerStore implements TimerStore {
 
     public Collection<TimerData> loadTimers(EjbTimerServiceImpl timerService, String deploymentId) throws TimerStoreException {
         TimerDataView tasks = getTasks();
-        Collection<TimerData> timerDatas = new ArrayList<TimerData>(tasks.getTasks().values());
+        Collection<TimerData> timerDatas = tasks.getTimers(deploymentId);
         return timerDatas;
     }
 
@@ -147,8 +150,76 @@ public class MemoryTimerStore implements TimerStore {
         return tasks;
     }
 
+    private void addLive(TimerData timerData) {
+        Long timerId = new Long(timerData.getId());
+        taskStore.put(timerId, timerData);
+
+        String deploymentId = timerData.getDeploymentId();
+        if (deploymentId == null) return;
+
+        while (true) {
+            Set<Long> ids = tasksByDeployment.get(deploymentId);
+            if (ids == null) {
+                ids = new ConcurrentSkipListSet<Long>();
+                Set<Long> existing = tasksByDeployment.putIfAbsent(deploymentId, ids);
+                if (existing != null) ids = existing;
+            }
+
+            synchronized (ids) {
+                // removeLive drops the set once empty, add to the current one
+                if (tasksByDeployment.get(deploymentId) == ids) {
+                    ids.add(timerId);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void removeLive(Long timerId) {
+        TimerData timerData = taskStore.remove(timerId);
+        if (timerData == null || timerData.getDeploymentId() == null) return;
+
+        String deploymentId = timerData.getDeploymentId();
+        Set<Long> ids = tasksByDeployment.get(deploymentId);
+        if (ids == null) return;
+
+        synchronized (ids) {
+            ids.remove(timerId);
+            if (ids.isEmpty()) tasksByDeployment.remove(deploymentId, ids);
+        }
+    }
+
+    /**
+     * @return the number of deployments with committed timers
+     */
+    int getDeploymentCount() {
+        return tasksByDeployment.size();
+    }
+
+    /**
+     * @param deploymentId the deployment or null for all timers
+     * @return the committed timers of the deployment in id order
+     */
+    private Collection<TimerData> getLive(String deploymentId) {
+        if (deploymentId == null) {
+            return new TreeMap<Long,TimerData>(taskStore).values();
+        }
+
+        Set<Long> ids = tasksByDeployment.get(deploymentId);
+        if (ids == null) return new ArrayList<TimerData>();
+
+        Collection<TimerData> timerDatas = new ArrayList<TimerData>(ids.size());
+        for (Long id : ids) {
+            TimerData timerData = taskStore.get(id);
+            if (timerData != null) timerDatas.add(timerData);
+        }
+        return timerDatas;
+    }
+
     private interface TimerDataView {
-        Map<Long,TimerData> getTasks();
+        TimerData getTimer(Long timerId);
+
+        Collection<TimerData> getTimers(String deploymentId);
 
         void addTimerData(TimerData timerData);
 
@@ -156,16 +227,20 @@ public class MemoryTimerStore implements TimerStore {
     }
 
     private class LiveTimerDataView implements TimerDataView {
-        public Map<Long,TimerData> getTasks() {
-            return new TreeMap<Long,TimerData>(taskStore);
+        public TimerData getTimer(Long timerId) {
+            return taskStore.get(timerId);
+        }
+
+        public Collection<TimerData> getTimers(String deploymentId) {
+            return getLive(deploymentId);
         }
 
         public void addTimerData(TimerData timerData) {
-            taskStore.put(new Long(timerData.getId()), timerData);
+            addLive(timerData);
         }
 
         public void removeTimerData(Long timerId) {
-            taskStore.remove(timerId);
+            removeLive(timerId);
         }
     }
 
@@ -205,13 +280,33 @@ public class MemoryTimerStore implements TimerStore {
             if (!lock.tryLock()) throw new IllegalStateException("Illegal access by Thread[" + Thread.currentThread().getName() + "]", concurentException);
         }
 
-        public Map<Long,TimerData> getTasks() {
+        public TimerData getTimer(Long timerId) {
+            checkThread();
+            if (remove.contains(timerId)) return null;
+
+            TimerData timerData = add.get(timerId);
+            if (timerData != null) return timerData;
+
+            return taskStore.get(timerId);
+        }
+
+        public Collection<TimerData> getTimers(String deploymentId) {
             checkThread();
+            if (add.isEmpty() && remove.isEmpty()) return getLive(deploymentId);
+
+            // the live timers overlaid with the changes of this transaction,
+            // which only holds the few timers it touched
             TreeMap<Long, TimerData> allTasks = new TreeMap<Long, TimerData>();
-            allTasks.putAll(taskStore);
+            for (TimerData timerData : getLive(deploymentId)) {
+                allTasks.put(new Long(timerData.getId()), timerData);
+            }
             for (Long key : remove) allTasks.remove(key);
-            allTasks.putAll(add);
-            return Collections.unmodifiableMap(allTasks);
+            for (TimerData timerData : add.values()) {
+                if (deploymentId == null || deploymentId.equals(timerData.getDeploymentId())) {
+                    allTasks.put(new Long(timerData.getId()), timerData);
+                }
+            }
+            return new ArrayList<TimerData>(allTasks.values());
         }
 
         public void addTimerData(TimerData timerData) {
@@ -242,16 +337,20 @@ public class MemoryTimerStore implements TimerStore {
         public void afterCompletion(int status) {
             checkThread();
 
+            tasksByTransaction.remove(tansactionReference.get());
+
             // if the tx was not committed, there is nothign to update
             if (status != Status.STATUS_COMMITTED) return;
 
             // add the new work
-            taskStore.putAll(add);
+            for (TimerData timerData : add.values()) {
+                addLive(timerData);
+            }
 
             // remove work
-            taskStore.keySet().removeAll(remove);
-
-            tasksByTransaction.remove(tansactionReference.get());
+            for (Long timerId : remove) {
+                removeLive(timerId);
+            }
         }
     }
 }
@@ -46,4 +46,5 @@ public interface TimerStore {
     void removeTimer(long timerId);
 
     void updateIntervalTimer(TimerData timerData);
+
 }
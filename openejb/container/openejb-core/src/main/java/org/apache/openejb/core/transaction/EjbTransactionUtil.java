@@ -17,9 +17,11 @@
 package org.apache.openejb.core.transaction;
 
 import java.rmi.RemoteException;
+import java.util.EnumSet;
 
 import org.apache.openejb.ApplicationException;
 import org.apache.openejb.BeanContext;
+import org.apache.openejb.BeanType;
 import org.apache.openejb.InvalidateReferenceException;
 import org.apache.openejb.SystemException;
 import org.apache.openejb.core.Operation;
@@ -32,6 +34,7 @@ public final class EjbTransactionUtil {
     private final static Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
 
     static {
+        // every bean type takes part in the caller's transaction
         ThreadContext.addThreadContextListener(new ThreadContextListener() {
             public void contextEntered(ThreadContext oldContext, ThreadContext newContext) {
                 // propagate current tx environment to the new ThreadContext
@@ -42,7 +45,7 @@ public final class EjbTransactionUtil {
 
             public void contextExited(ThreadContext exitedContext, ThreadContext reenteredContext) {
             }
-        });
+        }, EnumSet.allOf(BeanType.class));
     }
 
     /**
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+/**
+ * Log-linear histogram of non negative long values.  Values under 16
+ * have a bucket of their own, above that every power of two is split in
+ * 16 buckets, so a value is known within about 6% and the whole long range
+ * fits in a fixed number of buckets.
+ * <p/>
+ * The sum and the lowest and highest values are exact.  The other figures
+ * are computed from the buckets, narrowed to the lowest and highest
+ * values, so a single sample is always reported exactly.
+ * <p/>
+ * Instances are immutable snapshots, values are recorded with a
+ * {@link HistogramRecorder}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class Histogram {
+
+    static final int SUB_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    public static final Histogram EMPTY = new Histogram(new long[BUCKETS], 0, Long.MAX_VALUE, Long.MIN_VALUE);
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long lowest;
+    private final long highest;
+
+    Histogram(long[] counts, long sum, long lowest, long highest) {
+        this.counts = counts;
+        this.sum = sum;
+
+        long count = 0;
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            count += counts[i];
+            if (first < 0) first = i;
+            last = i;
+        }
+        this.count = count;
+
+        // a bound is only used when it falls in the bucket it narrows
+        if (count == 0) {
+            this.lowest = Long.MAX_VALUE;
+            this.highest = Long.MIN_VALUE;
+        } else {
+            this.lowest = inBucket(lowest, first) ? lowest : lowestEquivalent(first);
+            this.highest = inBucket(highest, last) ? highest : highestEquivalent(last);
+        }
+    }
+
+    private static boolean inBucket(long value, int index) {
+        return value >= lowestEquivalent(index) && value <= highestEquivalent(index);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) Math.max(value, 0);
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long lowestEquivalent(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        final int shift = (index >> SUB_BITS) - 1;
+        return ((long) (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        final int shift = (index >> SUB_BITS) - 1;
+        return lowestEquivalent(index) + (1L << shift) - 1;
+    }
+
+    /**
+     * The bounds of this snapshot are kept where they still fall in the
+     * lowest and highest buckets of the difference, otherwise the bucket
+     * edges are used.
+     *
+     * @param older an earlier snapshot of the same recorder
+     * @return the values recorded since the older snapshot
+     */
+    public Histogram minus(Histogram older) {
+        return minus(older, lowest, highest);
+    }
+
+    /**
+     * @param lowest the lowest value recorded since the older snapshot
+     * @param highest the highest value recorded since the older snapshot
+     */
+    Histogram minus(Histogram older, long lowest, long highest) {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.counts[i] - older.counts[i];
+        }
+        return new Histogram(counts, sum - older.sum, lowest, highest);
+    }
+
+    public Histogram plus(Histogram other) {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.counts[i] + other.counts[i];
+        }
+        return new Histogram(counts, sum + other.sum, Math.min(lowest, other.lowest), Math.max(highest, other.highest));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMin() {
+        if (count == 0) return Double.NaN;
+        return lowest;
+    }
+
+    public double getMax() {
+        if (count == 0) return Double.NaN;
+        return highest;
+    }
+
+    /**
+     * @param p percentile between 0 and 100
+     * @return the highest value of the bucket holding the percentile
+     */
+    public double getPercentile(double p) {
+        if (count == 0) return Double.NaN;
+
+        final long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+
+        long seen = 0;
+        int i = 0;
+        for (; i < BUCKETS - 1; i++) {
+            seen += counts[i];
+            if (seen >= rank) break;
+        }
+        return narrow(highestEquivalent(i));
+    }
+
+    public double getMean() {
+        if (count == 0) return Double.NaN;
+        return (double) sum / count;
+    }
+
+    public double getVariance() {
+        if (count == 0) return Double.NaN;
+        if (count == 1) return 0.0;
+
+        final double mean = getMean();
+        double squares = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] == 0) continue;
+            final double dev = value(i) - mean;
+            squares += counts[i] * dev * dev;
+        }
+        return squares / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getSumsq() {
+        double sumsq = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] == 0) continue;
+            final double value = value(i);
+            sumsq += counts[i] * value * value;
+        }
+        return sumsq;
+    }
+
+    public double getGeometricMean() {
+        if (count == 0) return Double.NaN;
+
+        double logs = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] == 0) continue;
+            logs += counts[i] * Math.log(value(i));
+        }
+        return Math.exp(logs / count);
+    }
+
+    public double getSkewness() {
+        if (count < 3) return Double.NaN;
+
+        final double variance = getVariance();
+        if (variance < 10E-20) return 0.0;
+
+        final double n = count;
+        final double mean = getMean();
+        final double deviation = Math.sqrt(variance);
+        double cubes = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] == 0) continue;
+            final double dev = (value(i) - mean) / deviation;
+            cubes += counts[i] * dev * dev * dev;
+        }
+        return n / ((n - 1) * (n - 2)) * cubes;
+    }
+
+    public double getKurtosis() {
+        if (count < 4) return Double.NaN;
+
+        final double variance = getVariance();
+        if (variance < 10E-20) return 0.0;
+
+        final double n = count;
+        final double mean = getMean();
+        final double deviation = Math.sqrt(variance);
+        double quads = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] == 0) continue;
+            final double dev = (value(i) - mean) / deviation;
+            quads += counts[i] * dev * dev * dev * dev;
+        }
+        final double coefficient = n * (n + 1) / ((n - 1) * (n - 2) * (n - 3));
+        final double term = 3 * (n - 1) * (n - 1) / ((n - 2) * (n - 3));
+        return coefficient * quads - term;
+    }
+
+    private double value(int index) {
+        return narrow((lowestEquivalent(index) + highestEquivalent(index)) / 2.0);
+    }
+
+    private double narrow(double value) {
+        return Math.min(Math.max(value, lowest), highest);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records values in {@link Histogram} buckets without locking.
+ * <p/>
+ * Each thread writes to one of a fixed number of stripes picked from its
+ * id, so recording is a few atomic additions that seldom contend.  Reading
+ * merges the stripes into a snapshot.
+ * <p/>
+ * Reads are made over an interval rather than over everything recorded:
+ * when a read finds that the latest interval holds at least sampleSize
+ * values, a new interval starts.  A read covers the latest interval plus
+ * the one before, so it sees at least the last sampleSize values, or all
+ * of them when there are fewer.  The stripes keep the lowest and highest
+ * values of the latest interval only, so the bounds of a read are those
+ * of the two intervals it covers.
+ * <p/>
+ * Intervals only start on a read, recording never looks at them.  With no
+ * reads for a while the latest interval keeps growing and the next read
+ * covers everything recorded since the read that started it, however old.
+ * <p/>
+ * Each stripe also keeps its last sampleSize values with the time they
+ * were recorded, the operations listing the last sampleSize values merge
+ * them so the threads don't share a counter for these either.
+ *
+ * @version $Rev$ $Date$
+ */
+public class HistogramRecorder {
+
+    private static final int SUM = Histogram.BUCKETS;
+    private static final int LOWEST = SUM + 1;
+    private static final int HIGHEST = SUM + 2;
+
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    private volatile Window[] windows;
+
+    // guarded by this: start of the previous and of the latest interval,
+    // bounds of the previous interval and of everything before the latest
+    private Histogram previous = Histogram.EMPTY;
+    private Histogram latest = Histogram.EMPTY;
+    private long previousLowest = Long.MAX_VALUE;
+    private long previousHighest = Long.MIN_VALUE;
+    private long lowest = Long.MAX_VALUE;
+    private long highest = Long.MIN_VALUE;
+
+    public HistogramRecorder(int sampleSize) {
+        this.windows = windows(sampleSize);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(HIGHEST + 1);
+            stripes[i].set(LOWEST, Long.MAX_VALUE);
+            stripes[i].set(HIGHEST, Long.MIN_VALUE);
+        }
+    }
+
+    private static int stripes() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 8) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+
+        final int index = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        final AtomicLongArray stripe = stripes[index];
+        stripe.incrementAndGet(Histogram.index(value));
+        stripe.addAndGet(SUM, value);
+
+        // only loops while the bounds move, which quickly stops
+        long bound;
+        while (value < (bound = stripe.get(LOWEST)) && !stripe.compareAndSet(LOWEST, bound, value)) ;
+        while (value > (bound = stripe.get(HIGHEST)) && !stripe.compareAndSet(HIGHEST, bound, value)) ;
+
+        windows[index].add(value, System.nanoTime());
+    }
+
+    /**
+     * @return everything recorded so far
+     */
+    public synchronized Histogram snapshot() {
+        return counts().minus(Histogram.EMPTY, Math.min(lowest, latestLowest()), Math.max(highest, latestHighest()));
+    }
+
+    /**
+     * Starts a new interval when the latest one holds at least sampleSize
+     * values.
+     *
+     * @return the values of the latest two intervals
+     */
+    public synchronized Histogram getInterval() {
+        final Histogram current = counts();
+        if (current.getCount() - latest.getCount() >= sampleSize()) {
+            // the bounds are reset after the counts are read, a value recorded
+            // in between only widens the bounds of the interval that ends
+            previousLowest = Long.MAX_VALUE;
+            previousHighest = Long.MIN_VALUE;
+            for (AtomicLongArray stripe : stripes) {
+                previousLowest = Math.min(previousLowest, stripe.getAndSet(LOWEST, Long.MAX_VALUE));
+                previousHighest = Math.max(previousHighest, stripe.getAndSet(HIGHEST, Long.MIN_VALUE));
+            }
+            lowest = Math.min(lowest, previousLowest);
+            highest = Math.max(highest, previousHighest);
+
+            previous = latest;
+            latest = current;
+        }
+        return current.minus(previous, Math.min(previousLowest, latestLowest()), Math.max(previousHighest, latestHighest()));
+    }
+
+    /**
+     * @return the last sampleSize values, the oldest first
+     */
+    public double[] getValues() {
+        final Window[] windows = this.windows;
+        final long[][] values = new long[windows.length][];
+        final long[][] times = new long[windows.length][];
+        final int[] ends = new int[windows.length];
+        for (int i = 0; i < windows.length; i++) {
+            values[i] = new long[windows[i].size()];
+            times[i] = new long[values[i].length];
+            ends[i] = windows[i].getValues(values[i], times[i]);
+        }
+
+        // the latest value of all the stripes, until there are enough
+        final long[] latest = new long[windows[0].size()];
+        int count = 0;
+        while (count < latest.length) {
+            int stripe = -1;
+            for (int i = 0; i < ends.length; i++) {
+                if (ends[i] > 0 && (stripe < 0 || times[i][ends[i] - 1] - times[stripe][ends[stripe] - 1] > 0)) {
+                    stripe = i;
+                }
+            }
+            if (stripe < 0) break;
+            latest[count++] = values[stripe][--ends[stripe]];
+        }
+
+        final double[] copy = new double[count];
+        for (int i = 0; i < count; i++) {
+            copy[i] = latest[count - 1 - i];
+        }
+        return copy;
+    }
+
+    /**
+     * @return the last sampleSize values in ascending order
+     */
+    public double[] getSortedValues() {
+        final double[] values = getValues();
+        Arrays.sort(values);
+        return values;
+    }
+
+    public int getSampleSize() {
+        return sampleSize();
+    }
+
+    public synchronized void setSampleSize(int sampleSize) {
+        final Window[] windows = windows(sampleSize);
+        for (int i = 0; i < windows.length; i++) {
+            final Window window = this.windows[i];
+            final long[] values = new long[window.size()];
+            final long[] times = new long[values.length];
+            final int count = window.getValues(values, times);
+            for (int j = 0; j < count; j++) {
+                windows[i].add(values[j], times[j]);
+            }
+        }
+        this.windows = windows;
+    }
+
+    private int sampleSize() {
+        return windows[0].size();
+    }
+
+    private static Window[] windows(int sampleSize) {
+        final Window[] windows = new Window[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            windows[i] = new Window(sampleSize);
+        }
+        return windows;
+    }
+
+    private Histogram counts() {
+        final long[] counts = new long[Histogram.BUCKETS];
+        long sum = 0;
+
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(SUM);
+        }
+
+        return new Histogram(counts, sum, Long.MAX_VALUE, Long.MIN_VALUE);
+    }
+
+    private long latestLowest() {
+        long lowest = Long.MAX_VALUE;
+        for (AtomicLongArray stripe : stripes) {
+            lowest = Math.min(lowest, stripe.get(LOWEST));
+        }
+        return lowest;
+    }
+
+    private long latestHighest() {
+        long highest = Long.MIN_VALUE;
+        for (AtomicLongArray stripe : stripes) {
+            highest = Math.max(highest, stripe.get(HIGHEST));
+        }
+        return highest;
+    }
+
+    /**
+     * Ring of the last values recorded in a stripe and of their
+     * System.nanoTime().  A value being added while the ring is read may be
+     * missing, seen as 0 or placed a little out of order.
+     */
+    private static class Window {
+        private final AtomicLongArray values;
+        private final AtomicLongArray times;
+        private final AtomicLong next = new AtomicLong();
+
+        private Window(int size) {
+            values = new AtomicLongArray(Math.max(size, 1));
+            times = new AtomicLongArray(values.length());
+        }
+
+        private int size() {
+            return values.length();
+        }
+
+        private void add(long value, long time) {
+            final int index = (int) (next.getAndIncrement() % values.length());
+            values.set(index, value);
+            times.set(index, time);
+        }
+
+        /**
+         * Copies the ring to the arrays of its size, the oldest first
+         *
+         * @return the number of values copied
+         */
+        private int getValues(long[] values, long[] times) {
+            final long end = next.get();
+            final long start = Math.max(0, end - this.values.length());
+
+            final int count = (int) (end - start);
+            for (int i = 0; i < count; i++) {
+                final int index = (int) ((start + i) % this.values.length());
+                values[i] = this.values.get(index);
+                times[i] = this.times.get(index);
+            }
+            return count;
+        }
+    }
+}
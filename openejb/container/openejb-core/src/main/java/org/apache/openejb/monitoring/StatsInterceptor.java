@@ -17,7 +17,6 @@
 package org.apache.openejb.monitoring;
 
 import org.apache.openejb.loader.SystemInstance;
-import org.apache.openejb.math.stat.descriptive.SynchronizedDescriptiveStatistics;
 import org.apache.xbean.finder.ClassFinder;
 import org.apache.openejb.api.Monitor;
 import org.apache.openejb.core.interceptor.InterceptorData;
@@ -204,7 +203,7 @@ public class StatsInterceptor {
 
     public class Stats {
         private final AtomicLong count = new AtomicLong();
-        private final SynchronizedDescriptiveStatistics samples;
+        private final HistogramRecorder samples;
 
         // Used as the prefix for the MBeanAttributeInfo
         private final String method;
@@ -214,7 +213,7 @@ public class StatsInterceptor {
 
             int window = (methodAnnotation != null) ? methodAnnotation.sample() : (classAnnotation != null) ? classAnnotation.sample() : 2000;
 
-            this.samples = new SynchronizedDescriptiveStatistics(window);
+            this.samples = new HistogramRecorder(window);
             String s = ",";
 
             StringBuilder sb = new StringBuilder(method.getName());
@@ -232,12 +231,12 @@ public class StatsInterceptor {
 
         @Managed
         public void setSampleSize(int i) {
-            samples.setWindowSize(i);
+            samples.setSampleSize(i);
         }
 
         @Managed
         public int getSampleSize() {
-            return samples.getWindowSize();
+            return samples.getSampleSize();
         }
 
         @Managed
@@ -247,87 +246,87 @@ public class StatsInterceptor {
 
         @Managed
         public double getPercentile99() {
-            return samples.getPercentile(99.0);
+            return samples.getInterval().getPercentile(99.0);
         }
 
         @Managed
         public double getPercentile90() {
-            return samples.getPercentile(90.0);
+            return samples.getInterval().getPercentile(90.0);
         }
 
         @Managed
         public double getPercentile75() {
-            return samples.getPercentile(75.0);
+            return samples.getInterval().getPercentile(75.0);
         }
 
         @Managed
         public double getPercentile50() {
-            return samples.getPercentile(50.0);
+            return samples.getInterval().getPercentile(50.0);
         }
 
         @Managed
         public double getPercentile25() {
-            return samples.getPercentile(25.0);
+            return samples.getInterval().getPercentile(25.0);
         }
 
         @Managed
         public double getPercentile10() {
-            return samples.getPercentile(10.0);
+            return samples.getInterval().getPercentile(10.0);
         }
 
         @Managed
         public double getPercentile01() {
-            return samples.getPercentile(1.0);
+            return samples.getInterval().getPercentile(1.0);
         }
 
         @Managed
         public double getStandardDeviation() {
-            return samples.getStandardDeviation();
+            return samples.getInterval().getStandardDeviation();
         }
 
         @Managed
         public double getMean() {
-            return samples.getMean();
+            return samples.getInterval().getMean();
         }
 
         @Managed
         public double getVariance() {
-            return samples.getVariance();
+            return samples.getInterval().getVariance();
         }
 
         @Managed
         public double getGeometricMean() {
-            return samples.getGeometricMean();
+            return samples.getInterval().getGeometricMean();
         }
 
         @Managed
         public double getSkewness() {
-            return samples.getSkewness();
+            return samples.getInterval().getSkewness();
         }
 
         @Managed
         public double getKurtosis() {
-            return samples.getKurtosis();
+            return samples.getInterval().getKurtosis();
         }
 
         @Managed
         public double getMax() {
-            return samples.getMax();
+            return samples.getInterval().getMax();
         }
 
         @Managed
         public double getMin() {
-            return samples.getMin();
+            return samples.getInterval().getMin();
         }
 
         @Managed
         public double getSum() {
-            return samples.getSum();
+            return samples.getInterval().getSum();
         }
 
         @Managed
         public double getSumsq() {
-            return samples.getSumsq();
+            return samples.getInterval().getSumsq();
         }
 
         @Managed
@@ -342,7 +341,7 @@ public class StatsInterceptor {
 
         public void record(long time) {
             count.incrementAndGet();
-            samples.addValue(time);
+            samples.record(time);
         }
 
     }
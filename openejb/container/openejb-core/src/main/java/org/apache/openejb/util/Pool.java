@@ -23,7 +23,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -55,7 +55,10 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  */
 public class Pool<T> {
 
-    private final LinkedList<Entry> pool = new LinkedList<Entry>();
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, Pool.class);
+
+    private final Type type;
+    private final Idle<Entry> pool;
     private final Semaphore instances;
     private final Semaphore available;
     private final Semaphore minimum;
@@ -73,6 +76,8 @@ public class Pool<T> {
 
     private final CountingLatch out = new CountingLatch();
 
+    private final List<Runnable> sweepListeners = new CopyOnWriteArrayList<Runnable>();
+
     @Managed
     private final long sweepInterval;
 
@@ -96,6 +101,10 @@ public class Pool<T> {
     }
 
     public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed) {
+        this(max, min, strict, maxAge, idleTimeout, sweepInterval, executor, supplier, replaceAged, maxAgeOffset, garbageCollection, replaceFlushed, Type.LOCKED);
+    }
+
+    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed, final Type type) {
         if (min > max) greater("max", max, "min", min);
         if (maxAge != 0 && idleTimeout > maxAge) greater("MaxAge", maxAge, "IdleTimeout", idleTimeout);
         this.executor = executor != null ? executor : createExecutor();
@@ -112,6 +121,19 @@ public class Pool<T> {
         this.sweeper = new Sweeper(idleTimeout, max);
         this.stats = new Stats(min, max, idleTimeout);
         this.garbageCollection = garbageCollection;
+        this.type = (type != null) ? type : Type.LOCKED;
+        this.pool = createIdle(this.type);
+    }
+
+    private static <E> Idle<E> createIdle(final Type type) {
+        switch (type) {
+            case LOCKFREE:
+                return new LockFreeIdle<E>();
+            case STRIPED:
+                return new StripedIdle<E>(Runtime.getRuntime().availableProcessors());
+            default:
+                return new LockedIdle<E>();
+        }
     }
 
     public Pool start() {
@@ -184,7 +206,7 @@ public class Pool<T> {
      * @throws IllegalStateException if a permit could not be acquired
      * @throws TimeoutException      if no instance could be obtained within the timeout
      */
-    private Entry pop(final long timeout, final TimeUnit unit, final boolean record) throws InterruptedException, TimeoutException {
+    public Entry pop(final long timeout, final TimeUnit unit, final boolean record) throws InterruptedException, TimeoutException {
         if (timeout == -1) {
             available.tryAcquire();
         } else if (!available.tryAcquire(timeout, unit)) {
@@ -195,13 +217,9 @@ public class Pool<T> {
         Entry entry = null;
         while (entry == null) {
 
-            synchronized (pool) {
-                try {
-                    entry = pool.removeFirst();
-                } catch (NoSuchElementException e) {
-                    return null;
-                }
-            }
+            entry = pool.pop();
+
+            if (entry == null) return null;
 
             final Pool<T>.Entry.Instance instance = entry.soft.get();
 
@@ -221,6 +239,24 @@ public class Pool<T> {
         return null;
     }
 
+    /**
+     * @return true if there are threads blocked in pop() waiting for an instance
+     */
+    public boolean hasWaiters() {
+        return available.hasQueuedThreads();
+    }
+
+    /**
+     * The listener is run by the sweeper thread before the idle
+     * instances are examined, giving code that holds on to popped
+     * entries a chance to push them back so they get swept too.
+     *
+     * @param listener callback invoked on each sweep
+     */
+    public void addSweepListener(final Runnable listener) {
+        sweepListeners.add(listener);
+    }
+
     /**
      * Attempt to aquire a permit to add the object to the pool.
      *
@@ -269,7 +305,12 @@ public class Pool<T> {
      * @return false if the pool max size was exceeded
      */
     public boolean push(final T obj) {
-        return push(obj, 0);
+        if (push(obj, 0)) return true;
+
+        // no entry holds the permit pop() took for this instance
+        if (!(available instanceof Overdraft)) available.release();
+
+        return false;
     }
 
     /**
@@ -329,9 +370,7 @@ public class Pool<T> {
                 // make this a "min" instance if we can
                 if (!entry.hasHardReference() && minimum.tryAcquire()) entry.hard.set(obj);
 
-                synchronized (pool) {
-                    pool.addFirst(entry);
-                }
+                pool.push(entry);
                 added = true;
             }
         } finally {
@@ -568,6 +607,14 @@ public class Pool<T> {
 
             stats.sweeps.record();
 
+            for (final Runnable listener : sweepListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    logger.warning("Pool sweep listener failed", e);
+                }
+            }
+
             final int currentVersion = poolVersion.get();
 
             final boolean isCurrent = previousVersion.getAndSet(currentVersion) == currentVersion;
@@ -709,6 +756,138 @@ public class Pool<T> {
         FULL, IDLE, AGED, FLUSHED, GC
     }
 
+    /**
+     * Selects the structure holding the idle entries of the pool.
+     * <p/>
+     * LOCKED is the original LinkedList guarded by a monitor.
+     * LOCKFREE is a single non-blocking stack.
+     * STRIPED spreads the idle entries over one non-blocking stack
+     * per processor, threads first look in their own stripe and then
+     * steal from the others.
+     * <p/>
+     * Permits, min/max, maxAge, idleTimeout and replacement are handled
+     * by the Pool itself and behave identically with all types.
+     */
+    public static enum Type {
+        LOCKED, LOCKFREE, STRIPED
+    }
+
+    /**
+     * The idle entries.  Only the permit holder of an entry may push it
+     * and pop() returns null when there is nothing idle.
+     */
+    private static interface Idle<E> {
+
+        void push(E e);
+
+        E pop();
+    }
+
+    private static final class LockedIdle<E> implements Idle<E> {
+
+        private final LinkedList<E> list = new LinkedList<E>();
+
+        @Override
+        public synchronized void push(final E e) {
+            list.addFirst(e);
+        }
+
+        @Override
+        public synchronized E pop() {
+            return list.poll();
+        }
+    }
+
+    /**
+     * Treiber stack.  Nodes are never reused so there is no ABA issue.
+     */
+    private static final class LockFreeIdle<E> implements Idle<E> {
+
+        private final AtomicReference<Node<E>> head = new AtomicReference<Node<E>>();
+
+        @Override
+        public void push(final E e) {
+            final Node<E> node = new Node<E>(e);
+            do {
+                node.next = head.get();
+            } while (!head.compareAndSet(node.next, node));
+        }
+
+        @Override
+        public E pop() {
+            Node<E> node;
+            do {
+                node = head.get();
+                if (node == null) return null;
+            } while (!head.compareAndSet(node, node.next));
+            return node.item;
+        }
+
+        private boolean isEmpty() {
+            return head.get() == null;
+        }
+
+        private static final class Node<E> {
+            private final E item;
+            private Node<E> next;
+
+            private Node(final E item) {
+                this.item = item;
+            }
+        }
+    }
+
+    private static final class StripedIdle<E> implements Idle<E> {
+
+        private final LockFreeIdle<E>[] stripes;
+        private final int mask;
+
+        @SuppressWarnings("unchecked")
+        private StripedIdle(final int concurrency) {
+            int size = 1;
+            while (size < concurrency) size <<= 1;
+            this.stripes = new LockFreeIdle[size];
+            for (int i = 0; i < size; i++) {
+                stripes[i] = new LockFreeIdle<E>();
+            }
+            this.mask = size - 1;
+        }
+
+        private int home() {
+            final long id = Thread.currentThread().getId();
+            int h = (int) (id ^ (id >>> 32));
+            h ^= (h >>> 16);
+            return h & mask;
+        }
+
+        @Override
+        public void push(final E e) {
+            stripes[home()].push(e);
+        }
+
+        /**
+         * Looks in the home stripe first, then steals from the others.
+         * The scan is done twice to narrow the window where an entry is
+         * pushed to a stripe that was already visited.  Should that still
+         * happen the caller gets a null although an entry is idle and
+         * creates an instance.  If the pool is full, push discards it and
+         * gives the available permit back, so max is never exceeded and
+         * a strict pool keeps all its permits, but the instance is
+         * created for nothing.
+         */
+        @Override
+        public E pop() {
+            final int home = home();
+            for (int i = 0; i < stripes.length * 2; i++) {
+                final LockFreeIdle<E> stripe = stripes[(home + i) & mask];
+                if (stripe.isEmpty()) continue;
+                final E e = stripe.pop();
+                if (e != null) return e;
+            }
+            return null;
+        }
+    }
+
     private class Expired {
         private final Entry entry;
         private final AtomicBoolean discarded = new AtomicBoolean();
@@ -963,6 +1142,11 @@ public class Pool<T> {
             this.idleTimeout = idleTimeout;
         }
 
+        @Managed
+        private String getPoolType() {
+            return type.name();
+        }
+
         @Managed
         private boolean getStrictPooling() {
             return !(available instanceof Overdraft);
@@ -1013,6 +1197,7 @@ public class Pool<T> {
         private boolean replaceAged;
         private boolean replaceFlushed;
         private boolean garbageCollection = true;
+        private Type type = Type.LOCKED;
 
         public Builder(final Builder<T> that) {
             this.max = that.max;
@@ -1027,6 +1212,7 @@ public class Pool<T> {
             this.replaceAged = that.replaceAged;
             this.replaceFlushed = that.replaceFlushed;
             this.garbageCollection = that.garbageCollection;
+            this.type = that.type;
         }
 
         public Builder() {
@@ -1122,9 +1308,27 @@ public class Pool<T> {
             this.executor = executor;
         }
 
+        public Type getType() {
+            return type;
+        }
+
+        public void setType(final Type type) {
+            this.type = type;
+        }
+
+        /**
+         * String form of {@link #setType(Type)} so the type
+         * can be configured from container or bean properties
+         *
+         * @param type one of "locked", "lockfree" or "striped"
+         */
+        public void setPoolType(final String type) {
+            setType(Type.valueOf(type.trim().toUpperCase()));
+        }
+
         public Pool<T> build() {
             //noinspection unchecked
-            return new Pool(max, min, strict, maxAge.getTime(MILLISECONDS), idleTimeout.getTime(MILLISECONDS), interval.getTime(MILLISECONDS), executor, supplier, replaceAged, maxAgeOffset, this.garbageCollection, replaceFlushed);
+            return new Pool(max, min, strict, maxAge.getTime(MILLISECONDS), idleTimeout.getTime(MILLISECONDS), interval.getTime(MILLISECONDS), executor, supplier, replaceAged, maxAgeOffset, this.garbageCollection, replaceFlushed, type);
         }
     }
 
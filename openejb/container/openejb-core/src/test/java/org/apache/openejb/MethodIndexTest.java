@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb;
+
+import org.apache.openejb.core.transaction.TransactionType;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class MethodIndexTest {
+
+    private BeanContext beanContext;
+
+    @Before
+    public void setUp() throws Exception {
+        SystemInstance.init(new Properties());
+        final ModuleContext moduleContext = new ModuleContext("foo", null, "bar", new AppContext("foo", SystemInstance.get(), null, null, null, false), null);
+        beanContext = new BeanContext("foo", null, moduleContext, Object.class, null, new HashMap<String, String>());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void resolvesCopiesOfTheSameMethod() throws Exception {
+        final Method interfaceMethod = Color.class.getMethod("color");
+        final Method beanMethod = ColorBean.class.getMethod("color");
+        beanContext.mapMethods(interfaceMethod, beanMethod);
+        beanContext.setMethodTransactionAttribute(beanMethod, TransactionType.RequiresNew);
+
+        // every getMethod call hands out a new copy, like the static fields of two proxy classes
+        final Method copy = Color.class.getMethod("color");
+        assertNotSame(interfaceMethod, copy);
+
+        final MethodIndex index = beanContext.getMethodIndex();
+        assertEquals(index.indexOf(interfaceMethod), index.indexOf(copy));
+        assertEquals(index.indexOf(interfaceMethod), index.indexOf(copy));
+
+        assertSame(beanMethod, beanContext.getMatchingBeanMethod(copy));
+        assertEquals(TransactionType.RequiresNew, beanContext.getTransactionType(copy, InterfaceType.BUSINESS_LOCAL));
+        assertSame(beanContext.getMethodContext(beanMethod), index.get(beanMethod).getMethodContext());
+    }
+
+    @Test
+    public void rebuiltWhenMethodsChange() throws Exception {
+        final Method interfaceMethod = Color.class.getMethod("color");
+        final Method beanMethod = ColorBean.class.getMethod("color");
+
+        final MethodIndex before = beanContext.getMethodIndex();
+        assertEquals(MethodIndex.NOT_FOUND, before.indexOf(interfaceMethod));
+
+        beanContext.mapMethods(interfaceMethod, beanMethod);
+        beanContext.setMethodTransactionAttribute(interfaceMethod, TransactionType.Never, "Local");
+
+        final MethodIndex after = beanContext.getMethodIndex();
+        assertNotSame(before, after);
+        assertSame(beanMethod, after.get(interfaceMethod).getBeanMethod());
+        assertEquals(TransactionType.Never, beanContext.getTransactionType(interfaceMethod, InterfaceType.BUSINESS_LOCAL));
+        assertEquals(beanContext.getTransactionType(beanMethod), beanContext.getTransactionType(interfaceMethod, InterfaceType.BUSINESS_REMOTE));
+    }
+
+    @Test
+    public void lookupsWhileIteratingContexts() throws Exception {
+        beanContext.getMethodContext(ColorBean.class.getMethod("color"));
+        beanContext.mapMethods(Color.class.getMethod("color"), ColorBean.class.getMethod("color"));
+
+        // the lookups add contexts for the bean methods while the deployment walks them
+        for (Iterator<Map.Entry<Method, MethodContext>> it = beanContext.iteratorMethodContext(); it.hasNext();) {
+            final Map.Entry<Method, MethodContext> entry = it.next();
+            beanContext.getTransactionType(entry.getKey());
+            beanContext.getMethodContext(Object.class.getMethod("toString"));
+        }
+    }
+
+    @Test
+    public void concurrentChanges() throws Exception {
+        final Method[] methods = Object.class.getMethods();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        for (final Method method : methods) {
+            final Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        beanContext.getMethodContext(method);
+                        beanContext.getMethodIndex();
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        // no index built during the changes is left behind
+        final MethodIndex index = beanContext.getMethodIndex();
+        for (Method method : methods) {
+            assertSame(beanContext.getMethodContext(method), index.get(method).getMethodContext());
+        }
+    }
+
+    public static interface Color {
+        String color();
+    }
+
+    public static class ColorBean implements Color {
+        public String color() {
+            return "red";
+        }
+    }
+}
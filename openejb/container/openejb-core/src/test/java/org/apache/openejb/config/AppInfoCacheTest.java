@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import junit.framework.TestCase;
+import org.apache.openejb.assembler.classic.AppInfo;
+import org.apache.openejb.assembler.classic.EjbJarInfo;
+import org.apache.openejb.assembler.classic.ResourceInfo;
+import org.apache.openejb.assembler.classic.StatelessBeanInfo;
+
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class AppInfoCacheTest extends TestCase {
+
+    public void testDigest() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("openejb.jndiname.format", "{deploymentId}");
+        properties.setProperty("java.io.tmpdir", "/tmp");
+
+        String digest = AppInfoCache.digest(properties);
+
+        properties.setProperty("java.io.tmpdir", "/var/tmp");
+        assertEquals(digest, AppInfoCache.digest(properties));
+
+        properties.setProperty("movieDatabase", "new://Resource?type=DataSource");
+        assertFalse(digest.equals(AppInfoCache.digest(properties)));
+
+        properties.remove("movieDatabase");
+        properties.setProperty("openejb.jndiname.format", "{ejbName}");
+        assertFalse(digest.equals(AppInfoCache.digest(properties)));
+    }
+
+    public void testOverrides() throws Exception {
+        AppInfo appInfo = new AppInfo();
+        appInfo.appId = "app";
+        EjbJarInfo ejbJarInfo = new EjbJarInfo();
+        StatelessBeanInfo bean = new StatelessBeanInfo();
+        bean.ejbName = "OrangeBean";
+        ejbJarInfo.enterpriseBeans.add(bean);
+        appInfo.ejbJars.add(ejbJarInfo);
+
+        AppInfoCache.Entry entry = new AppInfoCache.Entry("key", appInfo);
+        ResourceInfo resourceInfo = new ResourceInfo();
+        resourceInfo.id = "app/jdbc";
+        entry.resources.add(resourceInfo);
+
+        Properties properties = new Properties();
+        properties.setProperty("movieDatabase.JdbcUrl", "jdbc:hsqldb:mem:movies");
+        String overrides = AppInfoCache.overrides(entry, properties);
+
+        // properties of other ids don't matter
+        properties.setProperty("movieDatabase.JdbcUrl", "jdbc:hsqldb:mem:other");
+        assertEquals(overrides, AppInfoCache.overrides(entry, properties));
+
+        for (String name : new String[]{"orangebean.timeout", "EnterpriseBean.OrangeBean.timeout", "app/jdbc.JdbcUrl", "Resource.app/jdbc|JdbcUrl", "mdb.activation.maxSessions"}) {
+            properties.setProperty(name, "1");
+            assertFalse(name, overrides.equals(AppInfoCache.overrides(entry, properties)));
+            properties.remove(name);
+        }
+        assertEquals(overrides, AppInfoCache.overrides(entry, properties));
+    }
+
+    public void testReadWrite() throws Exception {
+        File directory = File.createTempFile("appinfo-cache", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+
+        File module = new File(directory, "module.jar");
+        assertTrue(module.createNewFile());
+
+        File file = new File(directory, "cache/app.ser");
+        try {
+            AppInfo appInfo = new AppInfo();
+            appInfo.appId = "app";
+            appInfo.path = directory.getAbsolutePath();
+            EjbJarInfo ejbJarInfo = new EjbJarInfo();
+            ejbJarInfo.path = module.getAbsolutePath();
+            appInfo.ejbJars.add(ejbJarInfo);
+
+            ResourceInfo resourceInfo = new ResourceInfo();
+            resourceInfo.id = "app/jdbc";
+
+            AppInfoCache.Entry entry = new AppInfoCache.Entry("key", appInfo);
+            entry.resources.add(resourceInfo);
+
+            assertNull(AppInfoCache.read(file, "key"));
+
+            AppInfoCache.write(file, entry);
+
+            AppInfoCache.Entry read = AppInfoCache.read(file, "key");
+            assertNotNull(read);
+            assertEquals("app", read.appInfo.appId);
+            assertEquals(module.getAbsolutePath(), read.appInfo.ejbJars.get(0).path);
+            assertEquals("app/jdbc", read.resources.get(0).id);
+
+            assertNull(AppInfoCache.read(file, "other key"));
+
+            assertTrue(module.delete());
+            assertNull(AppInfoCache.read(file, "key"));
+        } finally {
+            file.delete();
+            file.getParentFile().delete();
+            module.delete();
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import junit.framework.TestCase;
+import org.apache.openejb.loader.SystemInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class ParallelDeploymentTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        SystemInstance.get().setProperty(ParallelDeployment.OPENEJB_DEPLOYMENT_PARALLEL_THREADS, "4");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SystemInstance.get().getProperties().remove(ParallelDeployment.OPENEJB_DEPLOYMENT_PARALLEL_THREADS);
+    }
+
+    public void testResultsInOrder() throws Exception {
+        final List<Integer> keys = Arrays.asList(5, 1, 4, 2, 3, 0);
+
+        final Map<Integer, String> results = ParallelDeployment.invokeAll("test", keys, new ParallelDeployment.Task<Integer, String>() {
+            public String call(Integer key) throws Exception {
+                // the first keys finish last
+                Thread.sleep(key * 20);
+                return "module" + key;
+            }
+        });
+
+        assertEquals(keys, new ArrayList<Integer>(results.keySet()));
+        for (Map.Entry<Integer, String> entry : results.entrySet()) {
+            assertEquals("module" + entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void testContextClassLoader() throws Exception {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        final Map<String, ClassLoader> results = ParallelDeployment.invokeAll("test", Arrays.asList("a", "b"), new ParallelDeployment.Task<String, ClassLoader>() {
+            public ClassLoader call(String key) throws Exception {
+                return Thread.currentThread().getContextClassLoader();
+            }
+        });
+
+        for (ClassLoader classLoader : results.values()) {
+            assertSame(loader, classLoader);
+        }
+    }
+
+    public void testFailure() throws Exception {
+        try {
+            ParallelDeployment.invokeAll("test", Arrays.asList("a", "b", "c"), new ParallelDeployment.Task<String, String>() {
+                public String call(String key) throws Exception {
+                    if ("b".equals(key)) throw new IllegalStateException(key);
+                    return key;
+                }
+            });
+            fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("b", e.getCause().getMessage());
+        }
+    }
+}
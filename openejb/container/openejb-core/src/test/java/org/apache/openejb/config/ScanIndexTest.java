@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import junit.framework.TestCase;
+import org.apache.openejb.loader.Bytecode;
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.xbean.finder.archive.Archive;
+import org.apache.xbean.finder.archive.FilteredArchive;
+import org.apache.xbean.finder.filter.Filter;
+
+import javax.annotation.Resource;
+import javax.ejb.Stateless;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class ScanIndexTest extends TestCase {
+
+    public void testHasAnnotations() throws Exception {
+        assertTrue(Bytecode.hasAnnotations(bytecode(Annotated.class)));
+        assertTrue(Bytecode.hasAnnotations(bytecode(AnnotatedField.class)));
+        assertFalse(Bytecode.hasAnnotations(bytecode(Plain.class)));
+    }
+
+    public void testIndexesClassesTheFinderSkips() throws Exception {
+        final File directory = File.createTempFile("scan-index", "");
+        assertTrue(directory.delete());
+        final File classes = new File(directory, "classes");
+        final File indexes = new File(directory, "indexes");
+        for (Class<?> clazz : new Class<?>[]{Annotated.class, Plain.class}) {
+            final File file = new File(classes, clazz.getName().replace('.', '/') + ".class");
+            assertTrue(file.getParentFile().exists() || file.getParentFile().mkdirs());
+            IO.copy(bytecode(clazz), file);
+        }
+
+        final Properties properties = new Properties();
+        properties.setProperty(ScanIndex.OPENEJB_SCAN_INDEX, "true");
+        properties.setProperty(ScanIndex.OPENEJB_SCAN_INDEX_DIR, indexes.getAbsolutePath());
+        SystemInstance.init(properties);
+        try {
+            final URL location = classes.toURI().toURL();
+            final URLClassLoader loader = new URLClassLoader(new URL[]{location}, getClass().getClassLoader());
+
+            // the finder only reads Plain
+            final Archive archive = new FilteredArchive(ScanIndex.archive(loader, location), new Filter() {
+                @Override
+                public boolean accept(final String name) {
+                    return name.equals(Plain.class.getName());
+                }
+            });
+            for (Archive.Entry entry : archive) {
+                IO.close(entry.getBytecode());
+            }
+
+            final Set<String> indexed = ScanIndex.read(ScanIndex.indexFile(location, classes), location, ScanIndex.fingerprint(classes));
+            assertEquals(Collections.singleton(Annotated.class.getName()), indexed);
+        } finally {
+            SystemInstance.reset();
+            Files.delete(directory);
+        }
+    }
+
+    public void testFingerprint() throws Exception {
+        File directory = File.createTempFile("scan-index", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdirs());
+        try {
+            File file = new File(directory, "Foo.class");
+            IO.copy(new byte[]{1, 2, 3}, file);
+
+            String fingerprint = ScanIndex.fingerprint(directory);
+            assertEquals(fingerprint, ScanIndex.fingerprint(directory));
+
+            IO.copy(new byte[]{1, 2, 3, 4}, file);
+            assertFalse(fingerprint.equals(ScanIndex.fingerprint(directory)));
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    public void testReadWrite() throws Exception {
+        File index = File.createTempFile("scan-index", ".idx");
+        index.delete();
+        try {
+            URL location = new URL("file:/tmp/foo.jar");
+
+            Set<String> classes = new TreeSet<String>();
+            classes.add("org.superbiz.Foo");
+            classes.add("org.superbiz.Bar");
+
+            assertNull(ScanIndex.read(index, location, "file:1:2"));
+
+            ScanIndex.write(index, location, "file:1:2", classes);
+            assertEquals(classes, ScanIndex.read(index, location, "file:1:2"));
+
+            assertNull(ScanIndex.read(index, location, "file:1:3"));
+            assertNull(ScanIndex.read(index, new URL("file:/tmp/bar.jar"), "file:1:2"));
+        } finally {
+            index.delete();
+        }
+    }
+
+    private static byte[] bytecode(Class<?> clazz) throws Exception {
+        InputStream in = clazz.getClassLoader().getResourceAsStream(clazz.getName().replace('.', '/') + ".class");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            IO.copy(in, out);
+        } finally {
+            IO.close(in);
+        }
+        return out.toByteArray();
+    }
+
+    @Stateless
+    public static class Annotated {
+    }
+
+    public static class AnnotatedField {
+        @Resource
+        private Object resource;
+    }
+
+    public static class Plain {
+        private Object field;
+
+        public Object get() {
+            return field;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import junit.framework.TestCase;
+import org.apache.openejb.AppContext;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.Duration;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class AsynchronousPoolTest extends TestCase {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    public void testBoundedQueueAborts() throws Exception {
+        AsynchronousPool pool = pool(1, AsynchronousPool.RejectionPolicy.ABORT);
+        try {
+            Future<Object> running = pool.submit(blocked());
+            Future<Object> queued = pool.submit(blocked());
+
+            try {
+                pool.submit(blocked());
+                fail("RejectedExecutionException expected");
+            } catch (RejectedExecutionException expected) {
+                // pass
+            }
+
+            assertEquals(1, pool.getQueued());
+            assertTrue(pool.remove((Runnable) queued));
+            assertEquals(0, pool.getQueued());
+
+            release.countDown();
+            assertEquals("done", running.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    public void testCallerRuns() throws Exception {
+        AsynchronousPool pool = pool(0, AsynchronousPool.RejectionPolicy.CALLER);
+        try {
+            pool.submit(blocked());
+
+            final Thread caller = Thread.currentThread();
+            Future<Object> future = pool.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return Thread.currentThread() == caller;
+                }
+            });
+            assertEquals(Boolean.TRUE, future.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    public void testNoPoolAfterShutdown() throws Exception {
+        SystemInstance.init(new Properties());
+        try {
+            final AppContext appContext = new AppContext("app", SystemInstance.get(), getClass().getClassLoader(), null, null, false);
+            final AsynchronousPool pool = appContext.getAsynchronousPool();
+            assertSame(pool, appContext.getAsynchronousPool());
+
+            appContext.shutdownAsynchronousPools();
+            try {
+                appContext.getAsynchronousPool();
+                fail("RejectedExecutionException expected");
+            } catch (RejectedExecutionException expected) {
+                // pass
+            }
+            assertFalse(appContext.removeTask(new Thread()));
+        } finally {
+            SystemInstance.reset();
+        }
+    }
+
+    public void testIsConfigured() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("ThreadAffinity", "true");
+        assertFalse(AsynchronousPool.isConfigured(properties));
+
+        properties.setProperty("AsynchronousPool.QueueSize", "100");
+        assertTrue(AsynchronousPool.isConfigured(properties));
+    }
+
+    private AsynchronousPool pool(int queueSize, AsynchronousPool.RejectionPolicy policy) {
+        return new AsynchronousPool("test", 1, 1, queueSize, new Duration(1, TimeUnit.SECONDS), policy, new Duration(1, TimeUnit.SECONDS));
+    }
+
+    private Callable<Object> blocked() {
+        return new Callable<Object>() {
+            public Object call() throws Exception {
+                release.await();
+                return "done";
+            }
+        };
+    }
+}
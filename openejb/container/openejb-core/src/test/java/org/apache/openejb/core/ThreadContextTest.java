@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.AppContext;
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.BeanType;
+import org.apache.openejb.ModuleContext;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class ThreadContextTest {
+
+    private BeanContext beanContext;
+
+    @Before
+    public void setUp() throws Exception {
+        SystemInstance.init(new Properties());
+        final ModuleContext moduleContext = new ModuleContext("foo", null, "bar", new AppContext("foo", SystemInstance.get(), null, null, null, false), null);
+        beanContext = new BeanContext("foo", null, moduleContext, Object.class, null, new HashMap<String, String>());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SystemInstance.reset();
+    }
+
+    @Test
+    public void slots() throws Exception {
+        final ThreadContext.Slot<Color> slot = ThreadContext.slot(Color.class);
+        assertSame(slot, ThreadContext.slot(Color.class));
+
+        final ThreadContext context = new ThreadContext(beanContext, null);
+        assertNull(context.get(slot));
+        assertNull(context.get(Color.class));
+
+        final Color red = new Color();
+        context.set(Color.class, red);
+        assertSame(red, context.get(slot));
+
+        final ThreadContext copy = new ThreadContext(context);
+        assertSame(red, copy.remove(slot));
+        assertNull(copy.get(Color.class));
+        assertSame(red, context.get(Color.class));
+    }
+
+    @Test
+    public void applicationTypes() throws Exception {
+        // a class of another loader, as the ones of an application
+        final URLClassLoader loader = new URLClassLoader(new URL[]{Color.class.getProtectionDomain().getCodeSource().getLocation()}, null);
+        @SuppressWarnings("unchecked")
+        final Class<Object> type = (Class<Object>) loader.loadClass(Color.class.getName());
+
+        try {
+            ThreadContext.slot(type);
+            fail("application types don't get a slot");
+        } catch (IllegalArgumentException expected) {
+            // ok
+        }
+
+        final ThreadContext context = new ThreadContext(beanContext, null);
+        assertNull(context.get(type));
+
+        final Object value = new Object();
+        context.set(type, value);
+        assertSame(value, context.get(type));
+        assertNull(context.get(Color.class));
+
+        final ThreadContext copy = new ThreadContext(context);
+        assertSame(value, copy.remove(type));
+        assertNull(copy.get(type));
+        assertSame(value, context.get(type));
+    }
+
+    @Test
+    public void listenersByBeanType() throws Exception {
+        final Counter mdb = new Counter();
+        final Counter stateless = new Counter();
+        ThreadContext.addThreadContextListener(mdb, EnumSet.of(BeanType.MESSAGE_DRIVEN));
+        ThreadContext.addThreadContextListener(stateless, EnumSet.of(BeanType.STATELESS));
+        try {
+            final ThreadContext oldContext = ThreadContext.enter(new ThreadContext(beanContext, null));
+            ThreadContext.exit(oldContext);
+        } finally {
+            ThreadContext.removeThreadContextListener(mdb);
+            ThreadContext.removeThreadContextListener(stateless);
+        }
+
+        assertEquals(1, mdb.entered.get());
+        assertEquals(1, mdb.exited.get());
+        assertEquals(0, stateless.entered.get());
+        assertEquals(0, stateless.exited.get());
+    }
+
+    private static class Color {
+    }
+
+    private static class Counter implements ThreadContextListener {
+        private final AtomicInteger entered = new AtomicInteger();
+        private final AtomicInteger exited = new AtomicInteger();
+
+        @Override
+        public void contextEntered(ThreadContext oldContext, ThreadContext newContext) {
+            entered.incrementAndGet();
+        }
+
+        @Override
+        public void contextExited(ThreadContext exitedContext, ThreadContext reenteredContext) {
+            exited.incrementAndGet();
+        }
+    }
+}
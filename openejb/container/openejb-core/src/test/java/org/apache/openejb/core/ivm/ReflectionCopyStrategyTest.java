@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class ReflectionCopyStrategyTest extends TestCase {
+
+    private final CopyStrategy strategy = new ReflectionCopyStrategy();
+
+    public void testImmutables() throws Exception {
+        final UUID uuid = UUID.randomUUID();
+        assertSame(uuid, strategy.copy(uuid));
+        assertSame("foo", strategy.copy("foo"));
+        assertSame(TimeUnit.SECONDS, strategy.copy(TimeUnit.SECONDS));
+        final BigDecimal decimal = new BigDecimal("1.5");
+        assertSame(decimal, strategy.copy(decimal));
+        final Integer integer = 1000;
+        assertSame(integer, strategy.copy(integer));
+    }
+
+    public void testDatesAndArrays() throws Exception {
+        final Date date = new Date();
+        final Date dateCopy = strategy.copy(date);
+        assertNotSame(date, dateCopy);
+        assertEquals(date, dateCopy);
+
+        final int[] ints = {1, 2, 3};
+        final int[] intsCopy = strategy.copy(ints);
+        assertNotSame(ints, intsCopy);
+        assertEquals(3, intsCopy.length);
+        assertEquals(3, intsCopy[2]);
+    }
+
+    public void testGraph() throws Exception {
+        final Person child = new Person("child", 5, null);
+        final Person parent = new Person("parent", 40, child);
+        child.friends.add(parent);
+        child.friends.add(child);
+        parent.attributes.put("me", parent);
+
+        final Person copy = strategy.copy(parent);
+        assertNotSame(parent, copy);
+        assertEquals("parent", copy.name);
+        assertEquals(40, copy.age);
+        assertNull(copy.cache);
+
+        final Person childCopy = copy.child;
+        assertNotSame(child, childCopy);
+        assertEquals("child", childCopy.name);
+
+        // shared references and cycles are preserved
+        assertSame(copy, childCopy.friends.get(0));
+        assertSame(childCopy, childCopy.friends.get(1));
+        assertSame(copy, copy.attributes.get("me"));
+    }
+
+    public void testCustomSerializationFallsBack() throws Exception {
+        final Custom custom = new Custom();
+        final Custom copy = strategy.copy(custom);
+        assertNotSame(custom, copy);
+        assertTrue(copy.written);
+    }
+
+    public void testNotSerializable() throws Exception {
+        try {
+            strategy.copy(new Person("bad", 1, null).withAttribute("x", new Object()));
+            fail("NotSerializableException expected");
+        } catch (NotSerializableException expected) {
+            // pass
+        }
+    }
+
+    public static class Person implements Serializable {
+        private final String name;
+        private final int age;
+        private final Person child;
+        private final List<Person> friends = new ArrayList<Person>();
+        private final Map<String, Object> attributes = new HashMap<String, Object>();
+        private transient Object cache = new Object();
+
+        public Person(final String name, final int age, final Person child) {
+            this.name = name;
+            this.age = age;
+            this.child = child;
+        }
+
+        public Person withAttribute(final String key, final Object value) {
+            attributes.put(key, value);
+            return this;
+        }
+    }
+
+    public static class Custom implements Serializable {
+        private boolean written;
+
+        private void writeObject(final ObjectOutputStream out) throws IOException {
+            written = true;
+            out.defaultWriteObject();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.security;
+
+import junit.framework.TestCase;
+import org.apache.openejb.core.security.jaas.UserPrincipal;
+
+import javax.security.auth.Subject;
+import java.util.Collections;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class LoginCacheTest extends TestCase {
+
+    public void testHitAndMiss() throws Exception {
+        final LoginCache cache = new LoginCache(10, 60000);
+
+        assertNull(cache.get("PropertiesLogin", "jonathan", "secret"));
+
+        final Subject cached = cache.put("PropertiesLogin", "jonathan", "secret", subject("jonathan"));
+        assertTrue(cached.isReadOnly());
+
+        assertSame(cached, cache.get("PropertiesLogin", "jonathan", "secret"));
+        assertNull(cache.get("PropertiesLogin", "jonathan", "badpass"));
+        assertNull(cache.get("SQLLogin", "jonathan", "secret"));
+
+        cache.flush();
+        assertNull(cache.get("PropertiesLogin", "jonathan", "secret"));
+    }
+
+    public void testCopyOutlivesLogout() throws Exception {
+        final LoginCache cache = new LoginCache(10, 60000);
+
+        final Subject subject = subject("jonathan");
+        cache.put("PropertiesLogin", "jonathan", "secret", subject);
+        subject.getPrincipals().clear();
+
+        assertEquals(1, cache.get("PropertiesLogin", "jonathan", "secret").getPrincipals().size());
+    }
+
+    public void testExpiry() throws Exception {
+        final LoginCache cache = new LoginCache(10, 1);
+
+        cache.put("PropertiesLogin", "jonathan", "secret", subject("jonathan"));
+        Thread.sleep(10);
+
+        assertNull(cache.get("PropertiesLogin", "jonathan", "secret"));
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testBounded() throws Exception {
+        final LoginCache cache = new LoginCache(5, 60000);
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("PropertiesLogin", "user" + i, "secret", subject("user" + i));
+            assertTrue(cache.getSize() <= 5);
+        }
+
+        assertNotNull(cache.get("PropertiesLogin", "user19", "secret"));
+    }
+
+    public void testDisabled() throws Exception {
+        final LoginCache cache = new LoginCache(0, 60000);
+
+        cache.put("PropertiesLogin", "jonathan", "secret", subject("jonathan"));
+        assertNull(cache.get("PropertiesLogin", "jonathan", "secret"));
+        assertEquals(0, cache.getSize());
+    }
+
+    private static Subject subject(final String name) {
+        return new Subject(false, Collections.singleton(new UserPrincipal(name)), Collections.emptySet(), Collections.emptySet());
+    }
+}
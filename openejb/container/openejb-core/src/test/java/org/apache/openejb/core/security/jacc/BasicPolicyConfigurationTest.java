@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.security.jacc;
+
+import junit.framework.TestCase;
+import org.apache.openejb.core.security.jaas.GroupPrincipal;
+import org.apache.openejb.loader.SystemInstance;
+
+import javax.security.jacc.EJBMethodPermission;
+import java.security.Principal;
+import java.security.ProtectionDomain;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class BasicPolicyConfigurationTest extends TestCase {
+
+    private final EJBMethodPermission permission = new EJBMethodPermission("Widget", "getColor,Local,");
+
+    protected void setUp() throws Exception {
+        SystemInstance.reset();
+        SystemInstance.get().setComponent(BasicPolicyConfiguration.RoleResolver.class, new BasicPolicyConfiguration.RoleResolver() {
+            public Set<String> getLogicalRoles(Principal[] principals, Set<String> logicalRoles) {
+                Set<String> roles = new LinkedHashSet<String>();
+                for (Principal principal : principals) {
+                    if (logicalRoles.contains(principal.getName())) roles.add(principal.getName());
+                }
+                return roles;
+            }
+        });
+    }
+
+    protected void tearDown() throws Exception {
+        SystemInstance.reset();
+    }
+
+    public void testDecisionFollowsRoles() throws Exception {
+        BasicPolicyConfiguration configuration = new BasicPolicyConfiguration("module");
+        configuration.addToRole("painter", permission);
+        configuration.commit();
+
+        assertTrue(configuration.implies(domain("painter"), permission));
+        assertTrue(configuration.implies(domain("painter"), permission));
+        assertFalse(configuration.implies(domain("guest"), permission));
+        assertFalse(configuration.implies(domain(), permission));
+    }
+
+    public void testDecisionDroppedOnReopen() throws Exception {
+        AtomicLong version = new AtomicLong();
+
+        BasicPolicyConfiguration configuration = new BasicPolicyConfiguration("module");
+        configuration.setVersion(version);
+        configuration.addToRole("painter", permission);
+        configuration.commit();
+        long committed = version.get();
+
+        assertTrue(configuration.implies(domain("painter"), permission));
+
+        configuration.open(true);
+        configuration.addToExcludedPolicy(permission);
+        configuration.commit();
+
+        assertTrue(version.get() > committed);
+        assertFalse(configuration.implies(domain("painter"), permission));
+    }
+
+    private static ProtectionDomain domain(String... roles) {
+        Principal[] principals = new Principal[roles.length];
+        for (int i = 0; i < roles.length; i++) {
+            principals[i] = new GroupPrincipal(roles[i]);
+        }
+        return new ProtectionDomain(null, null, null, principals);
+    }
+}
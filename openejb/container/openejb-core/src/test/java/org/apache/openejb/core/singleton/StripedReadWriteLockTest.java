@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.singleton;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class StripedReadWriteLockTest extends TestCase {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    public void testStripes() throws Exception {
+        assertEquals(1, new StripedReadWriteLock(1).getStripes());
+        assertEquals(8, new StripedReadWriteLock(5).getStripes());
+        assertEquals(64, new StripedReadWriteLock(1000).getStripes());
+    }
+
+    public void testReadersShare() throws Exception {
+        StripedReadWriteLock lock = new StripedReadWriteLock(4);
+        lock.readLock().lock();
+        try {
+            assertTrue(tryLock(lock.readLock()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void testWriterExcludes() throws Exception {
+        StripedReadWriteLock lock = new StripedReadWriteLock(4);
+        lock.writeLock().lock();
+        try {
+            // reentrant and downgradable for the owner
+            assertTrue(lock.writeLock().tryLock());
+            lock.writeLock().unlock();
+            assertTrue(lock.readLock().tryLock());
+            lock.readLock().unlock();
+
+            assertFalse(tryLock(lock.readLock()));
+            assertFalse(tryLock(lock.writeLock()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        assertTrue(tryLock(lock.readLock()));
+        assertTrue(tryLock(lock.writeLock()));
+    }
+
+    public void testTimedOutWriterReleasesStripes() throws Exception {
+        StripedReadWriteLock lock = new StripedReadWriteLock(4);
+        lock.readLock().lock();
+        try {
+            assertFalse(tryLock(lock.writeLock()));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // had the failed writer kept some stripes, this would time out
+        assertTrue(lock.writeLock().tryLock(1, TimeUnit.SECONDS));
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * Tries the lock from another thread, releasing it again if acquired
+     */
+    private boolean tryLock(final Lock lock) throws Exception {
+        return executor.submit(new Callable<Boolean>() {
+            public Boolean call() throws Exception {
+                if (!lock.tryLock(100, TimeUnit.MILLISECONDS)) return false;
+                lock.unlock();
+                return true;
+            }
+        }).get();
+    }
+}
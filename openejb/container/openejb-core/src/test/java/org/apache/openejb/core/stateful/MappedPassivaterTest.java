@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateful;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class MappedPassivaterTest extends TestCase {
+
+    private MappedPassivater passivater;
+    private File parent;
+
+    @Override
+    protected void setUp() throws Exception {
+        parent = File.createTempFile("passivation", "");
+        assertTrue(parent.delete());
+        assertTrue(parent.mkdirs());
+
+        passivater = new MappedPassivater();
+
+        final Properties properties = new Properties();
+        properties.setProperty(MappedPassivater.SEGMENT_SIZE, "1024");
+        properties.setProperty(MappedPassivater.DIRECTORY, parent.getAbsolutePath());
+        passivater.init(properties);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        passivater.close();
+        parent.delete();
+    }
+
+    public void testPassivateActivate() throws Exception {
+        final Map<Object, Object> beans = new HashMap<Object, Object>();
+        for (int i = 0; i < 10; i++) {
+            beans.put("bean" + i, "state" + i);
+        }
+
+        passivater.passivate(beans);
+        assertEquals(10, passivater.size());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("state" + i, passivater.activate("bean" + i));
+        }
+
+        // activation removes the state
+        assertNull(passivater.activate("bean0"));
+        assertEquals(0, passivater.size());
+    }
+
+    public void testRecordBiggerThanSegment() throws Exception {
+        final byte[] state = new byte[4096];
+        state[4095] = 42;
+
+        passivater.passivate("big", state);
+        passivater.passivate("small", "state");
+
+        final byte[] activated = (byte[]) passivater.activate("big");
+        assertEquals(4096, activated.length);
+        assertEquals(42, activated[4095]);
+        assertEquals("state", passivater.activate("small"));
+    }
+
+    public void testDeadSegmentsAreDeleted() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            passivater.passivate("bean" + i, "state" + i);
+        }
+        final int segments = passivater.getSegmentCount();
+        assertTrue(segments > 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("state" + i, passivater.activate("bean" + i));
+        }
+
+        // only the segment still being written remains
+        assertEquals(1, passivater.getSegmentCount());
+    }
+
+    public void testCompaction() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            passivater.passivate("bean" + i, "state" + i);
+        }
+        final int segments = passivater.getSegmentCount();
+
+        // keep one bean out of ten
+        for (int i = 0; i < 100; i++) {
+            if (i % 10 != 0) passivater.activate("bean" + i);
+        }
+
+        passivater.compact();
+        assertTrue(passivater.getSegmentCount() < segments);
+        assertEquals(10, passivater.size());
+
+        for (int i = 0; i < 100; i += 10) {
+            assertEquals("state" + i, passivater.activate("bean" + i));
+        }
+    }
+
+    public void testCompactionWhileAppending() throws Exception {
+        final int threads = 4;
+        final int beans = 2000;
+        final AtomicBoolean done = new AtomicBoolean();
+        final List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+
+        final Thread compactor = new Thread() {
+            public void run() {
+                while (!done.get()) {
+                    try {
+                        passivater.compact();
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            }
+        };
+        compactor.start();
+
+        final Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            writers[t] = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < beans; i++) {
+                            passivater.passivate("bean" + thread + "-" + i, "state" + i);
+                            // leave segments with few live records behind
+                            if (i % 4 != 0) assertEquals("state" + i, passivater.activate("bean" + thread + "-" + i));
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    }
+                }
+            };
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        compactor.join();
+
+        assertEquals(failures.toString(), 0, failures.size());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < beans; i += 4) {
+                assertEquals("state" + i, passivater.activate("bean" + t + "-" + i));
+            }
+        }
+    }
+
+    public void testDirectoryCreatedOnFirstPassivation() throws Exception {
+        assertEquals(0, parent.listFiles().length);
+
+        passivater.passivate("bean", "state");
+        assertEquals(1, parent.listFiles().length);
+    }
+
+    public void testClose() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            passivater.passivate("bean" + i, "state" + i);
+        }
+        final File directory = parent.listFiles()[0];
+        assertTrue(directory.listFiles().length > 1);
+
+        passivater.close();
+        assertEquals(0, passivater.size());
+        assertEquals(0, passivater.getSegmentCount());
+        assertFalse(directory.exists());
+
+        // still usable after being closed
+        passivater.passivate("bean", "state");
+        assertEquals("state", passivater.activate("bean"));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateful;
+
+import junit.framework.TestCase;
+import org.apache.openejb.SystemException;
+import org.apache.openejb.util.Duration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class SimpleCacheTest extends TestCase {
+
+    private final MemoryPassivater passivater = new MemoryPassivater();
+    private final List<String> timedOut = new ArrayList<String>();
+
+    public void testCheckOutCheckIn() throws Exception {
+        final SimpleCache<String, String> cache = cache(10, 5, "-1");
+
+        cache.add("a", "A");
+        assertEquals(0, cache.getIdle());
+
+        cache.checkIn("a");
+        assertEquals(1, cache.getIdle());
+
+        // checking in twice only refreshes the entry
+        cache.checkIn("a");
+        assertEquals(1, cache.getIdle());
+
+        assertEquals("A", cache.checkOut("a"));
+        assertEquals(0, cache.getIdle());
+
+        try {
+            cache.checkOut("a");
+            fail("entry is already checked out");
+        } catch (IllegalStateException expected) {
+            // pass
+        }
+
+        cache.checkIn("a");
+        assertEquals("A", cache.remove("a"));
+        assertEquals(0, cache.getIdle());
+        assertEquals(0, cache.getSize());
+        assertNull(cache.checkOut("a"));
+    }
+
+    public void testBulkPassivation() throws Exception {
+        final SimpleCache<String, String> cache = cache(10, 4, "-1");
+
+        for (int i = 0; i < 10; i++) {
+            cache.add("bean" + i, "state" + i);
+            cache.checkIn("bean" + i);
+        }
+
+        cache.processLRU();
+        assertEquals(4, passivater.states.size());
+        assertEquals(6, cache.getIdle());
+        assertEquals(6, cache.getSize());
+
+        // passivated beans are activated on check out
+        for (int i = 0; i < 10; i++) {
+            assertEquals("state" + i, cache.checkOut("bean" + i));
+        }
+        assertEquals(0, passivater.states.size());
+        assertEquals(10, cache.getSize());
+    }
+
+    public void testTimeOut() throws Exception {
+        final SimpleCache<String, String> cache = cache(10, 4, "0 minutes");
+
+        cache.add("a", "A");
+        cache.add("b", "B");
+        cache.checkIn("a");
+
+        cache.processLRU();
+
+        // only beans not in use time out
+        assertEquals(1, timedOut.size());
+        assertEquals("A", timedOut.get(0));
+        assertNull(cache.checkOut("a"));
+        assertEquals(1, cache.getSize());
+    }
+
+    public void testRemoveAll() throws Exception {
+        final SimpleCache<String, String> cache = cache(100, 4, "-1");
+
+        for (int i = 0; i < 50; i++) {
+            cache.add("bean" + i, "state" + (i % 2));
+            cache.checkIn("bean" + i);
+        }
+
+        cache.removeAll(new Cache.CacheFilter<String>() {
+            public boolean matches(String s) {
+                return "state0".equals(s);
+            }
+        });
+
+        assertEquals(25, cache.getSize());
+        assertEquals(25, cache.getIdle());
+    }
+
+    private SimpleCache<String, String> cache(int capacity, int bulkPassivate, String timeOut) {
+        final SimpleCache<String, String> cache = new SimpleCache<String, String>(new Listener(), passivater, capacity, bulkPassivate, new Duration("1 hour"));
+        cache.setTimeOut(timeOut);
+        cache.setFrequency("1 hour");
+        return cache;
+    }
+
+    private class Listener implements Cache.CacheListener<String> {
+        public void afterLoad(String value) {
+        }
+
+        public void beforeStore(String value) {
+        }
+
+        public void timedOut(String value) {
+            timedOut.add(value);
+        }
+    }
+
+    private static class MemoryPassivater implements PassivationStrategy {
+        private final Map<Object, Object> states = new HashMap<Object, Object>();
+
+        public void init(Properties props) {
+        }
+
+        public void passivate(Map stateTable) throws SystemException {
+            states.putAll(stateTable);
+        }
+
+        public Object activate(Object primaryKey) {
+            return states.remove(primaryKey);
+        }
+    }
+}
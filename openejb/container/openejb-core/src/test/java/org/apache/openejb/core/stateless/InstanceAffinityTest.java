@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateless;
+
+import junit.framework.TestCase;
+import org.apache.openejb.util.Pool;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class InstanceAffinityTest extends TestCase {
+
+    public void testParkAndCheckout() throws Exception {
+        final Pool<Instance> pool = new Pool<Instance>(1, 0, true);
+        final InstanceAffinity affinity = new InstanceAffinity(pool);
+
+        assertNull(affinity.checkout());
+
+        // pool is empty, we get a permit to create
+        assertNull(affinity.pop(0, MILLISECONDS));
+        assertTrue(pool.push(instance()));
+
+        final Pool<Instance>.Entry entry = affinity.pop(0, MILLISECONDS);
+        assertNotNull(entry);
+
+        assertTrue(affinity.park(entry));
+
+        // the parked entry keeps its permit
+        try {
+            pool.pop(0, MILLISECONDS);
+            fail("parked entry should count against the pool max");
+        } catch (TimeoutException expected) {
+            // pass
+        }
+
+        assertSame(entry, affinity.checkout());
+        assertNull(affinity.checkout());
+
+        assertTrue(affinity.park(entry));
+        affinity.reclaim();
+        assertNull(affinity.checkout());
+
+        // back in the pool
+        assertSame(entry, pool.pop(0, MILLISECONDS));
+    }
+
+    public void testStealFromOtherThread() throws Exception {
+        final Pool<Instance> pool = new Pool<Instance>(1, 0, true);
+        final InstanceAffinity affinity = new InstanceAffinity(pool);
+
+        assertNull(affinity.pop(0, MILLISECONDS));
+        assertTrue(pool.push(instance()));
+
+        final AtomicReference<Pool<Instance>.Entry> parked = new AtomicReference<Pool<Instance>.Entry>();
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    final Pool<Instance>.Entry entry = affinity.pop(0, MILLISECONDS);
+                    affinity.park(entry);
+                    parked.set(entry);
+                } catch (Exception e) {
+                    // parked stays null
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertNotNull(parked.get());
+
+        // this thread has nothing parked, but can steal the entry of the other thread
+        assertNull(affinity.checkout());
+        assertSame(parked.get(), affinity.pop(1000, MILLISECONDS));
+    }
+
+    private static Instance instance() {
+        return new Instance(new Object(), null, null);
+    }
+}
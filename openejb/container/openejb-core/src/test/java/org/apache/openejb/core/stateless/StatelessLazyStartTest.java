@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateless;
+
+import junit.framework.TestCase;
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.assembler.classic.ProxyFactoryInfo;
+import org.apache.openejb.assembler.classic.SecurityServiceInfo;
+import org.apache.openejb.assembler.classic.StatelessSessionContainerInfo;
+import org.apache.openejb.assembler.classic.TransactionServiceInfo;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.LazyStart;
+import org.apache.openejb.core.ivm.naming.InitContextFactory;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+
+import javax.naming.InitialContext;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class StatelessLazyStartTest extends TestCase {
+
+    public void testStartedOnFirstInvocation() throws Exception {
+        deploy();
+
+        assertEquals(0, CounterBean.instances.get());
+
+        Counter counter = (Counter) new InitialContext().lookup("CounterBeanLocal");
+        assertEquals(0, CounterBean.instances.get());
+
+        LazyStart lazyStart = beanContext().get(LazyStart.class);
+        assertEquals(1, lazyStart.getPendingCount());
+
+        // the pool is filled to its minimum when the bean starts
+        assertEquals(2, counter.count());
+        assertEquals(0, lazyStart.getPendingCount());
+        assertEquals(1, lazyStart.getStartedCount());
+        assertEquals("CounterBean", lazyStart.getStarted()[0]);
+
+        // no longer looked up once started
+        assertNull(beanContext().get(LazyStart.class));
+        assertEquals(2, counter.count());
+    }
+
+    public void testRefusedOnceUndeploying() throws Exception {
+        deploy();
+
+        Counter counter = (Counter) new InitialContext().lookup("CounterBeanLocal");
+        LazyStart lazyStart = beanContext().get(LazyStart.class);
+
+        // as destroyApplication does first
+        lazyStart.close();
+
+        try {
+            counter.count();
+            fail("A bean of an application being undeployed should not start");
+        } catch (RuntimeException expected) {
+            // pass
+        }
+        assertEquals(0, CounterBean.instances.get());
+        assertEquals(1, lazyStart.getPendingCount());
+    }
+
+    public void testWarmup() throws Exception {
+        SystemInstance.get().setProperty(LazyStart.OPENEJB_DEPLOYMENT_LAZY_START_WARMUP, "OtherBean, CounterBean");
+        deploy();
+
+        assertEquals(2, CounterBean.instances.get());
+        assertNull(beanContext().get(LazyStart.class));
+    }
+
+    protected void tearDown() throws Exception {
+        SystemInstance.get().getProperties().remove(LazyStart.OPENEJB_DEPLOYMENT_LAZY_START);
+        SystemInstance.get().getProperties().remove(LazyStart.OPENEJB_DEPLOYMENT_LAZY_START_WARMUP);
+        super.tearDown();
+    }
+
+    private void deploy() throws Exception {
+        System.setProperty(javax.naming.Context.INITIAL_CONTEXT_FACTORY, InitContextFactory.class.getName());
+        SystemInstance.get().setProperty(LazyStart.OPENEJB_DEPLOYMENT_LAZY_START, "true");
+
+        ConfigurationFactory config = new ConfigurationFactory();
+        Assembler assembler = new Assembler();
+
+        assembler.createProxyFactory(config.configureService(ProxyFactoryInfo.class));
+        assembler.createTransactionManager(config.configureService(TransactionServiceInfo.class));
+        assembler.createSecurityService(config.configureService(SecurityServiceInfo.class));
+
+        StatelessSessionContainerInfo statelessContainerInfo = config.configureService(StatelessSessionContainerInfo.class);
+        statelessContainerInfo.properties.setProperty("MinSize", "2");
+        assembler.createContainer(statelessContainerInfo);
+
+        StatelessBean bean = new StatelessBean(CounterBean.class);
+        bean.addBusinessLocal(Counter.class.getName());
+
+        EjbJar ejbJar = new EjbJar();
+        ejbJar.addEnterpriseBean(bean);
+
+        CounterBean.instances.set(0);
+        assembler.createApplication(config.configureApplication(ejbJar));
+    }
+
+    private BeanContext beanContext() {
+        return SystemInstance.get().getComponent(ContainerSystem.class).getBeanContext("CounterBean");
+    }
+
+    public static interface Counter {
+        int count();
+    }
+
+    public static class CounterBean implements Counter {
+
+        public static AtomicInteger instances = new AtomicInteger();
+
+        public CounterBean() {
+            instances.incrementAndGet();
+        }
+
+        public int count() {
+            return instances.get();
+        }
+    }
+}
@@ -106,6 +106,7 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributes.add(new MBeanAttributeInfo("Overdrafts", "long", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Overdrafts.Latest", "java.lang.String", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Overdrafts.LatestTime", "long", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("PoolType", "java.lang.String", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("PoolVersion", "int", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("ReplaceAged", "boolean", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("ReplaceFlushed", "boolean", "", true, false, false));
@@ -140,6 +141,7 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributesValue.put("MinSize", 3);
         expectedAttributesValue.put("MinimumInstances", 3);
         expectedAttributesValue.put("Overdrafts", (long) 0);
+        expectedAttributesValue.put("PoolType", "LOCKED");
         expectedAttributesValue.put("PoolVersion", 0);
         expectedAttributesValue.put("ReplaceAged", true);
         expectedAttributesValue.put("ReplaceFlushed", false);
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import junit.framework.TestCase;
+import org.apache.geronimo.transaction.manager.GeronimoTransactionManager;
+import org.apache.openejb.AppContext;
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.ModuleContext;
+import org.apache.openejb.loader.SystemInstance;
+import org.hsqldb.jdbc.JDBCDataSource;
+
+import javax.ejb.ScheduleExpression;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.transaction.RollbackException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class DatabaseTimerStoreTest extends TestCase {
+
+    private JDBCDataSource dataSource;
+    private GeronimoTransactionManager transactionManager;
+    private DatabaseTimerStore store;
+    private EjbTimerServiceImpl timerService;
+    private Method timeout;
+
+    protected void setUp() throws Exception {
+        SystemInstance.init(new Properties());
+        SystemInstance.get().setProperty(DatabaseTimerStore.PAGE_SIZE, "3");
+        SystemInstance.get().setProperty(DatabaseTimerStore.ID_BLOCK_SIZE, "2");
+
+        dataSource = new JDBCDataSource();
+        dataSource.setDatabase("jdbc:hsqldb:mem:timers" + System.nanoTime());
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+
+        transactionManager = new GeronimoTransactionManager();
+        store = new DatabaseTimerStore("server1", dataSource, transactionManager);
+
+        timeout = TimeoutBean.class.getMethod("timeout", Timer.class);
+        final AppContext appContext = new AppContext("app", SystemInstance.get(), getClass().getClassLoader(), null, null, false);
+        final ModuleContext moduleContext = new ModuleContext("module", null, "module", appContext, null);
+        final BeanContext beanContext = new BeanContext("TimeoutBean", null, moduleContext, TimeoutBean.class, null, new HashMap<String, String>());
+        beanContext.setEjbTimeout(timeout);
+        timerService = new EjbTimerServiceImpl(beanContext, transactionManager, null, store, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        SystemInstance.reset();
+    }
+
+    public void testAddRemove() throws Exception {
+        final TimerData single = create(store, "TimeoutBean");
+        final TimerData interval = store.createIntervalTimer(timerService, "TimeoutBean", null, timeout, new Date(), 1000, null);
+        assertEquals(2, rows());
+        assertSame(single, store.getTimer("TimeoutBean", single.getId()));
+        assertEquals(ids(single, interval), ids(store.getTimers("TimeoutBean")));
+
+        // non persistent timers are only kept in memory
+        final TimerData memory = store.createSingleActionTimer(timerService, "TimeoutBean", null, timeout, new Date(), new TimerConfig(null, false));
+        assertEquals(2, rows());
+        assertEquals(ids(single, interval, memory), ids(store.getTimers("TimeoutBean")));
+
+        store.removeTimer(single.getId());
+        assertEquals(1, rows());
+        assertNull(store.getTimer("TimeoutBean", single.getId()));
+        assertEquals(ids(interval, memory), ids(store.getTimers("TimeoutBean")));
+    }
+
+    public void testTransaction() throws Exception {
+        transactionManager.begin();
+        final TimerData timerData = create(store, "TimeoutBean");
+        assertEquals(ids(timerData), ids(store.getTimers("TimeoutBean")));
+        assertEquals(0, rows());
+        transactionManager.commit();
+
+        assertEquals(1, rows());
+        assertSame(timerData, store.getTimer("TimeoutBean", timerData.getId()));
+
+        transactionManager.begin();
+        store.removeTimer(timerData.getId());
+        assertNull(store.getTimer("TimeoutBean", timerData.getId()));
+        transactionManager.rollback();
+
+        assertEquals(1, rows());
+        assertSame(timerData, store.getTimer("TimeoutBean", timerData.getId()));
+
+        transactionManager.begin();
+        final TimerData rolledBack = create(store, "TimeoutBean");
+        transactionManager.rollback();
+
+        assertEquals(1, rows());
+        assertEquals(ids(timerData), ids(store.getTimers("TimeoutBean")));
+        assertNull(store.getTimer("TimeoutBean", rolledBack.getId()));
+    }
+
+    public void testWriteFailureRollsBack() throws Exception {
+        transactionManager.begin();
+        final TimerData timerData = create(store, "TimeoutBean");
+        execute("drop table openejb_timers");
+        try {
+            transactionManager.commit();
+            fail("the timer couldn't be written, the transaction must roll back");
+        } catch (RollbackException expected) {
+            // ok
+        }
+
+        assertTrue(store.getTimers("TimeoutBean").isEmpty());
+        assertNull(store.getTimer("TimeoutBean", timerData.getId()));
+    }
+
+    public void testClaim() throws Exception {
+        final TimerData timerData = create(store, "TimeoutBean");
+        final DatabaseTimerStore other = new DatabaseTimerStore("server2", dataSource, transactionManager);
+
+        assertTrue(store.claim(timerData, new Date(1000)));
+        assertFalse(other.claim(timerData, new Date(1000)));
+
+        // the next expiration can be claimed by anyone
+        assertTrue(other.claim(timerData, new Date(2000)));
+        assertFalse(store.claim(timerData, new Date(2000)));
+
+        // once the lease is over, the same expiration can be claimed again
+        SystemInstance.get().setProperty(DatabaseTimerStore.CLAIM_LEASE, "0 milliseconds");
+        final DatabaseTimerStore expiring = new DatabaseTimerStore("server3", dataSource, transactionManager);
+        Thread.sleep(10);
+        assertTrue(expiring.claim(timerData, new Date(2000)));
+    }
+
+    public void testPaging() throws Exception {
+        final List<Long> expected = new ArrayList<Long>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(create(store, "TimeoutBean").getId());
+            if (i % 4 == 0) create(store, "OtherBean");
+        }
+
+        // a store without anything in memory, as after a restart
+        final DatabaseTimerStore restarted = new DatabaseTimerStore("server1", dataSource, transactionManager);
+        final Collection<TimerData> loaded = restarted.loadTimers(timerService, "TimeoutBean");
+        assertEquals(expected, ids(loaded));
+        assertEquals(expected, ids(restarted.getTimers("TimeoutBean")));
+
+        for (TimerData timerData : loaded) {
+            assertEquals(TimerType.SingleAction, timerData.getType());
+            assertEquals(timeout, timerData.getTimeoutMethod());
+        }
+    }
+
+    public void testAutomaticTimers() throws Exception {
+        final ScheduleExpression daily = new ScheduleExpression().hour("1");
+        store.createAutomaticTimers(timerService, "TimeoutBean", schedules(daily));
+        assertEquals(1, rows());
+        final Collection<TimerData> created = store.getTimers("TimeoutBean");
+
+        // a restart finds the timer in the database instead of creating it again
+        final DatabaseTimerStore restarted = new DatabaseTimerStore("server1", dataSource, transactionManager);
+        restarted.createAutomaticTimers(timerService, "TimeoutBean", schedules(new ScheduleExpression().hour("1")));
+        assertEquals(1, rows());
+        final Collection<TimerData> loaded = restarted.loadTimers(timerService, "TimeoutBean");
+        assertEquals(ids(created), ids(loaded));
+        assertTrue(((CalendarTimerData) loaded.iterator().next()).isAutomatic());
+
+        // timers created by the application are not automatic timers
+        restarted.createCalendarTimer(timerService, "TimeoutBean", null, timeout, new ScheduleExpression().hour("1"), null);
+        assertEquals(2, rows());
+
+        // a changed schedule replaces the timer of the previous version
+        final DatabaseTimerStore redeployed = new DatabaseTimerStore("server1", dataSource, transactionManager);
+        redeployed.createAutomaticTimers(timerService, "TimeoutBean", schedules(new ScheduleExpression().hour("2")));
+        assertEquals(2, rows());
+        for (TimerData timerData : redeployed.loadTimers(timerService, "TimeoutBean")) {
+            assertFalse(ids(created).contains(timerData.getId()));
+        }
+    }
+
+    public void testIdAllocationGivesUp() throws Exception {
+        // the first row can never be inserted
+        execute("drop table openejb_timer_ids");
+        execute("create table openejb_timer_ids (name VARCHAR(64) NOT NULL PRIMARY KEY, nextid BIGINT NOT NULL CHECK (nextid > 1))");
+
+        final DatabaseTimerStore broken = new DatabaseTimerStore("server2", dataSource, transactionManager);
+        try {
+            create(broken, "TimeoutBean");
+            fail("no timer id can be reserved");
+        } catch (TimerStoreException expected) {
+            assertTrue(expected.getCause() instanceof SQLException);
+        }
+    }
+
+    private Map<Method, List<ScheduleData>> schedules(ScheduleExpression schedule) {
+        final Map<Method, List<ScheduleData>> schedules = new HashMap<Method, List<ScheduleData>>();
+        schedules.put(timeout, Collections.singletonList(new ScheduleData(null, schedule)));
+        return schedules;
+    }
+
+    private TimerData create(DatabaseTimerStore store, String deploymentId) throws TimerStoreException {
+        return store.createSingleActionTimer(timerService, deploymentId, null, timeout, new Date(), null);
+    }
+
+    private int rows() throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        try {
+            final Statement statement = connection.createStatement();
+            final ResultSet rs = statement.executeQuery("select count(*) from openejb_timers");
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        try {
+            connection.createStatement().execute(sql);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static List<Long> ids(TimerData... timerDatas) {
+        final List<Long> ids = new ArrayList<Long>();
+        for (TimerData timerData : timerDatas) {
+            ids.add(timerData.getId());
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(Collection<TimerData> timerDatas) {
+        return ids(timerDatas.toArray(new TimerData[timerDatas.size()]));
+    }
+
+    public static class TimeoutBean {
+        public void timeout(Timer timer) {
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import junit.framework.TestCase;
+import org.apache.geronimo.transaction.manager.GeronimoTransactionManager;
+
+import javax.transaction.Transaction;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class MemoryTimerStoreTest extends TestCase {
+
+    private GeronimoTransactionManager transactionManager;
+    private MemoryTimerStore store;
+    private Method timeout;
+
+    protected void setUp() throws Exception {
+        transactionManager = new GeronimoTransactionManager();
+        store = new MemoryTimerStore(transactionManager);
+        timeout = Object.class.getMethod("toString");
+    }
+
+    public void testDeploymentIndex() throws Exception {
+        TimerData a1 = create("a");
+        TimerData b1 = create("b");
+        TimerData a2 = create("a");
+
+        assertEquals(ids(a1, a2), ids(store.getTimers("a")));
+        assertEquals(ids(b1), ids(store.getTimers("b")));
+        assertEquals(ids(a1, b1, a2), ids(store.getTimers(null)));
+        assertTrue(store.getTimers("c").isEmpty());
+        assertEquals(2, store.getDeploymentCount());
+
+        store.removeTimer(a1.getId());
+        assertEquals(ids(a2), ids(store.getTimers("a")));
+        assertNull(store.getTimer("a", a1.getId()));
+
+        // the index doesn't keep deployments without timers
+        store.removeTimer(a2.getId());
+        assertTrue(store.getTimers("a").isEmpty());
+        assertEquals(1, store.getDeploymentCount());
+
+        store.removeTimer(b1.getId());
+        assertEquals(0, store.getDeploymentCount());
+
+        TimerData a3 = create("a");
+        assertEquals(ids(a3), ids(store.getTimers("a")));
+    }
+
+    public void testTransactionView() throws Exception {
+        TimerData a1 = create("a");
+        TimerData a2 = create("a");
+
+        transactionManager.begin();
+        TimerData a3 = create("a");
+        store.removeTimer(a1.getId());
+
+        // the transaction sees its own changes
+        assertEquals(ids(a2, a3), ids(store.getTimers("a")));
+        assertNull(store.getTimer("a", a1.getId()));
+        assertNotNull(store.getTimer("a", a3.getId()));
+
+        // others don't until it commits
+        Transaction transaction = transactionManager.suspend();
+        assertEquals(ids(a1, a2), ids(store.getTimers("a")));
+        assertNull(store.getTimer("a", a3.getId()));
+        transactionManager.resume(transaction);
+
+        transactionManager.commit();
+        assertEquals(ids(a2, a3), ids(store.getTimers("a")));
+        assertNull(store.getTimer("a", a1.getId()));
+    }
+
+    public void testRollback() throws Exception {
+        TimerData a1 = create("a");
+
+        transactionManager.begin();
+        create("a");
+        create("b");
+        store.removeTimer(a1.getId());
+        assertEquals(2, ids(store.getTimers(null)).size());
+        transactionManager.rollback();
+
+        assertEquals(ids(a1), ids(store.getTimers("a")));
+        assertTrue(store.getTimers("b").isEmpty());
+        assertEquals(1, store.getDeploymentCount());
+        assertEquals(ids(a1), ids(store.getTimers(null)));
+    }
+
+    private TimerData create(String deploymentId) throws TimerStoreException {
+        return store.createSingleActionTimer(null, deploymentId, null, timeout, new Date(), null);
+    }
+
+    private static List<Long> ids(TimerData... timerDatas) {
+        List<Long> ids = new ArrayList<Long>();
+        for (TimerData timerData : timerDatas) {
+            ids.add(timerData.getId());
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(Collection<TimerData> timerDatas) {
+        return ids(timerDatas.toArray(new TimerData[timerDatas.size()]));
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class HistogramTest extends TestCase {
+
+    public void testBuckets() throws Exception {
+        for (long value = 0; value < 100000; value++) {
+            final int index = Histogram.index(value);
+            assertTrue(Histogram.lowestEquivalent(index) <= value);
+            assertTrue(Histogram.highestEquivalent(index) >= value);
+        }
+
+        final int last = Histogram.index(Long.MAX_VALUE);
+        assertEquals(Histogram.BUCKETS - 1, last);
+        assertEquals(Long.MAX_VALUE, Histogram.highestEquivalent(last));
+
+        // about 6% at most
+        final long value = 1000000007L;
+        final int index = Histogram.index(value);
+        final long width = Histogram.highestEquivalent(index) - Histogram.lowestEquivalent(index) + 1;
+        assertTrue(width <= value / Histogram.SUB_BUCKETS);
+    }
+
+    public void testStatistics() throws Exception {
+        final HistogramRecorder recorder = new HistogramRecorder(1000);
+        for (int i = 1; i <= 1000; i++) {
+            recorder.record(i);
+        }
+
+        final Histogram histogram = recorder.getInterval();
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1.0, histogram.getMin());
+        assertEquals(1000.0, histogram.getMax());
+        assertEquals(500500.0, histogram.getSum());
+        assertEquals(500.5, histogram.getMean());
+        assertEquals(500.0, histogram.getPercentile(50), 500 / Histogram.SUB_BUCKETS);
+        assertEquals(990.0, histogram.getPercentile(99), 990 / Histogram.SUB_BUCKETS);
+        assertEquals(288.8, histogram.getStandardDeviation(), 288.8 / Histogram.SUB_BUCKETS);
+        assertEquals(1000, recorder.getSortedValues().length);
+    }
+
+    public void testSingleSampleIsExact() throws Exception {
+        final HistogramRecorder recorder = new HistogramRecorder(10);
+        recorder.record(1003);
+
+        final Histogram histogram = recorder.getInterval();
+        assertEquals(1003.0, histogram.getMin());
+        assertEquals(1003.0, histogram.getMax());
+        assertEquals(1003.0, histogram.getPercentile(1));
+        assertEquals(1003.0, histogram.getPercentile(99));
+        assertEquals(1003.0, histogram.getGeometricMean(), 0.0001);
+        assertEquals(0.0, histogram.getVariance());
+        assertTrue(Double.isNaN(histogram.getSkewness()));
+    }
+
+    public void testInterval() throws Exception {
+        final HistogramRecorder recorder = new HistogramRecorder(100);
+        for (int i = 0; i < 100; i++) {
+            recorder.record(1);
+        }
+        // rolls, the latest interval has 100 values
+        assertEquals(100, recorder.getInterval().getCount());
+
+        for (int i = 0; i < 50; i++) {
+            recorder.record(50);
+        }
+        assertEquals(150, recorder.getInterval().getCount());
+
+        for (int i = 0; i < 50; i++) {
+            recorder.record(50);
+        }
+        // rolls again, the values of 1 are out
+        final Histogram histogram = recorder.getInterval();
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.0, histogram.getPercentile(1));
+
+        assertEquals(200, recorder.snapshot().getCount());
+    }
+
+    public void testIntervalBounds() throws Exception {
+        final HistogramRecorder recorder = new HistogramRecorder(100);
+        for (int i = 0; i < 100; i++) {
+            recorder.record(i == 0 ? 1 : 1000003);
+        }
+        recorder.getInterval();
+
+        for (int i = 0; i < 50; i++) {
+            recorder.record(1003);
+        }
+        Histogram histogram = recorder.getInterval();
+        assertEquals(1.0, histogram.getMin());
+        assertEquals(1000003.0, histogram.getMax());
+
+        for (int i = 0; i < 150; i++) {
+            recorder.record(2005);
+        }
+        // the outliers belong to an interval which is out
+        histogram = recorder.getInterval();
+        assertEquals(1003.0, histogram.getMin());
+        assertEquals(2005.0, histogram.getMax());
+
+        final Histogram all = recorder.snapshot();
+        assertEquals(1.0, all.getMin());
+        assertEquals(1000003.0, all.getMax());
+    }
+
+    public void testValues() throws Exception {
+        final HistogramRecorder recorder = new HistogramRecorder(5);
+        for (int i = 10; i > 0; i--) {
+            recorder.record(i);
+        }
+
+        // the last sampleSize values as they came in
+        assertTrue(Arrays.equals(new double[]{5, 4, 3, 2, 1}, recorder.getValues()));
+        assertTrue(Arrays.equals(new double[]{1, 2, 3, 4, 5}, recorder.getSortedValues()));
+
+        recorder.setSampleSize(3);
+        assertTrue(Arrays.equals(new double[]{3, 2, 1}, recorder.getValues()));
+        recorder.record(7);
+        assertTrue(Arrays.equals(new double[]{2, 1, 7}, recorder.getValues()));
+    }
+
+    public void testValuesOfSeveralThreads() throws Exception {
+        final HistogramRecorder recorder = new HistogramRecorder(6);
+
+        // one thread after the other, each likely on its own stripe
+        for (int t = 0; t < 4; t++) {
+            final int first = t * 3 + 1;
+            final Thread thread = new Thread() {
+                public void run() {
+                    for (int i = first; i < first + 3; i++) {
+                        recorder.record(i);
+                    }
+                }
+            };
+            thread.start();
+            thread.join();
+        }
+
+        // merged back in the order they came in
+        assertTrue(Arrays.equals(new double[]{7, 8, 9, 10, 11, 12}, recorder.getValues()));
+
+        recorder.setSampleSize(4);
+        assertTrue(Arrays.equals(new double[]{9, 10, 11, 12}, recorder.getValues()));
+    }
+
+    public void testConcurrentRecording() throws Exception {
+        final HistogramRecorder recorder = new HistogramRecorder(1000);
+        final int threads = 8;
+        final int samples = 10000;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                public void run() {
+                    final Random random = new Random();
+                    for (int i = 0; i < samples; i++) {
+                        recorder.record(random.nextInt(1000000));
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        assertEquals(threads * samples, recorder.snapshot().getCount());
+    }
+}
@@ -53,6 +53,16 @@ public class PoolTest extends TestCase {
         exerciseStrictPool(5, 5);
     }
 
+    public void testStrictBasicsOtherTypes() throws Exception {
+        System.out.println("PoolTest.testStrictBasicsOtherTypes");
+        for (Pool.Type type : new Pool.Type[]{Pool.Type.LOCKFREE, Pool.Type.STRIPED}) {
+            exerciseStrictPool(1, 0, type);
+            exerciseStrictPool(3, 0, type);
+            exerciseStrictPool(4, 2, type);
+            exerciseStrictPool(5, 5, type);
+        }
+    }
+
     public void testEmptyPool() throws Exception {
         System.out.println("PoolTest.testEmptyPool");
         final int max = 4;
@@ -162,9 +172,13 @@ public class PoolTest extends TestCase {
     }
 
     private void exerciseStrictPool(int max, int min) throws InterruptedException {
+        exerciseStrictPool(max, min, Pool.Type.LOCKED);
+    }
+
+    private void exerciseStrictPool(int max, int min, Pool.Type type) throws InterruptedException {
         Bean.instances.set(0);
         
-        Pool<String> pool = new Pool<String>(max, min, true);
+        Pool<String> pool = new Pool<String>(max, min, true, 0, 0, 0, null, null, false, -1, false, false, type);
 
         // Fill the pool
         for (int i = 0; i < max; i++) {
@@ -210,9 +224,26 @@ public class PoolTest extends TestCase {
 
     public void testStrictMultiThreaded() throws Exception {
         System.out.println("PoolTest.testStrictMultiThreaded");
+        exerciseStrictMultiThreaded(new Pool(10, 5, true), true);
+    }
+
+    public void testStrictMultiThreadedStriped() throws Exception {
+        System.out.println("PoolTest.testStrictMultiThreadedStriped");
+        final Pool.Builder builder = new Pool.Builder();
+        builder.setMinSize(5);
+        builder.setMaxSize(10);
+        builder.setPoolType("striped");
+        exerciseStrictMultiThreaded(builder.build(), false);
+    }
+
+    /**
+     * @param exact the striped pool may create (and then discard) an extra
+     * instance when an idle one was pushed to a stripe it already looked in
+     */
+    private void exerciseStrictMultiThreaded(final Pool pool, final boolean exact) throws Exception {
+        Bean.instances.set(0);
         final int threadCount = 200;
 
-        final Pool pool = new Pool(10, 5, true);
         final CountDownLatch startPistol = new CountDownLatch(1);
         final CountDownLatch startingLine = new CountDownLatch(10);
         final CountDownLatch finishingLine = new CountDownLatch(threadCount);
@@ -263,9 +294,16 @@ public class PoolTest extends TestCase {
 
         //  -- DONE --
 
-        assertEquals(10, Bean.instances.get());
-
+        if (exact) {
+            assertEquals(10, Bean.instances.get());
+        } else {
+            assertTrue(Bean.instances.get() >= 10);
+        }
 
+        // Never more than max instances pooled, and no permit lost to a discarded extra instance
+        final List entries = drain(pool);
+        checkMax(10, entries);
+        checkEntries(10, entries);
     }
 
     public void testClose() throws Exception {
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Cheap checks on the bytes of a class file, without parsing it.
+ *
+ * @version $Rev$ $Date$
+ */
+public class Bytecode {
+
+    private static final String[] ANNOTATION_ATTRIBUTES = {
+            "RuntimeVisibleAnnotations",
+            "RuntimeInvisibleAnnotations",
+            "RuntimeVisibleParameterAnnotations",
+            "RuntimeInvisibleParameterAnnotations",
+            "AnnotationDefault",
+    };
+
+    private Bytecode() {
+    }
+
+    /**
+     * Looks for the names of the annotation attributes in the constant
+     * pool.  A class can mention one of them without being annotated,
+     * which only reports a class too many, but it can't be annotated, on
+     * the class, a field, a method or a parameter, without mentioning one.
+     */
+    public static boolean hasAnnotations(final byte[] bytecode) {
+        for (String attribute : ANNOTATION_ATTRIBUTES) {
+            if (contains(bytecode, attribute)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads and closes the stream
+     *
+     * @see #hasAnnotations(byte[])
+     */
+    public static boolean hasAnnotations(final InputStream bytecode) throws IOException {
+        return hasAnnotations(read(bytecode));
+    }
+
+    /**
+     * Reads the stream fully and closes it
+     */
+    public static byte[] read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(8 * 1024);
+        try {
+            final byte[] buffer = new byte[8 * 1024];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+        } finally {
+            IO.close(in);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean contains(final byte[] bytes, final String ascii) {
+        final int length = ascii.length();
+        final byte first = (byte) ascii.charAt(0);
+
+        next:
+        for (int i = 0; i <= bytes.length - length; i++) {
+            if (bytes[i] != first) continue;
+            for (int j = 1; j < length; j++) {
+                if (bytes[i + j] != (byte) ascii.charAt(j)) continue next;
+            }
+            return true;
+        }
+        return false;
+    }
+}
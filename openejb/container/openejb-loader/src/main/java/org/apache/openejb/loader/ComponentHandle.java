@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.loader;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The slot of one component type in a {@link SystemInstance}.
+ *
+ * A handle can be kept in a field: it always returns the component
+ * currently set for its type, or null, including after the component
+ * was replaced or removed.  It belongs to the SystemInstance it was
+ * obtained from, a handle kept across {@link SystemInstance#reset()}
+ * still sees the components of the previous instance.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class ComponentHandle<T> {
+    private final SystemInstance systemInstance;
+    private final Class<T> type;
+    private final AtomicReference<T> component = new AtomicReference<T>();
+
+    ComponentHandle(final SystemInstance systemInstance, final Class<T> type) {
+        this.systemInstance = systemInstance;
+        this.type = type;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return the component, or null if none is set
+     */
+    public T get() {
+        return component.get();
+    }
+
+    /**
+     * @return true if the handle was obtained from this SystemInstance
+     */
+    public boolean isHandleOf(final SystemInstance systemInstance) {
+        return this.systemInstance == systemInstance;
+    }
+
+    T set(final T value) {
+        return component.getAndSet(value);
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentHandle{" +
+                "type=" + type.getName() +
+                ", component=" + component.get() +
+                '}';
+    }
+}
@@ -22,8 +22,9 @@ import org.apache.openejb.observer.ObserverManager;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class aims to be the one and only static in the entire system
@@ -56,13 +57,13 @@ public class SystemInstance {
     private final FileUtils home;
     private final FileUtils base;
     private final ClassLoader classLoader;
-    private final HashMap<Class, Object> components;
+    private final ConcurrentMap<Class, ComponentHandle> components;
     private final ClassPath classPath;
     private final ObserverManager observerManager = new ObserverManager();
 
     // FIXME: Why is Exception thrown at all? It's almost impossible that it'll happen.
     private SystemInstance(final Properties properties) throws Exception {
-        this.components = new HashMap<Class, Object>();
+        this.components = new ConcurrentHashMap<Class, ComponentHandle>();
 
         this.internalProperties.putAll(System.getProperties());
         this.internalProperties.putAll(properties);
@@ -157,11 +158,33 @@ public class SystemInstance {
      * @throws IllegalStateException of the component isn't found
      */
     public <T> T getComponent(final Class<T> type) {
-        return (T) components.get(type);
+        final ComponentHandle handle = components.get(type);
+        if (handle == null) return null;
+        return (T) handle.get();
+    }
+
+    /**
+     * Reads don't lock, so the handle of a component used on every
+     * request can as well be looked up once and kept.
+     *
+     * @param type the class type of the component
+     * @return the handle of the component, which is updated when it is set, replaced or removed
+     */
+    public <T> ComponentHandle<T> getComponentHandle(final Class<T> type) {
+        ComponentHandle<T> handle = components.get(type);
+        if (handle == null) {
+            final ComponentHandle<T> created = new ComponentHandle<T>(this, type);
+            handle = components.putIfAbsent(type, created);
+            if (handle == null) handle = created;
+        }
+        return handle;
     }
 
     public <T> T removeComponent(final Class<T> type) {
-        final T component = (T) components.remove(type);
+        final ComponentHandle<T> handle = components.get(type);
+        if (handle == null) return null;
+
+        final T component = handle.set(null);
 
         if (component != null) {
             fireEvent(new ComponentRemoved(type, component));
@@ -171,13 +194,16 @@ public class SystemInstance {
     }
 
     /**
+     * The component is visible to all threads once this returns.  The
+     * events are fired afterwards, in the calling thread.
+     *
      * @param type the class type of the component required
      */
     public <T> T setComponent(final Class<T> type, final T value) {
-        final T removed = (T) components.put(type, value);
+        final T removed = getComponentHandle(type).set(value);
 
-        if (removed !=null) {
-            fireEvent(new ComponentRemoved(type, value));
+        if (removed != null) {
+            fireEvent(new ComponentRemoved(type, removed));
         }
 
         if (value != null) {
@@ -24,14 +24,15 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ObserverManager {
 
-    private final List<Observer> observers = new ArrayList<Observer>();
+    // events are fired without locking, observers may be added or removed meanwhile
+    private final List<Observer> observers = new CopyOnWriteArrayList<Observer>();
 
     public boolean addObserver(Object observer) {
         if (observer == null) throw new IllegalArgumentException("observer cannot be null");
@@ -61,4 +61,40 @@ public class SystemInstanceTest extends TestCase {
         assertEquals("SystemInstance.get(\"height\")", "2", systemInstance.get("height"));
 
     }
+
+    public void testComponentHandle() throws Exception {
+        final SystemInstance system = SystemInstance.get();
+        system.removeComponent(Color.class);
+
+        final ComponentHandle<Color> handle = system.getComponentHandle(Color.class);
+        assertSame(handle, system.getComponentHandle(Color.class));
+        assertTrue(handle.isHandleOf(system));
+        assertNull(handle.get());
+
+        final Color red = new Color("red");
+        assertNull(system.setComponent(Color.class, red));
+        assertSame(red, handle.get());
+        assertSame(red, system.getComponent(Color.class));
+
+        final Color blue = new Color("blue");
+        assertSame(red, system.setComponent(Color.class, blue));
+        assertSame(blue, handle.get());
+
+        assertSame(blue, system.removeComponent(Color.class));
+        assertNull(handle.get());
+        assertNull(system.getComponent(Color.class));
+    }
+
+    public static class Color {
+        private final String name;
+
+        public Color(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
 }
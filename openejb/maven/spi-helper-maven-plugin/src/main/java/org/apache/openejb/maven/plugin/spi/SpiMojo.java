@@ -30,6 +30,7 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
+import org.apache.openejb.loader.Bytecode;
 import org.apache.xbean.finder.Annotated;
 import org.apache.xbean.finder.AnnotationFinder;
 import org.apache.xbean.finder.archive.Archive;
@@ -115,6 +116,15 @@ public class SpiMojo extends AbstractMojo {
      */
     private boolean useAggregatedArchiveIfWar;
 
+    /**
+     * list every class having an annotation instead of using profiles,
+     * the same classes the openejb.scan.index of the container keeps.
+     * Not suited to CDI bean archives where classes without annotations are beans too.
+     *
+     * @parameter expression="${spi.all-annotated}" default-value="false"
+     */
+    private boolean allAnnotated;
+
     /**
      * @parameter default-value="${project.packaging}"
      * @readonly
@@ -161,13 +171,13 @@ public class SpiMojo extends AbstractMojo {
             profileToUse.add(new Profile(annotations, subclasses, implementations));
         }
 
-        if (profileToUse.isEmpty() && loadedProfiles.size() > 0) {
+        if (profileToUse.isEmpty() && loadedProfiles.size() > 0 && !allAnnotated) {
             final Map.Entry<String, Profile> profile = loadedProfiles.entrySet().iterator().next();
             getLog().info("using profile " + profile.getKey());
             profileToUse.add(profile.getValue());
         }
 
-        if (profileToUse.isEmpty()) {
+        if (profileToUse.isEmpty() && !allAnnotated) {
             getLog().warn("no profile or configuration, nothing will be done");
             return;
         }
@@ -191,76 +201,84 @@ public class SpiMojo extends AbstractMojo {
         // the result
         final Set<String> classes = new TreeSet<String>();
         try {
-            final AnnotationFinder finder = new AnnotationFinder(archive);
-            finder.link();
-
-            //
-            // find classes
-            //
-
-            for (Profile profile : profileToUse) {
-                if (profile.getAnnotations() != null) {
-                    for (String annotation : profile.getAnnotations()) {
-                        final Class<? extends Annotation> annClazz;
-                        try {
-                            annClazz = (Class<? extends Annotation>) load(loader, annotation);
-                        } catch (MojoFailureException mfe) {
-                            getLog().warn("can't find " + annotation);
-                            continue;
-                        }
-
-                        if (!useMeta) {
-                            for (Class<?> clazz : finder.findAnnotatedClasses(annClazz)) {
-                                classes.add(clazz.getName());
-                            }
-                        } else {
-                            for (Annotated<Class<?>> clazz : finder.findMetaAnnotatedClasses(annClazz)) {
-                                classes.add(clazz.get().getName());
+            if (allAnnotated) {
+                for (Archive.Entry entry : archive) {
+                    if (Bytecode.hasAnnotations(entry.getBytecode())) {
+                        classes.add(entry.getName());
+                    }
+                }
+            } else {
+                final AnnotationFinder finder = new AnnotationFinder(archive);
+                finder.link();
+
+                //
+                // find classes
+                //
+
+                for (Profile profile : profileToUse) {
+                    if (profile.getAnnotations() != null) {
+                        for (String annotation : profile.getAnnotations()) {
+                            final Class<? extends Annotation> annClazz;
+                            try {
+                                annClazz = (Class<? extends Annotation>) load(loader, annotation);
+                            } catch (MojoFailureException mfe) {
+                                getLog().warn("can't find " + annotation);
+                                continue;
                             }
-                        }
 
-                        if (!useMeta) {
-                            for (Field clazz : finder.findAnnotatedFields(annClazz)) {
-                                classes.add(clazz.getDeclaringClass().getName());
-                            }
-                        } else {
-                            for (Annotated<Field> clazz : finder.findMetaAnnotatedFields(annClazz)) {
-                                classes.add(clazz.get().getDeclaringClass().getName());
+                            if (!useMeta) {
+                                for (Class<?> clazz : finder.findAnnotatedClasses(annClazz)) {
+                                    classes.add(clazz.getName());
+                                }
+                            } else {
+                                for (Annotated<Class<?>> clazz : finder.findMetaAnnotatedClasses(annClazz)) {
+                                    classes.add(clazz.get().getName());
+                                }
                             }
-                        }
 
-                        if (!useMeta) {
-                            for (Method clazz : finder.findAnnotatedMethods(annClazz)) {
-                                classes.add(clazz.getDeclaringClass().getName());
+                            if (!useMeta) {
+                                for (Field clazz : finder.findAnnotatedFields(annClazz)) {
+                                    classes.add(clazz.getDeclaringClass().getName());
+                                }
+                            } else {
+                                for (Annotated<Field> clazz : finder.findMetaAnnotatedFields(annClazz)) {
+                                    classes.add(clazz.get().getDeclaringClass().getName());
+                                }
                             }
-                        } else {
-                            for (Annotated<Method> clazz : finder.findMetaAnnotatedMethods(annClazz)) {
-                                classes.add(clazz.get().getDeclaringClass().getName());
+
+                            if (!useMeta) {
+                                for (Method clazz : finder.findAnnotatedMethods(annClazz)) {
+                                    classes.add(clazz.getDeclaringClass().getName());
+                                }
+                            } else {
+                                for (Annotated<Method> clazz : finder.findMetaAnnotatedMethods(annClazz)) {
+                                    classes.add(clazz.get().getDeclaringClass().getName());
+                                }
                             }
                         }
                     }
-                }
 
-                if (profile.getSubclasses() != null) {
-                    for (String subclass : profile.getSubclasses()) {
-                        try {
-                            for (Class<?> clazz : finder.findSubclasses(load(loader, subclass))) {
-                                classes.add(clazz.getName());
+                    if (profile.getSubclasses() != null) {
+                        for (String subclass : profile.getSubclasses()) {
+                            try {
+                                for (Class<?> clazz : finder.findSubclasses(load(loader, subclass))) {
+                                    classes.add(clazz.getName());
+                                }
+                            } catch (MojoFailureException mfe) {
+                                getLog().warn("can't find " + subclass);
                             }
-                        } catch (MojoFailureException mfe) {
-                            getLog().warn("can't find " + subclass);
                         }
                     }
-                }
 
-                if (profile.getImplementations() != null) {
-                    for (String implementation : profile.getImplementations()) {
-                        try {
-                            for (Class<?> clazz : finder.findImplementations(load(loader, implementation))) {
-                                classes.add(clazz.getName());
+                    if (profile.getImplementations() != null) {
+                        for (String implementation : profile.getImplementations()) {
+                            try {
+                                for (Class<?> clazz : finder.findImplementations(load(loader, implementation))) {
+                                    classes.add(clazz.getName());
+                                }
+                            } catch (MojoFailureException mfe) {
+                                getLog().warn("can't find " + implementation);
                             }
-                        } catch (MojoFailureException mfe) {
-                            getLog().warn("can't find " + implementation);
                         }
                     }
                 }
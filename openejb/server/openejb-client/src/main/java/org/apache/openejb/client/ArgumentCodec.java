@@ -0,0 +1,39 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Writes and reads the method arguments of compact ejbd requests.
+ * The declared type is known on both sides so it is never written.
+ * <p/>
+ * The implementation is chosen with the openejb.ejbd.argument.codec
+ * system property and must be the same on the client and the server.
+ *
+ * @version $Rev$ $Date$
+ */
+public interface ArgumentCodec {
+
+    String CODEC_PROPERTY = "openejb.ejbd.argument.codec";
+
+    void write(ObjectOutput out, Class<?> type, Object value) throws IOException;
+
+    Object read(ObjectInput in, Class<?> type) throws IOException, ClassNotFoundException;
+}
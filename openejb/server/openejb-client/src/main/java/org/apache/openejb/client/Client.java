@@ -36,6 +36,7 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.rmi.RemoteException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -54,7 +55,13 @@ public class Client {
     private boolean FINER = logger.isLoggable(Level.FINER);
 
     public static final ThreadLocal<Set<URI>> failed = new ThreadLocal<Set<URI>>();
-    private static final ProtocolMetaData PROTOCOL_VERSION = new ProtocolMetaData("3.1");
+    private static final ProtocolMetaData PROTOCOL_VERSION = new ProtocolMetaData("3.2");
+
+    /**
+     * Servers answering with OEJP/3.2 or later understand the compact
+     * EJBRequest body, the first request to a server uses the default one
+     */
+    private static final Set<URI> compactServers = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
     private static final int maxConditionRetry = Integer.parseInt(System.getProperty("openejb.client.retry.condition.max", "20"));
 
     private List<Class<? extends Throwable>> retryConditions = new CopyOnWriteArrayList<Class<? extends Throwable>>();
@@ -141,6 +148,7 @@ public class Client {
 
         OutputStream out = null;
         InputStream in = null;
+        MethodTable methodTable = null;
 
         try {
 
@@ -203,6 +211,13 @@ public class Client {
                 throw newIOException("Cannot write the ClusterMetaData to the server: ", e);
             }
 
+            if (req instanceof EJBRequest) {
+                if (compactServers.contains(conn.getURI())) {
+                    methodTable = getMethodTable(conn);
+                }
+                ((EJBRequest) req).setMethodTable(methodTable);
+            }
+
             /*----------------------------------*/
             /* Write request type */
             /*----------------------------------*/
@@ -250,6 +265,12 @@ public class Client {
                 protocolMetaData = new ProtocolMetaData();
                 protocolMetaData.readExternal(in);
 
+                if (protocolMetaData.getMajor() == PROTOCOL_VERSION.getMajor() && protocolMetaData.getMinor() >= 2) {
+                    compactServers.add(conn.getURI());
+                } else {
+                    compactServers.remove(conn.getURI());
+                }
+
             } catch (EOFException e) {
 
                 throw newIOException("Prematurely reached the end of the stream.  " + protocolMetaData.getSpec(), e);
@@ -299,6 +320,11 @@ public class Client {
             try {
 
                 res.readExternal(objectIn);
+
+                // the server read the body, so it knows the methods defined in it
+                if (methodTable != null && ((EJBResponse) res).getResponseCode() != ResponseCodes.EJB_ERROR) {
+                    methodTable.confirm();
+                }
             } catch (ClassNotFoundException e) {
                 throw new RemoteException("Cannot read the response from the server.  The class for an object being returned is not located in this system:", e);
 
@@ -351,6 +377,9 @@ public class Client {
             failed.add(uri);
             conn.discard();
 
+            // the server may have been replaced by an older one, negotiate again
+            compactServers.remove(uri);
+
             if (e instanceof RetryException || getRetry()) {
                 try {
 
@@ -409,6 +438,15 @@ public class Client {
         return set;
     }
 
+    private static MethodTable getMethodTable(final Connection conn) {
+        if (conn instanceof SocketConnectionFactory.SocketConnection) {
+            return ((SocketConnectionFactory.SocketConnection) conn).getMethodTable();
+        }
+
+        // one request per connection, the definitions are sent every time
+        return new MethodTable();
+    }
+
     private static void setClusterMetaData(final ServerMetaData server, final ClusterMetaData cluster) {
         final Context context = getContext(server);
         context.setClusterMetaData(cluster);
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Primitives are written as varints or raw values, strings as UTF when
+ * they fit and everything else goes through Java serialization.
+ *
+ * @version $Rev$ $Date$
+ */
+public class DefaultArgumentCodec implements ArgumentCodec {
+
+    private static final int NULL = 0;
+    private static final int UTF = 1;
+    private static final int OBJECT = 2;
+
+    /**
+     * writeUTF fails above 65535 bytes, a char takes at most 3 bytes
+     */
+    private static final int MAX_UTF_CHARS = 65535 / 3;
+
+    @Override
+    public void write(final ObjectOutput out, final Class<?> type, final Object value) throws IOException {
+        if (type.isPrimitive()) {
+            if (type == Integer.TYPE) {
+                VarInts.writeInt(out, (Integer) value);
+            } else if (type == Long.TYPE) {
+                VarInts.writeLong(out, (Long) value);
+            } else if (type == Boolean.TYPE) {
+                out.writeBoolean((Boolean) value);
+            } else if (type == Byte.TYPE) {
+                out.writeByte((Byte) value);
+            } else if (type == Short.TYPE) {
+                VarInts.writeInt(out, (Short) value);
+            } else if (type == Character.TYPE) {
+                VarInts.writeUnsignedInt(out, (Character) value);
+            } else if (type == Float.TYPE) {
+                out.writeFloat((Float) value);
+            } else if (type == Double.TYPE) {
+                out.writeDouble((Double) value);
+            } else {
+                throw new IOException("Unkown primitive type: " + type);
+            }
+        } else if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String && ((String) value).length() <= MAX_UTF_CHARS) {
+            out.writeByte(UTF);
+            out.writeUTF((String) value);
+        } else {
+            out.writeByte(OBJECT);
+            out.writeObject(value);
+        }
+    }
+
+    @Override
+    public Object read(final ObjectInput in, final Class<?> type) throws IOException, ClassNotFoundException {
+        if (type.isPrimitive()) {
+            if (type == Integer.TYPE) {
+                return VarInts.readInt(in);
+            } else if (type == Long.TYPE) {
+                return VarInts.readLong(in);
+            } else if (type == Boolean.TYPE) {
+                return in.readBoolean();
+            } else if (type == Byte.TYPE) {
+                return in.readByte();
+            } else if (type == Short.TYPE) {
+                return (short) VarInts.readInt(in);
+            } else if (type == Character.TYPE) {
+                return (char) VarInts.readUnsignedInt(in);
+            } else if (type == Float.TYPE) {
+                return in.readFloat();
+            } else if (type == Double.TYPE) {
+                return in.readDouble();
+            }
+            throw new IOException("Unkown primitive type: " + type);
+        }
+
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case UTF:
+                return in.readUTF();
+            case OBJECT:
+                return in.readObject();
+            default:
+                throw new IOException("Unkown data type: " + tag);
+        }
+    }
+}
@@ -21,6 +21,8 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.lang.reflect.Method;
 import java.rmi.Remote;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.naming.Context;
 import javax.naming.InitialContext;
 import javax.rmi.CORBA.Stub;
@@ -116,8 +118,20 @@ public class EJBRequest implements ClusterableRequest {
         return this.body.getVersion();
     }
 
+    /**
+     * Switches the body to the compact format, only to be used
+     * with servers speaking OEJP/3.2 or later.
+     *
+     * @param methodTable the table of the connection, null for the default format
+     */
+    public void setMethodTable(final MethodTable methodTable) {
+        body.setMethodTable(methodTable);
+    }
+
     public static class Body implements java.io.Externalizable {
 
+        private static final ArgumentCodec codec = createArgumentCodec();
+
         private transient EJBMetaDataImpl ejb;
         private transient ORB orb;
         private transient Method methodInstance;
@@ -128,6 +142,7 @@ public class EJBRequest implements ClusterableRequest {
         private transient Object primaryKey;
 
         private transient String requestId;
+        private transient MethodTable methodTable;
         private byte version = EJBResponse.VERSION;
 
         public Body(final EJBMetaDataImpl ejb) {
@@ -212,11 +227,25 @@ public class EJBRequest implements ClusterableRequest {
             this.requestId = requestId;
         }
 
+        /**
+         * On the client a non null table selects the compact format, on the
+         * server it is the table of the connection the body is read from.
+         */
+        public void setMethodTable(final MethodTable methodTable) {
+            this.methodTable = methodTable;
+            this.version = methodTable != null ? EJBResponse.COMPACT_VERSION : EJBResponse.VERSION;
+        }
+
         @Override
         public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
 
             this.version = in.readByte();
 
+            if (version >= EJBResponse.COMPACT_VERSION) {
+                readCompact(in);
+                return;
+            }
+
             requestId = null;
             ClassNotFoundException result = null;
             primaryKey = null;
@@ -255,6 +284,11 @@ public class EJBRequest implements ClusterableRequest {
 
             out.writeByte(this.version);
 
+            if (version >= EJBResponse.COMPACT_VERSION) {
+                writeCompact(out);
+                return;
+            }
+
             out.writeObject(requestId);
 
             out.writeObject(primaryKey);
@@ -319,15 +353,7 @@ public class EJBRequest implements ClusterableRequest {
                         throw new IOException("Unkown primitive type: " + type);
                     }
                 } else {
-                    if (obj instanceof PortableRemoteObject && obj instanceof Remote) {
-                        final Tie tie = javax.rmi.CORBA.Util.getTie((Remote) obj);
-                        if (tie == null) {
-                            throw new IOException("Unable to serialize PortableRemoteObject; object has not been exported: " + obj);
-                        }
-                        final ORB orb = getORB();
-                        tie.orb(orb);
-                        obj = PortableRemoteObject.toStub((Remote) obj);
-                    }
+                    obj = toStub(obj);
                     out.write(L);
                     out.writeObject(type);
                     out.writeObject(obj);
@@ -335,6 +361,95 @@ public class EJBRequest implements ClusterableRequest {
             }
         }
 
+        /**
+         * The method is written as an id of the connection method table and
+         * the arguments with the codec, their types being known on both sides.
+         */
+        private void writeCompact(final ObjectOutput out) throws IOException {
+            if (requestId != null) {
+                out.writeBoolean(true);
+                out.writeUTF(requestId);
+            } else {
+                out.writeBoolean(false);
+            }
+
+            out.writeObject(primaryKey);
+
+            final Class type = interfaceClass != null ? interfaceClass : methodInstance.getDeclaringClass();
+            methodTable.writeMethod(out, ejb != null ? ejb.deploymentID : null, type, methodInstance);
+
+            for (int i = 0; i < methodParamTypes.length; i++) {
+                final Class paramType = methodParamTypes[i];
+                codec.write(out, paramType, paramType.isPrimitive() ? methodParameters[i] : toStub(methodParameters[i]));
+            }
+        }
+
+        private void readCompact(final ObjectInput in) throws IOException, ClassNotFoundException {
+            ClassNotFoundException result = null;
+
+            requestId = in.readBoolean() ? in.readUTF() : null;
+            primaryKey = null;
+            try {
+                primaryKey = in.readObject();
+            } catch (ClassNotFoundException cnfe) {
+                result = cnfe;
+            }
+
+            // a body read without the table of its connection can only hold definitions
+            final MethodTable table = methodTable != null ? methodTable : new MethodTable();
+            final MethodTable.Entry entry = table.readMethod(in);
+            interfaceClass = entry.getInterfaceClass();
+            methodInstance = entry.getMethod();
+            methodName = methodInstance.getName();
+            methodParamTypes = methodInstance.getParameterTypes();
+
+            final Object[] args = methodParamTypes.length == 0 ? noArgsO : new Object[methodParamTypes.length];
+            for (int i = 0; i < args.length; i++) {
+                try {
+                    final Object obj = codec.read(in, methodParamTypes[i]);
+                    if (obj instanceof Stub) {
+                        ((Stub) obj).connect(getORB());
+                    }
+                    args[i] = obj;
+                } catch (ClassNotFoundException cnfe) {
+                    if (result == null) result = cnfe;
+                }
+            }
+            methodParameters = args;
+
+            if (result != null)
+                throw result;
+        }
+
+        private Object toStub(final Object obj) throws IOException {
+            if (obj instanceof PortableRemoteObject && obj instanceof Remote) {
+                final Tie tie = javax.rmi.CORBA.Util.getTie((Remote) obj);
+                if (tie == null) {
+                    throw new IOException("Unable to serialize PortableRemoteObject; object has not been exported: " + obj);
+                }
+                final ORB orb = getORB();
+                tie.orb(orb);
+                return PortableRemoteObject.toStub((Remote) obj);
+            }
+            return obj;
+        }
+
+        private static ArgumentCodec createArgumentCodec() {
+            final String className = System.getProperty(ArgumentCodec.CODEC_PROPERTY);
+            if (className == null) {
+                return new DefaultArgumentCodec();
+            }
+
+            try {
+                ClassLoader loader = Thread.currentThread().getContextClassLoader();
+                if (loader == null) loader = EJBRequest.class.getClassLoader();
+                return (ArgumentCodec) Class.forName(className, true, loader).newInstance();
+            } catch (Exception e) {
+                Logger.getLogger("OpenEJB.client").log(Level.WARNING, "Cannot create argument codec " + className + ", using the default one", e);
+                return new DefaultArgumentCodec();
+            }
+        }
+
         static final Class[] noArgsC = new Class[0];
         static final Object[] noArgsO = new Object[0];
 
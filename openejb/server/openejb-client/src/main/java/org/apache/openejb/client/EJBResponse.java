@@ -25,9 +25,15 @@ public class EJBResponse implements ClusterableResponse {
     /**
      * 1. Initial
      * 2. Append times.
+     * 3. Compact request body, times as varints.
      */
     public static final byte VERSION = 2;
 
+    /**
+     * Only sent to clients using OEJP/3.2 or later
+     */
+    public static final byte COMPACT_VERSION = 3;
+
     private transient byte version = VERSION;
     private transient int responseCode = -1;
     private transient Object result;
@@ -134,6 +140,14 @@ public class EJBResponse implements ClusterableResponse {
             for (int i = 0; (i < size && i < timesLength); i++) {
                 times[i] = in.readLong();
             }
+        } else if (version >= COMPACT_VERSION) {
+
+            final int size = VarInts.readUnsignedInt(in);
+
+            for (int i = 0; i < size; i++) {
+                final long time = VarInts.readUnsignedLong(in);
+                if (i < timesLength) times[i] = time;
+            }
         }
     }
 
@@ -174,6 +188,13 @@ public class EJBResponse implements ClusterableResponse {
             for (final long time : times) {
                 out.writeLong(time);
             }
+        } else if (this.version >= COMPACT_VERSION) {
+
+            VarInts.writeUnsignedInt(out, timesLength);
+
+            for (final long time : times) {
+                VarInts.writeUnsignedLong(out, time);
+            }
         }
     }
 
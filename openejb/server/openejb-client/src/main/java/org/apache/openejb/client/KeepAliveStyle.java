@@ -17,8 +17,14 @@
 package org.apache.openejb.client;
 
 /**
+ * Sent before each request on a pooled socket.
+ * <p/>
+ * MULTIPLEX is only sent once: the rest of the socket carries framed
+ * requests and responses of concurrent calls, see {@link Multiplexer}.
+ * It needs a server knowing it.
+ *
  * @version $Rev$ $Date$
  */
 public enum KeepAliveStyle {
-    PING, PING_PONG, PING_PING;
+    PING, PING_PONG, PING_PING, MULTIPLEX;
 }
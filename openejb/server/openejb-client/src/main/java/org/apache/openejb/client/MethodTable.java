@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per connection table of the methods invoked with the compact ejbd
+ * format.  The first request using a method sends its definition along
+ * with a new id, the following requests on the same connection only send
+ * the id.
+ * <p/>
+ * Definitions stay pending until the client saw the server process a
+ * request, until then they are sent again so a request the server
+ * dropped before reading its body never leaves the tables out of sync.
+ * <p/>
+ * The server resolves the definitions with the classloader of the bean
+ * invoked and resolves them again once that changes, so a redeployed bean
+ * is never handed the methods of its previous classloader.  At most
+ * {@link #MAX_METHODS} ids are handed out, past that the definition is sent
+ * with every request under an id the reader doesn't keep.
+ * <p/>
+ * A connection is used by one thread at a time so the table is not
+ * thread safe.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MethodTable {
+
+    public static final int MAX_METHODS = 4096;
+
+    private final Map<Key, Integer> confirmed = new HashMap<Key, Integer>();
+    private final Map<Key, Integer> pending = new HashMap<Key, Integer>();
+    private final Map<Integer, Entry> entries = new HashMap<Integer, Entry>();
+    private int nextId;
+
+    /**
+     * Writer side, the deployment id keeps the ids of beans sharing
+     * an interface apart as their classloaders may differ on the server
+     */
+    public void writeMethod(final ObjectOutput out, final String deploymentId, final Class interfaceClass, final Method method) throws IOException {
+        final Key key = new Key(deploymentId, method);
+
+        Integer id = confirmed.get(key);
+        if (id != null) {
+            VarInts.writeUnsignedInt(out, id << 1);
+            return;
+        }
+
+        id = pending.get(key);
+        if (id == null) {
+            if (nextId < MAX_METHODS) {
+                id = nextId++;
+                pending.put(key, id);
+            } else {
+                id = MAX_METHODS;
+            }
+        }
+
+        VarInts.writeUnsignedInt(out, id << 1 | 1);
+        out.writeUTF(interfaceClass.getName());
+        out.writeUTF(method.getName());
+
+        final Class<?>[] types = method.getParameterTypes();
+        VarInts.writeUnsignedInt(out, types.length);
+        for (final Class<?> type : types) {
+            out.writeUTF(type.getName());
+        }
+    }
+
+    /**
+     * Marks the definitions sent so far as known by the server
+     */
+    public void confirm() {
+        if (pending.isEmpty()) return;
+
+        confirmed.putAll(pending);
+        pending.clear();
+    }
+
+    /**
+     * Reader side, classes are resolved with the thread context classloader
+     */
+    public Entry readMethod(final ObjectInput in) throws IOException, ClassNotFoundException {
+        final int ref = VarInts.readUnsignedInt(in);
+        final Integer id = ref >>> 1;
+
+        if ((ref & 1) == 0) {
+            Entry entry = entries.get(id);
+            if (entry == null) throw new IOException("Unknown method id " + id);
+
+            if (entry.loader != loader()) {
+                // the bean was redeployed since
+                entry = resolve(entry.interfaceName, entry.methodName, entry.typeNames);
+                entries.put(id, entry);
+            }
+            return entry;
+        }
+
+        // read the whole definition before resolving anything so the stream stays usable
+        final String interfaceName = in.readUTF();
+        final String methodName = in.readUTF();
+        final String[] typeNames = new String[VarInts.readUnsignedInt(in)];
+        for (int i = 0; i < typeNames.length; i++) {
+            typeNames[i] = in.readUTF();
+        }
+
+        final Entry entry = resolve(interfaceName, methodName, typeNames);
+        if (id < MAX_METHODS) entries.put(id, entry);
+        return entry;
+    }
+
+    private static Entry resolve(final String interfaceName, final String methodName, final String[] typeNames) throws IOException, ClassNotFoundException {
+        final ClassLoader loader = loader();
+
+        final Class<?> interfaceClass = load(interfaceName, loader);
+        final Class<?>[] types = new Class<?>[typeNames.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = load(typeNames[i], loader);
+        }
+
+        final Method method;
+        try {
+            method = interfaceClass.getMethod(methodName, types);
+        } catch (NoSuchMethodException e) {
+            throw Exceptions.newIOException("No method " + methodName + " on " + interfaceName, e);
+        }
+
+        return new Entry(interfaceClass, method, loader, interfaceName, methodName, typeNames);
+    }
+
+    private static ClassLoader loader() {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) return MethodTable.class.getClassLoader();
+        return loader;
+    }
+
+    private static Class<?> load(final String name, final ClassLoader loader) throws ClassNotFoundException {
+        if (name.equals("boolean")) return boolean.class;
+        if (name.equals("byte")) return byte.class;
+        if (name.equals("char")) return char.class;
+        if (name.equals("short")) return short.class;
+        if (name.equals("int")) return int.class;
+        if (name.equals("long")) return long.class;
+        if (name.equals("float")) return float.class;
+        if (name.equals("double")) return double.class;
+
+        return Class.forName(name, false, loader);
+    }
+
+    public static class Entry {
+        private final Class<?> interfaceClass;
+        private final Method method;
+
+        // what the entry was resolved with and from
+        private final ClassLoader loader;
+        private final String interfaceName;
+        private final String methodName;
+        private final String[] typeNames;
+
+        private Entry(final Class<?> interfaceClass, final Method method, final ClassLoader loader, final String interfaceName, final String methodName, final String[] typeNames) {
+            this.interfaceClass = interfaceClass;
+            this.method = method;
+            this.loader = loader;
+            this.interfaceName = interfaceName;
+            this.methodName = methodName;
+            this.typeNames = typeNames;
+        }
+
+        public Class<?> getInterfaceClass() {
+            return interfaceClass;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+    }
+
+    private static class Key {
+        private final String deploymentId;
+        private final Method method;
+
+        private Key(final String deploymentId, final Method method) {
+            this.deploymentId = deploymentId;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            final Key key = (Key) o;
+            return method.equals(key.method) && (deploymentId == null ? key.deploymentId == null : deploymentId.equals(key.deploymentId));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * method.hashCode() + (deploymentId != null ? deploymentId.hashCode() : 0);
+        }
+    }
+}
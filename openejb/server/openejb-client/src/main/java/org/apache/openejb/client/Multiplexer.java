@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares one socket between all the concurrent calls to a server.
+ * <p/>
+ * After the {@link KeepAliveStyle#MULTIPLEX} byte, the socket carries
+ * frames in both directions:
+ * <p/>
+ * <pre>
+ *     frame = correlation-id (int) length (int) payload (length bytes)
+ * </pre>
+ * <p/>
+ * The payload of a request frame is what a call writes on a pooled
+ * socket, the protocol version, the metadata and the request, and the
+ * payload of the response frame is what the server answers.  The server
+ * processes the frames concurrently so responses come back in any order,
+ * a reader thread hands each of them to the call waiting for its id.
+ * A response frame with a length of {@link #FAILED} and no payload tells
+ * that the server could not process that request, only its call fails.
+ * <p/>
+ * A call waits at most the read timeout for its response, zero waits
+ * as long as it takes.
+ *
+ * @version $Rev$ $Date$
+ */
+public class Multiplexer {
+
+    private static final Logger logger = Logger.getLogger("OpenEJB.client");
+
+    /**
+     * Length of the response frame of a request the server failed to process
+     */
+    public static final int FAILED = -1;
+
+    private final URI uri;
+    private final Socket socket;
+    private final long readTimeout;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Lock writeLock = new ReentrantLock();
+    private final ConcurrentMap<Integer, Call> calls = new ConcurrentHashMap<Integer, Call>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private volatile IOException failure;
+
+    public Multiplexer(final URI uri, final Socket socket, final long readTimeout) throws IOException {
+        this.uri = uri;
+        this.socket = socket;
+        this.readTimeout = readTimeout;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        out.write(KeepAliveStyle.MULTIPLEX.ordinal());
+        out.flush();
+
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                read();
+            }
+        }, "OpenEJB.client multiplexer " + uri);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public Connection newConnection() throws IOException {
+        final IOException failed = failure;
+        if (failed != null) {
+            throw Exceptions.newIOException("Connection to " + uri + " failed", failed);
+        }
+        return new Call(ids.incrementAndGet());
+    }
+
+    public boolean isClosed() {
+        return failure != null;
+    }
+
+    public void close() {
+        fail(new IOException("Connection closed"));
+    }
+
+    /**
+     * @return the calls waiting for their response
+     */
+    public int getPending() {
+        return calls.size();
+    }
+
+    private void send(final int id, final ByteArrayOutputStream payload) throws IOException {
+        writeLock.lock();
+        try {
+            out.writeInt(id);
+            out.writeInt(payload.size());
+            payload.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void read() {
+        try {
+            while (true) {
+                final int id = in.readInt();
+                final int length = in.readInt();
+                if (length == FAILED) {
+                    final Call call = calls.remove(id);
+                    if (call != null) {
+                        call.fail(new IOException("The server failed to process the request"));
+                    }
+                    continue;
+                }
+                if (length < 0) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+
+                final byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                final Call call = calls.remove(id);
+                if (call != null) {
+                    call.complete(payload);
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (Throwable t) {
+            fail(Exceptions.newIOException("Multiplexed connection failed", t));
+        }
+    }
+
+    private void fail(final IOException e) {
+        if (failure == null) {
+            failure = e;
+            if (logger.isLoggable(Level.FINER)) {
+                logger.log(Level.FINER, "Closing multiplexed connection to " + uri, e);
+            }
+        }
+
+        try {
+            socket.close();
+        } catch (Throwable t) {
+            //Ignore
+        }
+
+        for (final Call call : calls.values()) {
+            call.fail(e);
+        }
+        calls.clear();
+    }
+
+    private class Call implements Connection {
+
+        private final int id;
+        private final ByteArrayOutputStream request = new ByteArrayOutputStream();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] response;
+        private volatile IOException error;
+        private boolean sent;
+
+        private Call(final int id) {
+            this.id = id;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public void discard() {
+            calls.remove(id);
+        }
+
+        @Override
+        public void close() throws IOException {
+            calls.remove(id);
+        }
+
+        @Override
+        public OutputStream getOuputStream() throws IOException {
+            return request;
+        }
+
+        /**
+         * Sends the request written so far and waits for its response
+         */
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (!sent) {
+                sent = true;
+                calls.put(id, this);
+
+                // the socket may have failed before we registered
+                final IOException failed = failure;
+                if (failed != null) {
+                    calls.remove(id);
+                    throw Exceptions.newIOException("Connection to " + uri + " failed", failed);
+                }
+
+                send(id, request);
+            }
+
+            try {
+                if (readTimeout <= 0) {
+                    done.await();
+                } else if (!done.await(readTimeout, TimeUnit.MILLISECONDS)) {
+                    // a late response is dropped by the reader
+                    calls.remove(id);
+                    throw new SocketTimeoutException("No response from " + uri + " after " + readTimeout + " milliseconds");
+                }
+            } catch (InterruptedException e) {
+                calls.remove(id);
+                Thread.interrupted();
+                throw new InterruptedIOException("Interrupted while waiting for the response");
+            }
+
+            if (error != null) {
+                throw Exceptions.newIOException("Connection to " + uri + " failed", error);
+            }
+            return new ByteArrayInputStream(response);
+        }
+
+        private void complete(final byte[] payload) {
+            response = payload;
+            done.countDown();
+        }
+
+        private void fail(final IOException e) {
+            error = e;
+            done.countDown();
+        }
+    }
+}
@@ -47,6 +47,7 @@ public class SocketConnectionFactory implements ConnectionFactory {
     private KeepAliveStyle keepAliveStyle = KeepAliveStyle.PING;
 
     public static final String PROPERTY_SOCKET_TIMEOUT = "openejb.client.connection.socket.timeout";
+    public static final String PROPERTY_READ_TIMEOUT = "openejb.client.connection.read.timeout";
     public static final String PROPERTY_POOL_TIMEOUT = "openejb.client.connection.pool.timeout";
     private static final String PROPERTY_POOL_TIMEOUT2 = "openejb.client.connectionpool.timeout";
     public static final String PROPERTY_POOL_SIZE = "openejb.client.connection.pool.size";
@@ -55,9 +56,11 @@ public class SocketConnectionFactory implements ConnectionFactory {
     public static final String ENABLED_CIPHER_SUITES = "openejb.client.enabledCipherSuites";
 
     private static final Map<URI, Pool> connections = new ConcurrentHashMap<URI, Pool>();
+    private static final Map<URI, Multiplexer> multiplexers = new ConcurrentHashMap<URI, Multiplexer>();
     private int size = 5;
     private long timeoutPool = 1000;
     private int timeoutSocket = 150;
+    private long timeoutRead = 0;
     private String[] enabledCipherSuites;
 
     public SocketConnectionFactory() {
@@ -65,6 +68,7 @@ public class SocketConnectionFactory implements ConnectionFactory {
         this.size = getSize();
         this.timeoutPool = getTimeoutPool();
         this.timeoutSocket = getTimeoutSocket();
+        this.timeoutRead = getLong(System.getProperties(), SocketConnectionFactory.PROPERTY_READ_TIMEOUT, this.timeoutRead);
         this.enabledCipherSuites = getEnabledCipherSuites();
         try {
             String property = System.getProperty(PROPERTY_KEEPALIVE);
@@ -130,6 +134,10 @@ public class SocketConnectionFactory implements ConnectionFactory {
     @Override
     public Connection getConnection(final URI uri) throws java.io.IOException {
 
+        if (this.keepAliveStyle == KeepAliveStyle.MULTIPLEX) {
+            return getMultiplexer(uri).newConnection();
+        }
+
         final Pool pool = getPool(uri);
 
         SocketConnection conn = pool.get();
@@ -181,6 +189,51 @@ public class SocketConnectionFactory implements ConnectionFactory {
         return conn;
     }
 
+    /**
+     * All the calls to a server share one socket, a new one is
+     * opened when the previous one failed
+     */
+    private Multiplexer getMultiplexer(final URI uri) throws IOException {
+        Multiplexer multiplexer = multiplexers.get(uri);
+        if (multiplexer != null && !multiplexer.isClosed()) {
+            return multiplexer;
+        }
+
+        synchronized (multiplexers) {
+            multiplexer = multiplexers.get(uri);
+            if (multiplexer == null || multiplexer.isClosed()) {
+                final Socket socket;
+                try {
+                    socket = openSocket(uri);
+                } catch (IOException e) {
+                    throw new IOException("Cannot connect to server: '" + uri.toString() + "'.  Exception: " + e.getClass().getName() + " : " + e.getMessage(), e);
+                }
+                Client.fireEvent(new ConnectionOpened(uri));
+
+                multiplexer = new Multiplexer(uri, socket, this.timeoutRead);
+                multiplexers.put(uri, multiplexer);
+            }
+            return multiplexer;
+        }
+    }
+
+    private Socket openSocket(final URI uri) throws IOException {
+        final InetSocketAddress address = new InetSocketAddress(uri.getHost(), uri.getPort());
+
+        final Socket socket;
+        if (uri.getScheme().equalsIgnoreCase("ejbds")) {
+            final SSLSocket sslSocket = (SSLSocket) SSLSocketFactory.getDefault().createSocket(address.getAddress(), this.timeoutSocket);
+            sslSocket.setEnabledCipherSuites(enabledCipherSuites);
+            socket = sslSocket;
+        } else {
+            socket = new Socket();
+            socket.connect(address, this.timeoutSocket);
+        }
+
+        socket.setTcpNoDelay(true);
+        return socket;
+    }
+
     private Pool getPool(final URI uri) {
         Pool pool = connections.get(uri);
         if (pool == null) {
@@ -200,6 +253,7 @@ public class SocketConnectionFactory implements ConnectionFactory {
         private final Lock lock = new ReentrantLock();
         private OutputStream out;
         private BufferedInputStream in;
+        private final MethodTable methodTable = new MethodTable();
 
         public SocketConnection(final URI uri, final Pool pool) {
             this.uri = uri;
@@ -249,19 +303,8 @@ public class SocketConnectionFactory implements ConnectionFactory {
             /*-----------------------*/
             /* Open socket to server */
             /*-----------------------*/
-            final InetSocketAddress address = new InetSocketAddress(uri.getHost(), uri.getPort());
-
             try {
-                if (uri.getScheme().equalsIgnoreCase("ejbds")) {
-                    final SSLSocket sslSocket = (SSLSocket) SSLSocketFactory.getDefault().createSocket(address.getAddress(), SocketConnectionFactory.this.timeoutSocket);
-                    sslSocket.setEnabledCipherSuites(enabledCipherSuites);
-                    this.socket = sslSocket;
-                } else {
-                    this.socket = new Socket();
-                    this.socket.connect(address, SocketConnectionFactory.this.timeoutSocket);
-                }
-
-                this.socket.setTcpNoDelay(true);
+                this.socket = openSocket(uri);
                 Client.fireEvent(new ConnectionOpened(uri));
 
             } catch (ConnectException e) {
@@ -302,6 +345,13 @@ public class SocketConnectionFactory implements ConnectionFactory {
             return uri;
         }
 
+        /**
+         * @return the methods already defined on this socket
+         */
+        public MethodTable getMethodTable() {
+            return methodTable;
+        }
+
         @Override
         public void close() throws IOException {
             if (discarded) return;
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Variable length encoding of ints and longs used by the compact
+ * ejbd format.  Seven bits are written per byte, the high bit telling
+ * whether another byte follows.  Signed values are zigzag encoded first
+ * so small negative numbers stay small.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class VarInts {
+
+    private VarInts() {
+    }
+
+    public static void writeUnsignedInt(final ObjectOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readUnsignedInt(final ObjectInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static void writeUnsignedLong(final ObjectOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte(((int) value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readUnsignedLong(final ObjectInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varlong");
+    }
+
+    public static void writeInt(final ObjectOutput out, final int value) throws IOException {
+        writeUnsignedInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    public static int readInt(final ObjectInput in) throws IOException {
+        final int value = readUnsignedInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static void writeLong(final ObjectOutput out, final long value) throws IOException {
+        writeUnsignedLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readLong(final ObjectInput in) throws IOException {
+        final long value = readUnsignedLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
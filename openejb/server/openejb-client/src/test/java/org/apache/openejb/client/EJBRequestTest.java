@@ -18,6 +18,7 @@ package org.apache.openejb.client;
 
 import java.io.*;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import javax.ejb.EJBHome;
 import javax.ejb.EJBObject;
 import javax.ejb.Handle;
@@ -137,6 +138,71 @@ public class EJBRequestTest extends TestCase {
         invoke(requestMethod, method, args);
     }
 
+    public void testCompactBody() throws Exception {
+        Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        Object[] args = new Object[]{"hola mundo"};
+
+        MethodTable clientTable = new MethodTable();
+        MethodTable serverTable = new MethodTable();
+
+        int first = invokeCompact(clientTable, serverTable, method, args);
+        // not confirmed yet, the definition is sent again
+        assertEquals(first, invokeCompact(clientTable, serverTable, method, args));
+
+        clientTable.confirm();
+        int second = invokeCompact(clientTable, serverTable, method, args);
+        assertTrue("Method definition sent again", second < first);
+
+        // a fresh server table cannot resolve the id alone
+        try {
+            invokeCompact(clientTable, new MethodTable(), method, args);
+            fail("Unknown method id should be rejected");
+        } catch (IOException expected) {
+            // pass
+        }
+    }
+
+    public void testVarInts() throws Exception {
+        long[] values = {0, 1, -1, 127, 128, -129, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(baos);
+        for (long value : values) {
+            VarInts.writeLong(out, value);
+            VarInts.writeInt(out, (int) value);
+        }
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, VarInts.readLong(in));
+            assertEquals((int) value, VarInts.readInt(in));
+        }
+    }
+
+    private int invokeCompact(MethodTable clientTable, MethodTable serverTable, Method method, Object[] args) throws IOException, ClassNotFoundException {
+        EJBRequest expected = new EJBRequest(RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD, ejb, method, args, null);
+        expected.setMethodTable(clientTable);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(baos);
+        expected.writeExternal(out);
+        out.close();
+
+        EJBRequest actual = new EJBRequest();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        actual.readExternal(in);
+        actual.getBody().setMethodTable(serverTable);
+        actual.getBody().readExternal(in);
+
+        assertEquals("Version", EJBResponse.COMPACT_VERSION, actual.getVersion());
+        assertEquals("InterfaceClass", expected.getInterfaceClass(), actual.getInterfaceClass());
+        assertEquals("MethodInstance", expected.getMethodInstance(), actual.getMethodInstance());
+        assertEquals("MethodParameters", Arrays.asList(args), Arrays.asList(actual.getMethodParameters()));
+
+        return baos.size();
+    }
+
     private void invoke(RequestMethodCode requestMethod, Method method, Object[] args) throws IOException, ClassNotFoundException {
         EJBRequest expected = new EJBRequest(requestMethod, ejb, method, args, null);
 
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+
+public class MethodTableTest extends TestCase {
+
+    public static interface Greeter {
+        String greet(String name);
+    }
+
+    public void testRedeployedClassLoader() throws Exception {
+        final Method method = Greeter.class.getMethod("greet", String.class);
+        final MethodTable clientTable = new MethodTable();
+        final MethodTable serverTable = new MethodTable();
+
+        final MethodTable.Entry first = roundTrip(clientTable, serverTable, method);
+        assertEquals(method, first.getMethod());
+        clientTable.confirm();
+
+        // same loader, the id alone is enough
+        assertSame(first, roundTrip(clientTable, serverTable, method));
+
+        // the bean was redeployed, the id now resolves with the new loader
+        final ClassLoader redeployed = new ReloadingClassLoader(Greeter.class.getName(), getClass().getClassLoader());
+        final Thread thread = Thread.currentThread();
+        final ClassLoader old = thread.getContextClassLoader();
+        thread.setContextClassLoader(redeployed);
+        try {
+            final MethodTable.Entry second = roundTrip(clientTable, serverTable, method);
+            assertSame(redeployed, second.getInterfaceClass().getClassLoader());
+            assertSame(redeployed, second.getMethod().getDeclaringClass().getClassLoader());
+            assertEquals("greet", second.getMethod().getName());
+
+            assertSame(second, roundTrip(clientTable, serverTable, method));
+        } finally {
+            thread.setContextClassLoader(old);
+        }
+    }
+
+    public void testTableIsBounded() throws Exception {
+        final Method method = Greeter.class.getMethod("greet", String.class);
+        final MethodTable clientTable = new MethodTable();
+        final MethodTable serverTable = new MethodTable();
+
+        // one entry per deployment
+        for (int i = 0; i < MethodTable.MAX_METHODS; i++) {
+            roundTrip(clientTable, serverTable, "deployment" + i, method);
+        }
+        clientTable.confirm();
+
+        final int known = write(clientTable, "deployment0", method).length;
+
+        // past the limit the definition is sent every time and still resolves
+        final byte[] overflow = write(clientTable, "overflow", method);
+        assertTrue(overflow.length > known);
+        assertEquals(method, read(serverTable, overflow).getMethod());
+        clientTable.confirm();
+        assertEquals(overflow.length, write(clientTable, "overflow", method).length);
+
+        // and the reader doesn't keep ids past the limit
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        VarInts.writeUnsignedInt(out, MethodTable.MAX_METHODS << 1);
+        out.close();
+        try {
+            read(serverTable, baos.toByteArray());
+            fail("Unknown method id should be rejected");
+        } catch (IOException expected) {
+            // pass
+        }
+    }
+
+    private static MethodTable.Entry roundTrip(final MethodTable clientTable, final MethodTable serverTable, final Method method) throws Exception {
+        return roundTrip(clientTable, serverTable, "Greeter", method);
+    }
+
+    private static MethodTable.Entry roundTrip(final MethodTable clientTable, final MethodTable serverTable, final String deploymentId, final Method method) throws Exception {
+        return read(serverTable, write(clientTable, deploymentId, method));
+    }
+
+    private static byte[] write(final MethodTable table, final String deploymentId, final Method method) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        table.writeMethod(out, deploymentId, method.getDeclaringClass(), method);
+        out.close();
+        return baos.toByteArray();
+    }
+
+    private static MethodTable.Entry read(final MethodTable table, final byte[] bytes) throws Exception {
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        return table.readMethod(in);
+    }
+
+    /**
+     * Defines its own copy of one class, as the classloader of a redeployed
+     * application would
+     */
+    private static class ReloadingClassLoader extends ClassLoader {
+        private final String className;
+
+        private ReloadingClassLoader(final String className, final ClassLoader parent) {
+            super(parent);
+            this.className = className;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (!className.equals(name)) return super.loadClass(name, resolve);
+
+            Class<?> clazz = findLoadedClass(name);
+            if (clazz == null) {
+                try {
+                    final InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+                    try {
+                        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        final byte[] buffer = new byte[4096];
+                        for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                            bytes.write(buffer, 0, read);
+                        }
+                        clazz = defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+            if (resolve) resolveClass(clazz);
+            return clazz;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class MultiplexerTest extends TestCase {
+
+    private static final int CALLS = 4;
+
+    public void testOutOfOrderResponses() throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0);
+
+        // answers the frames in the reverse order they came in
+        final Thread server = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    final DataInputStream in = new DataInputStream(socket.getInputStream());
+                    final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+                    assertEquals(KeepAliveStyle.MULTIPLEX.ordinal(), in.read());
+
+                    final List<Integer> ids = new ArrayList<Integer>();
+                    final List<byte[]> payloads = new ArrayList<byte[]>();
+                    for (int i = 0; i < CALLS; i++) {
+                        final int id = in.readInt();
+                        final byte[] payload = new byte[in.readInt()];
+                        in.readFully(payload);
+                        ids.add(id);
+                        payloads.add(payload);
+                    }
+
+                    for (int i = CALLS - 1; i >= 0; i--) {
+                        out.writeInt(ids.get(i));
+                        out.writeInt(payloads.get(i).length);
+                        out.write(payloads.get(i));
+                        out.flush();
+                    }
+                    socket.close();
+                } catch (IOException e) {
+                    // the client assertions fail
+                }
+            }
+        };
+        server.start();
+
+        final Multiplexer multiplexer = new Multiplexer(new URI("ejbd://localhost:" + serverSocket.getLocalPort()), new Socket("localhost", serverSocket.getLocalPort()), 0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(CALLS);
+        try {
+            final List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int i = 0; i < CALLS; i++) {
+                final String message = "call" + i;
+                responses.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        final Connection connection = multiplexer.newConnection();
+                        connection.getOuputStream().write(message.getBytes("UTF-8"));
+                        return read(connection.getInputStream());
+                    }
+                }));
+            }
+
+            for (int i = 0; i < CALLS; i++) {
+                assertEquals("call" + i, responses.get(i).get());
+            }
+            assertEquals(0, multiplexer.getPending());
+        } finally {
+            executor.shutdownNow();
+            server.join();
+            serverSocket.close();
+        }
+
+        // the server hung up
+        final Connection connection;
+        try {
+            connection = multiplexer.newConnection();
+            connection.getInputStream();
+            fail("The connection should be closed");
+        } catch (IOException expected) {
+            assertTrue(multiplexer.isClosed());
+        }
+    }
+
+    public void testFailedAndTimedOutCalls() throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0);
+
+        // fails the first request, ignores the second and echoes the third
+        final Thread server = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    final DataInputStream in = new DataInputStream(socket.getInputStream());
+                    final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+                    assertEquals(KeepAliveStyle.MULTIPLEX.ordinal(), in.read());
+
+                    for (int i = 0; i < 3; i++) {
+                        final int id = in.readInt();
+                        final byte[] payload = new byte[in.readInt()];
+                        in.readFully(payload);
+
+                        if (i == 0) {
+                            out.writeInt(id);
+                            out.writeInt(Multiplexer.FAILED);
+                        } else if (i == 2) {
+                            out.writeInt(id);
+                            out.writeInt(payload.length);
+                            out.write(payload);
+                        }
+                        out.flush();
+                    }
+                    socket.close();
+                } catch (IOException e) {
+                    // the client assertions fail
+                }
+            }
+        };
+        server.start();
+
+        final Multiplexer multiplexer = new Multiplexer(new URI("ejbd://localhost:" + serverSocket.getLocalPort()), new Socket("localhost", serverSocket.getLocalPort()), 200);
+        try {
+            try {
+                multiplexer.newConnection().getInputStream();
+                fail("The server failed the request");
+            } catch (IOException expected) {
+                assertFalse(multiplexer.isClosed());
+            }
+
+            try {
+                multiplexer.newConnection().getInputStream();
+                fail("The server never answers the request");
+            } catch (SocketTimeoutException expected) {
+                assertFalse(multiplexer.isClosed());
+                assertEquals(0, multiplexer.getPending());
+            }
+
+            final Connection connection = multiplexer.newConnection();
+            connection.getOuputStream().write("still open".getBytes("UTF-8"));
+            assertEquals("still open", read(connection.getInputStream()));
+        } finally {
+            server.join();
+            serverSocket.close();
+        }
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            out.write(b);
+        }
+        return new String(out.toByteArray(), "UTF-8");
+    }
+}
@@ -20,6 +20,7 @@ import org.apache.openejb.BeanContext;
 import org.apache.openejb.ProxyInfo;
 import org.apache.openejb.client.EJBRequest;
 import org.apache.openejb.client.EjbObjectInputStream;
+import org.apache.openejb.client.MethodTable;
 import org.apache.openejb.client.ProtocolMetaData;
 import org.apache.openejb.client.RequestType;
 import org.apache.openejb.client.ServerMetaData;
@@ -41,7 +42,11 @@ import java.util.Properties;
 
 public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
 
-    private static final ProtocolMetaData PROTOCOL_VERSION = new ProtocolMetaData("3.1");
+    /**
+     * 3.2 clients send the compact EJBRequest body once they saw this version,
+     * older clients keep sending the default one
+     */
+    private static final ProtocolMetaData PROTOCOL_VERSION = new ProtocolMetaData("3.2");
 
     private static final Messages _messages = new Messages("org.apache.openejb.server.util.resources");
     static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_SERVER_REMOTE, "org.apache.openejb.server.util.resources");
@@ -181,7 +186,7 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
             // things up with the client accordingly.
             switch (requestType) {
                 case EJB_REQUEST:
-                    processEjbRequest(ois, oos);
+                    processEjbRequest(ois, oos, getMethodTable(in));
                     break;
                 case JNDI_REQUEST:
                     processJndiRequest(ois, oos);
@@ -257,7 +262,20 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
     }
 
     public void processEjbRequest(ObjectInputStream in, ObjectOutputStream out) {
-        ejbHandler.processRequest(in, out);
+        ejbHandler.processRequest(in, out, null);
+    }
+
+    public void processEjbRequest(ObjectInputStream in, ObjectOutputStream out, MethodTable methodTable) {
+        ejbHandler.processRequest(in, out, methodTable);
+    }
+
+    private static MethodTable getMethodTable(InputStream in) {
+        if (in instanceof KeepAliveServer.Input) {
+            return ((KeepAliveServer.Input) in).getMethodTable();
+        }
+
+        // one request per connection
+        return new MethodTable();
     }
 
     public void processJndiRequest(ObjectInputStream in, ObjectOutputStream out) throws Exception {
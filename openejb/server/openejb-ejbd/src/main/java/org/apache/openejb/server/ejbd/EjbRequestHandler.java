@@ -24,9 +24,11 @@ import org.apache.openejb.client.EJBHomeProxyHandle;
 import org.apache.openejb.client.EJBObjectProxyHandle;
 import org.apache.openejb.client.EJBRequest;
 import org.apache.openejb.client.EJBResponse;
+import org.apache.openejb.client.MethodTable;
 import org.apache.openejb.client.ResponseCodes;
 import org.apache.openejb.client.ThrowableArtifact;
 import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.loader.ComponentHandle;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.spi.SecurityService;
 import org.apache.openejb.util.LogCategory;
@@ -52,17 +54,31 @@ class EjbRequestHandler {
 
     private final Map<String, AtomicBoolean> asynchronousInvocationCancelMap = new ConcurrentHashMap<String, AtomicBoolean>();
 
+    private volatile ComponentHandle<SecurityService> securityService = SystemInstance.get().getComponentHandle(SecurityService.class);
+
     EjbRequestHandler(final EjbDaemon daemon) {
         this.daemon = daemon;
 
         clusterableRequestHandler = newClusterableRequestHandler();
     }
 
+    private SecurityService getSecurityService() {
+        final SystemInstance system = SystemInstance.get();
+
+        // the handle saves the lookup on each request as long as the system is the same
+        ComponentHandle<SecurityService> handle = securityService;
+        if (!handle.isHandleOf(system)) {
+            handle = system.getComponentHandle(SecurityService.class);
+            securityService = handle;
+        }
+        return handle.get();
+    }
+
     protected BasicClusterableRequestHandler newClusterableRequestHandler() {
         return new BasicClusterableRequestHandler();
     }
 
-    public void processRequest(final ObjectInputStream in, final ObjectOutputStream out) {
+    public void processRequest(final ObjectInputStream in, final ObjectOutputStream out, final MethodTable methodTable) {
 
         // Setup the client proxy replacement to replace
         // the proxies with the IntraVM proxy implementations
@@ -82,7 +98,7 @@ class EjbRequestHandler {
             return;
         }
 
-        final SecurityService securityService = SystemInstance.get().getComponent(SecurityService.class);
+        final SecurityService securityService = getSecurityService();
         try {
             final Object clientIdentity = req.getClientIdentity();
             if (clientIdentity != null) {//noinspection unchecked
@@ -113,6 +129,7 @@ class EjbRequestHandler {
         try {
             res.start(EJBResponse.Time.DESERIALIZATION);
 
+            req.getBody().setMethodTable(methodTable);
             req.getBody().readExternal(in);
             version = req.getVersion();
 
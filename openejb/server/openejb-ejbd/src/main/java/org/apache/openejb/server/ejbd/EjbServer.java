@@ -44,6 +44,7 @@ public class EjbServer implements org.apache.openejb.server.ServerService, org.a
     public void init(final Properties props) throws Exception {
         server = EjbDaemon.getEjbDaemon();
         server.init(props);
+        keepAlive.configure(props);
     }
 
     @Override
@@ -17,6 +17,9 @@
 package org.apache.openejb.server.ejbd;
 
 import org.apache.openejb.client.KeepAliveStyle;
+import org.apache.openejb.client.MethodTable;
+import org.apache.openejb.client.Multiplexer;
+import org.apache.openejb.loader.Options;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.server.ServerService;
 import org.apache.openejb.server.ServiceException;
@@ -26,6 +29,11 @@ import org.apache.openejb.util.Logger;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
@@ -39,8 +47,10 @@ import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -50,8 +60,16 @@ import java.util.concurrent.locks.ReentrantLock;
 public class KeepAliveServer implements ServerService {
 
     private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_SERVER.createChild("keepalive"), KeepAliveServer.class);
+
+    /**
+     * Service property limiting the size in bytes of a multiplexed request frame
+     */
+    public static final String MAX_FRAME_SIZE = "maxFrameSize";
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
     private final ServerService service;
     private final long timeout = (1000 * 10);
+    private volatile int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
 
     private final AtomicBoolean running = new AtomicBoolean(false);
     private final ConcurrentHashMap<Thread, Session> sessions = new ConcurrentHashMap<Thread, Session>();
@@ -89,7 +107,7 @@ public class KeepAliveServer implements ServerService {
 
             if (l.tryLock()) {
                 try {
-                    if (now - session.lastRequest > timeout) {
+                    if (now - session.lastRequest > timeout && session.inFlight.get() == 0) {
 
                         backlog--;
 
@@ -140,14 +158,19 @@ public class KeepAliveServer implements ServerService {
     private BlockingQueue<Runnable> getQueue() {
         if (this.threadQueue == null) {
             // this can be null if timer fires before service is fully initialized
-            final ServicePool incoming = SystemInstance.get().getComponent(ServicePool.class);
-            if (incoming == null) return null;
-            final ThreadPoolExecutor threadPool = incoming.getThreadPool();
+            final ThreadPoolExecutor threadPool = getThreadPool();
+            if (threadPool == null) return null;
             this.threadQueue = threadPool.getQueue();
         }
         return this.threadQueue;
     }
 
+    private ThreadPoolExecutor getThreadPool() {
+        final ServicePool incoming = SystemInstance.get().getComponent(ServicePool.class);
+        if (incoming == null) return null;
+        return incoming.getThreadPool();
+    }
+
     public Session addSession(final Session session) {
         return this.sessions.put(session.thread, session);
     }
@@ -182,6 +205,9 @@ public class KeepAliveServer implements ServerService {
         // only used inside the Lock
         private final Socket socket;
 
+        // multiplexed requests being processed
+        private final AtomicInteger inFlight = new AtomicInteger();
+
         protected Session(final KeepAliveServer kas, final Socket socket) {
             this.kas = kas;
             this.socket = socket;
@@ -198,6 +224,10 @@ public class KeepAliveServer implements ServerService {
                 final InputStream in = new BufferedInputStream(socket.getInputStream());
                 final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
 
+                // the same streams for every request so the method table lives as long as the socket
+                final Input input = new Input(in);
+                final Output output = new Output(out);
+
                 while (running.get()) {
                     try {
                         i = in.read();
@@ -211,6 +241,12 @@ public class KeepAliveServer implements ServerService {
                     }
                     final KeepAliveStyle style = KeepAliveStyle.values()[i];
 
+                    if (style == KeepAliveStyle.MULTIPLEX) {
+                        // the rest of the socket carries framed requests
+                        multiplex(in, out);
+                        break;
+                    }
+
                     final Lock l = this.usage;
                     try {
                         l.lock();
@@ -228,7 +264,7 @@ public class KeepAliveServer implements ServerService {
                         }
 
                         try {
-                            service.service(new Input(in), new Output(out));
+                            service.service(input, output);
                             out.flush();
                         } catch (SocketException e) {
                             // Socket closed.
@@ -247,6 +283,132 @@ public class KeepAliveServer implements ServerService {
                 this.kas.removeSession(this);
             }
         }
+
+        /**
+         * Reads the frames of a multiplexed client and processes them on the
+         * ServicePool threads, responses are written as soon as they are ready
+         * with the correlation id of their request.
+         *
+         * @see org.apache.openejb.client.Multiplexer
+         */
+        private void multiplex(final InputStream in, final OutputStream out) throws IOException {
+            final DataInputStream frames = new DataInputStream(in);
+            final DataOutputStream responses = new DataOutputStream(out);
+            final Lock writeLock = new ReentrantLock();
+
+            while (running.get()) {
+                final int id;
+                try {
+                    id = frames.readInt();
+                } catch (EOFException e) {
+                    // client hung up
+                    break;
+                } catch (SocketException e) {
+                    // Socket closed.
+                    break;
+                }
+
+                final int length = frames.readInt();
+                if (length < 0 || length > maxFrameSize) {
+                    // checked before allocating anything, the peer isn't authenticated yet
+                    logger.warning("Closing multiplexed connection from " + socket.getInetAddress() + ", invalid frame length " + length + " (" + MAX_FRAME_SIZE + " is " + maxFrameSize + ")");
+                    protocolError(responses, writeLock, id);
+                    break;
+                }
+                final byte[] payload = new byte[length];
+                frames.readFully(payload);
+
+                touch();
+                inFlight.incrementAndGet();
+
+                final Runnable request = new Runnable() {
+                    @Override
+                    public void run() {
+                        ByteArrayOutputStream response = new ByteArrayOutputStream();
+                        try {
+                            service.service(new ByteArrayInputStream(payload), response);
+                        } catch (Throwable e) {
+                            // only this request fails, the other streams go on
+                            logger.warning("Multiplexed request " + id + " failed: " + e.getMessage());
+                            response = null;
+                        }
+
+                        try {
+                            writeLock.lock();
+                            try {
+                                responses.writeInt(id);
+                                if (response == null) {
+                                    responses.writeInt(Multiplexer.FAILED);
+                                } else {
+                                    responses.writeInt(response.size());
+                                    response.writeTo(responses);
+                                }
+                                responses.flush();
+                            } finally {
+                                writeLock.unlock();
+                            }
+                        } catch (Throwable e) {
+                            logger.warning("Unable to write multiplexed response, closing the connection: " + e.getMessage());
+                            try {
+                                socket.close();
+                            } catch (Throwable t) {
+                                //Ignore
+                            }
+                        } finally {
+                            inFlight.decrementAndGet();
+                            touch();
+                        }
+                    }
+                };
+
+                // with no idle thread left, queueing could starve the request behind sessions
+                final ThreadPoolExecutor threadPool = getThreadPool();
+                if (threadPool != null && threadPool.getActiveCount() < threadPool.getMaximumPoolSize()) {
+                    try {
+                        threadPool.execute(request);
+                        continue;
+                    } catch (RejectedExecutionException e) {
+                        // run it here
+                    }
+                }
+                request.run();
+            }
+        }
+
+        /**
+         * Fails the request and closes the connection, the frames that
+         * follow can't be told apart anymore
+         */
+        private void protocolError(final DataOutputStream responses, final Lock writeLock, final int id) {
+            try {
+                writeLock.lock();
+                try {
+                    responses.writeInt(id);
+                    responses.writeInt(Multiplexer.FAILED);
+                    responses.flush();
+                } finally {
+                    writeLock.unlock();
+                }
+            } catch (Throwable e) {
+                //Ignore
+            } finally {
+                try {
+                    socket.close();
+                } catch (Throwable t) {
+                    //Ignore
+                }
+            }
+        }
+
+        private void touch() {
+            final Lock l = this.usage;
+            l.lock();
+            try {
+                this.lastRequest = System.currentTimeMillis();
+            } finally {
+                l.unlock();
+            }
+        }
     }
 
     @Override
@@ -301,14 +463,31 @@ public class KeepAliveServer implements ServerService {
     @Override
     public void init(final Properties props) throws Exception {
         service.init(props);
+        configure(props);
+    }
+
+    /**
+     * Reads the settings of the keep alive connections from the service properties
+     */
+    public void configure(final Properties props) {
+        maxFrameSize = new Options(props).get(MAX_FRAME_SIZE, DEFAULT_MAX_FRAME_SIZE);
     }
 
     public class Input extends java.io.FilterInputStream {
 
+        private final MethodTable methodTable = new MethodTable();
+
         public Input(final InputStream in) {
             super(in);
         }
 
+        /**
+         * @return the methods the client defined on this connection
+         */
+        public MethodTable getMethodTable() {
+            return methodTable;
+        }
+
         @Override
         public void close() throws IOException {
         }
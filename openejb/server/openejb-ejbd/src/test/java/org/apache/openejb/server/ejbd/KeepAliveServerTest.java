@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import junit.framework.TestCase;
+import org.apache.openejb.client.KeepAliveStyle;
+import org.apache.openejb.client.Multiplexer;
+import org.apache.openejb.server.ServerService;
+import org.apache.openejb.server.ServiceException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class KeepAliveServerTest extends TestCase {
+
+    public void testFrameLengthIsBounded() throws Exception {
+        final KeepAliveServer server = new KeepAliveServer(new EchoService());
+        final Properties props = new Properties();
+        props.setProperty(KeepAliveServer.MAX_FRAME_SIZE, "8");
+        server.init(props);
+        server.start();
+
+        final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.service(serverSocket.accept());
+                } catch (Exception e) {
+                    // the client checks what came back
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+
+        final Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        try {
+            socket.setSoTimeout(10000);
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            out.write(KeepAliveStyle.MULTIPLEX.ordinal());
+
+            // up to the limit the request goes through
+            out.writeInt(1);
+            out.writeInt(8);
+            out.write("12345678".getBytes());
+            out.flush();
+
+            assertEquals(1, in.readInt());
+            assertEquals(8, in.readInt());
+            final byte[] payload = new byte[8];
+            in.readFully(payload);
+            assertEquals("12345678", new String(payload));
+
+            // a length the client could never have meant fails the request
+            out.writeInt(2);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+
+            assertEquals(2, in.readInt());
+            assertEquals(Multiplexer.FAILED, in.readInt());
+
+            // and nothing else is read from the connection
+            assertEquals(-1, in.read());
+        } finally {
+            socket.close();
+            serverSocket.close();
+            server.stop();
+        }
+    }
+
+    public static class EchoService implements ServerService {
+
+        @Override
+        public void init(final Properties props) throws Exception {
+        }
+
+        @Override
+        public void start() throws ServiceException {
+        }
+
+        @Override
+        public void stop() throws ServiceException {
+        }
+
+        @Override
+        public void service(final InputStream in, final OutputStream out) throws ServiceException, IOException {
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        @Override
+        public void service(final Socket socket) throws ServiceException, IOException {
+            service(socket.getInputStream(), socket.getOutputStream());
+        }
+
+        @Override
+        public String getName() {
+            return "echo";
+        }
+
+        @Override
+        public String getIP() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public int getPort() {
+            return 0;
+        }
+    }
+}
@@ -23,17 +23,28 @@ import java.io.OutputStream;
 import java.net.Socket;
 import java.util.Properties;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ManagedMBean;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
 import org.apache.openejb.server.ServerService;
 import org.apache.openejb.server.ServiceException;
 import org.apache.openejb.server.ejbd.EjbServer;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
 
 /**
  * @version $Revision$ $Date$
  */
 public abstract class HttpEjbServer implements ServerService {
+    private static final Logger logger = Logger.getInstance(LogCategory.HTTPSERVER, HttpEjbServer.class);
+
     protected HttpServer httpServer;
     private String name;
+    private ObjectName registryName;
 
     public void init(Properties props) throws Exception {
         name = props.getProperty("name");
@@ -48,6 +59,18 @@ public abstract class HttpEjbServer implements ServerService {
         }
 
         registry.addHttpListener(adapter, "/ejb/?.*");
+
+        // the hits of each route
+        try {
+            final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb");
+            jmxName.set("type", "Server");
+            jmxName.set("name", "HttpListenerRegistry-" + name);
+            registryName = jmxName.build();
+            LocalMBeanServer.get().registerMBean(new ManagedMBean(registry), registryName);
+        } catch (Throwable e) {
+            registryName = null;
+            logger.warning("Failed to register the HttpListenerRegistry MBean", e);
+        }
         
         // register the http server
         systemInstance.setComponent(HttpServer.class, httpServer);
@@ -71,6 +94,18 @@ public abstract class HttpEjbServer implements ServerService {
 
     public void stop() throws ServiceException {
         httpServer.stop();
+
+        if (registryName != null) {
+            try {
+                final MBeanServer server = LocalMBeanServer.get();
+                if (server.isRegistered(registryName)) {
+                    server.unregisterMBean(registryName);
+                }
+            } catch (Throwable e) {
+                logger.warning("Failed to unregister the HttpListenerRegistry MBean", e);
+            }
+            registryName = null;
+        }
     }
 
     public String getName() {
@@ -16,47 +16,189 @@
  */
 package org.apache.openejb.server.httpd;
 
+import org.apache.openejb.monitoring.Managed;
+import org.apache.openejb.monitoring.ManagedCollection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 /**
+ * Dispatches requests to the listener whose regex matches the whole path.
+ * <p/>
+ * Listeners are looked up in an immutable routing table rebuilt when a
+ * listener is added or removed, so requests never lock nor copy anything.
+ * Regexes without metacharacters are looked up by exact path.  The others
+ * are indexed in a trie by their literal prefix and their precompiled
+ * pattern is only tried on the paths starting with that prefix.  The
+ * route with the longest literal prefix wins, routes with the same prefix
+ * are tried in registration order.
+ *
  * @version $Revision$ $Date$
  */
+@Managed
 public class HttpListenerRegistry implements HttpListener {
-    private final Map<String, HttpListener> registry = new LinkedHashMap<String, HttpListener>();
+    private final Map<String, Route> registry = new LinkedHashMap<String, Route>();
+    private volatile Routes routes = new Routes(Collections.<Route>emptyList());
 
     public HttpListenerRegistry() {
     }
 
     public void onMessage(HttpRequest request, HttpResponse response) throws Exception {
-        Map<String, HttpListener> listeners;
-        synchronized (registry) {
-            listeners = new HashMap<String, HttpListener>(registry);
-        }
-
-        String path = request.getURI().getPath();
-        for (Map.Entry<String, HttpListener> entry : listeners.entrySet()) {
-            String pattern = entry.getKey();
-            HttpListener listener = entry.getValue();
-            if (path.matches(pattern)) {
-                listener.onMessage(request, response);
-                break;
-            }
+        final Route route = routes.find(request.getURI().getPath());
+        if (route != null) {
+            route.hits.incrementAndGet();
+            route.listener.onMessage(request, response);
         }
     }
 
     public void addHttpListener(HttpListener listener, String regex) {
         synchronized (registry) {
-            registry.put(regex, listener);
+            registry.put(regex, new Route(regex, listener));
+            routes = new Routes(registry.values());
         }
     }
 
     public HttpListener removeHttpListener(String regex) {
-        HttpListener listener;
+        final Route route;
         synchronized (registry) {
-            listener = registry.remove(regex);
+            route = registry.remove(regex);
+            routes = new Routes(registry.values());
+        }
+        return route != null ? route.listener : null;
+    }
+
+    @Managed
+    public int getListenerCount() {
+        return routes.all.size();
+    }
+
+    @ManagedCollection(type = Route.class, key = "regex")
+    public Collection<Route> routes() {
+        return routes.all;
+    }
+
+    @Managed
+    public static class Route {
+        @Managed
+        private final String regex;
+
+        @Managed
+        private final AtomicLong hits = new AtomicLong();
+
+        private final HttpListener listener;
+        private final Pattern pattern;
+        private final String prefix;
+
+        private Route(String regex, HttpListener listener) {
+            this.regex = regex;
+            this.listener = listener;
+            this.pattern = Pattern.compile(regex);
+            this.prefix = literalPrefix(regex);
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        private boolean isLiteral() {
+            return prefix.length() == regex.length();
+        }
+    }
+
+    /**
+     * The part of the regex every matching path starts with
+     */
+    static String literalPrefix(String regex) {
+        // an alternative may start with anything
+        if (regex.indexOf('|') >= 0) return "";
+
+        final StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            switch (c) {
+                case '?':
+                case '*':
+                case '{':
+                    // the previous char is optional
+                    if (prefix.length() > 0) prefix.setLength(prefix.length() - 1);
+                    return prefix.toString();
+                case '+':
+                case '\\':
+                case '^':
+                case '$':
+                case '.':
+                case '(':
+                case ')':
+                case '[':
+                case ']':
+                case '}':
+                    return prefix.toString();
+                default:
+                    prefix.append(c);
+            }
+        }
+        return prefix.toString();
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<Character, Node>();
+        private final List<Route> routes = new ArrayList<Route>();
+    }
+
+    private static class Routes {
+        private final Collection<Route> all;
+        private final Map<String, Route> exact = new HashMap<String, Route>();
+        private final Node root = new Node();
+
+        private Routes(Collection<Route> routes) {
+            this.all = Collections.unmodifiableList(new ArrayList<Route>(routes));
+
+            for (Route route : all) {
+                if (route.isLiteral()) {
+                    if (!exact.containsKey(route.regex)) exact.put(route.regex, route);
+                    continue;
+                }
+
+                Node node = root;
+                for (int i = 0; i < route.prefix.length(); i++) {
+                    final Character c = route.prefix.charAt(i);
+                    Node child = node.children.get(c);
+                    if (child == null) {
+                        child = new Node();
+                        node.children.put(c, child);
+                    }
+                    node = child;
+                }
+                node.routes.add(route);
+            }
+        }
+
+        private Route find(String path) {
+            final Route route = exact.get(path);
+            if (route != null) return route;
+
+            // the nodes along the path, deepest last
+            final List<Node> candidates = new ArrayList<Node>();
+            Node node = root;
+            for (int i = 0; node != null; i++) {
+                if (!node.routes.isEmpty()) candidates.add(node);
+                if (i == path.length()) break;
+                node = node.children.get(path.charAt(i));
+            }
+
+            for (int i = candidates.size() - 1; i >= 0; i--) {
+                for (Route candidate : candidates.get(i).routes) {
+                    if (candidate.pattern.matcher(path).matches()) return candidate;
+                }
+            }
+            return null;
         }
-        return listener;
     }
 }
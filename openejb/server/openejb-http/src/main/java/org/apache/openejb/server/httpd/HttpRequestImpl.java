@@ -62,12 +62,25 @@ public class HttpRequestImpl implements HttpRequest {
     private static final String TRANSFER_ENCODING = "Transfer-Encoding";
     private static final String CHUNKED = "chunked";
     protected static final String EJBSESSIONID = "EJBSESSIONID";
+    protected static final String HTTP_1_0 = "HTTP/1.0";
+    protected static final String HTTP_1_1 = "HTTP/1.1";
 
     /**
      * 5.1.1    Method
      */
     private String method;
 
+    /**
+     * 5.1      HTTP-Version
+     */
+    private String version = HTTP_1_0;
+
+    /**
+     * false if the body had no length and was read up to a blank line,
+     * the connection can't be reused then
+     */
+    private boolean delimited = true;
+
     /**
      * 5.1.2    Request-URI
      */
@@ -137,6 +150,36 @@ public class HttpRequestImpl implements HttpRequest {
         return headers.get(name);
     }
 
+    /**
+     * @return the HTTP version of the request line, HTTP/1.0 if there was none
+     */
+    protected String getHttpVersion() {
+        return version;
+    }
+
+    /**
+     * Tells if the connection can be kept open for the next request.  That is
+     * the default for HTTP/1.1 and has to be asked for with a
+     * Connection: keep-alive header for HTTP/1.0.
+     *
+     * @return true if the client wants a persistent connection and the end of
+     * the body was known
+     */
+    public boolean isKeepAlive() {
+        if (!delimited) return false;
+
+        String connection = null;
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (HEADER_CONNECTION.equalsIgnoreCase(entry.getKey())) {
+                connection = entry.getValue();
+            }
+        }
+
+        if ("close".equalsIgnoreCase(connection)) return false;
+
+        return HTTP_1_1.equals(version) || "keep-alive".equalsIgnoreCase(connection);
+    }
+
     @Override
     public Enumeration<String> getHeaderNames() {
         return new ArrayEnumeration(new ArrayList<String>(headers.keySet()));
@@ -356,11 +399,19 @@ public class HttpRequestImpl implements HttpRequest {
                     + e.getMessage());
         }
 
+        if (line == null) {
+            throw new EOFException("The connection was closed before the HTTP Request Line");
+        }
+
         StringTokenizer lineParts = new StringTokenizer(line, " ");
         /* [1] Parse the method */
         parseMethod(lineParts);
         /* [2] Parse the URI */
         parseURI(lineParts);
+        /* [3] Parse the version */
+        if (lineParts.hasMoreTokens()) {
+            version = lineParts.nextToken().toUpperCase();
+        }
     }
 
     /**
@@ -588,11 +639,17 @@ public class HttpRequestImpl implements HttpRequest {
                 ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
                 for (String line = in.readLine(); line != null; line = in.readLine()) {
                     // read the size line which is in hex
-                    String sizeString = line.split(";", 2)[0];
+                    String sizeString = line.split(";", 2)[0].trim();
                     int size = Integer.parseInt(sizeString, 16);
 
-                    // if size is 0 we are done
-                    if (size == 0) break;
+                    // if size is 0 we are done once the trailers and the blank
+                    // line ending them are read, the next request starts after
+                    if (size == 0) {
+                        for (String trailer = in.readLine(); trailer != null && trailer.length() > 0; trailer = in.readLine()) {
+                            // trailers are ignored
+                        }
+                        break;
+                    }
 
                     // read the chunk and append to byte array
                     byte[] chunk = new byte[size];
@@ -612,6 +669,10 @@ public class HttpRequestImpl implements HttpRequest {
             body = readContent(in);
             this.in = new ServletByteArrayIntputStream(body);
         } else {
+            // a body nobody reads would be taken for the next request
+            if (length > 0) {
+                in.readFully(new byte[length]);
+            }
             body = new byte[0];
             this.in = new ServletByteArrayIntputStream(body);
         }
@@ -626,6 +687,7 @@ public class HttpRequestImpl implements HttpRequest {
             in.readFully(body);
             return body;
         } else {
+            delimited = false;
             ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
             try {
                 boolean atLineStart = true;
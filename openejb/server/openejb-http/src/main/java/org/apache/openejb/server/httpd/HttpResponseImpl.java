@@ -54,7 +54,11 @@ public class HttpResponseImpl implements HttpResponse {
     /** the writer for the response */
     private transient PrintWriter writer;
     /** the raw body */
-    private transient ServletByteArrayOutputStream sosi;
+    private transient ResponseOutputStream sosi;
+    /** where the body is streamed once it outgrows the buffer, null to always buffer */
+    private transient OutputStream output;
+    /** how much of the body is buffered before it is streamed */
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
 
     /** the HTTP version */
     public static final String HTTP_VERSION = "HTTP/1.1";
@@ -64,6 +68,8 @@ public class HttpResponseImpl implements HttpResponse {
     public static final String SP = " ";
     /** a colon and space */
     public static final String CSP = ": ";
+    /** the default size of the body buffer */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
     /** the server to send data from */
     public static String server;
 
@@ -202,6 +208,23 @@ public class HttpResponseImpl implements HttpResponse {
         return sosi;
     }
 
+    /** lets the body be streamed to the client with chunked transfer encoding
+     * once it doesn't fit the buffer anymore
+     * @param output the output stream to the browser
+     * @param bufferSize the size of the body buffer
+     */
+    protected void setStreamingOutput(OutputStream output, int bufferSize) {
+        this.output = output;
+        this.bufferSize = bufferSize;
+    }
+
+    /** @return true if the response line, the headers and part of the body
+     * were already sent to the browser
+     */
+    protected boolean isStreaming() {
+        return sosi.isStreaming();
+    }
+
     @Override
     public PrintWriter getWriter() throws IOException {
         return writer;
@@ -209,16 +232,21 @@ public class HttpResponseImpl implements HttpResponse {
 
     @Override
     public boolean isCommitted() {
-        return commited;
+        return commited || sosi.isStreaming();
     }
 
     public void flushBuffer() throws IOException {
-        // there is really no way to flush
+        writer.flush();
+        // without a streaming output there is really no way to flush
+        if (output != null) {
+            sosi.drain();
+            output.flush();
+        }
     }
 
     @Override
     public int getBufferSize() {
-        return sosi.getOutputStream().size();
+        return bufferSize;
     }
 
     @Override
@@ -289,12 +317,15 @@ public class HttpResponseImpl implements HttpResponse {
 
     @Override
     public void resetBuffer() {
-        sosi.getOutputStream().reset();
+        sosi.reset();
     }
 
     @Override
     public void setBufferSize(int i) {
-        // no-op
+        if (sosi.isStreaming()) {
+            throw new IllegalStateException("The response is already committed");
+        }
+        bufferSize = i;
     }
 
     @Override
@@ -356,6 +387,13 @@ public class HttpResponseImpl implements HttpResponse {
      * @throws java.io.IOException if an exception is thrown
      */
     protected void writeMessage(OutputStream output, boolean indent) throws IOException{
+        if (sosi.isStreaming()) {
+            // the response line, the headers and most of the body are already out
+            writer.flush();
+            sosi.finish();
+            return;
+        }
+
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
     	DataOutputStream out = new DataOutputStream(baos);
         //DataOutput log = new DataOutputStream(System.out);
@@ -374,10 +412,27 @@ public class HttpResponseImpl implements HttpResponse {
 
      /** initalizes the body */
     private void initBody(){
-        sosi = new ServletByteArrayOutputStream();
+        sosi = new ResponseOutputStream();
         writer = new PrintWriter(sosi);
     }
 
+    /** sends the response line and the headers of a chunked response, the body follows
+     * @throws java.io.IOException if an exception is thrown
+     */
+    private void writeStreamingHead() throws IOException {
+        headers.remove("Content-Length");
+        setHeader("Transfer-Encoding", "chunked");
+        setCookieHeader();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        writeResponseLine(out);
+        writeHeaders(out);
+        out.writeBytes(CRLF);
+        out.flush();
+        output.write(baos.toByteArray());
+    }
+
     /** Creates a string version of the response similar to:
      *
      * HTTP/1.1 200 OK
@@ -407,7 +462,7 @@ public class HttpResponseImpl implements HttpResponse {
         if (content == null){
             writer.flush();
             writer.close();
-            int length = sosi.getOutputStream().toByteArray().length;
+            int length = sosi.size();
             setHeader("Content-Length", length + "");
         } else {
             setHeader("Content-Length", content.getContentLength()+"");
@@ -469,10 +524,10 @@ public class HttpResponseImpl implements HttpResponse {
         out.writeBytes(CRLF);
         if (content == null){
             if (indent && OpenEJBHttpServer.isTextXml(headers)) {
-                final String xml = new String(sosi.getOutputStream().toByteArray());
+                final String xml = new String(sosi.toByteArray());
                 out.write(OpenEJBHttpServer.reformat(xml).getBytes());
             } else {
-                out.write(sosi.getOutputStream().toByteArray());
+                out.write(sosi.toByteArray());
             }
         } else {
             InputStream in = content.getInputStream();
@@ -603,7 +658,7 @@ public class HttpResponseImpl implements HttpResponse {
 
         /** Response body */
         writer.flush();
-        byte[] body = sosi.getOutputStream().toByteArray();
+        byte[] body = sosi.toByteArray();
         //System.out.println("[] body "+body.length );
         out.writeObject( body );
     }
@@ -629,7 +684,7 @@ public class HttpResponseImpl implements HttpResponse {
         /** Response body */
         byte[] body = (byte[]) in.readObject();
         //System.out.println("[] body "+body.length );
-        sosi = new ServletByteArrayOutputStream();
+        sosi = new ResponseOutputStream();
         sosi.write(body);
         writer = new PrintWriter(sosi);
 
@@ -644,4 +699,108 @@ public class HttpResponseImpl implements HttpResponse {
     public void setStatusMessage(String responseString) {
         this.setResponseString(responseString);
     }
-}
\ No newline at end of file
+
+    /** Buffers the body until it outgrows the buffer size, then sends the
+     * response line and the headers and streams the body in chunks.  Without
+     * a streaming output everything stays in the buffer.
+     */
+    private class ResponseOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private boolean streaming;
+        private boolean finished;
+
+        @Override
+        public void write(int b) throws IOException {
+            buffer.write(b);
+            if (buffer.size() >= bufferSize) {
+                drain();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (output == null || buffer.size() + len < bufferSize) {
+                buffer.write(b, off, len);
+                return;
+            }
+
+            drain();
+            if (len < bufferSize) {
+                buffer.write(b, off, len);
+            } else {
+                // no point in copying it
+                writeChunk(b, off, len);
+            }
+        }
+
+        /** sends what is buffered if the response is already streaming, a
+         * buffered response is only sent by writeMessage
+         */
+        @Override
+        public void flush() throws IOException {
+            if (streaming) {
+                drain();
+                output.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the response is completed by writeMessage
+        }
+
+        private void drain() throws IOException {
+            if (output == null || finished) {
+                return;
+            }
+
+            if (!streaming) {
+                writeStreamingHead();
+                streaming = true;
+            }
+
+            if (buffer.size() > 0) {
+                writeChunk(buffer.toByteArray(), 0, buffer.size());
+                buffer.reset();
+            }
+        }
+
+        private void writeChunk(byte[] b, int off, int len) throws IOException {
+            output.write(Integer.toHexString(len).getBytes());
+            output.write(CRLF.getBytes());
+            output.write(b, off, len);
+            output.write(CRLF.getBytes());
+        }
+
+        /** sends the rest of the body and the last chunk */
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+
+            drain();
+            output.write(("0" + CRLF + CRLF).getBytes());
+            output.flush();
+            finished = true;
+        }
+
+        private boolean isStreaming() {
+            return streaming;
+        }
+
+        private void reset() {
+            if (streaming) {
+                throw new IllegalStateException("The response is already committed");
+            }
+            buffer.reset();
+        }
+
+        private int size() {
+            return buffer.size();
+        }
+
+        private byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+}
@@ -30,12 +30,15 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.util.Map;
 import java.util.Properties;
@@ -44,6 +47,19 @@ import java.util.Set;
 /**
  * This is the main class for the web administration.  It takes care of the
  * processing from the browser, sockets and threading.
+ * <p/>
+ * Connections are kept open between requests as HTTP/1.1 wants it.  A
+ * response body bigger than the buffer is streamed with chunked transfer
+ * encoding instead of being sent with a Content-Length once complete.
+ * <p/>
+ * Settings:
+ * <p/>
+ * - buffer.size: bytes of the response body buffered before it is streamed,
+ * defaults to 64 KB
+ * - keep.alive.timeout: milliseconds an idle connection waits for the next
+ * request, defaults to 15000
+ * - keep.alive.max.requests: requests served on a connection before it is
+ * closed, defaults to 100.  1 disables keep-alive
  *
  * @since 11/25/2001
  */
@@ -53,6 +69,9 @@ public class OpenEJBHttpServer implements HttpServer {
     private HttpListener listener;
     private Set<Output> print;
     private boolean indent;
+    private int bufferSize = HttpResponseImpl.DEFAULT_BUFFER_SIZE;
+    private int keepAliveTimeout = 15000;
+    private int keepAliveMaxRequests = 100;
 
     public OpenEJBHttpServer() {
         this(getHttpListenerRegistry());
@@ -85,16 +104,28 @@ public class OpenEJBHttpServer implements HttpServer {
         /**
          * The InputStream used to receive incoming messages from the client.
          */
-        InputStream in = socket.getInputStream();
+        BufferedInputStream in = new BufferedInputStream(socket.getInputStream());
         /**
          * The OutputStream used to send outgoing response messages to the client.
          */
-        OutputStream out = socket.getOutputStream();
+        OutputStream out = new BufferedOutputStream(socket.getOutputStream());
 
         try {
             //TODO: if ssl change to https
             URI socketURI = new URI("http://" + socket.getLocalAddress().getHostAddress() + ":" + socket.getLocalPort());
-            processRequest(socketURI, in, out);
+
+            final int timeout = socket.getSoTimeout();
+            int requests = 0;
+            boolean keepAlive = true;
+            while (keepAlive) {
+                keepAlive = processRequest(socketURI, in, out, ++requests < keepAliveMaxRequests);
+
+                if (keepAlive) {
+                    socket.setSoTimeout(keepAliveTimeout);
+                    keepAlive = awaitRequest(in);
+                    socket.setSoTimeout(timeout);
+                }
+            }
         } catch (Throwable e) {
             log.error("Unexpected error", e);
         } finally {
@@ -123,7 +154,27 @@ public class OpenEJBHttpServer implements HttpServer {
         options.setLogger(new OptionsLog(log));
         print = options.getAll("print", OpenEJBHttpServer.Output.class);
         indent = print.size() > 0 && options.get("indent.xml", false);
+        bufferSize = options.get("buffer.size", bufferSize);
+        keepAliveTimeout = options.get("keep.alive.timeout", keepAliveTimeout);
+        keepAliveMaxRequests = options.get("keep.alive.max.requests", keepAliveMaxRequests);
+    }
 
+    /**
+     * Waits for the first byte of the next request on an idle connection
+     *
+     * @param in the input stream from the browser
+     * @return false if the browser closed the connection or sent nothing in time
+     * @throws IOException if an exception is thrown
+     */
+    private static boolean awaitRequest(BufferedInputStream in) throws IOException {
+        in.mark(1);
+        try {
+            if (in.read() == -1) return false;
+        } catch (SocketTimeoutException e) {
+            return false;
+        }
+        in.reset();
+        return true;
     }
 
     public static enum Output {
@@ -153,30 +204,42 @@ public class OpenEJBHttpServer implements HttpServer {
      *
      * @param in     the input stream from the browser
      * @param out    the output stream to the browser
+     * @param keepAlive false if the connection has to be closed after this request
+     * @return true if the connection can be used for the next request
      */
-    private void processRequest(URI socketURI, InputStream in, OutputStream out) {
-        HttpResponseImpl response = null;
+    private boolean processRequest(URI socketURI, InputStream in, OutputStream out, boolean keepAlive) {
+        HttpResponseImpl response = new HttpResponseImpl();
         try {
-            response = process(socketURI, in);
+            process(socketURI, in, out, response, keepAlive);
 
         } catch (Throwable t) {
+            if (response.isStreaming()) {
+                // part of the body is out, closing the connection is all that is left
+                log.error("Could not complete the streamed response", t);
+                return false;
+            }
             response = HttpResponseImpl.createError(t.getMessage(), t);
-        } finally {
-            try {
-                response.writeMessage(out, false);
-                if (print.size() > 0 && print.contains(Output.RESPONSE)) {
+        }
+
+        try {
+            response.writeMessage(out, false);
+            if (print.size() > 0 && print.contains(Output.RESPONSE)) {
+                if (response.isStreaming()) {
+                    log.debug("The response body was streamed: " + response);
+                } else {
                     response.writeMessage(new LoggerOutputStream(log, "debug"), indent);
                 }
-            } catch (Throwable t2) {
-                log.error("Could not write response", t2);
             }
+        } catch (Throwable t2) {
+            log.error("Could not write response", t2);
+            return false;
         }
 
+        return "keep-alive".equalsIgnoreCase(response.getHeader(HttpRequest.HEADER_CONNECTION));
     }
 
-    private HttpResponseImpl process(URI socketURI, InputStream in) throws OpenEJBException {
+    private void process(URI socketURI, InputStream in, OutputStream out, HttpResponseImpl res, boolean keepAlive) throws OpenEJBException {
         HttpRequestImpl req = new HttpRequestImpl(socketURI);
-        HttpResponseImpl res = new HttpResponseImpl();
 
         try {
             req.readMessage(in);
@@ -199,6 +262,12 @@ public class OpenEJBHttpServer implements HttpServer {
             throw new OpenEJBException("Could not read the request.\n" + t.getClass().getName() + ":\n" + t.getMessage(), t);
         }
 
+        res.setHeader(HttpRequest.HEADER_CONNECTION, keepAlive && req.isKeepAlive() ? "keep-alive" : "close");
+        if (HttpRequestImpl.HTTP_1_1.equals(req.getHttpVersion())) {
+            // HTTP/1.0 clients don't know about chunks
+            res.setStreamingOutput(out, bufferSize);
+        }
+
         URI uri;
         String location = null;
         try {
@@ -217,8 +286,6 @@ public class OpenEJBHttpServer implements HttpServer {
         } catch (Throwable t) {
             throw new OpenEJBException("Error occurred while executing the module " + location + "\n" + t.getClass().getName() + ":\n" + t.getMessage(), t);
         }
-
-        return res;
     }
 
 
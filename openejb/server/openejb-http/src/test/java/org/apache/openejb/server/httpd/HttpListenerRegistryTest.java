@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class HttpListenerRegistryTest extends TestCase {
+
+    private final List<String> calls = new ArrayList<String>();
+
+    public void testLiteralPrefix() throws Exception {
+        assertEquals("/ejb", HttpListenerRegistry.literalPrefix("/ejb/?.*"));
+        assertEquals("/rest/", HttpListenerRegistry.literalPrefix("/rest/.*"));
+        assertEquals("/ws/Calculator", HttpListenerRegistry.literalPrefix("/ws/Calculator"));
+        assertEquals("/a", HttpListenerRegistry.literalPrefix("/a[bc]"));
+        assertEquals("", HttpListenerRegistry.literalPrefix("/a|/b"));
+    }
+
+    public void testLongestPrefixWins() throws Exception {
+        final HttpListenerRegistry registry = new HttpListenerRegistry();
+        registry.addHttpListener(listener("any"), ".*");
+        registry.addHttpListener(listener("app"), "/app/.*");
+        registry.addHttpListener(listener("api"), "/app/api/.*");
+        registry.addHttpListener(listener("exact"), "/app/api/status");
+
+        call(registry, "/app/api/orders");
+        call(registry, "/app/index.html");
+        call(registry, "/app/api/status");
+        call(registry, "/other");
+        call(registry, "/app");
+
+        assertEquals("[api, app, exact, any, any]", calls.toString());
+    }
+
+    public void testAddAndRemove() throws Exception {
+        final HttpListenerRegistry registry = new HttpListenerRegistry();
+        final HttpListener ejb = listener("ejb");
+        registry.addHttpListener(ejb, "/ejb/?.*");
+
+        call(registry, "/ejb");
+        call(registry, "/ejb/foo");
+        call(registry, "/other");
+        assertEquals("[ejb, ejb]", calls.toString());
+
+        assertEquals(2, registry.routes().iterator().next().getHits());
+        assertSame(ejb, registry.removeHttpListener("/ejb/?.*"));
+
+        call(registry, "/ejb");
+        assertEquals("[ejb, ejb]", calls.toString());
+        assertEquals(0, registry.getListenerCount());
+    }
+
+    private void call(final HttpListenerRegistry registry, final String path) throws Exception {
+        final HttpRequest request = (HttpRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if (method.getName().equals("getURI")) return new URI("http://localhost:4204" + path);
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        registry.onMessage(request, null);
+    }
+
+    private HttpListener listener(final String name) {
+        return new HttpListener() {
+            @Override
+            public void onMessage(final HttpRequest request, final HttpResponse response) throws Exception {
+                calls.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class OpenEJBHttpServerTest extends TestCase {
+
+    private ServerSocket serverSocket;
+    private OpenEJBHttpServer server;
+
+    protected void setUp() throws Exception {
+        server = new OpenEJBHttpServer(new HttpListener() {
+            public void onMessage(HttpRequest request, HttpResponse response) throws Exception {
+                if ("POST".equals(request.getMethod())) {
+                    // echo the body
+                    final InputStream in = request.getInputStream();
+                    final OutputStream out = response.getOutputStream();
+                    for (int b = in.read(); b != -1; b = in.read()) {
+                        out.write(b);
+                    }
+                    return;
+                }
+
+                final int size = Integer.parseInt(request.getParameter("size"));
+                final OutputStream out = response.getOutputStream();
+                for (int i = 0; i < size; i++) {
+                    out.write('a' + i % 26);
+                }
+            }
+        });
+
+        final Properties properties = new Properties();
+        properties.setProperty("buffer.size", "100");
+        server.init(properties);
+
+        serverSocket = new ServerSocket(0, 1, InetAddress.getByName("localhost"));
+        final Thread thread = new Thread() {
+            public void run() {
+                try {
+                    server.service(serverSocket.accept());
+                } catch (Exception e) {
+                    // the test fails on the client side
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    protected void tearDown() throws Exception {
+        serverSocket.close();
+    }
+
+    public void testKeepAliveAndChunks() throws Exception {
+        final Socket socket = new Socket("localhost", serverSocket.getLocalPort());
+        try {
+            final OutputStream out = socket.getOutputStream();
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            // small enough to be buffered
+            out.write(request("GET /test?size=10 HTTP/1.1").getBytes());
+            out.flush();
+
+            Map<String, String> headers = readHead(in);
+            assertEquals("keep-alive", headers.get("Connection"));
+            assertEquals("10", headers.get("Content-Length"));
+            assertNull(headers.get("Transfer-Encoding"));
+            final byte[] buffered = new byte[10];
+            in.readFully(buffered);
+            assertEquals("abcdefghij", new String(buffered));
+
+            // same connection, this one outgrows the buffer
+            out.write(request("GET /test?size=1000 HTTP/1.1").getBytes());
+            out.flush();
+
+            headers = readHead(in);
+            assertEquals("chunked", headers.get("Transfer-Encoding"));
+            assertNull(headers.get("Content-Length"));
+            final byte[] streamed = readChunks(in);
+            assertEquals(1000, streamed.length);
+            assertEquals('a' + 999 % 26, streamed[999]);
+
+            // and asking to close
+            out.write(request("GET /test?size=1 HTTP/1.1\r\nConnection: close").getBytes());
+            out.flush();
+
+            headers = readHead(in);
+            assertEquals("close", headers.get("Connection"));
+            assertEquals("1", headers.get("Content-Length"));
+            assertEquals('a', in.read());
+            assertEquals(-1, in.read());
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testChunkedRequestKeepsConnection() throws Exception {
+        final Socket socket = new Socket("localhost", serverSocket.getLocalPort());
+        try {
+            final OutputStream out = socket.getOutputStream();
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            // a chunked body ending with a trailer
+            out.write(("POST /test HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "5\r\nhello\r\n"
+                    + "6;ext=1\r\n world\r\n"
+                    + "0\r\nX-Checksum: 42\r\n\r\n").getBytes());
+            out.flush();
+
+            Map<String, String> headers = readHead(in);
+            assertEquals("keep-alive", headers.get("Connection"));
+            assertEquals("11", headers.get("Content-Length"));
+            final byte[] echoed = new byte[11];
+            in.readFully(echoed);
+            assertEquals("hello world", new String(echoed));
+
+            // the next request on the connection starts right after the trailers
+            out.write(request("GET /test?size=3 HTTP/1.1").getBytes());
+            out.flush();
+
+            headers = readHead(in);
+            assertEquals("3", headers.get("Content-Length"));
+            final byte[] next = new byte[3];
+            in.readFully(next);
+            assertEquals("abc", new String(next));
+        } finally {
+            socket.close();
+        }
+    }
+
+    public void testHttp10IsBufferedAndClosed() throws Exception {
+        final Socket socket = new Socket("localhost", serverSocket.getLocalPort());
+        try {
+            final OutputStream out = socket.getOutputStream();
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            out.write(request("GET /test?size=1000 HTTP/1.0").getBytes());
+            out.flush();
+
+            final Map<String, String> headers = readHead(in);
+            assertEquals("close", headers.get("Connection"));
+            assertEquals("1000", headers.get("Content-Length"));
+            in.readFully(new byte[1000]);
+            assertEquals(-1, in.read());
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static String request(String requestLine) {
+        return requestLine + "\r\nHost: localhost\r\n\r\n";
+    }
+
+    private static Map<String, String> readHead(DataInputStream in) throws Exception {
+        final String status = in.readLine();
+        assertTrue(status, status.startsWith("HTTP/1.1 200"));
+
+        final Map<String, String> headers = new HashMap<String, String>();
+        for (String line = in.readLine(); line.length() > 0; line = in.readLine()) {
+            final int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon), line.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    private static byte[] readChunks(DataInputStream in) throws Exception {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            final int size = Integer.parseInt(in.readLine(), 16);
+            if (size == 0) {
+                assertEquals("", in.readLine());
+                return body.toByteArray();
+            }
+
+            final byte[] chunk = new byte[size];
+            in.readFully(chunk);
+            body.write(chunk);
+            assertEquals("", in.readLine());
+        }
+    }
+}